@@ -37,9 +37,59 @@ tasks.withType<JavaExec>() {
     standardInput = System.`in`
 }
 
+// the vectorized placement counter uses the incubating Vector API. It is compiled in, but only
+// used by JVMs started with this module, so plain runs fall back to the scalar counter
+val vectorModule = listOf("--add-modules", "jdk.incubator.vector")
+
+tasks.withType<JavaCompile>() {
+    options.compilerArgs.addAll(vectorModule)
+}
+
+// plays seeded games with each attack strategy and fails if shots-to-win regressed against the baseline.
+// pass -PevaluationArgs="--write-baseline" to record a new baseline instead
+tasks.register<JavaExec>("evaluateStrategies") {
+    group = "verification"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("evaluation.StrategyEvaluator")
+    args = listOf("--baseline", "evaluation-baseline.properties",
+                  "--report", "build/reports/strategy-evaluation.txt") +
+           (project.findProperty("evaluationArgs") as String? ?: "").split(" ").filter { it.isNotEmpty() }
+}
+
+// times the scalar and vectorized placement counters against each other on several board sizes
+tasks.register<JavaExec>("benchmarkPlacementCounters") {
+    group = "verification"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("evaluation.PlacementCounterBenchmark")
+    jvmArgs(vectorModule)
+}
+
 tasks.test {
     // Use junit platform for unit tests.
     useJUnitPlatform()
+    jvmArgs(vectorModule)
+}
+
+// the invariant checking mode is read once per JVM, so the tests of each mode run in a JVM of their own.
+// Sampled mode scans every 10 operations, so its schedule is reached quickly
+val invariantModes = mapOf("Off" to "off", "Sampled" to "sampled", "Full" to "full")
+for ((name, mode) in invariantModes) {
+    val invariantTest = tasks.register<Test>("testInvariants$name") {
+        group = "verification"
+        testClassesDirs = sourceSets["test"].output.classesDirs
+        classpath = sourceSets["test"].runtimeClasspath
+        useJUnitPlatform()
+        jvmArgs(vectorModule)
+        systemProperty("battleship.invariants", mode)
+        systemProperty("battleship.invariants.interval", "10")
+        filter {
+            includeTestsMatching("utils.InvariantChecksTest")
+            includeTestsMatching("battleship.PlayerTest.testBrokenRepIsCaughtOnTheFullScanSchedule")
+        }
+    }
+    tasks.check {
+        dependsOn(invariantTest)
+    }
 }
 
 tasks.withType<Jar> {
@@ -0,0 +1,268 @@
+package battleship;
+
+import utils.PointUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * An AdaptiveAttackGenerator shoots where human players tend to hide their ships. Every cell is
+ * scored by how many placements of the ships still afloat that avoid every miss and sunk ship would
+ * cover it, from a PlacementCounter, times the cell's weight in a PlacementPrior learned from past
+ * human fleets. While some hit on a ship afloat still has unshot neighbours it finishes the ship off
+ * first, like SmartAttackGenerator, shooting the neighbour of the most such hits and breaking ties by
+ * score.
+ * <p>
+ * The prior is read again on every move, without waiting, so fleets learned in the background
+ * sharpen the generator mid-game.
+ */
+public class AdaptiveAttackGenerator extends AttackGenerator {
+
+    // Abstraction Function:
+    //      an opponent's board of boardSize x boardSize cells, holding the ships sunk so far, whose
+    //      cells are the arrays of sunkShips, and afloat[length] ships of each length still afloat,
+    //      where cell y * boardSize + x has been shot at iff guessed[cell] and was a hit iff hit[cell]
+
+    // Representation Invariant:
+    //      0 < boardSize <= PlacementCounter.MAX_BOARD_SIZE
+    //      guessed.length == hit.length == sunk.length == counts.length == boardSize * boardSize
+    //      hit[c] implies guessed[c], and sunk[c] implies hit[c]
+    //      sunk[c] iff c is a cell of an array in sunkShips
+    //      afloat[length] >= 0 for every length
+    //      remaining == number of cells not guessed
+    //      lastShot == -1 or guessed[lastShot]
+
+    private final int boardSize;
+    private final int[] afloat;
+    private final List<int[]> sunkShips;
+    private final PlacementPrior prior;
+    private final PlacementCounter counter;
+    private final long seed; // the ties of a move are broken by this and the number of shots before it
+    private final boolean[] guessed;
+    private final boolean[] hit;
+    private final boolean[] sunk;
+    private final long[] blocked; // misses and sunk ships, as rows of bits, rebuilt every move
+    private final int[] counts;
+    private int remaining;
+    private int lastShot;
+    private long candidatesEvaluated;
+
+    /**
+     * @param boardSize the size of the board to attack
+     * @param shipsInfo the opponent's fleet, as an array of ship length (index) to number (value)
+     * @param prior where human fleets have been seen before
+     * @param random the source of the seed that breaks ties between equally good cells
+     * @throws IllegalArgumentException if the board is larger than PlacementCounter.MAX_BOARD_SIZE
+     */
+    public AdaptiveAttackGenerator(int boardSize, int[] shipsInfo, PlacementPrior prior, SplittableRandom random) {
+        if (boardSize <= 0 || boardSize > PlacementCounter.MAX_BOARD_SIZE) {
+            throw new IllegalArgumentException("Adaptive attacks only work on boards up to "
+                                               + PlacementCounter.MAX_BOARD_SIZE);
+        }
+        this.boardSize = boardSize;
+        this.afloat = shipsInfo.clone();
+        this.sunkShips = new ArrayList<>();
+        this.prior = prior;
+        this.counter = PlacementCounter.best();
+        this.seed = random.nextLong();
+        this.guessed = new boolean[boardSize * boardSize];
+        this.hit = new boolean[boardSize * boardSize];
+        this.sunk = new boolean[boardSize * boardSize];
+        this.blocked = new long[boardSize];
+        this.counts = new int[boardSize * boardSize];
+        this.remaining = boardSize * boardSize;
+        this.lastShot = -1;
+    }
+
+    @Override
+    public Point getAttackPoint() {
+        if (remaining == 0) {
+            throw new IllegalStateException("No more unguessed spaces on the board");
+        }
+        counter.count(blockShotCells(), boardSize, afloat, counts);
+        return takeBestCounted();
+    }
+
+    /**
+     * Picks as getAttackPoint() does if the placement count finishes by the deadline, and otherwise
+     * follows up a hit by the prior alone
+     */
+    @Override
+    public Point getAttackPoint(long deadline) {
+        if (remaining == 0) {
+            throw new IllegalStateException("No more unguessed spaces on the board");
+        }
+        if (System.nanoTime() - deadline < 0 && counter.count(blockShotCells(), boardSize, afloat, counts, deadline)) {
+            return takeBestCounted();
+        }
+        return takeFollowUp();
+    }
+
+    // the misses and sunk ships, which no ship afloat can cover
+    private long[] blockShotCells() {
+        Arrays.fill(blocked, 0);
+        for (int cell = 0; cell < guessed.length; cell++) {
+            if (guessed[cell] && !hit[cell] || sunk[cell]) {
+                blocked[cell / boardSize] |= 1L << (cell % boardSize);
+            }
+        }
+        return blocked;
+    }
+
+    // the unguessed cell next to the most hits on ships afloat, ties going to the most placements times
+    // the prior
+    private Point takeBestCounted() {
+        double[] weights = prior.weights(boardSize);
+
+        // scanning from a random cell spreads ties over the board
+        int start = Math.floorMod(moveSeed(seed, guessed.length - remaining), guessed.length);
+        int best = -1;
+        int bestHits = 0;
+        double bestScore = -1;
+        candidatesEvaluated = 0;
+        for (int i = 0; i < guessed.length; i++) {
+            int cell = (start + i) % guessed.length;
+            if (guessed[cell]) {
+                continue;
+            }
+            candidatesEvaluated++;
+            int hits = adjacentHits(cell);
+            double score = weights == null ? counts[cell] : counts[cell] * weights[cell];
+            if (hits > bestHits || hits == bestHits && score > bestScore) {
+                best = cell;
+                bestHits = hits;
+                bestScore = score;
+            }
+        }
+        return take(best);
+    }
+
+    // the unguessed cell next to the most hits on ships afloat, ties going to the prior, or null if no such
+    // hit has one
+    private Point takeFollowUp() {
+        double[] weights = prior.weights(boardSize);
+        int best = -1;
+        int bestHits = 0;
+        double bestWeight = -1;
+        candidatesEvaluated = 0;
+        for (int cell = 0; cell < guessed.length; cell++) {
+            if (guessed[cell]) {
+                continue;
+            }
+            candidatesEvaluated++;
+            int hits = adjacentHits(cell);
+            double weight = weights == null ? 1 : weights[cell];
+            if (hits > 0 && (hits > bestHits || hits == bestHits && weight > bestWeight)) {
+                best = cell;
+                bestHits = hits;
+                bestWeight = weight;
+            }
+        }
+        return best < 0 ? null : take(best);
+    }
+
+    private Point take(int cell) {
+        guessed[cell] = true;
+        remaining--;
+        lastShot = cell;
+        return Point.of(cell % boardSize, cell / boardSize);
+    }
+
+    // the hits next to cell on ships not yet sunk
+    private int adjacentHits(int cell) {
+        int x = cell % boardSize;
+        int y = cell / boardSize;
+        int hits = 0;
+        if (x > 0 && afloatHit(cell - 1)) hits++;
+        if (x < boardSize - 1 && afloatHit(cell + 1)) hits++;
+        if (y > 0 && afloatHit(cell - boardSize)) hits++;
+        if (y < boardSize - 1 && afloatHit(cell + boardSize)) hits++;
+        return hits;
+    }
+
+    private boolean afloatHit(int cell) {
+        return hit[cell] && !sunk[cell];
+    }
+
+    @Override
+    public void notifyHit() {
+        if (lastShot >= 0) {
+            hit[lastShot] = true;
+        }
+    }
+
+    /**
+     * Stops counting a sunk ship as part of the fleet still to be found, and stops finishing it off
+     * @throws IllegalArgumentException if a cell of the ship has not been hit, or the fleet has no
+     *                                  more ships of its length afloat
+     */
+    @Override
+    public void notifySunk(Point start, Point end) {
+        List<Point> points = PointUtils.getPointsBetween(start, end);
+        int length = points.size();
+        if (length >= afloat.length || afloat[length] <= 0) {
+            throw new IllegalArgumentException("No ship of length " + length + " is left to sink");
+        }
+        int[] cells = new int[length];
+        for (int i = 0; i < length; i++) {
+            cells[i] = points.get(i).getY() * boardSize + points.get(i).getX();
+            if (!afloatHit(cells[i])) {
+                throw new IllegalArgumentException(points.get(i) + " is not a hit on a ship afloat");
+            }
+        }
+        for (int cell : cells) {
+            sunk[cell] = true;
+        }
+        sunkShips.add(cells);
+        afloat[length]--;
+    }
+
+    @Override
+    public void markAttacked(Point p) {
+        int cell = p.getY() * boardSize + p.getX();
+        if (guessed[cell]) {
+            throw new IllegalArgumentException(p + " has already been attacked");
+        }
+        take(cell);
+    }
+
+    @Override
+    public void forget(Point p) {
+        int cell = p.getY() * boardSize + p.getX();
+        if (sunk[cell]) {
+            refloat(cell);
+        }
+        if (guessed[cell]) {
+            guessed[cell] = false;
+            hit[cell] = false;
+            remaining++;
+            if (lastShot == cell) {
+                lastShot = -1;
+            }
+        }
+    }
+
+    // undoes notifySunk for the sunk ship on cell, once a hit on it is taken back
+    private void refloat(int cell) {
+        for (int i = sunkShips.size() - 1; i >= 0; i--) {
+            int[] cells = sunkShips.get(i);
+            for (int c : cells) {
+                if (c == cell) {
+                    for (int sunkCell : cells) {
+                        sunk[sunkCell] = false;
+                    }
+                    sunkShips.remove(i);
+                    afloat[cells.length]++;
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getCandidatesEvaluated() {
+        return candidatesEvaluated;
+    }
+}
@@ -0,0 +1,55 @@
+package battleship;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event committed each time a ComputerPlayer asks its AttackGenerator for a move.
+ */
+@Name("battleship.AiMove")
+@Label("AI Move Chosen")
+@Category("Battleship")
+@Description("An attack point chosen by a CPU player's AttackGenerator")
+class AiMoveEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(AiMoveEvent.class);
+
+    /**
+     * Begins an event, if a running recording has this event enabled
+     * @return the event, or null when no recording wants it, so nothing is allocated
+     */
+    static AiMoveEvent beginIfEnabled() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        AiMoveEvent event = new AiMoveEvent();
+        event.begin();
+        return event;
+    }
+
+    @Label("Player")
+    int player;
+
+    @Label("Generator")
+    String generator;
+
+    @Label("Candidates Evaluated")
+    long candidates;
+
+    @Label("Fell Back")
+    @Description("Whether the generator ran out of time and a cheaper one chose the point")
+    boolean fellBack;
+
+    @Label("Speculated")
+    @Description("Whether the point was chosen in the background before the player's turn")
+    boolean speculated;
+
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+}
@@ -0,0 +1,160 @@
+package battleship;
+
+import metrics.Heatmap;
+import utils.InvariantChecks;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * An AntiPatternPlacer places a computer player's ships where human players shoot late. Every cell has
+ * a lateness from a shot heatmap, from 0 where humans shoot first to 1 where they never shoot before
+ * the game ends, and every legal slot for a ship is weighted by how late its cells are on average.
+ * <p>
+ * A ship is placed by listing every legal slot once, with running totals of their weights, and
+ * picking one with a single random draw, so placing a fleet never retries and takes time proportional
+ * to the number of cells, not to how crowded the board is. The preference is kept soft, so a human who
+ * learns it cannot read the fleet off the heatmap.
+ */
+final class AntiPatternPlacer {
+
+    // Abstraction Function:
+    //      places ships on a size x size board, weighting a ship over cells C by
+    //      exp(BOLDNESS * (mean of lateness[c] for c in C - 1/2))
+
+    // Representation Invariant:
+    //      0 < size, lateness.length == size * size, every lateness in [0, 1]
+    //      rowSums.length == colSums.length == size * (size + 1)
+    //      slotWeights.length == 2 * size * size
+
+    static final double BOLDNESS = 4; // a slot shot last is e^4, about 55, times as likely as one shot first
+    private static final double PSEUDO_SAMPLES = 4; // how many games' worth of evidence a neutral lateness starts with
+
+    private final int size;
+    private final double[] lateness;
+    private final double[] rowSums; // rowSums[y * (size + 1) + x] is the lateness of cells 0..x-1 of row y
+    private final double[] colSums; // colSums[x * (size + 1) + y] is the lateness of cells 0..y-1 of column x
+    private final int[] rowFree; // like rowSums, counting cells with no ship, rebuilt for every ship
+    private final int[] colFree;
+    private final double[] slotWeights; // running totals over the slots listed for the current ship
+    private final int[] slots; // the first cell of each listed slot, negated minus one if vertical
+
+    /**
+     * @param heatmap where and how late humans shoot on boards of the size to place on
+     */
+    AntiPatternPlacer(Heatmap.Snapshot heatmap) {
+        this.size = heatmap.size();
+        this.lateness = new double[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                // cells seldom seen are pulled towards the neutral lateness of 1/2
+                long samples = heatmap.latenessSamples(x, y);
+                lateness[y * size + x] = (heatmap.lateness(x, y) * samples + 0.5 * PSEUDO_SAMPLES)
+                                         / (samples + PSEUDO_SAMPLES);
+            }
+        }
+        this.rowSums = new double[size * (size + 1)];
+        this.colSums = new double[size * (size + 1)];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                rowSums[i * (size + 1) + j + 1] = rowSums[i * (size + 1) + j] + lateness[i * size + j];
+                colSums[i * (size + 1) + j + 1] = colSums[i * (size + 1) + j] + lateness[j * size + i];
+            }
+        }
+        this.rowFree = new int[size * (size + 1)];
+        this.colFree = new int[size * (size + 1)];
+        this.slotWeights = new double[2 * size * size];
+        this.slots = new int[2 * size * size];
+        checkRep();
+    }
+
+    private void checkRep() {
+        if (InvariantChecks.ENABLED) {
+            assert size > 0 && lateness.length == size * size : "Lateness must cover the board";
+            assert slotWeights.length == 2 * size * size && slots.length == slotWeights.length
+                    : "Every slot must have room";
+            for (double l : lateness) {
+                assert l >= 0 && l <= 1 : "Lateness must be in [0, 1]";
+            }
+        }
+    }
+
+    /**
+     * @return the smoothed lateness of cell (x, y) that slots are weighted by
+     */
+    double getLateness(int x, int y) {
+        return lateness[y * size + x];
+    }
+
+    /**
+     * Picks a slot for a ship that overlaps none of the given points
+     * @param length the length of the ship
+     * @param occupied the cells already taken by the player's ships
+     * @param random the source of the pick
+     * @return the two ends of the ship
+     * @throws IllegalStateException if no slot is free
+     */
+    Point[] place(int length, Iterable<Point> occupied, SplittableRandom random) {
+        if (length <= 0 || length > size) {
+            throw new IllegalArgumentException("A ship of length " + length + " does not fit on the board");
+        }
+        countFree(occupied);
+        double total = 0;
+        int n = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x + length <= size; x++) {
+                if (rowFree[y * (size + 1) + x + length] - rowFree[y * (size + 1) + x] == length) {
+                    double sum = rowSums[y * (size + 1) + x + length] - rowSums[y * (size + 1) + x];
+                    total += weight(sum / length);
+                    slotWeights[n] = total;
+                    slots[n++] = y * size + x;
+                }
+            }
+        }
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y + length <= size; y++) {
+                if (colFree[x * (size + 1) + y + length] - colFree[x * (size + 1) + y] == length) {
+                    double sum = colSums[x * (size + 1) + y + length] - colSums[x * (size + 1) + y];
+                    total += weight(sum / length);
+                    slotWeights[n] = total;
+                    slots[n++] = -(y * size + x) - 1;
+                }
+            }
+        }
+        if (n == 0) {
+            throw new IllegalStateException("There is no room left for a ship of length " + length);
+        }
+        int pick = Arrays.binarySearch(slotWeights, 0, n, random.nextDouble() * total);
+        pick = pick >= 0 ? pick + 1 : -pick - 1; // the first slot whose running total passes the draw
+        pick = Math.min(pick, n - 1);
+        boolean vertical = slots[pick] < 0;
+        int start = vertical ? -slots[pick] - 1 : slots[pick];
+        int x = start % size;
+        int y = start / size;
+        return vertical
+               ? new Point[]{Point.of(x, y), Point.of(x, y + length - 1)}
+               : new Point[]{Point.of(x, y), Point.of(x + length - 1, y)};
+    }
+
+    private static double weight(double meanLateness) {
+        return Math.exp(BOLDNESS * (meanLateness - 0.5));
+    }
+
+    // rebuilds the running counts of free cells along every row and column
+    private void countFree(Iterable<Point> occupied) {
+        Arrays.fill(rowFree, 0);
+        Arrays.fill(colFree, 0);
+        // marks taken cells with -1 in the slot after theirs, then sums
+        for (Point p : occupied) {
+            rowFree[p.getY() * (size + 1) + p.getX() + 1] = -1;
+            colFree[p.getX() * (size + 1) + p.getY() + 1] = -1;
+        }
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int at = i * (size + 1) + j + 1;
+                rowFree[at] = rowFree[at - 1] + (rowFree[at] < 0 ? 0 : 1);
+                colFree[at] = colFree[at - 1] + (colFree[at] < 0 ? 0 : 1);
+            }
+        }
+    }
+}
@@ -3,13 +3,36 @@
  */
 package battleship;
 
+import server.GameServer;
+import textInterface.BatchRunner;
 import textInterface.InputHandler;
 import textInterface.TextInterfaceController;
 import textInterface.TextInterfaceView;
 import textInterface.View;
 
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
 public class App {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        // usage: --batch <script file> [--discard] runs a command script headlessly and reports timings
+        if (args.length >= 2 && args[0].equals("--batch")) {
+            runBatch(args[1], List.of(args).contains("--discard"));
+            return;
+        }
+        // usage: --serve [port] plays games over HTTP until the process is killed
+        if (args.length >= 1 && args[0].equals("--serve")) {
+            GameServer server = new GameServer(args.length >= 2 ? Integer.parseInt(args[1]) : 8080);
+            System.out.println("Serving games on port " + server.getPort());
+            try {
+                Thread.currentThread().join(); // the server's threads are daemons, so main keeps the JVM up
+            } catch (InterruptedException e) {
+                server.stop(0);
+            }
+            return;
+        }
 //        TwoPlayerGame game = new TwoPlayerGame(10);
         TextInterfaceView view = new TextInterfaceView();
 //        TextInterfaceController controller = new TextInterfaceController(game, view);
@@ -17,4 +40,12 @@ public class App {
         view.setInputHandler(controller);
         controller.start();
     }
+
+    private static void runBatch(String scriptPath, boolean discardOutput) throws IOException {
+        BatchRunner runner = new BatchRunner(!discardOutput);
+        try (Reader script = new FileReader(scriptPath)) {
+            runner.run(script);
+        }
+        runner.report(System.out);
+    }
 }
@@ -2,7 +2,69 @@ package battleship;
 
 public abstract class AttackGenerator {
 
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
     public abstract Point getAttackPoint();
 
+    /**
+     * Picks a point to attack by a deadline. Generators that search refine their answer while there
+     * is time and return the best one found when it runs out; the others are always quick, so they
+     * ignore the deadline
+     * @param deadline the System.nanoTime() by which to answer
+     * @return the point, or null if there was no answer by the deadline, in which case this generator
+     *         is unchanged and the caller should pick a point some other way and pass it to markAttacked
+     */
+    public Point getAttackPoint(long deadline) {
+        return getAttackPoint();
+    }
+
+    /**
+     * Records an attack on a point this generator did not pick, so it is never picked again and a
+     * following notifyHit is about it. Any generator may be the fallback of one that missed a
+     * deadline, or have one, so every generator keeps in step this way
+     * @param p a point this generator has not returned
+     * @throws IllegalArgumentException if p has already been attacked
+     */
+    public abstract void markAttacked(Point p);
+
     public void notifyHit() {}
+
+    /**
+     * Tells this generator that its last hit sank a ship, so that it can stop looking for it. Only
+     * generators that reason about the whole fleet need to use it
+     * @param start one end of the ship that was sunk, every cell of which this generator has hit
+     * @param end the other end
+     */
+    public void notifySunk(Point start, Point end) {}
+
+    /**
+     * Makes a point that this generator returned available to be returned again, after the
+     * attack on it has been undone. The generator is left as it was before the attack, randomness
+     * included, so the moves that follow are the ones that would have followed without it
+     * @param p the latest point returned by getAttackPoint or passed to markAttacked and not yet forgotten
+     */
+    public abstract void forget(Point p);
+
+    /**
+     * The seed of the random choices of one move, for generators that make them. It depends only on
+     * the generator's own seed and the number of shots it has taken, so forgetting a shot rewinds the
+     * randomness with it
+     * @param seed the generator's seed
+     * @param shots the number of shots taken before the move
+     * @return the value numbered shots of the SplitMix64 sequence from seed, as SplittableRandom draws it
+     */
+    static long moveSeed(long seed, long shots) {
+        long z = seed + (shots + 1) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Reports how much work the last call to getAttackPoint did, for profiling
+     * @return the number of cells considered before the last point was chosen
+     */
+    public long getCandidatesEvaluated() {
+        return 1;
+    }
 }
@@ -2,12 +2,12 @@ package battleship;
 
 
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
-import utils.Globals;
+import utils.InvariantChecks;
 
 // The Board class is a mutable object that represents a player's
-// nxn-sized playing board
+// nxn-sized playing board. Hits and misses are kept in sparse bitmaps, so
+// a Board only costs memory for the cells that have been guessed
 public class Board {
     // Abstraction Function:
     //      hit = unordered collection of points that have been hit
@@ -23,9 +23,10 @@ public class Board {
     //      parameters in all Points satisfy 0 <= p < size
     //      size >= 0
 
-    private final Set<Point> hit;
-    private final Set<Point> miss;
+    private final CellSet hit;
+    private final CellSet miss;
     private final int size;
+    private int operationCount; // for sampling full rep checks
     public static final boolean DEBUG = true;
 
     /**
@@ -37,17 +38,17 @@ public class Board {
         if (size < 0) {
             throw new IllegalArgumentException();
         }
-        hit = new HashSet<>();
-        miss = new HashSet<>();
+        hit = new CellSet();
+        miss = new CellSet();
         this.size = size;
         checkRep();
     }
 
     private void checkRep() {
-        if (Globals.DEBUG) {
+        if (InvariantChecks.ENABLED) {
             assert (hit != null && miss != null) : "Board must be instantiated";
             assert (size >= 0) : "Size cannot be less than 0";
-            if (DEBUG) {
+            if (DEBUG && InvariantChecks.fullScanDue(++operationCount)) {
                 for (Point p : hit) {
                     assert (p != null) : "Points cannot be null";
                     assert (!miss.contains(p)) : "Points cannot be in both hit and miss";
@@ -63,6 +64,16 @@ public class Board {
         }
     }
 
+    // checks the part of the rep invariant that adding p could have broken
+    private void checkRepAfterAdding(Point p) {
+        if (InvariantChecks.ENABLED) {
+            assert (hit.contains(p) != miss.contains(p)) : "Points cannot be in both hit and miss";
+            assert (p.getX() >= 0 && p.getX() < size && p.getY() >= 0 && p.getY() < size)
+                    : "Points must exist in the board";
+            checkRep();
+        }
+    }
+
 
     /**
      * Marks the given Point as hit
@@ -80,7 +91,7 @@ public class Board {
             return false;
         }
         hit.add(p);
-        checkRep();
+        checkRepAfterAdding(p);
         return true;
     }
 
@@ -100,10 +111,22 @@ public class Board {
             return false;
         }
         miss.add(p);
-        checkRep();
+        checkRepAfterAdding(p);
         return true;
     }
 
+    /**
+     * Forgets a guess at the given Point, so it can be guessed again. Only used to undo moves
+     *
+     * @param p the Point to un-guess
+     * @return true if the Point had been guessed
+     */
+    boolean removeGuess(Point p) {
+        boolean removed = hit.remove(p) || miss.remove(p);
+        checkRep();
+        return removed;
+    }
+
     /**
      * Returns the Points that have been hit
      *
@@ -0,0 +1,83 @@
+package battleship;
+
+import utils.SparseBitmap;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+
+/**
+ * A CellSet is a mutable set of Points backed by a {@link SparseBitmap}. Membership checks do not
+ * allocate or hash Points, and memory grows with the cells that have been added rather than the
+ * size of the board, which keeps very large boards cheap.
+ * Points are only removed when a move is undone.
+ */
+class CellSet extends AbstractSet<Point> {
+
+    // Abstraction Function:
+    //      the set of Points (x, y) such that cells contains (x, y)
+
+    // Representation Invariant:
+    //      cells != null
+
+    private final SparseBitmap cells;
+
+    CellSet() {
+        this.cells = new SparseBitmap();
+    }
+
+    /**
+     * Returns true if the cell at (x, y) is in this set, without creating a Point
+     */
+    boolean containsCell(int x, int y) {
+        return cells.get(x, y);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Point)) {
+            return false;
+        }
+        Point p = (Point) o;
+        return cells.get(p.getX(), p.getY());
+    }
+
+    @Override
+    public boolean add(Point p) {
+        if (p == null) {
+            throw new IllegalArgumentException("CellSet cannot hold null");
+        }
+        return cells.set(p.getX(), p.getY());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Point)) {
+            return false;
+        }
+        Point p = (Point) o;
+        return cells.clear(p.getX(), p.getY());
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(cells.cardinality(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Iterator<Point> iterator() {
+        PrimitiveIterator.OfLong it = cells.cells();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Point next() {
+                long cell = it.nextLong();
+                return new Point(SparseBitmap.unpackX(cell), SparseBitmap.unpackY(cell));
+            }
+        };
+    }
+}
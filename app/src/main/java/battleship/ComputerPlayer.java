@@ -1,29 +1,182 @@
 package battleship;
 
+import metrics.Heatmap;
+import metrics.Heatmaps;
+import metrics.Metrics;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class ComputerPlayer extends Player {
 
-    private AttackGenerator attackGenerator;
+    private final int difficulty;
+    private final int boardSize;
+    private final int[] shipsInfo; // the fleet every opponent has
+    private final SplittableRandom random; // owned by this player, so simulations on many threads never share one
+    // every opponent's board is searched separately, so generators are indexed by the target's seat
+    // and only created once that opponent is first targeted
+    private AttackGenerator[] attackGenerators;
+    private AttackGenerator attackGenerator; // the generator for the current target
+    // the harder difficulties can run out of time, so each of their generators is shadowed by a
+    // cheap one that has seen the same shots and picks the move instead when that happens
+    private AttackGenerator[] fallbackGenerators;
+    private AttackGenerator fallbackGenerator; // the fallback for the current target, null if not needed
+    private long moveBudgetNanos;
+    // the next move, while it is being chosen in the background for the opponent in speculationSeat
+    private CompletableFuture<Point> speculation;
+    private int speculationSeat;
+    private boolean fellBack; // whether the fallback chose the last move
+    private static ExecutorService speculator; // shared by every player, made on first use
+    private boolean targeted; // whether setTarget has been called
+    private AntiPatternPlacer placer; // null until the first ship is placed, and always for the easier difficulties
+    // where humans shoot, for the placer; null to place as if nothing is known, so seeded games replay
+    private Heatmap.Snapshot placementHeatmap;
+    private final PlacementPrior prior; // what the adaptive difficulty knows of human fleets
+
+    /**
+     * @param random the source of this player's ship placements and shots, which no one else may use
+     * @param prior where human players have placed their ships, for the adaptive difficulty
+     */
+    public ComputerPlayer(int id, int seat, Ship[] ships, int board_size, int difficulty, int[] shipsInfo,
+                          SplittableRandom random, PlacementPrior prior) {
+        super(id, seat, ships, board_size);
+        this.difficulty = difficulty;
+        this.boardSize = board_size;
+        this.shipsInfo = shipsInfo;
+        this.random = random;
+        this.prior = prior;
+        this.attackGenerators = new AttackGenerator[0];
+        this.attackGenerator = newAttackGenerator();
+        this.fallbackGenerators = new AttackGenerator[0];
+        this.fallbackGenerator = newFallbackGenerator();
+        this.moveBudgetNanos = TimeUnit.MILLISECONDS.toNanos(GameSettings.defaultCpuMoveBudgetMillis(difficulty));
+    }
+
+    /**
+     * Makes a player that learns from the shared placement prior
+     */
+    public ComputerPlayer(int id, int seat, Ship[] ships, int board_size, int difficulty, int[] shipsInfo,
+                          SplittableRandom random) {
+        this(id, seat, ships, board_size, difficulty, shipsInfo, random, PlacementPrior.shared());
+    }
 
     public ComputerPlayer(int id, Ship[] ships, int board_size, int difficulty) {
-        super(id, ships, board_size);
+        this(id, id, ships, board_size, difficulty, Game.defaultShipInfo(board_size), new SplittableRandom());
+    }
+
+    private AttackGenerator newAttackGenerator() {
         switch (difficulty) {
             case 1:
-                this.attackGenerator = new SmartAttackGenerator(board_size);
-                break;
             case 2:
-                this.attackGenerator = new SmartAttackGenerator(board_size);
-                break;
+                return new SmartAttackGenerator(boardSize);
+            case 3:
+                // the search keeps dense per-cell counts, so very large boards fall back to the smart generator
+                if (boardSize <= SearchAttackGenerator.MAX_BOARD_SIZE) {
+                    return new SearchAttackGenerator(boardSize, shipsInfo, random.split());
+                }
+                return new SmartAttackGenerator(boardSize);
+            case 4:
+                // learns from the fleets human players have placed, on boards the prior is kept for
+                if (boardSize <= PlacementPrior.MAX_BOARD_SIZE) {
+                    return new AdaptiveAttackGenerator(boardSize, shipsInfo, prior, random.split());
+                }
+                return new SmartAttackGenerator(boardSize);
             default:
-                this.attackGenerator = new RandomAttackGenerator(board_size);
+                return new RandomAttackGenerator(boardSize, random.split());
+        }
+    }
+
+    private AttackGenerator newFallbackGenerator() {
+        return difficulty >= 3 ? new SmartAttackGenerator(boardSize) : null;
+    }
+
+    /**
+     * Sets how long each call to getAttackPoint may take. Generators that are still searching when
+     * it runs out return their best move so far, and if they have none a cheap generator moves instead
+     * @param millis the budget per move, 0 to always have the cheap generator move
+     * @throws IllegalArgumentException if millis is negative
+     */
+    public void setMoveBudgetMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("A move budget cannot be negative");
+        }
+        this.moveBudgetNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Sets where human players shoot, so the harder difficulties can place ships where they shoot
+     * late. Until this is called they place ships as if humans shoot everywhere alike, so that their
+     * fleets depend on nothing but this player's random
+     * @param heatmap a snapshot of human shots on boards of this player's size
+     * @throws IllegalArgumentException if the heatmap is of another board size
+     */
+    public void setPlacementHeatmap(Heatmap.Snapshot heatmap) {
+        if (heatmap.size() != boardSize) {
+            throw new IllegalArgumentException("The heatmap is of " + heatmap.size() + "x" + heatmap.size() + " boards");
         }
+        this.placementHeatmap = heatmap;
+        this.placer = null;
     }
 
+    /**
+     * Aims this player's following attack points at an opponent
+     * @param seat the seat of the opponent to attack next
+     */
+    public void setTarget(int seat) {
+        if (speculation != null && seat != speculationSeat) {
+            discardSpeculation();
+        }
+        if (seat >= attackGenerators.length) {
+            attackGenerators = Arrays.copyOf(attackGenerators, seat + 1);
+        }
+        if (attackGenerators[seat] == null) {
+            // the generators made on construction go to the first target
+            attackGenerators[seat] = targeted ? newAttackGenerator() : attackGenerator;
+            fallbackGenerators = Arrays.copyOf(fallbackGenerators, attackGenerators.length);
+            fallbackGenerators[seat] = targeted ? newFallbackGenerator() : fallbackGenerator;
+        }
+        attackGenerator = attackGenerators[seat];
+        fallbackGenerator = fallbackGenerators[seat];
+        targeted = true;
+    }
+
+    /**
+     * Picks where to put a ship. The harder difficulties only pick slots that are free and favour cells
+     * human players shoot late; the others pick any line of cells, which may be off the board or
+     * overlap their other ships, so callers must check the ship and ask again if it does not fit
+     * @param length the length of the ship
+     * @return the two ends of the ship
+     */
     public Point[] generateShip(int length) {
-        int boardSize = this.getBoard().size();
+        if (difficulty >= 3 && boardSize <= Heatmaps.MAX_SIZE) {
+            if (placer == null) {
+                placer = new AntiPatternPlacer(placementHeatmap != null ? placementHeatmap
+                                                                        : new Heatmap(boardSize, 1).snapshot());
+            }
+            return placer.place(length, this.getShipPoints(), random);
+        }
+        return drawShipEnds(random, this.getBoard().size(), length);
+    }
+
+    /**
+     * Draws the ends of a random ship, which may run off the board. GameArena places its fleets
+     * with this too, so the two draw the same ships from the same random
+     * @param random the source of the ship's start and direction
+     * @param boardSize the size of the board the start is drawn on
+     * @param length the length of the ship
+     * @return the start and end points of the ship
+     */
+    static Point[] drawShipEnds(SplittableRandom random, int boardSize, int length) {
         Point[] points = new Point[2];
-        points[0] = new Point((int) (Math.random() * boardSize), (int) (Math.random() * boardSize));
-        int multiplier = Math.random() < 0.5 ? 1 : -1;
-        if (Math.random() < 0.5) { // horizontal
+        points[0] = new Point(random.nextInt(boardSize), random.nextInt(boardSize));
+        int multiplier = random.nextBoolean() ? 1 : -1;
+        if (random.nextBoolean()) { // horizontal
             points[1] = new Point(points[0].getX() + (length - 1) * multiplier, points[0].getY());
         } else { // vertical
             points[1] = new Point(points[0].getX(), points[0].getY() + (length - 1) * multiplier);
@@ -31,12 +184,172 @@ public class ComputerPlayer extends Player {
         return points;
     }
 
+    @Override
+    void undoAttack(Player other, Point p) {
+        discardSpeculation();
+        super.undoAttack(other, p);
+        if (other.getSeat() < attackGenerators.length && attackGenerators[other.getSeat()] != null) {
+            attackGenerators[other.getSeat()].forget(p);
+            if (fallbackGenerators[other.getSeat()] != null) {
+                fallbackGenerators[other.getSeat()].forget(p);
+            }
+        }
+    }
+
+    // the generators are told of the attack again, as if they had chosen it, so they are as they were before the undo
+    @Override
+    Ship redoAttack(Player other, Point p) {
+        discardSpeculation();
+        Ship hit = super.redoAttack(other, p);
+        if (other.getSeat() < attackGenerators.length && attackGenerators[other.getSeat()] != null) {
+            replay(attackGenerators[other.getSeat()], p, hit);
+            replay(fallbackGenerators[other.getSeat()], p, hit);
+        }
+        return hit;
+    }
+
+    private static void replay(AttackGenerator generator, Point p, Ship hit) {
+        if (generator == null) {
+            return;
+        }
+        generator.markAttacked(p);
+        if (hit != null) {
+            generator.notifyHit();
+            if (hit.isSunk()) {
+                generator.notifySunk(hit.startPoint(), hit.endPoint());
+            }
+        }
+    }
+
     @Override
     public void notifyHit() {
+        discardSpeculation();
         attackGenerator.notifyHit();
+        if (fallbackGenerator != null) {
+            fallbackGenerator.notifyHit();
+        }
+    }
+
+    @Override
+    public void notifySunk(Ship s) {
+        discardSpeculation();
+        attackGenerator.notifySunk(s.startPoint(), s.endPoint());
+        if (fallbackGenerator != null) {
+            fallbackGenerator.notifySunk(s.startPoint(), s.endPoint());
+        }
+    }
+
+    /**
+     * Starts choosing the next attack on an opponent on a background thread, so that when this
+     * player's turn comes getAttackPoint only has to collect it. A move depends on nothing but this
+     * player's own shots at that opponent, which cannot change before its turn, so it is an equally
+     * valid move to the one getAttackPoint would have chosen then, though not always the same one:
+     * generators that search until a deadline get as far as the time and the machine's load allow.
+     * Until it is collected the generators belong to the background thread, and anything else that
+     * needs them waits for it and, if the move is not wanted after all, takes it back. Does nothing if
+     * a move is already being chosen
+     * @param seat the seat of the opponent this player will attack next
+     */
+    public void speculate(int seat) {
+        if (speculation != null) {
+            return;
+        }
+        setTarget(seat);
+        AttackGenerator primary = attackGenerator;
+        AttackGenerator fallback = fallbackGenerator;
+        speculationSeat = seat;
+        speculation = CompletableFuture.supplyAsync(() -> chooseAttackPoint(primary, fallback), speculator());
+    }
+
+    private static synchronized ExecutorService speculator() {
+        if (speculator == null) {
+            AtomicInteger threads = new AtomicInteger();
+            speculator = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread t = new Thread(r, "battleship-speculation-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return speculator;
+    }
+
+    /**
+     * @return whether the last move was the cheap generator's, because the other ran out of time
+     */
+    public boolean lastMoveFellBack() {
+        return fellBack;
+    }
+
+    /**
+     * @return whether a move is being chosen in the background
+     */
+    public boolean isSpeculating() {
+        return speculation != null;
+    }
+
+    // waits for the move being chosen in the background and hands it back, or null if there is none
+    private Point collectSpeculation() {
+        if (speculation == null) {
+            return null;
+        }
+        try {
+            return speculation.join();
+        } catch (CompletionException e) {
+            return null; // choosing again in the foreground fails the same way, where it can be seen
+        } finally {
+            speculation = null;
+        }
+    }
+
+    // takes back the move chosen in the background, so the generators are as they were before it
+    private void discardSpeculation() {
+        Point p = collectSpeculation();
+        if (p != null) {
+            attackGenerators[speculationSeat].forget(p);
+            if (fallbackGenerators[speculationSeat] != null) {
+                fallbackGenerators[speculationSeat].forget(p);
+            }
+        }
     }
 
     public Point getAttackPoint() {
-        return attackGenerator.getAttackPoint();
+        long start = Metrics.start();
+        AiMoveEvent event = AiMoveEvent.beginIfEnabled();
+        Point p = collectSpeculation();
+        boolean speculated = p != null;
+        if (p == null) {
+            p = chooseAttackPoint(attackGenerator, fallbackGenerator);
+        }
+        Metrics.record(Metrics.Op.GET_ATTACK_POINT, start);
+        if (event != null && event.shouldCommit()) {
+            AttackGenerator chosen = fellBack ? fallbackGenerator : attackGenerator;
+            event.player = this.getId();
+            event.generator = chosen.getClass().getSimpleName();
+            event.candidates = chosen.getCandidatesEvaluated();
+            event.fellBack = fellBack;
+            event.speculated = speculated;
+            event.x = p.getX();
+            event.y = p.getY();
+            event.commit();
+        }
+        return p;
+    }
+
+    // asks the primary generator for a move within the budget, and the fallback if it has none,
+    // keeping the two in step
+    private Point chooseAttackPoint(AttackGenerator primary, AttackGenerator fallback) {
+        if (fallback == null) {
+            fellBack = false;
+            return primary.getAttackPoint();
+        }
+        Point p = primary.getAttackPoint(System.nanoTime() + moveBudgetNanos);
+        fellBack = p == null;
+        if (p != null) {
+            fallback.markAttacked(p);
+        } else {
+            p = fallback.getAttackPoint();
+            primary.markAttacked(p);
+        }
+        return p;
     }
 }
@@ -0,0 +1,41 @@
+package battleship;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event committed when a CPU player finishes placing its fleet during setup.
+ */
+@Name("battleship.FleetPlacement")
+@Label("CPU Fleet Placement")
+@Category("Battleship")
+@Description("Random ship placement for a CPU player, with how many candidate ships were rejected")
+class FleetPlacementEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(FleetPlacementEvent.class);
+
+    /**
+     * Begins an event, if a running recording has this event enabled
+     * @return the event, or null when no recording wants it, so nothing is allocated
+     */
+    static FleetPlacementEvent beginIfEnabled() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        FleetPlacementEvent event = new FleetPlacementEvent();
+        event.begin();
+        return event;
+    }
+
+    @Label("Player")
+    int player;
+
+    @Label("Ships Placed")
+    int ships;
+
+    @Label("Attempts")
+    int attempts;
+}
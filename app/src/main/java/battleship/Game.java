@@ -1,5 +1,9 @@
 package battleship;
 
+import metrics.Heatmap;
+import metrics.Heatmaps;
+import metrics.Metrics;
+import utils.InvariantChecks;
 import utils.PointUtils;
 
 import java.util.*;
@@ -34,15 +38,34 @@ public class Game {
             new AbstractMap.SimpleEntry<Integer, int[]>(14, new int[]{0, 0, 2, 2, 1, 2}),
             new AbstractMap.SimpleEntry<Integer, int[]>(15, new int[]{0, 0, 1, 2, 2, 2})
     );
+    // boards larger than any entry in SHIP_INFO use the largest fleet defined there
+    private static final int LARGEST_SHIP_INFO_SIZE = 15;
     // 3 phases of game
     private static final String[] GAME_PHASES = {"setup", "playing", "end"};
 
     private final int gameBoardSize;
+    private final long seed; // everything random in this game is drawn from random, which is seeded with this
+    private final SplittableRandom random;
     private int currentGamePhase;
     private final Map<Integer, Player> players;
-    protected final List<Integer> playerIdList; // a list containing PIDs
+    protected final List<Integer> playerIdList; // a list containing PIDs, indexed by seat
     private int currentPlayerIndex; // current player represented by index in PID list
-    private List<GameListener> listeners;
+    // players still in the game form a ring of seats linked through nextSeat and prevSeat, so
+    // advancing the turn and eliminating a player are both constant time
+    private final int[] nextSeat;
+    private final int[] prevSeat;
+    private final boolean[] eliminated;
+    private int aliveCount;
+    private int selectedTargetPid; // the target the current player picked for their next shot, or 0
+    private final List<GameListener> listeners;
+    private long version; // incremented every time the game state changes
+    private int operationCount; // for sampling full rep checks
+    private boolean autoPlay; // whether computer players take their turns as soon as they come
+    private boolean runningComputerTurns; // whether runComputerTurns is on the stack
+    private boolean fleetsLearned; // whether the humans' fleets and unshot cells have been learned from
+    private final PlacementPrior prior; // learns the humans' fleets, and teaches the adaptive computer players
+    private final GameView view;
+    private GameHistory history; // null until history is enabled
     private final int[] allowableShipSet;
     private final Map<Integer, String> playerNames; // this might be refactorable to the Player class
 
@@ -51,6 +74,41 @@ public class Game {
 
     // Representation Invariant:
     // nothing is null
+    // playerIdList contains exactly the keys of players
+    // 0 <= currentPlayerIndex < playerIdList.size()
+    // 0 <= currentGamePhase < GAME_PHASES.length
+    // players.get(playerIdList.get(i)).getSeat() == i
+    // following nextSeat from any seat that is not eliminated visits exactly the aliveCount
+    // seats that are not eliminated, and prevSeat is its inverse
+
+    private void checkRep() {
+        if (InvariantChecks.ENABLED) {
+            assert this.players != null && this.playerIdList != null && this.allowableShipSet != null
+                    && this.pointBuffer != null && this.playerNames != null && this.listeners != null
+                    : "Game fields cannot be null";
+            assert this.currentPlayerIndex >= 0 && this.currentPlayerIndex < this.playerIdList.size()
+                    : "Current player must be in the game";
+            assert this.currentGamePhase >= 0 && this.currentGamePhase < GAME_PHASES.length : "Unknown game phase";
+            assert !this.eliminated[this.currentPlayerIndex] : "Eliminated players cannot take turns";
+            if (InvariantChecks.fullScanDue(++this.operationCount)) {
+                assert this.playerIdList.size() == this.players.size() : "Every player must have one PID";
+                for (int seat = 0; seat < this.playerIdList.size(); seat++) {
+                    Player player = this.players.get(this.playerIdList.get(seat));
+                    assert player != null : "PIDs must map to players";
+                    assert player.getSeat() == seat : "Players must sit at their index in the PID list";
+                }
+                int ringSize = 0;
+                int seat = this.currentPlayerIndex;
+                do {
+                    assert !this.eliminated[seat] : "Eliminated players must leave the ring";
+                    assert this.prevSeat[this.nextSeat[seat]] == seat : "Ring links must be symmetric";
+                    seat = this.nextSeat[seat];
+                    ringSize++;
+                } while (seat != this.currentPlayerIndex && ringSize <= this.aliveCount);
+                assert ringSize == this.aliveCount : "Ring must hold exactly the players still in the game";
+            }
+        }
+    }
 
     // Abstraction Function:
     //
@@ -60,32 +118,64 @@ public class Game {
      * @param playerCount the number of players in the Game
      * @param boardSize the size of the boards for the game
      * @param shipsInfo a mapping of ship sizes to counts represented by an array where indices are the sizes
+     * @param seed the seed for every random choice made in the game, such as computer players' ships
+     *             and shots, so games with the same seed and the same human input play out the same
+     * @param prior where human players have placed their ships in past games, which this game's
+     *              computer players learn from and its human players are added to when it ends
      */
-    public Game(int playerCount, int cpuCount, int cpuDifficulty, int boardSize, int[] shipsInfo) {
+    public Game(int playerCount, int cpuCount, int cpuDifficulty, int boardSize, int[] shipsInfo, long seed,
+                PlacementPrior prior) {
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+        this.prior = Objects.requireNonNull(prior);
         this.players = new HashMap<>();
-        generatePlayers(playerCount, cpuCount, cpuDifficulty, boardSize);
+        this.playerIdList = new ArrayList<>();
+        generatePlayers(playerCount, cpuCount, cpuDifficulty, boardSize, shipsInfo);
 
         this.gameBoardSize = boardSize;
 
         this.currentGamePhase = 0;
         this.currentPlayerIndex = 0;
 
-        this.playerIdList = new ArrayList<>();
-        this.players.keySet().iterator().forEachRemaining(this.playerIdList::add);
+        int seats = this.playerIdList.size();
+        this.nextSeat = new int[seats];
+        this.prevSeat = new int[seats];
+        for (int seat = 0; seat < seats; seat++) {
+            this.nextSeat[seat] = (seat + 1) % seats;
+            this.prevSeat[seat] = (seat + seats - 1) % seats;
+        }
+        this.eliminated = new boolean[seats];
+        this.aliveCount = seats;
+        this.selectedTargetPid = 0;
         this.allowableShipSet = shipsInfo;
 
         this.pointBuffer = new ArrayList<>();
         this.playerNames = new HashMap<>();
+        this.listeners = new ArrayList<>();
+        this.version = 0;
+        this.autoPlay = true;
+        this.view = new GameView(this);
+    }
+
+    // constructor sharing the placement prior of every other game
+    public Game(int playerCount, int cpuCount, int cpuDifficulty, int boardSize, int[] shipsInfo, long seed) {
+        this(playerCount, cpuCount, cpuDifficulty, boardSize, shipsInfo, seed, PlacementPrior.shared());
+    }
+
+    // constructor with a fresh seed, whose computer players place their ships against the live heatmaps
+    public Game(int playerCount, int cpuCount, int cpuDifficulty, int boardSize, int[] shipsInfo) {
+        this(playerCount, cpuCount, cpuDifficulty, boardSize, shipsInfo, newSeed());
+        placeAgainstHeatmaps();
     }
 
     // constructor assuming default ships
     public Game(int playerCount, int boardSize) {
-        this(playerCount, 0, 0, boardSize, SHIP_INFO.get(boardSize));
+        this(playerCount, 0, 0, boardSize, defaultShipInfo(boardSize));
     }
 
     // constructor assuming default ships
     public Game(int playerCount, int cpuCount, int cpuDifficulty, int boardSize) {
-        this(playerCount, cpuCount, cpuDifficulty, boardSize, SHIP_INFO.get(boardSize));
+        this(playerCount, cpuCount, cpuDifficulty, boardSize, defaultShipInfo(boardSize));
     }
 
     // constructor assuming default board size and ships
@@ -102,7 +192,18 @@ public class Game {
 
     public Game(GameSettings g) {
         this(getGameSettingsNumPlayers(g), getGameSettingsNumCpus(g),
-             getGameSettingsCpuDifficulty(g), Integer.parseInt(g.getSetting("board size")));
+             getGameSettingsCpuDifficulty(g), Integer.parseInt(g.getSetting("board size")),
+             defaultShipInfo(Integer.parseInt(g.getSetting("board size"))), getGameSettingsSeed(g));
+        long budget = g.getCpuMoveBudgetMillis(getGameSettingsCpuDifficulty(g));
+        for (Player player : this.players.values()) {
+            if (player instanceof ComputerPlayer) {
+                ((ComputerPlayer) player).setMoveBudgetMillis(budget);
+            }
+        }
+        // the heatmaps change with every game played, so a game whose seed was asked for ignores them
+        if (g.getSetting("seed").isEmpty()) {
+            placeAgainstHeatmaps();
+        }
         // hack way assumes player name input is delineated by spaces and in order
         String[] names = g.getSetting("player names").split("\\s+");
         int i = 0;
@@ -120,6 +221,54 @@ public class Game {
         }
     }
 
+    // has the computer players place their ships where humans have shot late so far
+    private void placeAgainstHeatmaps() {
+        if (this.gameBoardSize > Heatmaps.MAX_SIZE) {
+            return;
+        }
+        Heatmap.Snapshot heatmap = Heatmaps.snapshot(this.gameBoardSize);
+        for (Player player : this.players.values()) {
+            if (player instanceof ComputerPlayer) {
+                ((ComputerPlayer) player).setPlacementHeatmap(heatmap);
+            }
+        }
+    }
+
+    /**
+     * get the default ship length distribution for a board size, falling back to the largest
+     * known fleet for large boards
+     * @param boardSize the size of the board
+     * @return a mapping of ship sizes to counts represented by an array where indices are the sizes,
+     *         which is a new copy the caller may change
+     */
+    public static int[] defaultShipInfo(int boardSize) {
+        return SHIP_INFO.get(Math.min(boardSize, LARGEST_SHIP_INFO_SIZE)).clone();
+    }
+
+    /**
+     * get the seed from a GameSettings object
+     * @param g the GameSettings to read
+     * @return the "seed" setting, or a fresh seed if it is not set
+     */
+    static long getGameSettingsSeed(GameSettings g) {
+        String seed = g.getSetting("seed");
+        return seed.isEmpty() ? newSeed() : Long.parseLong(seed);
+    }
+
+    // a seed for games that were not given one. Each call draws from a shared generator once, games
+    // never touch it again
+    private static long newSeed() {
+        return new SplittableRandom().nextLong();
+    }
+
+    /**
+     * Gets the seed that every random choice in this Game is drawn from, so it can be replayed
+     * @return this Game's seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
     /**
      * get the number of human players from a GameSettings object based on its mode
      * @param g the GameSettings to read
@@ -163,24 +312,30 @@ public class Game {
                 return 1;
             case "difficult":
                 return 2;
+            case "expert":
+                return 3;
             default:
                 return 0;
         }
     }
 
     /**
-     * makes players and puts them in this.players, assigning an ID to each
+     * makes players and puts them in this.players, assigning an ID and a seat to each. Seats are
+     * handed out in order, so a player's seat is their index in this.playerIdList
      * @param count the number of players to generate
      */
-    private void generatePlayers(int count, int cpucount, int cpudifficulty, int boardSize) {
+    private void generatePlayers(int count, int cpucount, int cpudifficulty, int boardSize, int[] shipsInfo) {
         int baseId = 1;
         for (int i = 0; i < count; i++) {
             int pid = baseId + i;
-            this.players.put(pid, new Player(pid, new Ship[0], boardSize));
+            this.players.put(pid, new Player(pid, this.playerIdList.size(), new Ship[0], boardSize));
+            this.playerIdList.add(pid);
         }
         for (int j = 0; j < cpucount; j++) {
             int pid = baseId + j + count;
-            this.players.put(pid, new ComputerPlayer(pid, new Ship[0], boardSize, cpudifficulty));
+            this.players.put(pid, new ComputerPlayer(pid, this.playerIdList.size(), new Ship[0], boardSize, cpudifficulty,
+                                                  shipsInfo, this.random.split(), this.prior));
+            this.playerIdList.add(pid);
         }
     }
 
@@ -191,55 +346,260 @@ public class Game {
      * @param p a point to process
      */
     public boolean processTurn(Point p) {
-        boolean result = false;
-        if (this.getPhase().equals("setup")) {
-            int bufSize = this.pointBuffer.size();
-            if (bufSize % 2 == 1) {
-                result = this.addShip(this.getLastPoint(), p);
-                if (isPlayerDoneWithSetup(getCurrentPlayer())) {
-                    if (isSetupPhaseDone()) {
-                        endPhase();
+        beginStep();
+        try {
+            long start = Metrics.start();
+            TurnProcessedEvent event = TurnProcessedEvent.beginIfEnabled();
+            String phase = this.getPhase();
+            int pid = this.getCurrentPlayer();
+            int targetPid = 0;
+            boolean result = false;
+            if (this.getPhase().equals("setup")) {
+                int bufSize = this.pointBuffer.size();
+                if (bufSize % 2 == 1) {
+                    result = this.addShip(this.getLastPoint(), p);
+                    if (isPlayerDoneWithSetup(getCurrentPlayer())) {
+                        if (isSetupPhaseDone()) {
+                            endPhase();
+                        }
+                        endTurn();
                     }
-                    endTurn();
                 }
-            }
-            this.pointBuffer.add(p);
+                bufferPoint(p);
 
-        } else if (this.getPhase().equals("playing")) {
-            // does nothing in this version of Game - check TwoPlayerGame where it is implicit which player to attack
-            this.pointBuffer.add(p);
-            endTurn();
+            } else if (this.getPhase().equals("playing")) {
+                // attack whoever the current player selected, or the next player if they did not pick
+                targetPid = this.getTarget();
+                result = this.attack(targetPid, p);
+                bufferPoint(p);
+                if (result) {
+                    finishAttack(targetPid);
+                }
+            }
+            Metrics.record(Metrics.Op.PROCESS_TURN, start);
+            commitTurnEvent(event, phase, pid, targetPid, p, result);
+            checkRep();
+            return result;
+            // and do nothing if game phase is something else
+        } finally {
+            endStep();
         }
-        return result;
-        // and do nothing if game phase is something else
     }
 
+    /**
+     * Plays the current computer player's turn. Unless auto play has been turned off, the computer
+     * players after it then keep playing, one turn after another, until it is a human's turn or the
+     * game is over
+     * @throws IllegalStateException if the current player is not a computer
+     */
     public void computerProcessTurn() {
         if (!(this.players.get(this.getCurrentPlayer()) instanceof ComputerPlayer)) {
             throw new IllegalStateException("Cannot process computer turn for non-computer players");
         }
-        ComputerPlayer computerPlayer = (ComputerPlayer) this.players.get(this.getCurrentPlayer());
-        if (this.getPhase().equals("setup")) {
-            for (int length = allowableShipSet.length - 1; length >= 0; length--) {
-                int index = allowableShipSet[length];
-                while (index > 0) {
-                    Point[] shipPoints = computerPlayer.generateShip(length);
-                    if (this.addShip(shipPoints[0], shipPoints[1])) {
-                        index--;
-                    }
-                }
+        beginStep();
+        try {
+            if (this.autoPlay) {
+                runComputerTurns();
+            } else {
+                playComputerTurn();
             }
-            if (this.isSetupPhaseDone()) {
-                this.endPhase();
+        } finally {
+            endStep();
+        }
+    }
+
+    /**
+     * Sets whether computer players take their turns as soon as they come, as part of the call that
+     * ended the turn before. With auto play off, ending a turn leaves the computer's turn waiting
+     * for a call to computerProcessTurn, which then plays only that one turn, so a TurnScheduler can
+     * interleave the turns of many games. Auto play is on by default
+     */
+    public void setAutoPlay(boolean autoPlay) {
+        this.autoPlay = autoPlay;
+    }
+
+    /**
+     * @return whether it is a computer player's turn in a game that is not over
+     */
+    public boolean isComputerTurn() {
+        return !this.getPhase().equals("end") && this.players.get(this.getCurrentPlayer()) instanceof ComputerPlayer;
+    }
+
+    // plays computer turns in a loop until a human's turn or the end of the game. Each turn ends with
+    // endTurn, which comes back here while the loop is running; those calls return at once and the
+    // loop plays the next turn, so the stack stays the same depth however long the game is
+    private void runComputerTurns() {
+        if (this.runningComputerTurns) {
+            return;
+        }
+        this.runningComputerTurns = true;
+        try {
+            while (isComputerTurn()) {
+                playComputerTurn();
             }
-            this.endTurn();
-        } else if (this.getPhase().equals("playing")) {
-            while (!this.attack(this.getNextPlayer(), computerPlayer.getAttackPoint())){}
-            if (this.playerLost(this.getNextPlayer())){
-                this.endPhase(); // don't end the turn if the player has won - keep cur player as winner
-            } else {
+        } finally {
+            this.runningComputerTurns = false;
+        }
+    }
+
+    // plays one turn of the current computer player, which ends by ending the turn
+    private void playComputerTurn() {
+        beginStep();
+        try {
+            long start = Metrics.start();
+            ComputerPlayer computerPlayer = (ComputerPlayer) this.players.get(this.getCurrentPlayer());
+            if (this.getPhase().equals("setup")) {
+                FleetPlacementEvent event = FleetPlacementEvent.beginIfEnabled();
+                int attempts = 0;
+                int placed = 0;
+                for (int length = allowableShipSet.length - 1; length >= 0; length--) {
+                    int index = allowableShipSet[length];
+                    while (index > 0) {
+                        Point[] shipPoints = computerPlayer.generateShip(length);
+                        attempts++;
+                        if (this.addShip(shipPoints[0], shipPoints[1])) {
+                            index--;
+                            placed++;
+                        }
+                    }
+                }
+                if (event != null && event.shouldCommit()) {
+                    event.player = computerPlayer.getId();
+                    event.ships = placed;
+                    event.attempts = attempts;
+                    event.commit();
+                }
+                if (this.isSetupPhaseDone()) {
+                    this.endPhase();
+                }
+                Metrics.record(Metrics.Op.COMPUTER_PROCESS_TURN, start);
                 this.endTurn();
+            } else if (this.getPhase().equals("playing")) {
+                TurnProcessedEvent event = TurnProcessedEvent.beginIfEnabled();
+                int targetPid = this.getNextPlayer();
+                computerPlayer.setTarget(this.players.get(targetPid).getSeat());
+                Point p;
+                do {
+                    p = computerPlayer.getAttackPoint();
+                } while (!this.attack(targetPid, p));
+                Metrics.record(Metrics.Op.COMPUTER_PROCESS_TURN, start);
+                commitTurnEvent(event, "playing", computerPlayer.getId(), targetPid, p, true);
+                finishAttack(targetPid);
             }
+        } finally {
+            endStep();
+        }
+    }
+
+    /**
+     * Lets the computer player whose turn comes after the current human player's start choosing its
+     * shot in the background while the human thinks, so the turn takes less time when it comes. The
+     * shot is aimed at the player after the computer, as computerProcessTurn would aim it, and is
+     * thrown away if the human's shot changes who that is. Does nothing if the next player is not a
+     * computer or the game is not being played
+     */
+    public void speculateComputerTurn() {
+        if (!this.getPhase().equals("playing")
+                || this.players.get(this.getCurrentPlayer()) instanceof ComputerPlayer) {
+            return;
+        }
+        int seat = this.nextSeat[this.currentPlayerIndex];
+        Player next = this.players.get(this.playerIdList.get(seat));
+        if (next instanceof ComputerPlayer && this.nextSeat[seat] != seat) {
+            ((ComputerPlayer) next).speculate(this.nextSeat[seat]);
+        }
+    }
+
+    /**
+     * Called after the current player has made a valid attack on targetPid. Eliminates the target if
+     * they have lost, then either ends the game with the current player as the winner or passes the turn on
+     * @param targetPid the PID of the player that was attacked
+     */
+    protected void finishAttack(int targetPid) {
+        if (this.playerLost(targetPid)) {
+            eliminate(targetPid);
+        }
+        if (this.aliveCount == 1) {
+            this.endPhase(); // don't end the turn if the player has won - keep cur player as winner
+        } else {
+            this.endTurn();
+        }
+    }
+
+    // unlinks a player from the ring of players still in the game
+    private void eliminate(int pid) {
+        int seat = this.players.get(pid).getSeat();
+        if (this.eliminated[seat]) {
+            return;
+        }
+        this.eliminated[seat] = true;
+        this.nextSeat[this.prevSeat[seat]] = this.nextSeat[seat];
+        this.prevSeat[this.nextSeat[seat]] = this.prevSeat[seat];
+        this.aliveCount--;
+        record(GameHistory.Kind.ELIMINATED, pid, 0, null, null);
+        update();
+    }
+
+    // puts an eliminated player back in the ring. Seats must be restored in the reverse of the order
+    // they were eliminated in, so the neighbours they were unlinked from still point around them
+    private void restoreSeat(int seat) {
+        this.nextSeat[this.prevSeat[seat]] = seat;
+        this.prevSeat[this.nextSeat[seat]] = seat;
+        this.eliminated[seat] = false;
+        this.aliveCount++;
+    }
+
+    /**
+     * Chooses which player the current player's next shot in processTurn is aimed at. The choice
+     * only lasts until the end of the current player's turn
+     * @param targetPid the PID of the player to attack
+     * @throws IllegalArgumentException if targetPid is the current player, unknown, or already eliminated
+     */
+    public void selectTarget(int targetPid) {
+        Player target = this.players.get(targetPid);
+        if (target == null || targetPid == this.getCurrentPlayer() || this.eliminated[target.getSeat()]) {
+            throw new IllegalArgumentException("Cannot target player " + targetPid);
+        }
+        this.selectedTargetPid = targetPid;
+    }
+
+    /**
+     * Gets the player that the current player's next shot will be aimed at
+     * @return the selected target's PID, or the next player's PID if no target has been selected
+     */
+    public int getTarget() {
+        if (this.selectedTargetPid != 0) {
+            return this.selectedTargetPid;
+        }
+        return this.getNextPlayer();
+    }
+
+    /**
+     * @return the number of players that have not been eliminated
+     */
+    public int getPlayersRemaining() {
+        return this.aliveCount;
+    }
+
+    /**
+     * Fills in and commits a TurnProcessedEvent, if JFR is recording it
+     * @param event the event begun at the start of the turn, or null if JFR was not recording it
+     * @param phase the phase the turn was taken in
+     * @param pid the player who took the turn
+     * @param targetPid the player attacked, ignored outside of the playing phase
+     * @param p the point processed
+     * @param accepted whether the turn's ship or attack was valid
+     */
+    void commitTurnEvent(TurnProcessedEvent event, String phase, int pid, int targetPid, Point p, boolean accepted) {
+        if (event != null && event.shouldCommit()) {
+            event.phase = phase;
+            event.player = pid;
+            event.x = p.getX();
+            event.y = p.getY();
+            event.accepted = accepted;
+            event.hit = phase.equals("playing") && accepted
+                    && this.players.get(targetPid).getBoard().getHits().contains(p);
+            event.commit();
         }
     }
 
@@ -249,14 +609,32 @@ public class Game {
      * @param targetPid the player receiving the attack
      * @param p the Point to attack
      * @return a boolean representing whether the attack succeeded (point wasn't already guessed)
+     * @throws IllegalArgumentException if either player is unknown or already eliminated, or they are the same player
      */
     public boolean attack(int sourcePid, int targetPid, Point p) {
+        Player s = this.players.get(sourcePid);
         Player t = this.players.get(targetPid);
+        if (s == null || t == null || sourcePid == targetPid || this.eliminated[s.getSeat()]
+                || this.eliminated[t.getSeat()]) {
+            throw new IllegalArgumentException("Player " + sourcePid + " cannot attack player " + targetPid);
+        }
         if (t.getBoard().hasAlreadyGuessed(p)) {
             return false;
         }
-        Player s = this.players.get(sourcePid);
-        s.attack(t, p);
+        beginStep();
+        try {
+            // while history is recorded the shot could still be undone, so it is counted when the game ends
+            if (this.history == null && !(s instanceof ComputerPlayer) && this.gameBoardSize <= Heatmaps.MAX_SIZE) {
+                recordShot(p, s.getShotsAt(t));
+            }
+            s.attack(t, p);
+            record(GameHistory.Kind.ATTACKED, sourcePid, targetPid, p, null);
+        } finally {
+            endStep();
+        }
+        assert !InvariantChecks.ENABLED || t.getBoard().hasAlreadyGuessed(p) : "Attacked point must be guessed";
+        update();
+        checkRep();
         return true;
     }
 
@@ -265,6 +643,7 @@ public class Game {
      * @param targetPid the player receiving the attack
      * @param p the Point to attack
      * @return a boolean representing whether the attack succeeded (point wasn't already guessed)
+     * @throws IllegalArgumentException if targetPid is the current player, unknown, or already eliminated
      */
     public boolean attack(int targetPid, Point p) {
         return attack(this.getCurrentPlayer(), targetPid, p);
@@ -276,6 +655,7 @@ public class Game {
      * @param x the x-coord of the point to attack
      * @param y the y-coord of the point to attack
      * @return a boolean representing whether the attack succeeded (point wasn't already guessed)
+     * @throws IllegalArgumentException if targetPid is the current player, unknown, or already eliminated
      */
     public boolean attack(int targetPid, int x, int y) {
         return attack(this.getCurrentPlayer(), targetPid, new Point(x, y));
@@ -296,28 +676,43 @@ public class Game {
         this.listeners.add(g);
     }
 
+    // called after every change to the game state
     private void update() {
-        for (GameListener g : this.listeners) {
-            g.onChange();
+        this.version++;
+        // indexed, so no iterator is allocated on every attack when the JIT cannot elide it
+        for (int i = 0; i < this.listeners.size(); i++) {
+            this.listeners.get(i).onChange();
         }
     }
 
+    /**
+     * Gets the version of this Game's state, which increases every time the state changes
+     * @return the version number
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Gets the cached read-only view of this Game, meant for callers that read its state often
+     * @return this Game's GameView
+     */
+    public GameView getView() {
+        return this.view;
+    }
+
+    Player getPlayer(int pid) {
+        return this.players.get(pid);
+    }
+
     /**
      * Returns a list of board views where the first in the list is the player’s view of their own
      * board, the rest are the player’s view of opponent boards
      * @param pid the ID of the player to get the viewpoint of
-     * @return a List of BoardViews
+     * @return a shared, unmodifiable List of BoardViews
      */
     public List<BoardView> getPlayerView(int pid) {
-        Player p = this.players.get(pid);
-        List<BoardView> out = new ArrayList<>();
-        out.add(p.getBoard());
-        for (int otherPid : this.playerIdList) {
-            if (otherPid != pid) {
-                out.add(this.players.get(otherPid).getBoard());
-            }
-        }
-        return out;
+        return this.view.getPlayerView(pid);
     }
 
     /**
@@ -331,14 +726,14 @@ public class Game {
     /*
      * Reads input boardSize, returns shipInfo to be used in constructor
      */
-    private static int[] getShipInfo(int boardSize){
+    private int[] getShipInfo(int boardSize){
         int[] shipInfo = new int[6];
         // based on default 17 cells:10 boardsize ratio of official Battlship
         getShipInfoHelper(shipInfo, (int) (Math.round(17.0/10*boardSize)));
         return shipInfo;
     }
 
-    private static boolean getShipInfoHelper(int[] b, int boardSize){
+    private boolean getShipInfoHelper(int[] b, int boardSize){
         if (boardSize == 0){
             return true;
         } else if (boardSize < 2){
@@ -355,8 +750,8 @@ public class Game {
         return true;
     }
 
-    private static int getRandomLength(Vector<Integer> v){
-        int index = (int)(Math.random() * v.size());
+    private int getRandomLength(Vector<Integer> v){
+        int index = this.random.nextInt(v.size());
         int temp = v.get(index);
         v.set(index, v.get(v.size() - 1));
         v.remove(v.size() - 1);
@@ -374,6 +769,19 @@ public class Game {
      * @return a boolean indicating whether the ship was successfully added
      */
     public boolean addShip(Point p1, Point p2) {
+        long start = Metrics.start();
+        boolean added;
+        beginStep();
+        try {
+            added = placeShip(p1, p2);
+        } finally {
+            endStep();
+        }
+        Metrics.record(Metrics.Op.ADD_SHIP, start);
+        return added;
+    }
+
+    private boolean placeShip(Point p1, Point p2) {
         if (!this.getPhase().equals("setup")) throw new RuntimeException("Ships may only be added during setup");
 
         Ship toAdd = new Ship(p1, p2);
@@ -385,7 +793,14 @@ public class Game {
             }
         }
         if (!shipInBounds(toAdd, this.gameBoardSize)) return false;
-        this.players.get(this.getCurrentPlayer()).addShip(toAdd);
+        Player player = this.players.get(this.getCurrentPlayer());
+        player.addShip(toAdd);
+        record(GameHistory.Kind.SHIP_PLACED, this.getCurrentPlayer(), 0, null, toAdd);
+        if (this.history == null && !(player instanceof ComputerPlayer)) {
+            recordPlacement(toAdd);
+        }
+        update();
+        checkRep();
         return true;
     }
 
@@ -457,6 +872,7 @@ public class Game {
      */
     public void setPlayerName(int pid, String name) {
         this.playerNames.put(pid, name);
+        update();
     }
 
     /**
@@ -466,7 +882,7 @@ public class Game {
      * @return An map as an array of ship length (index) to number (value)
      */
     public int[] getShipsToBePlaced(int pid) {
-        List<Ship> currentShips = this.players.get(pid).getShips();
+        List<Ship> currentShips = this.players.get(pid).getShipsView();
         int[] shipsLeft = Arrays.copyOf(this.allowableShipSet, this.allowableShipSet.length);
         // calculate difference between allowed ships and ships they have
         for (Ship currentShip : currentShips) {
@@ -508,21 +924,28 @@ public class Game {
     }
 
     /**
-     * get a preview of the next player to go
+     * get a preview of the next player to go, skipping players that have been eliminated
      * @return the integer PID of the next player to go
      */
     public int getNextPlayer() {
-        return this.playerIdList.get((this.currentPlayerIndex + 1) % this.playerIdList.size());
+        return this.playerIdList.get(this.nextSeat[this.currentPlayerIndex]);
     }
 
     /**
      * ends the current player's turn, and sets this.currentPlayer to the next player to go
      */
     public void endTurn() {
-        // loop around the players
-        this.currentPlayerIndex = (this.currentPlayerIndex + 1) % this.playerIdList.size();
-        if (this.players.get(this.getCurrentPlayer()) instanceof ComputerPlayer) {
-            computerProcessTurn();
+        beginStep();
+        try {
+            // loop around the players still in the game
+            this.currentPlayerIndex = this.nextSeat[this.currentPlayerIndex];
+            this.selectedTargetPid = 0;
+            update();
+            if (this.autoPlay && this.players.get(this.getCurrentPlayer()) instanceof ComputerPlayer) {
+                runComputerTurns();
+            }
+        } finally {
+            endStep();
         }
     }
 
@@ -530,7 +953,243 @@ public class Game {
      * called to end phases
      */
     public void endPhase() {
-        if (this.currentGamePhase < GAME_PHASES.length - 1) this.currentGamePhase++;
+        beginStep();
+        try {
+            if (this.currentGamePhase < GAME_PHASES.length - 1) this.currentGamePhase++;
+            if (this.currentGamePhase == GAME_PHASES.length - 1) {
+                learnFromHumans();
+            }
+            update();
+        } finally {
+            endStep();
+        }
+    }
+
+    // hands every human player's fleet to the placement prior once, when the game ends, and
+    // counts every cell they never shot at as surviving the game. The prior learns in the background,
+    // so this never holds up the game
+    private void learnFromHumans() {
+        if (this.fleetsLearned || this.gameBoardSize > PlacementPrior.MAX_BOARD_SIZE) {
+            return;
+        }
+        this.fleetsLearned = true;
+        if (this.history != null) {
+            recordHistoryInHeatmaps();
+        }
+        for (Player player : this.players.values()) {
+            if (player instanceof ComputerPlayer) {
+                continue;
+            }
+            Set<Point> shipPoints = player.getShipPoints();
+            int[] cells = new int[shipPoints.size()];
+            int i = 0;
+            for (Point p : shipPoints) {
+                cells[i++] = p.getY() * this.gameBoardSize + p.getX();
+            }
+            this.prior.learn(this.gameBoardSize, cells);
+            for (BoardView board : player.getEnemyBoards()) {
+                for (int y = 0; y < this.gameBoardSize; y++) {
+                    for (int x = 0; x < this.gameBoardSize; x++) {
+                        if (!board.hasAlreadyGuessed(Point.of(x, y))) {
+                            Heatmaps.recordSurvivor(this.gameBoardSize, x, y);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // counts the humans' placements and shots made since history was enabled, which are left out of the
+    // heatmaps as they are made so that undone ones never reach them. Only the edits still made when the
+    // game ends are counted, each once however often it was undone and redone
+    private void recordHistoryInHeatmaps() {
+        List<GameHistory.Edit> edits = this.history.madeEdits();
+        // each attacker's shots at each target, counted back from the end of the game
+        Map<Long, Integer> shotsAt = new HashMap<>();
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            GameHistory.Edit edit = edits.get(i);
+            Player player = this.players.get(edit.pid);
+            if (player instanceof ComputerPlayer) {
+                continue;
+            }
+            if (edit.kind == GameHistory.Kind.SHIP_PLACED) {
+                recordPlacement(edit.ship);
+            } else if (edit.kind == GameHistory.Kind.ATTACKED) {
+                Player target = this.players.get(edit.targetPid);
+                long pair = ((long) edit.pid << 32) | edit.targetPid;
+                int before = shotsAt.getOrDefault(pair, player.getShotsAt(target)) - 1;
+                shotsAt.put(pair, before);
+                recordShot(edit.point, before);
+            }
+        }
+    }
+
+    private void recordPlacement(Ship ship) {
+        for (Point p : PointUtils.getPointsBetween(ship.startPoint(), ship.endPoint())) {
+            Heatmaps.recordPlacement(this.gameBoardSize, p.getX(), p.getY());
+        }
+    }
+
+    // counts a human's shot at p, after shotsBefore shots of theirs at the same board
+    private void recordShot(Point p, int shotsBefore) {
+        // how far through its own attack on this board the attacker is, whoever else shoots at it
+        double order = (double) shotsBefore / (this.gameBoardSize * this.gameBoardSize);
+        Heatmaps.recordShot(this.gameBoardSize, p.getX(), p.getY(), order);
+    }
+
+    /**
+     * Starts recording this Game's history, so that every change made from now on can be undone
+     * with undo and then redone with redo. Does nothing if history is already being recorded. Human
+     * placements and shots made from now on are only counted in the Heatmaps when the game ends, so
+     * undone ones never are
+     */
+    public void enableHistory() {
+        if (this.history == null) {
+            this.history = new GameHistory();
+        }
+    }
+
+    /**
+     * @return true if history is being recorded and there is a step to undo
+     */
+    public boolean canUndo() {
+        return this.history != null && this.history.canUndo();
+    }
+
+    /**
+     * @return true if history is being recorded and there is an undone step to redo
+     */
+    public boolean canRedo() {
+        return this.history != null && this.history.canRedo();
+    }
+
+    /**
+     * Undoes the most recent step, which is everything changed by the last call made on this Game
+     * such as a turn and the computer turns that followed it. Computer players may attack cells
+     * again once their attacks on them are undone.
+     * @return true if a step was undone, false if there was nothing to undo
+     * @throws IllegalStateException if called while a step is in progress, for example from a listener
+     */
+    public boolean undo() {
+        if (!canUndo()) {
+            return false;
+        }
+        if (this.history.isOpen()) throw new IllegalStateException("Cannot undo in the middle of a step");
+        GameHistory.Step step = this.history.startUndo();
+        try {
+            for (int i = step.edits.length - 1; i >= 0; i--) {
+                revert(step.edits[i]);
+            }
+            restoreTurnState(step.before);
+        } finally {
+            this.history.finishReplay();
+        }
+        update();
+        checkRep();
+        return true;
+    }
+
+    /**
+     * Redoes the most recently undone step. Redo is no longer possible once a new step is taken
+     * @return true if a step was redone, false if there was nothing to redo
+     * @throws IllegalStateException if called while a step is in progress, for example from a listener
+     */
+    public boolean redo() {
+        if (!canRedo()) {
+            return false;
+        }
+        if (this.history.isOpen()) throw new IllegalStateException("Cannot redo in the middle of a step");
+        GameHistory.Step step = this.history.startRedo();
+        try {
+            for (GameHistory.Edit edit : step.edits) {
+                replay(edit);
+            }
+            restoreTurnState(step.after);
+        } finally {
+            this.history.finishReplay();
+        }
+        if (this.currentGamePhase == GAME_PHASES.length - 1) {
+            learnFromHumans(); // a game first ended by a redo is learned from as if it ended by a turn
+        }
+        update();
+        checkRep();
+        return true;
+    }
+
+    private void revert(GameHistory.Edit edit) {
+        switch (edit.kind) {
+            case SHIP_PLACED:
+                this.players.get(edit.pid).removeShip(edit.ship);
+                break;
+            case ATTACKED:
+                this.players.get(edit.pid).undoAttack(this.players.get(edit.targetPid), edit.point);
+                break;
+            case ELIMINATED:
+                restoreSeat(this.players.get(edit.pid).getSeat());
+                break;
+            case POINT_BUFFERED:
+                this.pointBuffer.remove(this.pointBuffer.size() - 1);
+                break;
+        }
+    }
+
+    private void replay(GameHistory.Edit edit) {
+        switch (edit.kind) {
+            case SHIP_PLACED:
+                this.players.get(edit.pid).addShip(edit.ship);
+                break;
+            case ATTACKED:
+                this.players.get(edit.pid).redoAttack(this.players.get(edit.targetPid), edit.point);
+                break;
+            case ELIMINATED:
+                eliminate(edit.pid);
+                break;
+            case POINT_BUFFERED:
+                this.pointBuffer.add(edit.point);
+                break;
+        }
+    }
+
+    private void restoreTurnState(GameHistory.TurnState state) {
+        this.currentPlayerIndex = state.playerIndex;
+        this.currentGamePhase = state.phase;
+        this.selectedTargetPid = state.selectedTargetPid;
+    }
+
+    /**
+     * Marks the start of a change that should be undone as one step. Steps nest, and only the
+     * outermost one is recorded. Must be matched by a call to endStep
+     */
+    protected void beginStep() {
+        if (this.history != null) {
+            this.history.begin(new GameHistory.TurnState(this.currentPlayerIndex, this.currentGamePhase,
+                                                         this.selectedTargetPid));
+        }
+    }
+
+    /**
+     * Marks the end of a change started with beginStep
+     */
+    protected void endStep() {
+        if (this.history != null) {
+            this.history.end(new GameHistory.TurnState(this.currentPlayerIndex, this.currentGamePhase,
+                                                       this.selectedTargetPid));
+        }
+    }
+
+    private void record(GameHistory.Kind kind, int pid, int targetPid, Point p, Ship ship) {
+        if (this.history != null) {
+            this.history.record(new GameHistory.Edit(kind, pid, targetPid, p, ship));
+        }
+    }
+
+    /**
+     * Adds a point to the buffer of points processed by processTurn
+     * @param p the point to add
+     */
+    protected void bufferPoint(Point p) {
+        this.pointBuffer.add(p);
+        record(GameHistory.Kind.POINT_BUFFERED, 0, 0, p, null);
     }
 
     /**
@@ -538,8 +1197,9 @@ public class Game {
      * @param winnerPid the PID of the winning player
      */
     private void endGame(int winnerPid) {
-        this.currentPlayerIndex = winnerPid;
-        this.currentGamePhase = 3;
+        this.currentPlayerIndex = this.playerIdList.indexOf(winnerPid);
+        this.currentGamePhase = GAME_PHASES.length - 1;
+        update();
     }
 
     /**
@@ -585,22 +1245,11 @@ public class Game {
     public boolean playerLost(int pid){ return this.players.get(pid).hasLost(); }
 
     /**
-     * returns if the specified player has won
+     * returns if the specified player has won, meaning every other player has been eliminated
      * @param pid the pid of the player to check for win
      * @return true if the given player as won
      */
     public boolean playerWon(int pid) {
-        for (int otherPlayer : playerIdList) {
-            if (otherPlayer != pid) {
-                if (!playerLost(otherPlayer)) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return this.aliveCount == 1 && !this.eliminated[this.players.get(pid).getSeat()];
     }
 }
-
-interface GameListener {
-    void onChange();
-}
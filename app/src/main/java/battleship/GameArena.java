@@ -0,0 +1,495 @@
+package battleship;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * A GameArena plays thousands of two-computer games on 10x10 boards side by side. Instead of one
+ * object graph per game it keeps every game's boards, ships and attack generator state in flat
+ * primitive arrays, boards as 100-bit bitboards split over two longs, and advances every unfinished
+ * game by one shot per pass. The rules are those of a Game between two computer players: each game
+ * plays out exactly as new Game(0, 2, cpuDifficulty, 10, Game.defaultShipInfo(10), seed) would when
+ * driven by computerProcessTurn, with the same ships, shots and winner, and the results are read
+ * back as PIDs, phases and sets of Points like the Game's own.
+ * <p>
+ * Fleets are drawn with ComputerPlayer.drawShipEnds and random shots with
+ * RandomAttackGenerator.drawDense, so those rules live in one place. The smart player's rules are
+ * not shared: SmartAttackGenerator keeps its priorities in a sparse map per generator, which does
+ * not fit flat arrays, so smartShot and notifyHit below repeat its choice of shot (the highest
+ * priority cell next to a hit, ties to the first in row-major order, else the next unshot cell of
+ * the checkerboard sweep). A change to those rules has to be made in both places, and
+ * GameArenaTest, which plays every difficulty both ways and compares the games, catches any drift.
+ */
+public class GameArena {
+
+    // Abstraction Function:
+    //      game g (0 <= g < games) is a two-player game seeded with seeds[g]. Player pid (1 or 2) of
+    //      game g owns slot s = 2*g + pid - 1 in the per-player arrays: the cells of the board are
+    //      c = 10*y + x, shotLo/shotHi[s] are the cells of the player's board that have been attacked
+    //      (bit c of lo for c < 64, bit c - 64 of hi otherwise), hitLo/hitHi[s] the attacked cells
+    //      holding a ship and fleetLo/fleetHi[s] every cell holding a ship. The player's k-th ship
+    //      covers shipLo/shipHi[s*SHIPS + k] and has shipHp[s*SHIPS + k] cells left unhit, and
+    //      afloat[s] ships are not sunk. shots[s] is the number of attacks the player has made.
+    //      moves[g*MAX_MOVES + i] is the cell attacked by the i-th shot of game g, for i below
+    //      shots[2*g] + shots[2*g + 1]; player 1 took the even shots and player 2 the odd ones.
+    //      The player's attack generator is in the same slot: a random generator's lazy shuffle is
+    //      shuffled[s*CELLS ...], laid out as RandomAttackGenerator.drawDense expects, with
+    //      remaining[s] cells left and drawn from shotSeeds[s], and a smart generator's priorities are priority[s*CELLS + c],
+    //      frontier[s] of them above zero, with its search cursor at searchParity/Row/Col[s].
+    //      turn[g] is the slot offset (0 or 1) of the player to move, winner[g] is the winner's PID
+    //      or 0 while the game is being played, and active[0 .. activeCount) are the unfinished games
+
+    // Representation Invariant:
+    //      every array is non-null and sized for games games
+    //      hit is a subset of shot and of fleet for every slot, and fleet is the disjoint union of its ships
+    //      winner[g] != 0 iff g is not among active[0 .. activeCount), iff one player of g has afloat 0
+
+    public static final int SIZE = 10;
+    private static final int CELLS = SIZE * SIZE;
+    private static final int[] SHIPS_INFO = Game.defaultShipInfo(SIZE);
+    private static final int SHIPS = shipCount(SHIPS_INFO);
+    private static final int MAX_MOVES = 2 * CELLS;
+
+    private final int games;
+    private final int difficulty;
+    private final long[] seeds;
+
+    private final long[] shotLo;
+    private final long[] shotHi;
+    private final long[] hitLo;
+    private final long[] hitHi;
+    private final long[] fleetLo;
+    private final long[] fleetHi;
+    private final long[] shipLo;
+    private final long[] shipHi;
+    private final byte[] shipHp;
+    private final byte[] afloat;
+    private final short[] shots;
+    private final byte[] moves;
+
+    // attack generator state
+    private final long[] shotSeeds; // only used by random generators
+    private final int[] shuffled;
+    private final byte[] remaining;
+    private final byte[] priority;
+    private final byte[] frontier;
+    private final byte[] searchParity;
+    private final byte[] searchRow;
+    private final byte[] searchCol;
+
+    private final byte[] turn;
+    private final byte[] winner;
+    private final int[] active;
+    private int activeCount;
+
+    /**
+     * Sets up games games between two computer players, with game g seeded with firstSeed + g
+     * @param cpuDifficulty the difficulty of both players, as in Game: 0 for random shots, 1 or 2 for smart ones
+     * @throws IllegalArgumentException if games is negative or cpuDifficulty is not 0, 1 or 2
+     */
+    public GameArena(int games, int cpuDifficulty, long firstSeed) {
+        this(consecutiveSeeds(games, firstSeed), cpuDifficulty);
+    }
+
+    /**
+     * Sets up one game between two computer players for each seed
+     * @param seeds the seed of each game, as passed to Game
+     * @param cpuDifficulty the difficulty of both players, as in Game: 0 for random shots, 1 or 2 for smart ones
+     * @throws IllegalArgumentException if seeds is null or cpuDifficulty is not 0, 1 or 2
+     */
+    public GameArena(long[] seeds, int cpuDifficulty) {
+        if (seeds == null) {
+            throw new IllegalArgumentException("seeds cannot be null");
+        }
+        // the search generator thinks for a whole turn, so it can't be advanced in lockstep
+        if (cpuDifficulty < 0 || cpuDifficulty > 2) {
+            throw new IllegalArgumentException("Only difficulties 0 to 2 can be played in an arena");
+        }
+        this.games = seeds.length;
+        this.difficulty = cpuDifficulty;
+        this.seeds = seeds.clone();
+        int slots = 2 * games;
+        this.shotLo = new long[slots];
+        this.shotHi = new long[slots];
+        this.hitLo = new long[slots];
+        this.hitHi = new long[slots];
+        this.fleetLo = new long[slots];
+        this.fleetHi = new long[slots];
+        this.shipLo = new long[slots * SHIPS];
+        this.shipHi = new long[slots * SHIPS];
+        this.shipHp = new byte[slots * SHIPS];
+        this.afloat = new byte[slots];
+        this.shots = new short[slots];
+        this.moves = new byte[games * MAX_MOVES];
+        this.shotSeeds = new long[cpuDifficulty == 0 ? slots : 0];
+        this.shuffled = new int[cpuDifficulty == 0 ? slots * CELLS : 0];
+        this.remaining = new byte[slots];
+        this.priority = new byte[cpuDifficulty == 0 ? 0 : slots * CELLS];
+        this.frontier = new byte[slots];
+        this.searchParity = new byte[slots];
+        this.searchRow = new byte[slots];
+        this.searchCol = new byte[slots];
+        this.turn = new byte[games];
+        this.winner = new byte[games];
+        this.active = new int[games];
+        for (int g = 0; g < games; g++) {
+            setUp(g);
+            active[g] = g;
+        }
+        this.activeCount = games;
+        checkRep();
+    }
+
+    private static long[] consecutiveSeeds(int games, long firstSeed) {
+        if (games < 0) {
+            throw new IllegalArgumentException("games cannot be negative");
+        }
+        long[] seeds = new long[games];
+        for (int g = 0; g < games; g++) {
+            seeds[g] = firstSeed + g;
+        }
+        return seeds;
+    }
+
+    private static int shipCount(int[] shipsInfo) {
+        int count = 0;
+        for (int n : shipsInfo) {
+            count += n;
+        }
+        return count;
+    }
+
+    private void checkRep() {
+        assert activeCount >= 0 && activeCount <= games : "The active games must be a prefix of active";
+        for (int s = 0; s < 2 * games; s++) {
+            assert (hitLo[s] & ~shotLo[s]) == 0 && (hitHi[s] & ~shotHi[s]) == 0 : "Every hit must have been shot";
+            assert (hitLo[s] & ~fleetLo[s]) == 0 && (hitHi[s] & ~fleetHi[s]) == 0 : "Every hit must be on a ship";
+        }
+    }
+
+    // draws both players' generators and fleets from the game's seed in the same order as Game does
+    private void setUp(int g) {
+        SplittableRandom random = new SplittableRandom(seeds[g]);
+        SplittableRandom[] playerRandoms = {random.split(), random.split()};
+        for (int i = 0; i < 2; i++) {
+            int s = 2 * g + i;
+            remaining[s] = (byte) CELLS;
+            if (difficulty == 0) {
+                shotSeeds[s] = playerRandoms[i].split().nextLong();
+            }
+        }
+        for (int i = 0; i < 2; i++) {
+            placeFleet(2 * g + i, playerRandoms[i]);
+        }
+    }
+
+    // places ships exactly as ComputerPlayer.generateShip and Game.addShip would
+    private void placeFleet(int s, SplittableRandom random) {
+        int k = 0;
+        for (int length = SHIPS_INFO.length - 1; length >= 0; length--) {
+            int count = SHIPS_INFO[length];
+            while (count > 0) {
+                Point[] ends = ComputerPlayer.drawShipEnds(random, SIZE, length);
+                int x = ends[0].getX();
+                int y = ends[0].getY();
+                int endX = ends[1].getX();
+                int endY = ends[1].getY();
+                int dx = Integer.signum(endX - x);
+                int dy = Integer.signum(endY - y);
+                if (endX < 0 || endX >= SIZE || endY < 0 || endY >= SIZE) {
+                    continue;
+                }
+                long lo = 0;
+                long hi = 0;
+                for (int i = 0; i < length; i++) {
+                    int c = (y + i * dy) * SIZE + x + i * dx;
+                    if (c < 64) {
+                        lo |= 1L << c;
+                    } else {
+                        hi |= 1L << (c - 64);
+                    }
+                }
+                if ((lo & fleetLo[s]) != 0 || (hi & fleetHi[s]) != 0) {
+                    continue;
+                }
+                fleetLo[s] |= lo;
+                fleetHi[s] |= hi;
+                shipLo[s * SHIPS + k] = lo;
+                shipHi[s * SHIPS + k] = hi;
+                shipHp[s * SHIPS + k] = (byte) length;
+                k++;
+                count--;
+            }
+        }
+        afloat[s] = (byte) k;
+    }
+
+    /**
+     * Has the player to move in every unfinished game take one shot
+     * @return true if any game is still being played afterwards
+     */
+    public boolean step() {
+        int i = 0;
+        while (i < activeCount) {
+            int g = active[i];
+            if (shoot(g)) {
+                active[i] = active[--activeCount]; // swap the finished game out of the active prefix
+            } else {
+                i++;
+            }
+        }
+        return activeCount > 0;
+    }
+
+    /**
+     * Plays every game to the end
+     */
+    public void run() {
+        while (step()) {
+            // every pass takes one shot in each unfinished game
+        }
+        checkRep();
+    }
+
+    // the player to move in game g takes a shot, returning true if it won the game
+    private boolean shoot(int g) {
+        int attacker = 2 * g + turn[g];
+        int defender = 2 * g + 1 - turn[g];
+        int c = difficulty == 0 ? randomShot(attacker) : smartShot(attacker, defender);
+        moves[g * MAX_MOVES + shots[2 * g] + shots[2 * g + 1]] = (byte) c;
+        shots[attacker]++;
+        long bitLo = c < 64 ? 1L << c : 0;
+        long bitHi = c < 64 ? 0 : 1L << (c - 64);
+        shotLo[defender] |= bitLo;
+        shotHi[defender] |= bitHi;
+        if ((fleetLo[defender] & bitLo) == 0 && (fleetHi[defender] & bitHi) == 0) {
+            turn[g] ^= 1;
+            return false;
+        }
+        hitLo[defender] |= bitLo;
+        hitHi[defender] |= bitHi;
+        int k = defender * SHIPS;
+        while ((shipLo[k] & bitLo) == 0 && (shipHi[k] & bitHi) == 0) {
+            k++;
+        }
+        if (--shipHp[k] == 0 && --afloat[defender] == 0) {
+            winner[g] = (byte) (turn[g] + 1);
+            return true;
+        }
+        if (difficulty != 0) {
+            notifyHit(attacker, defender, c);
+        }
+        turn[g] ^= 1;
+        return false;
+    }
+
+    // the same lazy Fisher-Yates draw as RandomAttackGenerator, which numbers cells x*size + y
+    private int randomShot(int s) {
+        int pick = (int) RandomAttackGenerator.pick(shotSeeds[s], CELLS - remaining[s], remaining[s]);
+        int cell = RandomAttackGenerator.drawDense(shuffled, s * CELLS, remaining[s], pick);
+        remaining[s]--;
+        return (cell % SIZE) * SIZE + cell / SIZE;
+    }
+
+    // the same choice as SmartAttackGenerator: the highest priority cell next to hits, ties going to
+    // the first in row-major order, or else the next unshot cell of the checkerboard sweep
+    private int smartShot(int s, int defender) {
+        int base = s * CELLS;
+        if (frontier[s] > 0) {
+            int best = -1;
+            int bestPriority = 0;
+            for (int c = 0; c < CELLS; c++) {
+                if (priority[base + c] > bestPriority) {
+                    best = c;
+                    bestPriority = priority[base + c];
+                }
+            }
+            priority[base + best] = 0;
+            frontier[s]--;
+            return best;
+        }
+        while (searchParity[s] < 2) {
+            for (; searchRow[s] < SIZE; searchRow[s]++, searchCol[s] = (byte) ((searchRow[s] + searchParity[s]) % 2)) {
+                for (; searchCol[s] < SIZE; searchCol[s] += 2) {
+                    int c = searchRow[s] * SIZE + searchCol[s];
+                    if (!isSet(shotLo[defender], shotHi[defender], c)) {
+                        return c;
+                    }
+                }
+            }
+            searchParity[s]++;
+            searchRow[s] = 0;
+            searchCol[s] = searchParity[s];
+        }
+        throw new IllegalStateException("No more unguessed spaces on the board");
+    }
+
+    private void notifyHit(int s, int defender, int c) {
+        int x = c % SIZE;
+        int y = c / SIZE;
+        if (y > 0) {
+            raisePriority(s, defender, c - SIZE);
+        }
+        if (y < SIZE - 1) {
+            raisePriority(s, defender, c + SIZE);
+        }
+        if (x > 0) {
+            raisePriority(s, defender, c - 1);
+        }
+        if (x < SIZE - 1) {
+            raisePriority(s, defender, c + 1);
+        }
+    }
+
+    private void raisePriority(int s, int defender, int c) {
+        if (isSet(shotLo[defender], shotHi[defender], c)) {
+            return;
+        }
+        if (priority[s * CELLS + c]++ == 0) {
+            frontier[s]++;
+        }
+    }
+
+    private static boolean isSet(long lo, long hi, int c) {
+        return c < 64 ? (lo >>> c & 1) != 0 : (hi >>> (c - 64) & 1) != 0;
+    }
+
+    private static Set<Point> toPoints(long lo, long hi) {
+        Set<Point> points = new HashSet<>();
+        for (int c = 0; c < CELLS; c++) {
+            if (isSet(lo, hi, c)) {
+                points.add(Point.of(c % SIZE, c / SIZE));
+            }
+        }
+        return points;
+    }
+
+    private int slot(int game, int pid) {
+        if (game < 0 || game >= games) {
+            throw new IllegalArgumentException("There is no game " + game);
+        }
+        if (pid != 1 && pid != 2) {
+            throw new IllegalArgumentException("There is no player " + pid);
+        }
+        return 2 * game + pid - 1;
+    }
+
+    /**
+     * @return the number of games in this arena
+     */
+    public int size() {
+        return games;
+    }
+
+    /**
+     * @return the number of games that have not ended yet
+     */
+    public int getGamesRemaining() {
+        return activeCount;
+    }
+
+    public long getSeed(int game) {
+        slot(game, 1);
+        return seeds[game];
+    }
+
+    /**
+     * @return "playing" or "end", as Game.getPhase would
+     */
+    public String getPhase(int game) {
+        slot(game, 1);
+        return winner[game] == 0 ? "playing" : "end";
+    }
+
+    /**
+     * @return the PID of the player to move, or of the winner if the game has ended, as Game.getCurrentPlayer would
+     */
+    public int getCurrentPlayer(int game) {
+        slot(game, 1);
+        return turn[game] + 1;
+    }
+
+    /**
+     * @return the PID of the winner of the game, or 0 if it has not ended
+     */
+    public int getWinner(int game) {
+        slot(game, 1);
+        return winner[game];
+    }
+
+    /**
+     * @return the number of attacks the player has made in the game
+     */
+    public int getShotsFired(int game, int pid) {
+        return shots[slot(game, pid)];
+    }
+
+    /**
+     * @return the Points of the player's board that have been hit
+     */
+    public Set<Point> getHits(int game, int pid) {
+        int s = slot(game, pid);
+        return toPoints(hitLo[s], hitHi[s]);
+    }
+
+    /**
+     * @return the Points of the player's board that have been missed
+     */
+    public Set<Point> getMisses(int game, int pid) {
+        int s = slot(game, pid);
+        return toPoints(shotLo[s] & ~fleetLo[s], shotHi[s] & ~fleetHi[s]);
+    }
+
+    /**
+     * @return the cell, y * SIZE + x, attacked by each shot of the game in order, starting with player 1's
+     */
+    public int[] getMoves(int game) {
+        slot(game, 1);
+        int[] cells = new int[shots[2 * game] + shots[2 * game + 1]];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = moves[game * MAX_MOVES + i];
+        }
+        return cells;
+    }
+
+    /**
+     * @return the cells, y * SIZE + x, covered by the player's ships, ship by ship in the order they
+     *         were placed (longest first) and in increasing order within each ship
+     */
+    public int[] getFleetCells(int game, int pid) {
+        int s = slot(game, pid);
+        int[] cells = new int[Long.bitCount(fleetLo[s]) + Long.bitCount(fleetHi[s])];
+        int n = 0;
+        for (int k = s * SHIPS; k < (s + 1) * SHIPS; k++) {
+            for (int c = 0; c < CELLS; c++) {
+                if (isSet(shipLo[k], shipHi[k], c)) {
+                    cells[n++] = c;
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * @return the fleet every player in this arena has, as an array of ship length (index) to number (value)
+     */
+    public static int[] getShipsInfo() {
+        return SHIPS_INFO.clone();
+    }
+
+    /**
+     * @return the Points covered by each of the player's ships, in the order they were placed
+     */
+    public List<Set<Point>> getShipPoints(int game, int pid) {
+        int s = slot(game, pid);
+        List<Set<Point>> ships = new ArrayList<>(SHIPS);
+        for (int k = s * SHIPS; k < (s + 1) * SHIPS; k++) {
+            ships.add(toPoints(shipLo[k], shipHi[k]));
+        }
+        return Collections.unmodifiableList(ships);
+    }
+}
@@ -0,0 +1,193 @@
+package battleship;
+
+import utils.PersistentStack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * GameHistory records the changes made to a Game as a sequence of steps so they can be undone and
+ * redone. A step is everything one top-level call on the Game changed, for example a human turn
+ * together with the computer turns it set off. Each step only stores its edits and the small turn
+ * state around them, never a copy of the boards, and the undo and redo stacks are persistent, so
+ * stepping either way is constant time per edit and every version of the history shares its steps.
+ */
+class GameHistory {
+
+    // Abstraction Function:
+    //      the game's past is undone.peek(), undone.pop().peek(), ... from most to least recent, and
+    //      the steps that can be redone are redone.peek(), redone.pop().peek(), ... from next to last.
+    //      pending holds the edits of a step that is still in progress
+
+    // Representation Invariant:
+    //      undone != null && redone != null && pending != null
+    //      depth >= 0, and pending is empty when depth == 0
+
+    enum Kind { SHIP_PLACED, ATTACKED, ELIMINATED, POINT_BUFFERED }
+
+    /**
+     * One reversible change to a Game's state
+     */
+    static final class Edit {
+        final Kind kind;
+        final int pid; // the player placing a ship, attacking, or being eliminated
+        final int targetPid; // the player attacked, for ATTACKED
+        final Point point; // the point attacked or buffered
+        final Ship ship; // the ship placed, for SHIP_PLACED
+
+        Edit(Kind kind, int pid, int targetPid, Point point, Ship ship) {
+            this.kind = kind;
+            this.pid = pid;
+            this.targetPid = targetPid;
+            this.point = point;
+            this.ship = ship;
+        }
+    }
+
+    /**
+     * The turn state of a Game, which is restored directly rather than edited
+     */
+    static final class TurnState {
+        final int playerIndex;
+        final int phase;
+        final int selectedTargetPid;
+
+        TurnState(int playerIndex, int phase, int selectedTargetPid) {
+            this.playerIndex = playerIndex;
+            this.phase = phase;
+            this.selectedTargetPid = selectedTargetPid;
+        }
+
+        boolean sameAs(TurnState other) {
+            return playerIndex == other.playerIndex && phase == other.phase
+                    && selectedTargetPid == other.selectedTargetPid;
+        }
+    }
+
+    static final class Step {
+        final TurnState before;
+        final TurnState after;
+        final Edit[] edits; // in the order they were made
+
+        Step(TurnState before, TurnState after, Edit[] edits) {
+            this.before = before;
+            this.after = after;
+            this.edits = edits;
+        }
+    }
+
+    private PersistentStack<Step> undone;
+    private PersistentStack<Step> redone;
+    private final List<Edit> pending;
+    private TurnState pendingBefore;
+    private int depth;
+    private boolean replaying;
+
+    GameHistory() {
+        this.undone = PersistentStack.empty();
+        this.redone = PersistentStack.empty();
+        this.pending = new ArrayList<>();
+        this.depth = 0;
+        this.replaying = false;
+    }
+
+    /**
+     * Opens a step, or nests inside the one already open
+     * @param state the game's turn state before the step
+     * @return true if this opened a new step
+     */
+    boolean begin(TurnState state) {
+        if (replaying) {
+            return false;
+        }
+        if (depth++ == 0) {
+            pendingBefore = state;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Closes the innermost open step, and records the step if it was the outermost and changed anything
+     * @param state the game's turn state after the step
+     */
+    void end(TurnState state) {
+        if (replaying || --depth > 0) {
+            return;
+        }
+        if (!pending.isEmpty() || !pendingBefore.sameAs(state)) {
+            undone = undone.push(new Step(pendingBefore, state, pending.toArray(new Edit[0])));
+            redone = PersistentStack.empty(); // a new step starts a new branch of history
+        }
+        pending.clear();
+        pendingBefore = null;
+    }
+
+    boolean isOpen() {
+        return depth > 0;
+    }
+
+    void record(Edit edit) {
+        if (!replaying) {
+            assert depth > 0 : "Edits must be made inside a step";
+            pending.add(edit);
+        }
+    }
+
+    boolean canUndo() {
+        return !undone.isEmpty();
+    }
+
+    boolean canRedo() {
+        return !redone.isEmpty();
+    }
+
+    /**
+     * Moves the most recent step onto the redo stack. Edits made while the caller reverts it are ignored
+     * @return the step to revert
+     */
+    Step startUndo() {
+        Step step = undone.peek();
+        undone = undone.pop();
+        redone = redone.push(step);
+        replaying = true;
+        return step;
+    }
+
+    /**
+     * Moves the next step to redo back onto the undo stack. Edits made while the caller replays it are ignored
+     * @return the step to replay
+     */
+    Step startRedo() {
+        Step step = redone.peek();
+        redone = redone.pop();
+        undone = undone.push(step);
+        replaying = true;
+        return step;
+    }
+
+    void finishReplay() {
+        replaying = false;
+    }
+
+    /**
+     * @return the edits of every step not undone, then those of the step in progress, in the order they were made
+     */
+    List<Edit> madeEdits() {
+        List<Step> steps = new ArrayList<>(undone.size());
+        for (PersistentStack<Step> rest = undone; !rest.isEmpty(); rest = rest.pop()) {
+            steps.add(rest.peek());
+        }
+        List<Edit> edits = new ArrayList<>();
+        for (int i = steps.size() - 1; i >= 0; i--) {
+            edits.addAll(Arrays.asList(steps.get(i).edits));
+        }
+        edits.addAll(pending);
+        return edits;
+    }
+
+    int undoableSteps() {
+        return undone.size();
+    }
+}
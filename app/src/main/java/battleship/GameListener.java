@@ -0,0 +1,10 @@
+package battleship;
+
+/**
+ * A GameListener is told every time the Game it was added to changes. It is called on the thread
+ * that changed the game, after the change and with the game's version already increased, so it may
+ * read the game but must not change it.
+ */
+public interface GameListener {
+    void onChange();
+}
@@ -15,11 +15,27 @@ public class GameSettings {
         TEXTENTRY   // Empty list - allow for free-form text entry
     }
 
+    // board sizes the model can play on. The text interface only offers sizes it can draw, larger
+    // boards are stored sparsely and can be chosen with setChoice
+    public static final int MIN_BOARD_SIZE = 5;
+    public static final int MAX_DRAWN_BOARD_SIZE = 15;
+    public static final int MAX_BOARD_SIZE = 1_000_000;
+
+    // how long a computer player may think about each move, in milliseconds, indexed by difficulty.
+    // Only the searching difficulties come close to it; when they run out of time they make a
+    // cheaper move instead of holding up the game
+    private static final long[] DEFAULT_CPU_MOVE_BUDGET_MILLIS = {5, 5, 5, 50, 20};
+
+    // options that are never prompted for and can only be set with setChoice:
+    //   "seed" - the seed of the game's random choices, so the game can be replayed
+    //   "cpu move budget" - milliseconds a computer player may take per move, overriding the
+    //                       default for its difficulty
     // TODO: put the option names themselves into enum?
     public static List<Triple<String, OptionType, List<String>>> ENUM_OPTIONS = List.of(
             new Triple<>("mode", OptionType.CHOICES, List.of("2player", "cpu")),
-            new Triple<>("board size", OptionType.RANGE, List.of("5", "15")),
-            new Triple<>("cpu difficulty", OptionType.CHOICES, List.of("easy", "normal", "difficult")),
+            new Triple<>("board size", OptionType.RANGE,
+                    List.of(Integer.toString(MIN_BOARD_SIZE), Integer.toString(MAX_DRAWN_BOARD_SIZE))),
+            new Triple<>("cpu difficulty", OptionType.CHOICES, List.of("easy", "normal", "difficult", "expert")),
             new Triple<>("player names", OptionType.TEXTENTRY, List.of()) // empty list represents free-form input
     );
 
@@ -67,9 +83,49 @@ public class GameSettings {
      */
     public void setChoice(String op, String val) {
         assert !val.equals("") : "cannot set an option to empty";
+        if (op.equals("board size")) {
+            int size = Integer.parseInt(val);
+            if (size < MIN_BOARD_SIZE || size > MAX_BOARD_SIZE) {
+                throw new IllegalArgumentException("board size must be between " + MIN_BOARD_SIZE
+                                                   + " and " + MAX_BOARD_SIZE);
+            }
+        }
+        if (op.equals("cpu move budget") && Long.parseLong(val) <= 0) {
+            throw new IllegalArgumentException("cpu move budget must be positive");
+        }
         this.choices.put(op, val);
     }
 
+    /**
+     * gets how long computer players of a difficulty may take per move
+     * @param difficulty the computer players' difficulty
+     * @return the "cpu move budget" setting in milliseconds, or the difficulty's default if it is not set
+     */
+    public long getCpuMoveBudgetMillis(int difficulty) {
+        String budget = getSetting("cpu move budget");
+        if (!budget.isEmpty()) {
+            return Long.parseLong(budget);
+        }
+        return defaultCpuMoveBudgetMillis(difficulty);
+    }
+
+    /**
+     * @return the default move budget of a difficulty, the hardest one's if it is past the table
+     */
+    public static long defaultCpuMoveBudgetMillis(int difficulty) {
+        int index = Math.max(0, Math.min(difficulty, DEFAULT_CPU_MOVE_BUDGET_MILLIS.length - 1));
+        return DEFAULT_CPU_MOVE_BUDGET_MILLIS[index];
+    }
+
+    /**
+     * checks if the chosen board is too large to draw, meaning it should only be played through the model
+     * @return true if the board size setting is above MAX_DRAWN_BOARD_SIZE
+     */
+    public boolean isLargeBoard() {
+        String size = getSetting("board size");
+        return !size.isEmpty() && Integer.parseInt(size) > MAX_DRAWN_BOARD_SIZE;
+    }
+
     public String getSetting(String setting) {
         String out = this.choices.get(setting);
         if (out == null) {
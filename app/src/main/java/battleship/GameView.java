@@ -0,0 +1,163 @@
+package battleship;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A GameView is a read-only view of a Game for code that polls its state often, such as the user
+ * interface, spectators or the AI. Answers are cached and stamped with the Game's version, which
+ * the Game increments whenever its state changes, so reads between two changes neither allocate
+ * nor recompute. Lists and arrays returned by a GameView are shared and must not be modified.
+ * <p>
+ * A GameView is not thread-safe: refreshing a cached answer writes to it, as does the Game it
+ * views. Code reading it from a thread other than the one playing the game must hold the Game's
+ * lock, synchronizing on the Game, and so must whoever changes the Game meanwhile.
+ */
+public class GameView {
+
+    // Abstraction Function:
+    //      a view of game, where players.get(pid) caches what has been read about player pid as of
+    //      game version players.get(pid).version
+
+    // Representation Invariant:
+    //      game != null && players != null
+    //      players has a PlayerCache for every player of game, and never changes
+
+    private final Game game;
+    private final Map<Integer, PlayerCache> players;
+    private long currentNameVersion;
+    private String currentName;
+
+    // the game's players never change, so every player's cache is made up front and players is only read
+    GameView(Game game) {
+        this.game = game;
+        this.players = new HashMap<>();
+        for (int pid : game.playerIdList) {
+            this.players.put(pid, new PlayerCache(pid));
+        }
+        this.currentNameVersion = -1;
+    }
+
+    /**
+     * @return the game's version, which changes every time the game's state does
+     */
+    public long getVersion() {
+        return game.getVersion();
+    }
+
+    /**
+     * @return the game's phase, "setup", "playing" or "end"
+     */
+    public String getPhase() {
+        return game.getPhase();
+    }
+
+    /**
+     * @return the PID of the player to go
+     */
+    public int getCurrentPlayer() {
+        return game.getCurrentPlayer();
+    }
+
+    /**
+     * @return the name of the player to go
+     */
+    public String getCurrentPlayerName() {
+        if (currentNameVersion != game.getVersion()) {
+            currentName = game.getCurrentPlayerName();
+            currentNameVersion = game.getVersion();
+        }
+        return currentName;
+    }
+
+    /**
+     * @return the size of the game's boards
+     */
+    public int size() {
+        return game.size();
+    }
+
+    /**
+     * Returns a list of board views where the first in the list is the player's view of their own
+     * board, the rest are the player's view of opponent boards
+     * @param pid the ID of the player to get the viewpoint of
+     * @return a shared, unmodifiable List of BoardViews
+     * @throws IllegalArgumentException if the game has no player pid
+     */
+    public List<BoardView> getPlayerView(int pid) {
+        return cacheFor(pid).boards;
+    }
+
+    /**
+     * @param pid the PID of the player whose ships to get
+     * @return a shared, unmodifiable List of the player's ships
+     * @throws IllegalArgumentException if the game has no player pid
+     */
+    public List<Ship> getPlayerShips(int pid) {
+        return cacheFor(pid).player.getShipsView();
+    }
+
+    /**
+     * @param pid the PID of the player whose ship points to get
+     * @return the shared set of points occupied by the player's ships
+     * @throws IllegalArgumentException if the game has no player pid
+     */
+    public Set<Point> getShipPoints(int pid) {
+        return cacheFor(pid).player.getShipPoints();
+    }
+
+    /**
+     * @return the shared set of points occupied by the current player's ships
+     */
+    public Set<Point> getCurrentPlayerShipPoints() {
+        return getShipPoints(getCurrentPlayer());
+    }
+
+    /**
+     * Getter to tell what ships a player still has to place, recomputed only after the game changes
+     * @param pid the Player ID (PID) of the player to get the remaining ships for
+     * @return a shared map as an array of ship length (index) to number (value)
+     * @throws IllegalArgumentException if the game has no player pid
+     */
+    public int[] getShipsToBePlaced(int pid) {
+        PlayerCache cache = cacheFor(pid);
+        if (cache.version != game.getVersion()) {
+            cache.shipsToBePlaced = game.getShipsToBePlaced(pid);
+            cache.version = game.getVersion();
+        }
+        return cache.shipsToBePlaced;
+    }
+
+    private PlayerCache cacheFor(int pid) {
+        PlayerCache cache = players.get(pid);
+        if (cache == null) {
+            throw new IllegalArgumentException("There is no player " + pid);
+        }
+        return cache;
+    }
+
+    private class PlayerCache {
+        private final Player player;
+        // the set of players never changes, and each BoardView is live, so this never needs rebuilding
+        private final List<BoardView> boards;
+        private long version;
+        private int[] shipsToBePlaced;
+
+        private PlayerCache(int pid) {
+            this.player = game.getPlayer(pid);
+            List<BoardView> views = new ArrayList<>();
+            views.add(player.getBoard());
+            for (int otherPid : game.playerIdList) {
+                if (otherPid != pid) {
+                    views.add(game.getPlayer(otherPid).getBoard());
+                }
+            }
+            this.boards = Collections.unmodifiableList(views);
+            this.version = -1;
+        }
+    }
+}
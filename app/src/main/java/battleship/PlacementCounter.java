@@ -0,0 +1,191 @@
+package battleship;
+
+/**
+ * A PlacementCounter counts, for every cell of a board, how many ways the remaining ships could be
+ * laid across it without touching a blocked cell (one that was missed, or that holds a sunk ship).
+ * The more placements cover a cell, the more likely it is to hold a ship, so any attack generator
+ * can use the counts as a probability map.
+ *
+ * Rows of the board are given as bitboards, one long per row with bit x set if cell x of the row is
+ * blocked, so boards up to MAX_BOARD_SIZE are supported. Every placement of a ship covers a run of
+ * cells in a row or a column, so the work comes down to adding each ship's weight to the cells
+ * selected by a handful of masks per row. That inner step is all the implementations differ in: a
+ * scalar loop over set bits, and a vectorized one using the incubating Vector API where the JVM was
+ * started with --add-modules jdk.incubator.vector.
+ */
+public abstract class PlacementCounter {
+
+    public static final int MAX_BOARD_SIZE = 64;
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final PlacementCounter BEST = loadBest();
+
+    // the counters are shared by every thread, so each thread counts in its own scratch arrays
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    PlacementCounter() {
+    }
+
+    /**
+     * @return a counter that works on every JVM, one cell at a time
+     */
+    public static PlacementCounter scalar() {
+        return ScalarPlacementCounter.INSTANCE;
+    }
+
+    /**
+     * @return the vectorized counter if the Vector API is available to this JVM, or else the scalar one
+     */
+    public static PlacementCounter best() {
+        return BEST;
+    }
+
+    private static PlacementCounter loadBest() {
+        // the vector class can only be linked if its module was added, so it is loaded by name
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                return (PlacementCounter) Class.forName("battleship.VectorPlacementCounter")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // fall through to the scalar counter
+            }
+        }
+        return scalar();
+    }
+
+    /**
+     * @return a short name for this implementation, for reports and benchmarks
+     */
+    public abstract String name();
+
+    /**
+     * Counts the placements of the remaining ships covering each cell
+     * @param blocked blocked[y] has bit x set iff cell (x, y) cannot hold a ship
+     * @param size the size of the board
+     * @param shipsInfo the remaining ships, as an array of ship length (index) to number (value)
+     * @param counts where to write the count of cell (x, y), at y * size + x
+     * @throws IllegalArgumentException if size is not in (0, MAX_BOARD_SIZE], blocked has fewer than
+     *                                  size rows, or counts has fewer than size * size cells
+     */
+    public final void count(long[] blocked, int size, int[] shipsInfo, int[] counts) {
+        count(blocked, size, shipsInfo, counts, false, 0);
+    }
+
+    /**
+     * Counts as above, unless the deadline passes first
+     * @param deadline the System.nanoTime() by which to finish
+     * @return whether the count finished; if not, counts holds a partial count
+     */
+    public final boolean count(long[] blocked, int size, int[] shipsInfo, int[] counts, long deadline) {
+        return count(blocked, size, shipsInfo, counts, true, deadline);
+    }
+
+    // checks the deadline before every row, if timed, which is often enough for the largest boards
+    private boolean count(long[] blocked, int size, int[] shipsInfo, int[] counts, boolean timed, long deadline) {
+        if (size <= 0 || size > MAX_BOARD_SIZE) {
+            throw new IllegalArgumentException("Placements can only be counted on boards up to " + MAX_BOARD_SIZE);
+        }
+        if (blocked == null || blocked.length < size || counts == null || counts.length < size * size
+                || shipsInfo == null) {
+            throw new IllegalArgumentException("blocked and counts must cover the whole board");
+        }
+        long full = size == 64 ? -1L : (1L << size) - 1;
+        Scratch scratch = SCRATCH.get();
+        long[] free = scratch.free;
+        for (int y = 0; y < size; y++) {
+            free[y] = ~blocked[y] & full;
+        }
+
+        // each length contributes its horizontal runs and the vertical runs of the rows above,
+        // so a row needs at most 2 * length masks per length
+        int maxMasks = 0;
+        for (int length = 1; length < shipsInfo.length && length <= size; length++) {
+            if (shipsInfo[length] > 0) {
+                maxMasks += 2 * length;
+            }
+        }
+        scratch.ensureCapacity(maxMasks, Math.min(shipsInfo.length, size + 1));
+        long[] masks = scratch.masks;
+        int[] weights = scratch.weights;
+        long[][] verticalStarts = scratch.verticalStarts;
+        for (int length = 2; length < shipsInfo.length && length <= size; length++) {
+            if (shipsInfo[length] > 0) {
+                verticalStarts(free, size, length, verticalStarts[length]);
+            }
+        }
+
+        for (int y = 0; y < size; y++) {
+            if (timed && System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            int n = 0;
+            for (int length = 1; length < shipsInfo.length && length <= size; length++) {
+                int weight = shipsInfo[length];
+                if (weight <= 0) {
+                    continue;
+                }
+                // a horizontal run starting at x covers x .. x + length - 1
+                long starts = free[y];
+                for (int k = 1; k < length; k++) {
+                    starts &= free[y] >>> k;
+                }
+                for (int k = 0; k < length && starts != 0; k++) {
+                    masks[n] = starts << k;
+                    weights[n++] = weight;
+                }
+                // a ship of length 1 lies the same either way, so it is only counted once
+                if (length == 1) {
+                    continue;
+                }
+                long[] vertical = verticalStarts[length];
+                for (int k = 0; k < length; k++) {
+                    int top = y - k;
+                    if (top >= 0 && top <= size - length && vertical[top] != 0) {
+                        masks[n] = vertical[top];
+                        weights[n++] = weight;
+                    }
+                }
+            }
+            addRow(counts, y * size, size, masks, weights, n);
+        }
+        return true;
+    }
+
+    // sets starts[y] for y in [0, size - length] to have bit x set iff a run of length cells down from (x, y) is free
+    private static void verticalStarts(long[] free, int size, int length, long[] starts) {
+        for (int y = 0; y <= size - length; y++) {
+            long run = free[y];
+            for (int k = 1; k < length && run != 0; k++) {
+                run &= free[y + k];
+            }
+            starts[y] = run;
+        }
+    }
+
+    // one thread's working arrays, grown to the largest fleet it has counted and then reused
+    private static final class Scratch {
+        final long[] free = new long[MAX_BOARD_SIZE];
+        long[] masks = new long[0];
+        int[] weights = new int[0];
+        long[][] verticalStarts = new long[0][];
+
+        void ensureCapacity(int maxMasks, int lengths) {
+            if (masks.length < maxMasks) {
+                masks = new long[maxMasks];
+                weights = new int[maxMasks];
+            }
+            if (verticalStarts.length < lengths) {
+                long[][] grown = new long[lengths][];
+                for (int length = 0; length < lengths; length++) {
+                    grown[length] = length < verticalStarts.length ? verticalStarts[length] : new long[MAX_BOARD_SIZE];
+                }
+                verticalStarts = grown;
+            }
+        }
+    }
+
+    /**
+     * Sets counts[offset + x] for x in [0, size) to the sum of weights[i] over the i < n with bit x of masks[i] set
+     */
+    abstract void addRow(int[] counts, int offset, int size, long[] masks, int[] weights, int n);
+}
@@ -0,0 +1,236 @@
+package battleship;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A PlacementPrior learns where human players like to put their ships. For every board size it counts
+ * how many of the fleets it has seen covered each cell, and turns the counts into a weight per cell:
+ * above 1 where humans place ships more often than average, below 1 where they place them less often.
+ * <p>
+ * Readers never wait. The counts and weights of a board size are an immutable Prior that is replaced
+ * whole, so an attack generator reads whichever Prior is current. Fleets are learned on a background
+ * thread, which builds the next Prior and, if the prior has a file, writes it out. The shared prior is
+ * read from the file named by the system property battleship.prior.file, if it is set, once when it is
+ * first used, and saved back to it after every game; without the property it is only kept in memory.
+ * Games that must not depend on what the shared prior has seen, such as evaluations, are given a
+ * prior of their own.
+ */
+public final class PlacementPrior {
+
+    // Abstraction Function:
+    //      for each board size s in [1, MAX_BOARD_SIZE], priors.get(s) holds the number of fleets
+    //      learned on s x s boards and how many of them covered each cell, or is null if none have been
+
+    // Representation Invariant:
+    //      priors.length() == MAX_BOARD_SIZE + 1
+    //      every non-null priors.get(s) has s * s counts and weights
+
+    public static final int MAX_BOARD_SIZE = 64;
+
+    private static final int MAGIC = 0x42535050; // "BSPP"
+    private static final int VERSION = 1;
+    private static final double PSEUDO_COUNT = 2; // how many fleets' worth of evidence a weight of 1 starts with
+
+    private static PlacementPrior shared;
+
+    private final Path file;
+    private final AtomicReferenceArray<Prior> priors;
+    private final ExecutorService learner;
+    private IOException saveFailure; // the first failure to save since awaitLearned last reported one, guarded by this
+
+    /**
+     * The learned counts for one board size, which never change once published
+     */
+    static final class Prior {
+        final long fleets;
+        final long[] counts; // counts[y * size + x] is the number of fleets that covered (x, y)
+        final double[] weights;
+
+        Prior(long fleets, long[] counts) {
+            this.fleets = fleets;
+            this.counts = counts;
+            this.weights = new double[counts.length];
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            double mean = (double) total / counts.length;
+            for (int c = 0; c < counts.length; c++) {
+                weights[c] = (counts[c] + PSEUDO_COUNT) / (mean + PSEUDO_COUNT);
+            }
+        }
+    }
+
+    /**
+     * Makes an empty prior, or loads one from file if it exists
+     * @param file where to load and save the prior, or null to keep it in memory only
+     * @throws UncheckedIOException if file exists but cannot be read as a placement prior
+     */
+    public PlacementPrior(Path file) {
+        this.file = file;
+        this.priors = new AtomicReferenceArray<>(MAX_BOARD_SIZE + 1);
+        this.learner = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "battleship-placement-prior");
+            t.setDaemon(true);
+            return t;
+        });
+        if (file != null && Files.exists(file)) {
+            try {
+                load(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not load placement prior " + file, e);
+            }
+        }
+    }
+
+    /**
+     * @return the prior every game learns from, loaded from battleship.prior.file on first use
+     */
+    public static synchronized PlacementPrior shared() {
+        if (shared == null) {
+            String name = System.getProperty("battleship.prior.file");
+            shared = new PlacementPrior(name == null || name.isEmpty() ? null : Paths.get(name));
+        }
+        return shared;
+    }
+
+    /**
+     * Learns a fleet in the background, returning at once
+     * @param size the size of the board the fleet was placed on
+     * @param cells every cell, y * size + x, covered by the fleet
+     */
+    public void learn(int size, int[] cells) {
+        if (size <= 0 || size > MAX_BOARD_SIZE) {
+            return; // boards this large are never searched with a prior
+        }
+        int[] copy = cells.clone();
+        learner.execute(() -> {
+            Prior old = priors.get(size);
+            long[] counts = old == null ? new long[size * size] : old.counts.clone();
+            for (int cell : copy) {
+                if (cell >= 0 && cell < counts.length) {
+                    counts[cell]++;
+                }
+            }
+            priors.set(size, new Prior(old == null ? 1 : old.fleets + 1, counts));
+            if (file != null) {
+                try {
+                    save(file);
+                } catch (IOException e) {
+                    synchronized (this) {
+                        if (saveFailure == null) {
+                            saveFailure = e;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits until every fleet passed to learn so far has been learned and saved
+     * @throws IOException if saving the prior has failed since the last call. The fleets are still
+     *                     learned, and saved with the next one if the file can be written by then
+     */
+    public void awaitLearned() throws InterruptedException, IOException {
+        try {
+            learner.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        IOException failure;
+        synchronized (this) {
+            failure = saveFailure;
+            saveFailure = null;
+        }
+        if (failure != null) {
+            throw new IOException("Could not save placement prior " + file, failure);
+        }
+    }
+
+    /**
+     * @return the number of fleets learned on size x size boards
+     */
+    public long getFleets(int size) {
+        Prior prior = size > 0 && size <= MAX_BOARD_SIZE ? priors.get(size) : null;
+        return prior == null ? 0 : prior.fleets;
+    }
+
+    /**
+     * @return the current weight of cell (x, y) of a size x size board, 1 if nothing has been learned
+     */
+    public double getWeight(int size, int x, int y) {
+        Prior prior = size > 0 && size <= MAX_BOARD_SIZE ? priors.get(size) : null;
+        return prior == null ? 1 : prior.weights[y * size + x];
+    }
+
+    /**
+     * @return the current weights of a size x size board, which must not be modified, or null if
+     *         nothing has been learned on it
+     */
+    double[] weights(int size) {
+        Prior prior = size > 0 && size <= MAX_BOARD_SIZE ? priors.get(size) : null;
+        return prior == null ? null : prior.weights;
+    }
+
+    private void load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a version " + VERSION + " placement prior");
+            }
+            int sizes = in.readInt();
+            for (int i = 0; i < sizes; i++) {
+                int size = in.readInt();
+                long fleets = in.readLong();
+                if (size <= 0 || size > MAX_BOARD_SIZE) {
+                    throw new IOException("board size " + size + " is out of range");
+                }
+                long[] counts = new long[size * size];
+                for (int c = 0; c < counts.length; c++) {
+                    counts[c] = in.readLong();
+                }
+                priors.set(size, new Prior(fleets, counts));
+            }
+        }
+    }
+
+    // writes to a temporary file first, so a crash never leaves a half-written prior behind
+    private void save(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        int sizes = 0;
+        for (int size = 1; size <= MAX_BOARD_SIZE; size++) {
+            if (priors.get(size) != null) {
+                sizes++;
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sizes);
+            for (int size = 1; size <= MAX_BOARD_SIZE; size++) {
+                Prior prior = priors.get(size);
+                if (prior != null) {
+                    out.writeInt(size);
+                    out.writeLong(prior.fleets);
+                    for (long count : prior.counts) {
+                        out.writeLong(count);
+                    }
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
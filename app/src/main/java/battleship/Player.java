@@ -1,7 +1,7 @@
 package battleship;
 
+import utils.InvariantChecks;
 import utils.PointUtils;
-import utils.Globals;
 
 import java.util.*;
 
@@ -15,10 +15,15 @@ public class Player {
     private static final boolean DEBUG = true;
 
     private final int playerId; // a value that must uniquely identify a player
+    private final int seat; // this player's position in the turn order, used to index opponent boards
     private final Board playerBoard;
-    private final Map<Player, Board> opponentBoards;
+    private final BoardView playerBoardView; // views are read-only, so one is shared by every caller
+    private Board[] opponentBoards; // indexed by the opponent's seat, null until they are first attacked
     private final List<Ship> playerShips;
-    private final Set<Point> playerShipPoints;
+    private final List<Ship> playerShipsView; // read-only view of playerShips
+    private final CellSet playerShipPoints;
+    private int shipsAfloat; // number of ships in playerShips that are not sunk
+    private int operationCount; // for sampling full rep checks
 
     // Abstraction Function:
     // playerBoard is this player's board with hit and misses on it
@@ -31,46 +36,73 @@ public class Player {
     // playerBoard != null &&
     // opponentBoards != null &&
     // playerShips != null &&
-    // for each ship in playerShips: ship != null &&
+    // seat >= 0 &&
+    // for each ship in playerShips: ship != null && every point of ship is in playerShipPoints
+    // shipsAfloat == number of ships in playerShips that are not sunk
+    // (playerShips may be empty, players start with no ships during a Game's setup phase)
 
     private void checkRep() {
-        if (Globals.DEBUG) {
+        if (InvariantChecks.ENABLED) {
             assert this.playerBoard != null : "Board cannot be null";
             assert this.opponentBoards != null : "Opponent boards cannot be null";
             assert this.playerShips != null : "Collection of ships cannot be null";
-            assert this.playerShips.size() != 0 : "Collection of ships must be non-empty";
             assert this.playerShipPoints != null : "Ship Points should not be null";
 
-            if (DEBUG) {
+            assert 0 <= this.shipsAfloat && this.shipsAfloat <= this.playerShips.size() : "Ships afloat out of range";
+
+            if (DEBUG && InvariantChecks.fullScanDue(++operationCount)) {
+                int afloat = 0;
                 for (Ship s : this.playerShips) {
-                    assert s != null : "Ships cannot be null";
+                    checkShip(s);
+                    if (!s.isSunk()) afloat++;
                 }
+                assert afloat == this.shipsAfloat : "Ships afloat must match the fleet";
             }
         }
     }
 
+    private void checkShip(Ship s) {
+        assert s != null : "Ships cannot be null";
+        for (Point p : PointUtils.getPointsBetween(s.startPoint(), s.endPoint())) {
+            assert this.playerShipPoints.contains(p) : "Ship points must contain every ship";
+        }
+    }
+
     /**
      * Constructs a new player with ships. This is the only place the player can get ships.
      * Additionally, every Player must have a unique ID.
      * @param id the unique ID for this player
+     * @param seat this player's position in the turn order, unique among the players of a game
      * @param ships an array of ships for this player
-     * @throws IllegalArgumentException if ships is empty or null
+     * @throws IllegalArgumentException if ships is null or seat is negative
      */
-    public Player(int id, Ship[] ships, int board_size) {
+    public Player(int id, int seat, Ship[] ships, int board_size) {
         if (ships == null) throw new IllegalArgumentException("Player's ships must exist!");
+        if (seat < 0) throw new IllegalArgumentException("Player's seat cannot be negative");
+        this.seat = seat;
         this.playerShips = new ArrayList<>();
-        this.playerShipPoints = new HashSet<>();
+        this.playerShipsView = Collections.unmodifiableList(this.playerShips);
+        this.playerShipPoints = new CellSet();
 
         for (Ship s : ships) {
             this.addShip(s);
         }
 
         this.playerBoard = new Board(board_size);
-        this.opponentBoards = new HashMap<>();
+        this.playerBoardView = new BoardView(this.playerBoard);
+        this.opponentBoards = new Board[0];
         this.playerId = id;
         checkRep();
     }
 
+    /**
+     * Constructs a new player whose seat is its ID
+     * @throws IllegalArgumentException if ships is null or id is negative
+     */
+    public Player(int id, Ship[] ships, int board_size) {
+        this(id, id, ships, board_size);
+    }
+
     public Player(int id, Ship[] ships) {
         this(id, ships, BOARD_SIZE);
     }
@@ -81,7 +113,7 @@ public class Player {
      * @param p2 Point end of ship
      */
     public void addShip(Point p1, Point p2) {
-        this.playerShips.add(new Ship(p1, p2));
+        this.addShip(new Ship(p1, p2));
     }
 
     /**
@@ -90,7 +122,26 @@ public class Player {
      */
     public void addShip(Ship s) {
         this.playerShips.add(s);
+        if (!s.isSunk()) this.shipsAfloat++;
         this.playerShipPoints.addAll(PointUtils.getPointsBetween(s.startPoint(), s.endPoint()));
+        if (InvariantChecks.ENABLED) {
+            checkShip(s);
+        }
+    }
+
+    /**
+     * Removes the ship most recently added to this player, to undo placing it
+     * @param s the ship to remove, which must be the last one added
+     */
+    void removeShip(Ship s) {
+        assert !this.playerShips.isEmpty() && this.playerShips.get(this.playerShips.size() - 1) == s
+                : "Ships must be removed in the reverse of the order they were added";
+        this.playerShips.remove(this.playerShips.size() - 1);
+        for (Point p : PointUtils.getPointsBetween(s.startPoint(), s.endPoint())) {
+            this.playerShipPoints.remove(p);
+        }
+        if (!s.isSunk()) this.shipsAfloat--;
+        checkRep();
     }
 
     /**
@@ -100,20 +151,83 @@ public class Player {
      * @throws IllegalArgumentException if any args are null or if attacking position already attacked
      */
     public void attack(Player other, Point p) {
+        Ship hit = applyAttack(other, p);
+        if (hit != null) {
+            this.notifyHit();
+            if (hit.isSunk()) this.notifySunk(hit);
+        }
+    }
+
+    /**
+     * Repeats an attack that was undone, without notifying this player of a hit
+     * @return the ship hit, or null on a miss
+     */
+    Ship redoAttack(Player other, Point p) {
+        return applyAttack(other, p);
+    }
+
+    // the ship hit, or null on a miss
+    private Ship applyAttack(Player other, Point p) {
         if (other == null || p == null) throw new IllegalArgumentException("Null inputs to attack");
         checkRep();
-        // TODO: this means that player only knows about opponents after attacking them...
-        if (!this.opponentBoards.containsKey(other)) this.opponentBoards.put(other, new Board(this.playerBoard.size()));
+        Board opponentBoard = this.opponentBoard(other);
 
-        boolean result = other.receive(p);
+        Ship result = other.receiveShot(p);
         boolean validResult;
-        if (result) {
-            validResult = this.opponentBoards.get(other).addHit(p);
-            this.notifyHit();
-        }
-        else validResult = this.opponentBoards.get(other).addMiss(p);
+        if (result != null) validResult = opponentBoard.addHit(p);
+        else validResult = opponentBoard.addMiss(p);
         checkRep();
         if (!validResult) throw new IllegalArgumentException("Tried to attack position that was already guessed");
+        return result;
+    }
+
+    /**
+     * Undoes this player's attack on another player at p, removing it from both players' boards
+     * @param other the Player that was attacked
+     * @param p the point that was attacked
+     */
+    void undoAttack(Player other, Point p) {
+        checkRep();
+        this.opponentBoard(other).removeGuess(p);
+        other.undoReceive(p);
+        checkRep();
+    }
+
+    // reverses receive(p), repairing the ship that was hit there if there was one
+    private void undoReceive(Point p) {
+        if (this.playerBoard.getHits().contains(p)) {
+            for (Ship s : this.playerShips) {
+                boolean wasSunk = s.isSunk();
+                if (s.repair(p)) {
+                    if (wasSunk) this.shipsAfloat++;
+                    break;
+                }
+            }
+        }
+        this.playerBoard.removeGuess(p);
+        checkRep();
+    }
+
+    /**
+     * @param other another player
+     * @return the number of times this player has attacked other
+     */
+    int getShotsAt(Player other) {
+        Board board = other.seat < this.opponentBoards.length ? this.opponentBoards[other.seat] : null;
+        return board == null ? 0 : board.getHits().size() + board.getMisses().size();
+    }
+
+    // TODO: this means that player only knows about opponents after attacking them...
+    private Board opponentBoard(Player other) {
+        if (other.seat >= this.opponentBoards.length) {
+            this.opponentBoards = Arrays.copyOf(this.opponentBoards, other.seat + 1);
+        }
+        Board board = this.opponentBoards[other.seat];
+        if (board == null) {
+            board = new Board(this.playerBoard.size());
+            this.opponentBoards[other.seat] = board;
+        }
+        return board;
     }
 
     /**
@@ -123,17 +237,29 @@ public class Player {
      * @throws IllegalArgumentException if p is null
      */
     public boolean receive(Point p) {
+        return receiveShot(p) != null;
+    }
+
+    // receives an attack, returning the ship hit or null on a miss
+    private Ship receiveShot(Point p) {
         if (p == null) throw new IllegalArgumentException("Received an attack on no point");
         checkRep();
-        boolean didHit = false;
-        for (Ship s : this.playerShips) {
-            didHit = s.hit(p);
-            if (didHit) break;
+        Ship hit = null;
+        // most shots on a large board are misses, so only search the ships when a ship is there
+        if (this.playerShipPoints.contains(p)) {
+            for (Ship s : this.playerShips) {
+                if (s.hit(p)) {
+                    if (s.isSunk()) this.shipsAfloat--;
+                    hit = s;
+                    break;
+                }
+            }
         }
-        if (didHit) this.playerBoard.addHit(p);
+        if (hit != null) this.playerBoard.addHit(p);
         else this.playerBoard.addMiss(p);
+        assert !InvariantChecks.ENABLED || this.playerBoard.hasAlreadyGuessed(p) : "Received attack must be on the board";
         checkRep();
-        return didHit;
+        return hit;
     }
 
     /**
@@ -142,7 +268,7 @@ public class Player {
      */
     public BoardView getBoard() {
         checkRep();
-        return new BoardView(this.playerBoard);
+        return this.playerBoardView;
     }
     /**
      * Get views of this player's enemies
@@ -151,7 +277,9 @@ public class Player {
     public List<BoardView> getEnemyBoards() {
         checkRep();
         List<BoardView> out = new ArrayList<>();
-        for (Board b : this.opponentBoards.values()) out.add(new BoardView(b));
+        for (Board b : this.opponentBoards) {
+            if (b != null) out.add(new BoardView(b));
+        }
         checkRep();
         return out;
     }
@@ -166,6 +294,14 @@ public class Player {
         return new ArrayList<>(this.playerShips);
     }
 
+    /**
+     * Gets this player's ships without copying them
+     * @return an unmodifiable live view of this player's ships
+     */
+    public List<Ship> getShipsView() {
+        return this.playerShipsView;
+    }
+
     /**
      * getter for the points occupied by this player's ships
      * returned set and items inside should not be modified
@@ -175,17 +311,28 @@ public class Player {
         return this.playerShipPoints;
     }
 
+    /**
+     * Getter for this player's unique ID
+     * @return the ID this player was constructed with
+     */
+    public int getId() {
+        return this.playerId;
+    }
+
+    /**
+     * Getter for this player's position in the turn order
+     * @return the seat this player was constructed with
+     */
+    public int getSeat() {
+        return this.seat;
+    }
+
     /**
      * Returns if all of the player's ships have sunk
      * @return true if the player has lost
      */
     public boolean hasLost(){
-        for (Ship s: this.playerShips){
-            if (!s.isSunk()){
-                return false;
-            }
-        }
-        return true;
+        return this.shipsAfloat == 0;
     }
 
     @Override
@@ -220,4 +367,12 @@ public class Player {
     public void notifyHit(){
 
     }
+
+    /**
+     * Notifies this instance of Player that its last hit sank a ship, after notifyHit
+     * @param s the ship that was sunk
+     */
+    public void notifySunk(Ship s) {
+
+    }
 }
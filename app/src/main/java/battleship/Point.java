@@ -12,6 +12,21 @@ public final class Point {
     // Representation Invariant:
     //      none
 
+    /**
+     * Points with both coordinates in [0, CACHE_SIZE) are shared, like {@link Integer#valueOf},
+     * so code that hands out points on normal-sized boards does not need to allocate.
+     */
+    private static final int CACHE_SIZE = 32;
+    private static final Point[] CACHE = new Point[CACHE_SIZE * CACHE_SIZE];
+
+    static {
+        for (int y = 0; y < CACHE_SIZE; y++) {
+            for (int x = 0; x < CACHE_SIZE; x++) {
+                CACHE[y * CACHE_SIZE + x] = new Point(x, y);
+            }
+        }
+    }
+
     /**
      * The x-value for this point.
      */
@@ -33,6 +48,20 @@ public final class Point {
         this.y = y;
     }
 
+    /**
+     * Returns a point with the given x and y values, reusing a shared instance when one exists.
+     *
+     * @param x the x-value for the point
+     * @param y the y-value for the point
+     * @return a point equal to {@code new Point(x, y)}
+     */
+    public static Point of(int x, int y) {
+        if (x >= 0 && x < CACHE_SIZE && y >= 0 && y < CACHE_SIZE) {
+            return CACHE[y * CACHE_SIZE + x];
+        }
+        return new Point(x, y);
+    }
+
     /**
      * Returns the x-value for this point.
      *
@@ -63,13 +92,15 @@ public final class Point {
     }
 
     /**
-     * Returns an integer representation of this point.
+     * Returns an integer representation of this point. The coordinates are mixed so that
+     * nearby points on large boards do not collide the way {@code 31 * x + y} would.
      *
      * @return an integer representation of this point
      */
     @Override
     public int hashCode() {
-        return 31 * x + y;
+        long h = (((long) x << 32) | (y & 0xffffffffL)) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
     }
 
     /**
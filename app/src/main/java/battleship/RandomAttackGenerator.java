@@ -1,36 +1,184 @@
 package battleship;
 
-import java.util.PriorityQueue;
-import java.util.Queue;
-import java.util.Random;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
 
 public class RandomAttackGenerator extends AttackGenerator {
 
+    // boards with at most this many cells keep the shuffle in an array, larger ones in a map
+    private static final long DENSE_LIMIT = 1 << 16;
+
     private final int boardSize;
-    private final Queue<Pair<Integer, Point>> pointQueue;
+    private final long seed; // every draw is made from this and the number of cells drawn before it
+    // a lazy Fisher-Yates shuffle of the cell indices [0, boardSize^2): only the positions that
+    // have been swapped are stored. Small boards store them in an array (0 meaning not swapped,
+    // otherwise the cell index + 1) so drawing never allocates, and large boards use a map so
+    // they cost nothing until they are guessed on
+    private final int[] denseSwapped;
+    private final Map<Long, Long> sparseSwapped;
+    private long remaining;
+    // the slot each point passed to markAttacked was drawn from, by the number of cells drawn before
+    // it, so forget can put it back; the slots of picked cells follow from the seed
+    private final Map<Long, Long> markedSlots;
 
     public RandomAttackGenerator(int boardSize) {
-        this.boardSize = boardSize;
-        this.pointQueue = new PriorityQueue<>(new PriorityPointPairComparator());
-        populatePointQueue();
+        this(boardSize, new SplittableRandom());
     }
 
-    private void populatePointQueue() {
-        Random random = new Random();
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                int priority = random.nextInt();
-                Point point = new Point(i, j);
-                pointQueue.add(new Pair<>(priority, point));
-            }
+    /**
+     * @param random the source of this generator's seed, from which all its shots are drawn
+     */
+    public RandomAttackGenerator(int boardSize, SplittableRandom random) {
+        this.boardSize = boardSize;
+        this.seed = random.nextLong();
+        this.remaining = (long) boardSize * boardSize;
+        this.markedSlots = new HashMap<>();
+        if (remaining <= DENSE_LIMIT) {
+            this.denseSwapped = new int[(int) remaining];
+            this.sparseSwapped = null;
+        } else {
+            this.denseSwapped = null;
+            this.sparseSwapped = new HashMap<>();
         }
     }
 
     @Override
     public Point getAttackPoint() {
-        if (pointQueue.isEmpty()) {
+        if (remaining == 0) {
             throw new IllegalStateException("No more unguessed spaces on the board");
         }
-        return pointQueue.remove().getValue();
+        long pick = nextIndex(remaining);
+        long cell;
+        if (denseSwapped != null) {
+            cell = drawDense(denseSwapped, 0, (int) remaining, (int) pick);
+            remaining--;
+        } else {
+            cell = swappedAt(pick);
+            remaining--;
+            // move the last unpicked cell into the slot that was just used
+            setSwapped(pick, swappedAt(remaining));
+        }
+        return Point.of((int) (cell / boardSize), (int) (cell % boardSize));
+    }
+
+    /**
+     * Takes one step of a lazy shuffle kept in an array, as small boards keep it. GameArena keeps
+     * its random players' shuffles this way too, so both draw the same cells from the same random
+     * @param swapped the shuffle's slots, from offset on: 0 for a slot that has not been swapped,
+     *                otherwise the cell in it + 1
+     * @param offset where the shuffle starts in swapped
+     * @param remaining the number of cells not yet drawn
+     * @param pick the slot drawn, below remaining
+     * @return the cell in the slot drawn, whose place is taken by the last cell not yet drawn
+     */
+    static int drawDense(int[] swapped, int offset, int remaining, int pick) {
+        int stored = swapped[offset + pick];
+        int cell = stored == 0 ? pick : stored - 1;
+        int last = remaining - 1;
+        stored = swapped[offset + last];
+        swapped[offset + pick] = (stored == 0 ? last : stored - 1) + 1;
+        return cell;
+    }
+
+    /**
+     * Draws p out of the shuffle as if it had been picked. Finding its slot takes a scan of the cells
+     * not yet drawn on small boards and of the swapped slots on large ones
+     */
+    @Override
+    public void markAttacked(Point p) {
+        long cell = (long) p.getX() * boardSize + p.getY();
+        long slot = slotOf(cell);
+        if (slot < 0) {
+            throw new IllegalArgumentException(p + " has already been attacked");
+        }
+        markedSlots.put((long) boardSize * boardSize - remaining, slot);
+        if (denseSwapped != null) {
+            drawDense(denseSwapped, 0, (int) remaining, (int) slot);
+            remaining--;
+        } else {
+            remaining--;
+            setSwapped(slot, swappedAt(remaining));
+        }
+    }
+
+    // the slot below remaining that holds cell, or -1 if it has been drawn
+    private long slotOf(long cell) {
+        if (denseSwapped != null) {
+            for (int slot = 0; slot < remaining; slot++) {
+                if (swappedAt(slot) == cell) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+        for (Map.Entry<Long, Long> entry : sparseSwapped.entrySet()) {
+            if (entry.getValue() == cell) {
+                return entry.getKey() < remaining ? entry.getKey() : -1;
+            }
+        }
+        // a cell no slot was swapped to is in its own slot, unless that slot was swapped away
+        return cell < remaining && !sparseSwapped.containsKey(cell) ? cell : -1;
+    }
+
+    /**
+     * Puts p back in the slot it was drawn from, and the cell that took its place back at the end,
+     * so the shuffle is as it was before p was drawn
+     */
+    @Override
+    public void forget(Point p) {
+        long cell = (long) p.getX() * boardSize + p.getY();
+        long drawn = (long) boardSize * boardSize - remaining - 1; // the cells drawn before p
+        Long marked = markedSlots.remove(drawn);
+        long slot = marked != null ? marked : pick(seed, drawn, remaining + 1);
+        restore(remaining, swappedAt(slot));
+        restore(slot, cell);
+        remaining++;
+    }
+
+    // stores a cell in a slot, which unlike setSwapped may be the slot just past the cells not yet drawn
+    private void restore(long index, long cell) {
+        if (denseSwapped != null) {
+            denseSwapped[(int) index] = (int) cell + 1;
+        } else if (index == cell) {
+            sparseSwapped.remove(index);
+        } else {
+            sparseSwapped.put(index, cell);
+        }
+    }
+
+    private long swappedAt(long index) {
+        if (denseSwapped != null) {
+            int stored = denseSwapped[(int) index];
+            return stored == 0 ? index : stored - 1;
+        }
+        return sparseSwapped.getOrDefault(index, index);
+    }
+
+    private void setSwapped(long index, long cell) {
+        if (denseSwapped != null) {
+            denseSwapped[(int) index] = (int) cell + 1;
+        } else {
+            if (index != remaining) {
+                sparseSwapped.put(index, cell);
+            }
+            // the slot past the end is never read again
+            sparseSwapped.remove(remaining);
+        }
+    }
+
+    private long nextIndex(long bound) {
+        return pick(seed, (long) boardSize * boardSize - remaining, bound);
+    }
+
+    /**
+     * Picks the slot of a lazy shuffle to draw. GameArena picks its random players' slots this way too
+     * @param seed the seed of the generator drawing
+     * @param drawn the number of cells it has drawn
+     * @param remaining the number of cells not yet drawn, which the slot is below
+     */
+    static long pick(long seed, long drawn, long remaining) {
+        // the modulo favours the lower slots by less than remaining / 2^64, far too little to matter
+        return Math.floorMod(moveSeed(seed, drawn), remaining);
     }
 }
@@ -0,0 +1,29 @@
+package battleship;
+
+/**
+ * Counts placements one cell at a time, visiting only the set bits of each mask
+ */
+final class ScalarPlacementCounter extends PlacementCounter {
+
+    static final ScalarPlacementCounter INSTANCE = new ScalarPlacementCounter();
+
+    private ScalarPlacementCounter() {
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    void addRow(int[] counts, int offset, int size, long[] masks, int[] weights, int n) {
+        for (int x = 0; x < size; x++) {
+            counts[offset + x] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            for (long bits = masks[i]; bits != 0; bits &= bits - 1) {
+                counts[offset + Long.numberOfTrailingZeros(bits)] += weights[i];
+            }
+        }
+    }
+}
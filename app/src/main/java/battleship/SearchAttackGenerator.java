@@ -0,0 +1,743 @@
+package battleship;
+
+import utils.PointUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A SearchAttackGenerator picks shots by sampling whole fleets that are consistent with every hit and
+ * miss so far, then looking ahead over those samples. A shot is worth the chance that it hits plus a
+ * share of the information it is expected to reveal about where the fleet is, and a lookahead of
+ * depth d adds the value of the best follow-up shots after each outcome, estimated from the samples
+ * that agree with that outcome.
+ *
+ * Each move is an anytime search bounded by a time budget: it repeatedly doubles the number of
+ * samples and deepens the lookahead, keeps the answer of the last iteration that finished, and
+ * returns it when the budget runs out. Sampling and the evaluation of candidate shots are spread
+ * across a thread pool, so the strength of this generator is set by its budget and threads.
+ */
+public class SearchAttackGenerator extends AttackGenerator {
+
+    // Abstraction Function:
+    //      an opponent's board of boardSize x boardSize cells, holding the ships sunk so far, whose
+    //      cells are the arrays of sunkShips, and remaining[length] ships of each length still afloat,
+    //      where cell y * boardSize + x has been shot at iff guessed[cell] and was a hit iff hit[cell]
+
+    // Representation Invariant:
+    //      0 < boardSize <= MAX_BOARD_SIZE
+    //      guessed.length == hit.length == boardSize * boardSize
+    //      hit[c] implies guessed[c], and sunk[c] implies hit[c]
+    //      sunk[c] iff c is a cell of an array in sunkShips
+    //      remaining[length] >= 0 for every length
+    //      guessedCount == number of guessed cells
+    //      lastShot == -1 or guessed[lastShot]
+
+    /**
+     * The largest board this generator plays on. Sample counts are kept in arrays over every cell
+     */
+    public static final int MAX_BOARD_SIZE = 64;
+
+    private static final double INFO_WEIGHT = 0.25; // value of one bit of information, in hits
+    private static final int MIN_SAMPLES = 64; // samples in the first iteration, doubled every iteration
+    private static final int MAX_SAMPLES = 1 << 15;
+    private static final int MAX_DEPTH = 3;
+    private static final int BEAM = 8; // candidate shots looked ahead from at every level below the root
+    private static final int MIN_BRANCH_SAMPLES = 16; // fewer samples than this are too noisy to look ahead on
+    private static final int PLACEMENT_ATTEMPTS = 100;
+
+    private static final long DEFAULT_BUDGET_MILLIS = Long.getLong("battleship.search.budgetMillis", 50);
+    private static final int DEFAULT_THREADS = Integer.getInteger("battleship.search.threads",
+                                                                  Runtime.getRuntime().availableProcessors());
+    private static ExecutorService sharedPool;
+
+    // thrown by a search that has passed its deadline, preallocated since it is only a signal
+    private static final RuntimeException OUT_OF_TIME = new RuntimeException("search out of time", null, false, false) {};
+
+    private final int boardSize;
+    private final int[] remaining;
+    private final List<int[]> sunkShips;
+    private final PlacementCounter placementCounter;
+    private final long budgetNanos;
+    private final ExecutorService pool;
+    private final int parallelism;
+    private final long seed;
+    private SplittableRandom random; // the current move's, drawn from seed and guessedCount when it starts
+    private final boolean[] guessed;
+    private final boolean[] hit;
+    private final boolean[] sunk;
+    private final long[] blocked; // the rows densestUnguessed counts around, reused every move
+    private final int[] counts; // the counts of densestUnguessed, likewise
+    private int guessedCount;
+    private int lastShot;
+    private final LongAdder candidatesEvaluated;
+    private int lastDepth;
+
+    /**
+     * Makes a generator with the default budget, from the property battleship.search.budgetMillis,
+     * that shares a pool of battleship.search.threads threads with every other default generator
+     * @param boardSize the size of the board to attack
+     * @param shipsInfo the opponent's fleet, as an array of ship length (index) to number (value)
+     * @throws IllegalArgumentException if the board is larger than MAX_BOARD_SIZE or the fleet is empty
+     */
+    public SearchAttackGenerator(int boardSize, int[] shipsInfo) {
+        this(boardSize, shipsInfo, new SplittableRandom());
+    }
+
+    /**
+     * Makes a default generator, as above, whose samples are drawn from random
+     * @param random the source of the seed this generator's samples are drawn from. How many samples
+     *               are drawn still depends on how much fits in the time budget
+     */
+    public SearchAttackGenerator(int boardSize, int[] shipsInfo, SplittableRandom random) {
+        this(boardSize, shipsInfo, DEFAULT_BUDGET_MILLIS, sharedPool(), DEFAULT_THREADS, random);
+    }
+
+    /**
+     * @param boardSize the size of the board to attack
+     * @param shipsInfo the opponent's fleet, as an array of ship length (index) to number (value)
+     * @param budgetMillis how long each call to getAttackPoint may search for
+     * @param pool the threads to search on
+     * @param parallelism the number of tasks to split each part of the search into, usually the
+     *                    number of threads in pool
+     * @param random the source of the seed this generator's samples are drawn from
+     * @throws IllegalArgumentException if the board is larger than MAX_BOARD_SIZE, the fleet is empty,
+     *                                  or budgetMillis or parallelism is not positive
+     */
+    public SearchAttackGenerator(int boardSize, int[] shipsInfo, long budgetMillis, ExecutorService pool,
+                                 int parallelism, SplittableRandom random) {
+        if (boardSize <= 0 || boardSize > MAX_BOARD_SIZE) {
+            throw new IllegalArgumentException("Search only plays on boards up to " + MAX_BOARD_SIZE);
+        }
+        if (budgetMillis <= 0 || parallelism <= 0 || pool == null) {
+            throw new IllegalArgumentException("Search needs a positive budget and at least one thread");
+        }
+        boolean empty = true;
+        for (int length = 1; length < shipsInfo.length; length++) {
+            if (shipsInfo[length] > 0) {
+                empty = false;
+            }
+        }
+        if (empty) {
+            throw new IllegalArgumentException("Search needs a fleet to look for");
+        }
+        this.boardSize = boardSize;
+        this.remaining = new int[shipsInfo.length];
+        for (int length = 1; length < shipsInfo.length; length++) {
+            remaining[length] = Math.max(0, shipsInfo[length]);
+        }
+        this.sunkShips = new ArrayList<>();
+        this.placementCounter = PlacementCounter.best();
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.pool = pool;
+        this.parallelism = parallelism;
+        this.seed = random.nextLong();
+        this.random = new SplittableRandom(moveSeed(seed, 0));
+        this.guessed = new boolean[boardSize * boardSize];
+        this.hit = new boolean[boardSize * boardSize];
+        this.sunk = new boolean[boardSize * boardSize];
+        this.blocked = new long[boardSize];
+        this.counts = new int[boardSize * boardSize];
+        this.guessedCount = 0;
+        this.lastShot = -1;
+        this.candidatesEvaluated = new LongAdder();
+    }
+
+    private static synchronized ExecutorService sharedPool() {
+        if (sharedPool == null) {
+            AtomicInteger count = new AtomicInteger();
+            sharedPool = Executors.newFixedThreadPool(DEFAULT_THREADS, r -> {
+                Thread t = new Thread(r, "battleship-search-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return sharedPool;
+    }
+
+    /**
+     * Searches for this generator's budget, always answering even if the first guess takes longer
+     */
+    @Override
+    public Point getAttackPoint() {
+        return attackPoint(System.nanoTime() + budgetNanos, false);
+    }
+
+    /**
+     * Searches until the deadline or this generator's own budget, whichever comes first
+     */
+    @Override
+    public Point getAttackPoint(long deadline) {
+        return attackPoint(deadline, true);
+    }
+
+    // searches until the deadline, giving up if it may and the first guess is not ready by then
+    private Point attackPoint(long deadline, boolean mayGiveUp) {
+        if (guessedCount == guessed.length) {
+            throw new IllegalStateException("No more unguessed spaces on the board");
+        }
+        long start = System.nanoTime();
+        if (mayGiveUp && start - deadline >= 0) {
+            return null;
+        }
+        if (deadline - (start + budgetNanos) > 0) {
+            deadline = start + budgetNanos;
+        }
+        candidatesEvaluated.reset();
+        lastDepth = 0;
+        random = new SplittableRandom(moveSeed(seed, guessedCount));
+
+        int best = densestUnguessed(deadline, mayGiveUp);
+        if (best < 0) {
+            return null; // the count of the first guess was cut short, and nothing has changed
+        }
+        List<int[]> samples = new ArrayList<>();
+        int target = MIN_SAMPLES;
+        int depth = 1;
+        while (true) {
+            boolean sampled = sample(samples, target, deadline);
+            if (!sampled) {
+                // a first pass over whatever was sampled is cheap, so it is still worth taking
+                if (lastDepth == 0 && !samples.isEmpty()) {
+                    best = bestByScore(count(samples, allIndices(samples.size())), samples.size(), best);
+                }
+                break;
+            }
+            int found = search(samples, depth, deadline);
+            if (found < 0) {
+                break;
+            }
+            best = found;
+            lastDepth = depth;
+            if (target == MAX_SAMPLES && depth == MAX_DEPTH) {
+                break;
+            }
+            target = Math.min(target * 2, MAX_SAMPLES);
+            depth = Math.min(depth + 1, MAX_DEPTH);
+        }
+
+        guessed[best] = true;
+        guessedCount++;
+        lastShot = best;
+        return Point.of(best % boardSize, best / boardSize);
+    }
+
+    /**
+     * @return the lookahead depth of the last completed iteration of the last move, 0 if none completed
+     */
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    @Override
+    public long getCandidatesEvaluated() {
+        return candidatesEvaluated.sum();
+    }
+
+    @Override
+    public void notifyHit() {
+        if (lastShot >= 0) {
+            hit[lastShot] = true;
+        }
+    }
+
+    /**
+     * Stops counting a sunk ship as part of the fleet still to be found, and keeps every other ship
+     * off its cells
+     * @throws IllegalArgumentException if a cell of the ship has not been hit, or the fleet has no
+     *                                  more ships of its length afloat
+     */
+    @Override
+    public void notifySunk(Point start, Point end) {
+        List<Point> points = PointUtils.getPointsBetween(start, end);
+        int length = points.size();
+        if (length >= remaining.length || remaining[length] <= 0) {
+            throw new IllegalArgumentException("No ship of length " + length + " is left to sink");
+        }
+        int[] cells = new int[length];
+        for (int i = 0; i < length; i++) {
+            cells[i] = points.get(i).getY() * boardSize + points.get(i).getX();
+            if (!hit[cells[i]] || sunk[cells[i]]) {
+                throw new IllegalArgumentException(points.get(i) + " is not a hit on a ship afloat");
+            }
+        }
+        for (int cell : cells) {
+            sunk[cell] = true;
+        }
+        sunkShips.add(cells);
+        remaining[length]--;
+    }
+
+    @Override
+    public void forget(Point p) {
+        int cell = p.getY() * boardSize + p.getX();
+        if (sunk[cell]) {
+            refloat(cell);
+        }
+        if (guessed[cell]) {
+            guessed[cell] = false;
+            hit[cell] = false;
+            guessedCount--;
+            if (lastShot == cell) {
+                lastShot = -1;
+            }
+        }
+    }
+
+    @Override
+    public void markAttacked(Point p) {
+        int cell = p.getY() * boardSize + p.getX();
+        if (guessed[cell]) {
+            throw new IllegalArgumentException(p + " has already been attacked");
+        }
+        guessed[cell] = true;
+        guessedCount++;
+        lastShot = cell;
+    }
+
+    // undoes notifySunk for the sunk ship on cell, once a hit on it is taken back
+    private void refloat(int cell) {
+        for (int i = sunkShips.size() - 1; i >= 0; i--) {
+            int[] cells = sunkShips.get(i);
+            if (contains(cells, cell)) {
+                for (int c : cells) {
+                    sunk[c] = false;
+                }
+                sunkShips.remove(i);
+                remaining[cells.length]++;
+                return;
+            }
+        }
+    }
+
+    // the unguessed cell covered by the most placements of the ships afloat that avoid every miss and
+    // sunk ship, ties going to the first from a random cell on. This is the move if not even one search
+    // iteration finishes, or -1 if the count does not finish by the deadline
+    private int densestUnguessed(long deadline, boolean timed) {
+        Arrays.fill(blocked, 0);
+        for (int cell = 0; cell < guessed.length; cell++) {
+            if (guessed[cell] && !hit[cell] || sunk[cell]) {
+                blocked[cell / boardSize] |= 1L << (cell % boardSize);
+            }
+        }
+        if (!timed) {
+            placementCounter.count(blocked, boardSize, remaining, counts);
+        } else if (!placementCounter.count(blocked, boardSize, remaining, counts, deadline)) {
+            return -1;
+        }
+        int start = randomUnguessed();
+        int best = start;
+        for (int i = 1; i < guessed.length; i++) {
+            int cell = (start + i) % guessed.length;
+            if (!guessed[cell] && counts[cell] > counts[best]) {
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    private int randomUnguessed() {
+        int cell = random.nextInt(guessed.length);
+        while (guessed[cell]) {
+            cell = (cell + 1) % guessed.length;
+        }
+        return cell;
+    }
+
+    /**
+     * Adds samples in parallel until there are target of them or the deadline passes
+     * @return true if target samples were reached
+     */
+    private boolean sample(List<int[]> samples, int target, long deadline) {
+        int needed = target - samples.size();
+        if (needed <= 0) {
+            return true;
+        }
+        int[] hitCells = hitCells();
+        int[] shipLengths = remainingLengths();
+        List<Callable<List<int[]>>> tasks = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            int quota = needed / parallelism + (i < needed % parallelism ? 1 : 0);
+            SplittableRandom taskRandom = random.split();
+            tasks.add(() -> new FleetSampler(hitCells, shipLengths, taskRandom).sample(quota, deadline));
+        }
+        for (Future<List<int[]>> future : invokeAll(tasks, deadline)) {
+            List<int[]> found = result(future);
+            if (found != null) {
+                samples.addAll(found);
+            }
+        }
+        return samples.size() >= target;
+    }
+
+    /**
+     * Runs the lookahead to the given depth, evaluating the most promising first shots in parallel
+     * @return the best cell to shoot, or -1 if the deadline passed first
+     */
+    private int search(List<int[]> samples, int depth, long deadline) {
+        int[] all = allIndices(samples.size());
+        int[] counts = count(samples, all);
+        if (depth == 1) {
+            return bestByScore(counts, all.length, -1);
+        }
+        int[] candidates = topCandidates(counts, all.length, new int[0], Math.max(BEAM, parallelism));
+        List<Callable<Double>> tasks = new ArrayList<>();
+        for (int cell : candidates) {
+            tasks.add(() -> lookahead(samples, all, counts, cell, new int[]{cell}, depth, deadline));
+        }
+        List<Future<Double>> futures = invokeAll(tasks, deadline);
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < candidates.length; i++) {
+            Double value = result(futures.get(i));
+            if (value == null) {
+                return -1;
+            }
+            if (value > bestValue) {
+                best = candidates[i];
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The value of shooting cell given the samples in subset, then playing the best shots for depth - 1 more moves
+     * @param counts how many samples in subset cover each cell
+     * @param path the cells shot so far along this line of the lookahead, including cell
+     */
+    private double lookahead(List<int[]> samples, int[] subset, int[] counts, int cell, int[] path,
+                             int depth, long deadline) {
+        if (System.nanoTime() > deadline) {
+            throw OUT_OF_TIME;
+        }
+        candidatesEvaluated.increment();
+        double p = (double) counts[cell] / subset.length;
+        double value = score(p);
+        if (depth <= 1) {
+            return value;
+        }
+        int hits = counts[cell];
+        int[] onHit = new int[hits];
+        int[] onMiss = new int[subset.length - hits];
+        int h = 0;
+        int m = 0;
+        for (int index : subset) {
+            if (contains(samples.get(index), cell)) {
+                onHit[h++] = index;
+            } else {
+                onMiss[m++] = index;
+            }
+        }
+        return value + p * bestFollowUp(samples, onHit, path, depth - 1, deadline)
+                + (1 - p) * bestFollowUp(samples, onMiss, path, depth - 1, deadline);
+    }
+
+    private double bestFollowUp(List<int[]> samples, int[] subset, int[] path, int depth, long deadline) {
+        if (subset.length < MIN_BRANCH_SAMPLES) {
+            return 0;
+        }
+        int[] counts = count(samples, subset);
+        double best = 0;
+        for (int cell : topCandidates(counts, subset.length, path, BEAM)) {
+            int[] next = Arrays.copyOf(path, path.length + 1);
+            next[path.length] = cell;
+            best = Math.max(best, lookahead(samples, subset, counts, cell, next, depth, deadline));
+        }
+        return best;
+    }
+
+    // a shot that hits with probability p is worth the chance of a hit plus the information it reveals
+    private static double score(double p) {
+        if (p <= 0 || p >= 1) {
+            return p;
+        }
+        double entropy = -(p * Math.log(p) + (1 - p) * Math.log(1 - p)) / Math.log(2);
+        return p + INFO_WEIGHT * entropy;
+    }
+
+    private int bestByScore(int[] counts, int total, int fallback) {
+        int best = fallback;
+        double bestScore = -1;
+        for (int cell = 0; cell < counts.length; cell++) {
+            if (!guessed[cell] && counts[cell] > 0) {
+                double s = score((double) counts[cell] / total);
+                if (s > bestScore) {
+                    best = cell;
+                    bestScore = s;
+                }
+            }
+        }
+        candidatesEvaluated.add(counts.length);
+        return best < 0 ? randomUnguessed() : best;
+    }
+
+    // the (at most) k unguessed cells off the path with the highest scores
+    private int[] topCandidates(int[] counts, int total, int[] path, int k) {
+        int[] top = new int[k];
+        double[] topScores = new double[k];
+        int size = 0;
+        for (int cell = 0; cell < counts.length; cell++) {
+            if (guessed[cell] || counts[cell] == 0 || contains(path, cell)) {
+                continue;
+            }
+            double s = score((double) counts[cell] / total);
+            if (size < k || s > topScores[size - 1]) {
+                int i = size < k ? size++ : size - 1;
+                while (i > 0 && topScores[i - 1] < s) {
+                    top[i] = top[i - 1];
+                    topScores[i] = topScores[i - 1];
+                    i--;
+                }
+                top[i] = cell;
+                topScores[i] = s;
+            }
+        }
+        if (size == 0) {
+            return new int[]{randomUnguessedOffPath(path)};
+        }
+        return Arrays.copyOf(top, size);
+    }
+
+    private int randomUnguessedOffPath(int[] path) {
+        int cell = randomUnguessed();
+        while (contains(path, cell) || guessed[cell]) {
+            cell = (cell + 1) % guessed.length;
+        }
+        return cell;
+    }
+
+    private int[] count(List<int[]> samples, int[] subset) {
+        int[] counts = new int[guessed.length];
+        for (int index : subset) {
+            for (int cell : samples.get(index)) {
+                counts[cell]++;
+            }
+        }
+        return counts;
+    }
+
+    // the hits on ships still afloat, which every sample must cover
+    private int[] hitCells() {
+        int n = 0;
+        for (int cell = 0; cell < hit.length; cell++) {
+            if (hit[cell] && !sunk[cell]) n++;
+        }
+        int[] cells = new int[n];
+        int i = 0;
+        for (int cell = 0; cell < hit.length; cell++) {
+            if (hit[cell] && !sunk[cell]) cells[i++] = cell;
+        }
+        return cells;
+    }
+
+    // the length of each ship still afloat
+    private int[] remainingLengths() {
+        int n = 0;
+        for (int length = 1; length < remaining.length; length++) {
+            n += remaining[length];
+        }
+        int[] lengths = new int[n];
+        int i = 0;
+        for (int length = 1; length < remaining.length; length++) {
+            for (int k = 0; k < remaining[length]; k++) {
+                lengths[i++] = length;
+            }
+        }
+        return lengths;
+    }
+
+    private static int[] allIndices(int n) {
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
+    private static boolean contains(int[] cells, int cell) {
+        for (int c : cells) {
+            if (c == cell) return true;
+        }
+        return false;
+    }
+
+    private <T> List<Future<T>> invokeAll(List<Callable<T>> tasks, long deadline) {
+        try {
+            return pool.invokeAll(tasks, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while searching for an attack point", e);
+        }
+    }
+
+    // the result of a finished task, or null if it was cancelled or ran out of time
+    private static <T> T result(Future<T> future) {
+        if (future.isCancelled()) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() == OUT_OF_TIME) {
+                return null;
+            }
+            throw new RuntimeException("Search failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while searching for an attack point", e);
+        }
+    }
+
+    /**
+     * Samples the ships afloat, placed consistently with the shots so far. Each sampler is used by one thread
+     */
+    private class FleetSampler {
+        private final int[] hitCells;
+        private final int[] shipLengths;
+        private final SplittableRandom random;
+        private final int[] occupiedStamp; // occupiedStamp[cell] == stamp iff cell is taken in the current sample
+        private int stamp;
+        private final boolean[] placed;
+        private final int fleetCells;
+
+        FleetSampler(int[] hitCells, int[] shipLengths, SplittableRandom random) {
+            this.hitCells = hitCells.clone();
+            this.shipLengths = shipLengths;
+            this.random = random;
+            this.occupiedStamp = new int[guessed.length];
+            this.stamp = 0;
+            this.placed = new boolean[shipLengths.length];
+            int cells = 0;
+            for (int length : shipLengths) {
+                cells += length;
+            }
+            this.fleetCells = cells;
+        }
+
+        List<int[]> sample(int quota, long deadline) {
+            List<int[]> out = new ArrayList<>(quota);
+            int failures = 0;
+            while (out.size() < quota && System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                int[] fleet = sampleFleet();
+                if (fleet != null) {
+                    out.add(fleet);
+                } else if (++failures > quota * PLACEMENT_ATTEMPTS) {
+                    break; // the shots so far are not consistent with any fleet this sampler can find
+                }
+            }
+            return out;
+        }
+
+        // one fleet covering every hit on a ship afloat and no miss or sunk ship, as the cells it
+        // occupies, or null if placement failed
+        private int[] sampleFleet() {
+            stamp++;
+            Arrays.fill(placed, false);
+            int[] cells = new int[fleetCells];
+            int used = 0;
+            int unplaced = shipLengths.length;
+            // cover the hits first, in a random order, each with a random ship laid across it
+            for (int i = hitCells.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = hitCells[i];
+                hitCells[i] = hitCells[j];
+                hitCells[j] = tmp;
+            }
+            for (int h : hitCells) {
+                if (occupiedStamp[h] == stamp) {
+                    continue;
+                }
+                if (unplaced == 0) {
+                    return null;
+                }
+                boolean covered = false;
+                for (int attempt = 0; attempt < PLACEMENT_ATTEMPTS && !covered; attempt++) {
+                    int ship = randomUnplaced(unplaced);
+                    int length = shipLengths[ship];
+                    boolean horizontal = random.nextBoolean();
+                    int offset = random.nextInt(length);
+                    int x = h % boardSize - (horizontal ? offset : 0);
+                    int y = h / boardSize - (horizontal ? 0 : offset);
+                    if (fits(x, y, length, horizontal)) {
+                        used = place(cells, used, x, y, length, horizontal);
+                        placed[ship] = true;
+                        unplaced--;
+                        covered = true;
+                    }
+                }
+                if (!covered) {
+                    return null;
+                }
+            }
+            // then put the rest of the fleet anywhere it fits
+            for (int ship = 0; ship < shipLengths.length; ship++) {
+                if (placed[ship]) {
+                    continue;
+                }
+                int length = shipLengths[ship];
+                if (length > boardSize) {
+                    return null;
+                }
+                boolean done = false;
+                for (int attempt = 0; attempt < PLACEMENT_ATTEMPTS && !done; attempt++) {
+                    boolean horizontal = random.nextBoolean();
+                    int x = random.nextInt(horizontal ? boardSize - length + 1 : boardSize);
+                    int y = random.nextInt(horizontal ? boardSize : boardSize - length + 1);
+                    if (fits(x, y, length, horizontal)) {
+                        used = place(cells, used, x, y, length, horizontal);
+                        done = true;
+                    }
+                }
+                if (!done) {
+                    return null;
+                }
+            }
+            return cells;
+        }
+
+        private int randomUnplaced(int unplaced) {
+            int skip = random.nextInt(unplaced);
+            for (int ship = 0; ship < placed.length; ship++) {
+                if (!placed[ship] && skip-- == 0) {
+                    return ship;
+                }
+            }
+            throw new IllegalStateException("no unplaced ship");
+        }
+
+        private boolean fits(int x, int y, int length, boolean horizontal) {
+            int endX = horizontal ? x + length - 1 : x;
+            int endY = horizontal ? y : y + length - 1;
+            if (x < 0 || y < 0 || endX >= boardSize || endY >= boardSize) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                int cell = (horizontal ? y : y + i) * boardSize + (horizontal ? x + i : x);
+                if (occupiedStamp[cell] == stamp || guessed[cell] && !hit[cell] || sunk[cell]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int place(int[] cells, int used, int x, int y, int length, boolean horizontal) {
+            for (int i = 0; i < length; i++) {
+                int cell = (horizontal ? y : y + i) * boardSize + (horizontal ? x + i : x);
+                occupiedStamp[cell] = stamp;
+                cells[used++] = cell;
+            }
+            return used;
+        }
+    }
+}
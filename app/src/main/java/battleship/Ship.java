@@ -1,6 +1,6 @@
 package battleship;
 
-import utils.Globals;
+import utils.InvariantChecks;
 
 /**
  * The Ship class represents a ship in the game of Battleship.
@@ -39,7 +39,8 @@ public class Ship {
      * Throws an exception is the representation invariant is violated.
      */
     private void checkRep() {
-        if (Globals.DEBUG) {
+        // every part of this check is constant time, so it never needs sampling
+        if (InvariantChecks.ENABLED) {
             assert (startPoint != null): "null start point";
             assert (endPoint != null): "null end point";
             assert (hp >= 0): "negative hp";
@@ -137,6 +138,22 @@ public class Ship {
         return true;
     }
 
+    /**
+     * Undoes a hit on this ship at the point {@code p}, restoring one hp.
+     *
+     * @param p the point at which this ship was hit
+     * @return {@literal true} iff this ship contains {@code p} and had been hit
+     */
+    boolean repair(Point p) {
+        checkRep();
+        if (!containsPoint(p) || hp == length()) {
+            return false;
+        }
+        hp++;
+        checkRep();
+        return true;
+    }
+
     /**
      * Decrements this ship's hp.
      */
@@ -1,17 +1,56 @@
 package battleship;
 
+import utils.SparseBitmap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
 public class SmartAttackGenerator extends AttackGenerator {
 
-    private final int[][] boardPriorities;
-    private int numAboveZero;
-    private int spacesRemaining;
+    // guessed cells and the priorities of cells next to hits are both kept sparsely, so the state
+    // grows with the number of shots taken instead of with the area of the board
+    private final int boardSize;
+    private final SparseBitmap guessed;
+    private final Map<Point, Integer> boardPriorities; // unguessed cells with priority above zero
+    private long spacesRemaining;
     private Point prev;
+    private long candidatesEvaluated;
+    // the moves not yet forgotten that changed more than their own cell, the latest first, so
+    // forget can undo them exactly; the searching phase's misses change nothing else, and are not kept
+    private final Deque<Move> moves;
+
+    // the searching phase only ever moves forward through the board, so it resumes from here.
+    // it sweeps the checkerboard cells (parity 0) first, then the rest (parity 1)
+    private int searchParity;
+    private int searchRow;
+    private int searchCol;
+
+    // what a move changed besides marking its point guessed
+    private static final class Move {
+        final Point point;
+        final Integer priority; // the priority the point had before it was taken, or null if none
+        int raised; // bit i is set if notifyHit raised neighbour i of the point, in the order of NEIGHBOURS
+
+        Move(Point point, Integer priority) {
+            this.point = point;
+            this.priority = priority;
+        }
+    }
+
+    private static final int[][] NEIGHBOURS = {{0, -1}, {0, 1}, {-1, 0}, {1, 0}}; // dx, dy
 
     public SmartAttackGenerator(int boardSize) {
-        this.boardPriorities = new int[boardSize][boardSize];
-        this.numAboveZero = 0;
-        this.spacesRemaining = boardSize * boardSize;
+        this.boardSize = boardSize;
+        this.guessed = new SparseBitmap();
+        this.boardPriorities = new HashMap<>();
+        this.moves = new ArrayDeque<>();
+        this.spacesRemaining = (long) boardSize * boardSize;
         this.prev = null;
+        this.searchParity = 0;
+        this.searchRow = 0;
+        this.searchCol = 0;
     }
 
     @Override
@@ -19,40 +58,119 @@ public class SmartAttackGenerator extends AttackGenerator {
         if (spacesRemaining == 0) {
             throw new IllegalStateException("No more unguessed spaces on the board");
         }
-        if (numAboveZero > 0) {
-            prev = hitPhase();
-            numAboveZero--;
-        } else {
-            prev = searchingPhase();
+        take(!boardPriorities.isEmpty() ? hitPhase() : searchingPhase());
+        return prev;
+    }
+
+    private void take(Point p) {
+        Integer priority = boardPriorities.remove(p);
+        if (priority != null) {
+            moves.push(new Move(p, priority));
         }
+        prev = p;
         spacesRemaining--;
-        boardPriorities[prev.getY()][prev.getX()] = Integer.MIN_VALUE;
-        return prev;
+        guessed.set(p.getX(), p.getY());
+    }
+
+    @Override
+    public void markAttacked(Point p) {
+        if (guessed.get(p.getX(), p.getY())) {
+            throw new IllegalArgumentException(p + " has already been attacked");
+        }
+        take(p);
     }
 
     private Point searchingPhase() {
-        for (int row = 0; row < boardPriorities.length; row++) {
-            for (int col = row % 2; col < boardPriorities.length; col += 2) {
-                if (boardPriorities[row][col] == 0) {
-                    return new Point(col, row);
+        candidatesEvaluated = 0;
+        while (searchParity < 2) {
+            for (; searchRow < boardSize; searchRow++, searchCol = (searchRow + searchParity) % 2) {
+                for (; searchCol < boardSize; searchCol += 2) {
+                    candidatesEvaluated++;
+                    if (!guessed.get(searchCol, searchRow)) {
+                        return Point.of(searchCol, searchRow);
+                    }
                 }
             }
+            searchParity++;
+            searchRow = 0;
+            searchCol = searchParity;
         }
         return null;
     }
 
     private Point hitPhase() {
-        int bestRow = 0;
-        int bestCol = 0;
-        for (int row = 0; row < boardPriorities.length; row++) {
-            for (int col = 0; col < boardPriorities[row].length; col++) {
-                if (boardPriorities[row][col] > boardPriorities[bestRow][bestCol]) {
-                    bestRow = row;
-                    bestCol = col;
+        candidatesEvaluated = boardPriorities.size();
+        Point best = null;
+        int bestPriority = 0;
+        for (Map.Entry<Point, Integer> entry : boardPriorities.entrySet()) {
+            Point p = entry.getKey();
+            int priority = entry.getValue();
+            // ties go to the first point in row-major order
+            if (priority > bestPriority || priority == bestPriority && (p.getY() < best.getY()
+                    || p.getY() == best.getY() && p.getX() < best.getX())) {
+                best = p;
+                bestPriority = priority;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Undoes the latest move not yet forgotten, which must be at p, so that the moves that follow
+     * are exactly those that would have followed the move before it: its point is unguessed, the
+     * priorities notifyHit raised around it are lowered again, and the point's own priority is back.
+     * A hit reported before the next move is ignored
+     * @throws IllegalArgumentException if p was guessed but is known not to be the latest move
+     */
+    @Override
+    public void forget(Point p) {
+        int x = p.getX();
+        int y = p.getY();
+        if (!guessed.get(x, y)) {
+            return;
+        }
+        Move move = moves.peek();
+        boolean latest = move != null && move.point.equals(p);
+        if (prev != null && !prev.equals(p) || !latest && recorded(p)) {
+            throw new IllegalArgumentException("Moves must be forgotten latest first, not " + p);
+        }
+        if (latest) {
+            moves.pop();
+            for (int i = 0; i < NEIGHBOURS.length; i++) {
+                if ((move.raised & 1 << i) != 0) {
+                    Point neighbour = Point.of(x + NEIGHBOURS[i][0], y + NEIGHBOURS[i][1]);
+                    boardPriorities.computeIfPresent(neighbour, (q, priority) -> priority == 1 ? null : priority - 1);
                 }
             }
+            if (move.priority != null) {
+                boardPriorities.put(p, move.priority);
+            }
+        }
+        prev = null; // the move before is not kept, and is not needed until the next one
+        guessed.clear(x, y);
+        spacesRemaining++;
+        // move the search cursor back if it has already swept past the cell
+        int parity = (x + y) % 2;
+        if (parity < searchParity || parity == searchParity
+                && (y < searchRow || y == searchRow && x < searchCol)) {
+            searchParity = parity;
+            searchRow = y;
+            searchCol = x;
         }
-        return new Point(bestCol, bestRow);
+    }
+
+    private boolean recorded(Point p) {
+        for (Move move : moves) {
+            if (move.point.equals(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getCandidatesEvaluated() {
+        return candidatesEvaluated;
     }
 
     @Override
@@ -60,22 +178,30 @@ public class SmartAttackGenerator extends AttackGenerator {
         if (prev == null) {
             return;
         }
+        Move move = moves.peek();
+        if (move == null || !move.point.equals(prev)) {
+            move = new Move(prev, null);
+            moves.push(move);
+        } else if (move.raised != 0) {
+            return; // this hit has been counted already
+        }
         int x = prev.getX();
         int y = prev.getY();
-        incrementPoint(y - 1, x);
-        incrementPoint(y + 1, x);
-        incrementPoint(y, x - 1);
-        incrementPoint(y, x + 1);
+        for (int i = 0; i < NEIGHBOURS.length; i++) {
+            if (incrementPoint(y + NEIGHBOURS[i][1], x + NEIGHBOURS[i][0])) {
+                move.raised |= 1 << i;
+            }
+        }
     }
 
-    private void incrementPoint(int row, int col) {
-        if (row < 0 || row >= boardPriorities.length
-            || col < 0 || col >= boardPriorities.length) {
-            return;
-        }
-        if (boardPriorities[row][col] == 0) {
-            numAboveZero++;
+    // raises the priority of an unguessed cell, returning whether there was one
+    private boolean incrementPoint(int row, int col) {
+        if (row < 0 || row >= boardSize
+            || col < 0 || col >= boardSize
+            || guessed.get(col, row)) {
+            return false;
         }
-        boardPriorities[row][col]++;
+        boardPriorities.merge(Point.of(col, row), 1, Integer::sum);
+        return true;
     }
 }
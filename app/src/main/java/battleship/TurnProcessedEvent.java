@@ -0,0 +1,52 @@
+package battleship;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event committed for every turn a Game processes, human or CPU. The event's duration covers
+ * the whole turn, including any CPU turns it triggers.
+ */
+@Name("battleship.TurnProcessed")
+@Label("Turn Processed")
+@Category("Battleship")
+@Description("A point processed by a Game during setup or play")
+class TurnProcessedEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(TurnProcessedEvent.class);
+
+    /**
+     * Begins an event, if a running recording has this event enabled
+     * @return the event, or null when no recording wants it, so nothing is allocated
+     */
+    static TurnProcessedEvent beginIfEnabled() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        TurnProcessedEvent event = new TurnProcessedEvent();
+        event.begin();
+        return event;
+    }
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Player")
+    int player;
+
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+
+    @Label("Accepted")
+    @Description("Whether the ship placement or attack was valid")
+    boolean accepted;
+
+    @Label("Hit")
+    boolean hit;
+}
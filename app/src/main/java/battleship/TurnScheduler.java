@@ -0,0 +1,171 @@
+package battleship;
+
+import utils.InvariantChecks;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * A TurnScheduler plays the computer turns of many games on one thread, a turn at a time, taking
+ * the games in turn so that a long game never holds up the others. A game waiting for a human is set
+ * aside until resume is called for it, so human turns never block the thread.
+ * <p>
+ * Games are not thread safe. Once a game is submitted, only the thread calling runOnce or run may
+ * touch it while it is a computer's turn; while it waits for a human, another thread may make the
+ * human's move and then call resume, which is the only method that may be called from any thread.
+ */
+public final class TurnScheduler {
+
+    // Abstraction Function:
+    //      the games that are keys of entries, each with the callback to call when it ends; the
+    //      games in ready may have a computer turn to play, in the order they will be played, and
+    //      the rest are waiting for a human
+
+    // Representation Invariant:
+    //      every entry in ready is a value of entries, with queued set
+    //      every value of entries with queued set is in ready exactly once
+
+    private final Map<Game, Entry> entries; // every game that has not ended
+    private final ArrayDeque<Entry> ready;
+    private final ConcurrentLinkedQueue<Game> resumed; // handed over by other threads
+    private long turnsPlayed;
+    private int operationCount; // for sampling full rep checks
+
+    private static final class Entry {
+        final Game game;
+        final Consumer<Game> onEnd;
+        boolean queued; // whether the entry is in ready
+
+        Entry(Game game, Consumer<Game> onEnd) {
+            this.game = game;
+            this.onEnd = onEnd;
+        }
+    }
+
+    public TurnScheduler() {
+        this.entries = new IdentityHashMap<>();
+        this.ready = new ArrayDeque<>();
+        this.resumed = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Takes over a game's computer turns, turning its auto play off
+     * @param game a game that is not over
+     * @param onEnd called with the game, on the scheduler's thread, once the game is over
+     * @throws IllegalArgumentException if the game has already been submitted or is over
+     */
+    public void submit(Game game, Consumer<Game> onEnd) {
+        if (entries.containsKey(game) || game.getPhase().equals("end")) {
+            throw new IllegalArgumentException("The game has already been submitted or is over");
+        }
+        game.setAutoPlay(false);
+        Entry entry = new Entry(game, onEnd);
+        entries.put(game, entry);
+        enqueue(entry);
+        checkRep();
+    }
+
+    /**
+     * Takes over a game's computer turns, with nothing to call when it ends
+     */
+    public void submit(Game game) {
+        submit(game, g -> { });
+    }
+
+    /**
+     * Tells the scheduler a human has moved in a game, so its computer players may have turns to
+     * play. Can be called from any thread
+     */
+    public void resume(Game game) {
+        resumed.add(game);
+    }
+
+    /**
+     * Plays one computer turn of the next game that has one
+     * @return false if no game had a turn to play
+     */
+    public boolean runOnce() {
+        Game game;
+        while ((game = resumed.poll()) != null) {
+            Entry entry = entries.get(game);
+            if (entry != null) {
+                enqueue(entry);
+            }
+        }
+        Entry entry;
+        while ((entry = ready.poll()) != null) {
+            entry.queued = false;
+            if (entry.game.isComputerTurn()) {
+                break;
+            }
+            setAside(entry);
+        }
+        if (entry == null) {
+            return false;
+        }
+        entry.game.computerProcessTurn();
+        turnsPlayed++;
+        if (entry.game.isComputerTurn()) {
+            enqueue(entry);
+        } else {
+            setAside(entry);
+        }
+        checkRep();
+        return true;
+    }
+
+    /**
+     * Plays computer turns until no game has one
+     * @return the number of turns played
+     */
+    public long run() {
+        long played = 0;
+        while (runOnce()) {
+            played++;
+        }
+        return played;
+    }
+
+    private void enqueue(Entry entry) {
+        if (!entry.queued) {
+            entry.queued = true;
+            ready.add(entry);
+        }
+    }
+
+    // leaves a game without a computer turn to wait for a human, or finishes it if it is over
+    private void setAside(Entry entry) {
+        if (entry.game.getPhase().equals("end")) {
+            entries.remove(entry.game);
+            entry.onEnd.accept(entry.game);
+        }
+    }
+
+    /**
+     * @return the number of submitted games that are not over
+     */
+    public int getActiveGames() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of computer turns played so far
+     */
+    public long getTurnsPlayed() {
+        return turnsPlayed;
+    }
+
+    private void checkRep() {
+        if (InvariantChecks.ENABLED) {
+            assert ready.size() <= entries.size() : "Only games that have not ended can be ready";
+            if (InvariantChecks.fullScanDue(++operationCount)) {
+                for (Entry entry : ready) {
+                    assert entry.queued && entries.get(entry.game) == entry : "Ready games must not have ended";
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package battleship;
 
+import metrics.Metrics;
+
 public class TwoPlayerGame extends Game {
     public TwoPlayerGame(int boardSize, int[] shipsInfo) {
         super(2, 0, 0, boardSize, shipsInfo);
@@ -34,29 +36,39 @@ public class TwoPlayerGame extends Game {
 
     @Override
     public boolean processTurn(Point p) {
-        boolean result = false;
-        if (getPhase().equals("setup")) {
-            int bufSize = super.pointBuffer.size();
-            if (bufSize % 2 == 1) {
-                result = super.addShip(this.getLastPoint(), p);
-                if (isPlayerDoneWithSetup(getCurrentPlayer())) {
-                    if (isSetupPhaseDone()) {
-                        endPhase();
+        beginStep();
+        try {
+            long start = Metrics.start();
+            TurnProcessedEvent event = TurnProcessedEvent.beginIfEnabled();
+            String phase = getPhase();
+            int pid = getCurrentPlayer();
+            int targetPid = getNextPlayer();
+            boolean result = false;
+            if (getPhase().equals("setup")) {
+                int bufSize = super.pointBuffer.size();
+                if (bufSize % 2 == 1) {
+                    result = super.addShip(this.getLastPoint(), p);
+                    if (isPlayerDoneWithSetup(getCurrentPlayer())) {
+                        if (isSetupPhaseDone()) {
+                            endPhase();
+                        }
+                        endTurn();
                     }
-                    endTurn();
+                }
+                bufferPoint(p);
+            } else if (getPhase().equals("playing")) {
+                result = this.attack(p);
+                bufferPoint(p);
+                if (result) {
+                    finishAttack(targetPid);
                 }
             }
-            super.pointBuffer.add(p);
-        } else if (getPhase().equals("playing")) {
-            result = this.attack(p);
-            super.pointBuffer.add(p);
-            if (super.playerLost(getNextPlayer())){
-                super.endPhase(); // don't end the turn if the player has won - keep cur player as winner
-            } else if (result) {
-                endTurn();
-            }
+            Metrics.record(Metrics.Op.PROCESS_TURN, start);
+            commitTurnEvent(event, phase, pid, targetPid, p, result);
+            return result;
+            // and do nothing if game phase is something else
+        } finally {
+            endStep();
         }
-        return result;
-        // and do nothing if game phase is something else
     }
 }
@@ -0,0 +1,45 @@
+package battleship;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Counts placements a vector of cells at a time: each lane picks its own bit out of the mask and
+ * adds the weight if it is set. Only loaded by PlacementCounter.best() when the Vector API is available
+ */
+final class VectorPlacementCounter extends PlacementCounter {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final IntVector LANE = IntVector.zero(SPECIES).addIndex(1); // 0, 1, 2, ...
+
+    VectorPlacementCounter() {
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.length();
+    }
+
+    @Override
+    void addRow(int[] counts, int offset, int size, long[] masks, int[] weights, int n) {
+        int lanes = SPECIES.length();
+        for (int x = 0; x < size; x += lanes) {
+            // the row's counts stay in a register while every mask is applied
+            IntVector sum = IntVector.zero(SPECIES);
+            for (int i = 0; i < n; i++) {
+                int bits = (int) (masks[i] >>> x);
+                if (bits != 0) {
+                    // lane j gets bit j of the mask, times the weight
+                    sum = sum.add(IntVector.broadcast(SPECIES, bits).lanewise(VectorOperators.LSHR, LANE)
+                                          .and(1).mul(weights[i]));
+                }
+            }
+            if (x + lanes <= size) {
+                sum.intoArray(counts, offset + x);
+            } else {
+                sum.intoArray(counts, offset + x, SPECIES.indexInRange(x, size));
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package evaluation;
+
+import battleship.Game;
+import battleship.PlacementCounter;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Times the scalar placement counter against the best one this JVM has, on boards of several sizes
+ * with a share of their cells blocked, as they would be part way through a game. The vectorized
+ * counter is only available with --add-modules jdk.incubator.vector, otherwise both rows are scalar.
+ * <p>
+ * Usage: {@code PlacementCounterBenchmark [--sizes 10,15,32,64] [--blocked F] [--millis N] [--seed N]}
+ */
+public class PlacementCounterBenchmark {
+
+    private static final int BOARDS = 64; // distinct boards cycled through, so no one board stays in cache
+
+    public static void main(String[] args) {
+        int[] sizes = {10, 15, 32, 64};
+        double blockedShare = 0.3;
+        long millis = 500;
+        long seed = 1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes":
+                    sizes = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--blocked":
+                    blockedShare = Double.parseDouble(args[++i]);
+                    break;
+                case "--millis":
+                    millis = Long.parseLong(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        PlacementCounter scalar = PlacementCounter.scalar();
+        PlacementCounter best = PlacementCounter.best();
+        System.out.printf(Locale.ROOT, "%6s %14s %14s %8s%n", "size", scalar.name() + " ns", best.name() + " ns", "speedup");
+        for (int size : sizes) {
+            long[][] boards = randomBoards(size, blockedShare, new SplittableRandom(seed));
+            int[] ships = Game.defaultShipInfo(size);
+            checkAgree(scalar, best, boards, size, ships);
+            time(scalar, boards, size, ships, millis); // warm up
+            time(best, boards, size, ships, millis);
+            double scalarNanos = time(scalar, boards, size, ships, millis);
+            double bestNanos = time(best, boards, size, ships, millis);
+            System.out.printf(Locale.ROOT, "%6d %14.0f %14.0f %7.2fx%n", size, scalarNanos, bestNanos,
+                              scalarNanos / bestNanos);
+        }
+    }
+
+    private static long[][] randomBoards(int size, double blockedShare, SplittableRandom random) {
+        long[][] boards = new long[BOARDS][size];
+        for (long[] board : boards) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    if (random.nextDouble() < blockedShare) {
+                        board[y] |= 1L << x;
+                    }
+                }
+            }
+        }
+        return boards;
+    }
+
+    private static void checkAgree(PlacementCounter a, PlacementCounter b, long[][] boards, int size, int[] ships) {
+        int[] countsA = new int[size * size];
+        int[] countsB = new int[size * size];
+        for (long[] board : boards) {
+            a.count(board, size, ships, countsA);
+            b.count(board, size, ships, countsB);
+            if (!Arrays.equals(countsA, countsB)) {
+                throw new IllegalStateException(a.name() + " and " + b.name() + " disagree on a " + size + "x" + size + " board");
+            }
+        }
+    }
+
+    // the mean time of one count, in nanoseconds
+    private static double time(PlacementCounter counter, long[][] boards, int size, int[] ships, long millis) {
+        int[] counts = new int[size * size];
+        long sink = 0;
+        long calls = 0;
+        long start = System.nanoTime();
+        long end = start + millis * 1_000_000;
+        long now;
+        do {
+            for (long[] board : boards) {
+                counter.count(board, size, ships, counts);
+                sink += counts[(int) (calls++ % counts.length)];
+            }
+            now = System.nanoTime();
+        } while (now < end);
+        if (sink == Long.MIN_VALUE) {
+            System.out.println(); // keeps the counts live
+        }
+        return (double) (now - start) / calls;
+    }
+}
@@ -0,0 +1,85 @@
+package evaluation;
+
+/**
+ * RunningStats keeps the count, mean and variance of a stream of values in constant memory, using
+ * Welford's update so the variance stays accurate however many values are added. Stats gathered
+ * separately, for example by different threads, can be merged.
+ */
+public class RunningStats {
+
+    // Abstraction Function:
+    //      the statistics of a stream of count values whose mean is mean, whose sum of squared
+    //      differences from the mean is sumSquares, and whose extremes are min and max
+
+    // Representation Invariant:
+    //      count >= 0 && sumSquares >= 0, and mean == sumSquares == 0 when count == 0
+    //      min <= mean <= max when count > 0
+
+    private long count;
+    private double mean;
+    private double sumSquares;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        double delta = value - mean;
+        mean += delta / count;
+        sumSquares += delta * (value - mean);
+    }
+
+    /**
+     * Adds every value that other has seen to this, as if they had been added one by one
+     * @param other the stats to merge in, which is not modified
+     */
+    public void merge(RunningStats other) {
+        if (other.count == 0) {
+            return;
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        sumSquares += other.sumSquares + delta * delta * count * other.count / total;
+        count = total;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double mean() {
+        return mean;
+    }
+
+    /**
+     * @return the smallest value added, or positive infinity if there were none
+     */
+    public double min() {
+        return min;
+    }
+
+    /**
+     * @return the largest value added, or negative infinity if there were none
+     */
+    public double max() {
+        return max;
+    }
+
+    /**
+     * @return the sample standard deviation, or 0 if fewer than two values were added
+     */
+    public double stddev() {
+        return count < 2 ? 0 : Math.sqrt(sumSquares / (count - 1));
+    }
+
+    /**
+     * @return half the width of the 95% confidence interval of the mean
+     */
+    public double confidence95() {
+        return count == 0 ? 0 : 1.96 * stddev() / Math.sqrt(count);
+    }
+}
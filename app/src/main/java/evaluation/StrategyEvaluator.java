@@ -0,0 +1,358 @@
+package evaluation;
+
+import battleship.AdaptiveAttackGenerator;
+import battleship.AttackGenerator;
+import battleship.Game;
+import battleship.PlacementPrior;
+import battleship.Player;
+import battleship.Point;
+import battleship.RandomAttackGenerator;
+import battleship.SearchAttackGenerator;
+import battleship.Ship;
+import battleship.SmartAttackGenerator;
+import metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures how many shots attack strategies need to sink a fleet. Every strategy plays the same
+ * seeded fleet layouts, with the same seeds for its own random choices, spread across a pool of threads, and each thread streams its shot counts
+ * into constant-memory stats and quantile histograms that are merged at the end. The results can be
+ * saved as a baseline, and later runs fail if a strategy has regressed against it.
+ * <p>
+ * A strategy regresses when its mean shots-to-win is worse than the baseline's by more than the
+ * threshold, as a fraction of the baseline mean, and the difference is also significant at 95%
+ * confidence, so noise alone does not fail the gate.
+ * <p>
+ * Usage: {@code StrategyEvaluator [--games N] [--size N] [--seed N] [--threads N]
+ * [--strategies random,smart,search,adaptive] [--baseline file] [--write-baseline] [--threshold F] [--report file]}
+ */
+public class StrategyEvaluator {
+
+    /**
+     * Makes a fresh generator for one game, drawing anything random from the game's own generator
+     */
+    public interface Strategy {
+        AttackGenerator create(int boardSize, int[] shipsInfo, SplittableRandom random);
+    }
+
+    // the adaptive strategy's prior, which never learns anything, so that its results do not depend
+    // on which human fleets this JVM or the shared prior's file happen to have seen
+    private static final PlacementPrior EMPTY_PRIOR = new PlacementPrior(null);
+
+    /**
+     * The strategies that can be named on the command line
+     */
+    public static final Map<String, Strategy> STRATEGIES = Map.of(
+            "random", (size, ships, random) -> new RandomAttackGenerator(size, random),
+            "smart", (size, ships, random) -> new SmartAttackGenerator(size),
+            "search", SearchAttackGenerator::new,
+            "adaptive", (size, ships, random) -> new AdaptiveAttackGenerator(size, ships, EMPTY_PRIOR, random)
+    );
+
+    private static final int PLACEMENT_ATTEMPTS = 10_000;
+
+    private final int games;
+    private final int boardSize;
+    private final int[] shipsInfo;
+    private final long seed;
+    private final int threads;
+
+    /**
+     * @param games the number of games each strategy plays
+     * @param boardSize the size of the boards
+     * @param shipsInfo the fleet, as an array of ship length (index) to number (value)
+     * @param seed the seed the fleet layouts are generated from
+     * @param threads the number of threads to play on
+     * @throws IllegalArgumentException if games or threads is not positive
+     */
+    public StrategyEvaluator(int games, int boardSize, int[] shipsInfo, long seed, int threads) {
+        if (games <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Need at least one game and one thread");
+        }
+        this.games = games;
+        this.boardSize = boardSize;
+        this.shipsInfo = shipsInfo.clone();
+        this.seed = seed;
+        this.threads = threads;
+    }
+
+    /**
+     * The shots-to-win of one strategy
+     */
+    public static class Result {
+        private final String strategy;
+        private final RunningStats stats;
+        private final LatencyHistogram.Snapshot quantiles;
+
+        Result(String strategy, RunningStats stats, LatencyHistogram.Snapshot quantiles) {
+            this.strategy = strategy;
+            this.stats = stats;
+            this.quantiles = quantiles;
+        }
+
+        public String getStrategy() {
+            return strategy;
+        }
+
+        public RunningStats getStats() {
+            return stats;
+        }
+
+        /**
+         * @param quantile a fraction between 0 and 1
+         * @return the shots-to-win that the given fraction of games were at or below, to within a few percent
+         */
+        public long shotsAt(double quantile) {
+            // histogram buckets report their upper bound, which can be above anything actually seen
+            return Math.min(quantiles.valueAt(quantile), (long) stats.max());
+        }
+    }
+
+    /**
+     * Plays every strategy through the same games
+     * @param strategies the strategies to evaluate by name, in the order to report them
+     * @return the results, in the same order
+     */
+    public List<Result> evaluate(Map<String, Strategy> strategies) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Result> results = new ArrayList<>();
+            for (Map.Entry<String, Strategy> entry : strategies.entrySet()) {
+                results.add(evaluate(entry.getKey(), entry.getValue(), pool));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Result evaluate(String name, Strategy strategy, ExecutorService pool) {
+        List<Future<Worker>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Worker worker = new Worker(strategy, t);
+            futures.add(pool.submit(() -> {
+                worker.run();
+                return worker;
+            }));
+        }
+        RunningStats stats = new RunningStats();
+        LatencyHistogram.Snapshot quantiles = new LatencyHistogram.Snapshot();
+        for (Future<Worker> future : futures) {
+            Worker worker;
+            try {
+                worker = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while evaluating " + name, e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Evaluating " + name + " failed", e.getCause());
+            }
+            stats.merge(worker.stats);
+            worker.shots.addTo(quantiles);
+        }
+        return new Result(name, stats, quantiles);
+    }
+
+    // plays every threads-th game, starting from its own index, and keeps its own stats
+    private class Worker {
+        private final Strategy strategy;
+        private final int first;
+        private final RunningStats stats = new RunningStats();
+        private final LatencyHistogram shots = new LatencyHistogram();
+
+        Worker(Strategy strategy, int first) {
+            this.strategy = strategy;
+            this.first = first;
+        }
+
+        void run() {
+            for (int game = first; game < games; game += threads) {
+                SplittableRandom random = new SplittableRandom(seed + 0x9E3779B97F4A7C15L * (game + 1));
+                Player target = layout(random);
+                int count = play(strategy.create(boardSize, shipsInfo, random.split()), target);
+                stats.add(count);
+                shots.record(count);
+            }
+        }
+    }
+
+    // game i always gets the same layout and generator seed for a given seed, whichever thread plays it
+    private Player layout(SplittableRandom random) {
+        Player target = new Player(0, new Ship[0], boardSize);
+        boolean[] taken = new boolean[boardSize * boardSize];
+        for (int length = shipsInfo.length - 1; length > 0; length--) {
+            for (int n = 0; n < shipsInfo[length]; n++) {
+                target.addShip(placeShip(random, length, taken));
+            }
+        }
+        return target;
+    }
+
+    private Ship placeShip(SplittableRandom random, int length, boolean[] taken) {
+        for (int attempt = 0; attempt < PLACEMENT_ATTEMPTS; attempt++) {
+            boolean horizontal = random.nextBoolean();
+            int x = random.nextInt(horizontal ? boardSize - length + 1 : boardSize);
+            int y = random.nextInt(horizontal ? boardSize : boardSize - length + 1);
+            boolean free = true;
+            for (int i = 0; i < length && free; i++) {
+                free = !taken[(horizontal ? y : y + i) * boardSize + (horizontal ? x + i : x)];
+            }
+            if (free) {
+                for (int i = 0; i < length; i++) {
+                    taken[(horizontal ? y : y + i) * boardSize + (horizontal ? x + i : x)] = true;
+                }
+                return new Ship(new Point(x, y), horizontal ? new Point(x + length - 1, y) : new Point(x, y + length - 1));
+            }
+        }
+        throw new IllegalArgumentException("The fleet does not fit on a board of size " + boardSize);
+    }
+
+    private int play(AttackGenerator generator, Player target) {
+        int shots = 0;
+        while (!target.hasLost()) {
+            shots++;
+            Point p = generator.getAttackPoint();
+            if (target.receive(p)) {
+                generator.notifyHit();
+                Ship sunk = sunkAt(target, p);
+                if (sunk != null) {
+                    generator.notifySunk(sunk.startPoint(), sunk.endPoint());
+                }
+            }
+        }
+        return shots;
+    }
+
+    // the ship of target that was sunk by a hit at p, or null if the ship hit there is still afloat
+    private static Ship sunkAt(Player target, Point p) {
+        for (Ship s : target.getShipsView()) {
+            if (s.isSunk() && s.startPoint().getX() <= p.getX() && p.getX() <= s.endPoint().getX()
+                    && s.startPoint().getY() <= p.getY() && p.getY() <= s.endPoint().getY()) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes one line per strategy, with its regression status if a baseline is given
+     * @param results the results to report
+     * @param baseline the baseline to compare with, or null
+     * @param threshold the allowed regression, as a fraction of the baseline mean
+     * @param out where to write the report
+     * @return true if any strategy regressed
+     */
+    public static boolean report(List<Result> results, Properties baseline, double threshold, PrintStream out) {
+        boolean regressed = false;
+        out.println("strategy        n     mean  +/-95%   p50   p90   p99   max  baseline  change  status");
+        for (Result r : results) {
+            RunningStats s = r.getStats();
+            out.printf(Locale.ROOT, "%-10s %6d %8.2f %7.2f %5d %5d %5d %5d", r.getStrategy(), s.count(), s.mean(),
+                       s.confidence95(), r.shotsAt(0.5), r.shotsAt(0.9), r.shotsAt(0.99), r.shotsAt(1.0));
+            String base = baseline == null ? null : baseline.getProperty(r.getStrategy() + ".mean");
+            if (base == null) {
+                out.println("         -       -  no baseline");
+                continue;
+            }
+            double baseMean = Double.parseDouble(base);
+            double baseStddev = Double.parseDouble(baseline.getProperty(r.getStrategy() + ".stddev", "0"));
+            long baseCount = Long.parseLong(baseline.getProperty(r.getStrategy() + ".count", "1"));
+            double diff = s.mean() - baseMean;
+            double standardError = Math.sqrt(s.stddev() * s.stddev() / s.count() + baseStddev * baseStddev / baseCount);
+            boolean worse = diff > threshold * baseMean && diff > 1.96 * standardError;
+            regressed |= worse;
+            out.printf(Locale.ROOT, " %9.2f %+6.1f%%  %s%n", baseMean, 100 * diff / baseMean, worse ? "REGRESSED" : "ok");
+        }
+        return regressed;
+    }
+
+    /**
+     * Stores results as a baseline for later runs
+     */
+    public static Properties toBaseline(List<Result> results) {
+        Properties baseline = new Properties();
+        for (Result r : results) {
+            baseline.setProperty(r.getStrategy() + ".count", Long.toString(r.getStats().count()));
+            baseline.setProperty(r.getStrategy() + ".mean", String.format(Locale.ROOT, "%.4f", r.getStats().mean()));
+            baseline.setProperty(r.getStrategy() + ".stddev", String.format(Locale.ROOT, "%.4f", r.getStats().stddev()));
+        }
+        return baseline;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int games = 1000;
+        int size = 10;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String strategyNames = "random,smart";
+        Path baselinePath = null;
+        boolean writeBaseline = false;
+        double threshold = 0.02;
+        Path reportPath = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games": games = Integer.parseInt(args[++i]); break;
+                case "--size": size = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--strategies": strategyNames = args[++i]; break;
+                case "--baseline": baselinePath = Path.of(args[++i]); break;
+                case "--write-baseline": writeBaseline = true; break;
+                case "--threshold": threshold = Double.parseDouble(args[++i]); break;
+                case "--report": reportPath = Path.of(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        Map<String, Strategy> strategies = new LinkedHashMap<>();
+        for (String name : strategyNames.split(",")) {
+            Strategy strategy = STRATEGIES.get(name);
+            if (strategy == null) {
+                throw new IllegalArgumentException("Unknown strategy " + name + ", expected one of " + STRATEGIES.keySet());
+            }
+            strategies.put(name, strategy);
+        }
+
+        List<Result> results = new StrategyEvaluator(games, size, Game.defaultShipInfo(size), seed, threads).evaluate(strategies);
+
+        Properties baseline = null;
+        if (baselinePath != null && writeBaseline) {
+            try (Writer w = Files.newBufferedWriter(baselinePath)) {
+                toBaseline(results).store(w, "shots-to-win baseline: " + games + " games, size " + size + ", seed " + seed);
+            }
+        } else if (baselinePath != null && Files.exists(baselinePath)) {
+            baseline = new Properties();
+            try (Reader r = Files.newBufferedReader(baselinePath)) {
+                baseline.load(r);
+            }
+        }
+        boolean regressed = report(results, baseline, threshold, System.out);
+        if (reportPath != null) {
+            if (reportPath.getParent() != null) {
+                Files.createDirectories(reportPath.getParent());
+            }
+            try (PrintStream file = new PrintStream(Files.newOutputStream(reportPath))) {
+                report(results, baseline, threshold, file);
+            }
+        }
+        if (regressed) {
+            System.exit(1);
+        }
+    }
+}
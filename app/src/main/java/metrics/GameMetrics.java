@@ -0,0 +1,56 @@
+package metrics;
+
+/**
+ * The MBean registered by {@link Metrics} when metrics are enabled.
+ */
+public class GameMetrics implements GameMetricsMBean {
+
+    @Override
+    public String[] getOperations() {
+        Metrics.Op[] ops = Metrics.Op.values();
+        String[] out = new String[ops.length];
+        for (int i = 0; i < ops.length; i++) {
+            out[i] = ops[i].name();
+        }
+        return out;
+    }
+
+    @Override
+    public String getDump() {
+        return Metrics.dump();
+    }
+
+    @Override
+    public long getCount(String op) {
+        return snapshot(op).count();
+    }
+
+    @Override
+    public long getP50Nanos(String op) {
+        return snapshot(op).valueAt(0.5);
+    }
+
+    @Override
+    public long getP99Nanos(String op) {
+        return snapshot(op).valueAt(0.99);
+    }
+
+    @Override
+    public long getP999Nanos(String op) {
+        return snapshot(op).valueAt(0.999);
+    }
+
+    @Override
+    public long getMaxNanos(String op) {
+        return snapshot(op).max();
+    }
+
+    @Override
+    public void reset() {
+        Metrics.reset();
+    }
+
+    private static LatencyHistogram.Snapshot snapshot(String op) {
+        return Metrics.snapshot().get(Metrics.Op.valueOf(op));
+    }
+}
@@ -0,0 +1,24 @@
+package metrics;
+
+/**
+ * JMX view of the game's latency histograms. Durations are in nanoseconds, and op is the name of a
+ * {@link Metrics.Op}.
+ */
+public interface GameMetricsMBean {
+
+    String[] getOperations();
+
+    String getDump();
+
+    long getCount(String op);
+
+    long getP50Nanos(String op);
+
+    long getP99Nanos(String op);
+
+    long getP999Nanos(String op);
+
+    long getMaxNanos(String op);
+
+    void reset();
+}
@@ -0,0 +1,223 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts, for every cell of one board size, how often a ship was placed over it, how often it was
+ * shot at and how late in their games those shots came, and how often it was never shot at in a game
+ * that finished. Writers never lock: each thread adds to one of several stripes of atomic counters, picked
+ * by its thread id, so threads playing different games rarely touch the same cache lines. Readers sum
+ * the stripes into a Snapshot, which is cheap enough to take periodically while games are played.
+ */
+public final class Heatmap {
+
+    // Abstraction Function:
+    //      the number of placements over cell c (numbered y * size + x) is the sum over stripes s of
+    //      counts[(s * KINDS + PLACEMENT) * cells + c], and likewise the number of shots with SHOT, the
+    //      sum of those shots' orders in thousandths with ORDER, and the number of finished games in
+    //      which c was never shot at with SURVIVED
+
+    // Representation Invariant:
+    //      stripes is a power of two, counts.length == stripes * KINDS * cells, every count >= 0
+
+    static final int PLACEMENT = 0;
+    static final int SHOT = 1;
+    static final int ORDER = 2;
+    static final int SURVIVED = 3;
+    private static final int KINDS = 4;
+    private static final int ORDER_SCALE = 1000;
+
+    private final int size;
+    private final int cells;
+    private final int stripeMask;
+    private final AtomicLongArray counts;
+
+    /**
+     * @param size the size of the boards counted
+     * @param stripes the number of stripes to spread writers over, rounded up to a power of two
+     * @throws IllegalArgumentException if size or stripes is not positive
+     */
+    public Heatmap(int size, int stripes) {
+        if (size <= 0 || stripes <= 0) {
+            throw new IllegalArgumentException("A heatmap needs a board and at least one stripe");
+        }
+        int rounded = Integer.highestOneBit(stripes) == stripes ? stripes : Integer.highestOneBit(stripes) << 1;
+        this.size = size;
+        this.cells = size * size;
+        this.stripeMask = rounded - 1;
+        this.counts = new AtomicLongArray(rounded * KINDS * cells);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Counts a ship placed over (x, y)
+     */
+    public void addPlacement(int x, int y) {
+        add(PLACEMENT, x, y);
+    }
+
+    /**
+     * Counts a shot at (x, y)
+     * @param order how far into its game the shot came, from 0 for the first shot at a board to
+     *              nearly 1 for the last of its cells
+     */
+    public void addShot(int x, int y, double order) {
+        if (!(order >= 0 && order <= 1)) {
+            throw new IllegalArgumentException("A shot's order must be in [0, 1]");
+        }
+        int base = stripeBase(x, y);
+        counts.getAndIncrement(base + SHOT * cells);
+        counts.getAndAdd(base + ORDER * cells, Math.round(order * ORDER_SCALE));
+    }
+
+    /**
+     * Counts a finished game in which (x, y) was never shot at
+     */
+    public void addSurvivor(int x, int y) {
+        counts.getAndIncrement(stripeBase(x, y) + SURVIVED * cells);
+    }
+
+    private void add(int kind, int x, int y) {
+        counts.getAndIncrement(stripeBase(x, y) + kind * cells);
+    }
+
+    // the index of (x, y)'s first kind of count in the calling thread's stripe
+    private int stripeBase(int x, int y) {
+        if (x < 0 || x >= size || y < 0 || y >= size) {
+            throw new IllegalArgumentException("(" + x + ", " + y + ") is off a " + size + "x" + size + " board");
+        }
+        // mixes the thread id so threads with neighbouring ids land on different stripes
+        long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        int stripe = (int) (id >>> 32) & stripeMask;
+        return stripe * KINDS * cells + y * size + x;
+    }
+
+    /**
+     * Sums the stripes. Counts made while the snapshot is taken may or may not be included, but every
+     * count finished before it started is
+     */
+    public Snapshot snapshot() {
+        long[] placements = new long[cells];
+        long[] shots = new long[cells];
+        long[] orders = new long[cells];
+        long[] survivors = new long[cells];
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            int base = stripe * KINDS * cells;
+            for (int c = 0; c < cells; c++) {
+                placements[c] += counts.get(base + PLACEMENT * cells + c);
+                shots[c] += counts.get(base + SHOT * cells + c);
+                orders[c] += counts.get(base + ORDER * cells + c);
+                survivors[c] += counts.get(base + SURVIVED * cells + c);
+            }
+        }
+        return new Snapshot(size, placements, shots, orders, survivors, System.currentTimeMillis());
+    }
+
+    /**
+     * An immutable copy of a Heatmap's counts at one moment
+     */
+    public static final class Snapshot {
+        private final int size;
+        private final long[] placements;
+        private final long[] shots;
+        private final long[] orders; // thousandths
+        private final long[] survivors;
+        private final long placementTotal;
+        private final long shotTotal;
+        private final long takenAtMillis;
+
+        Snapshot(int size, long[] placements, long[] shots, long[] orders, long[] survivors, long takenAtMillis) {
+            this.size = size;
+            this.placements = placements;
+            this.shots = shots;
+            this.orders = orders;
+            this.survivors = survivors;
+            long placementSum = 0;
+            long shotSum = 0;
+            for (int c = 0; c < placements.length; c++) {
+                placementSum += placements[c];
+                shotSum += shots[c];
+            }
+            this.placementTotal = placementSum;
+            this.shotTotal = shotSum;
+            this.takenAtMillis = takenAtMillis;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return how many times a ship was placed over (x, y)
+         */
+        public long placements(int x, int y) {
+            return placements[index(x, y)];
+        }
+
+        /**
+         * @return how many times (x, y) was shot at
+         */
+        public long shots(int x, int y) {
+            return shots[index(x, y)];
+        }
+
+        /**
+         * @return how many finished games (x, y) was never shot at in
+         */
+        public long survivors(int x, int y) {
+            return survivors[index(x, y)];
+        }
+
+        /**
+         * @return how late (x, y) is shot at on average, from 0 if it is always shot first to 1 if it
+         *         is never shot at before the game ends, or 0.5 if nothing has been seen of it
+         */
+        public double lateness(int x, int y) {
+            int c = index(x, y);
+            long seen = shots[c] + survivors[c];
+            if (seen == 0) {
+                return 0.5;
+            }
+            return ((double) orders[c] / ORDER_SCALE + survivors[c]) / seen;
+        }
+
+        /**
+         * @return the number of shots at and survivals of (x, y) that its lateness is averaged over
+         */
+        public long latenessSamples(int x, int y) {
+            int c = index(x, y);
+            return shots[c] + survivors[c];
+        }
+
+        /**
+         * @return the number of ship cells placed, over all cells
+         */
+        public long placementTotal() {
+            return placementTotal;
+        }
+
+        /**
+         * @return the number of shots, over all cells
+         */
+        public long shotTotal() {
+            return shotTotal;
+        }
+
+        /**
+         * @return when the snapshot was taken, in milliseconds since the epoch
+         */
+        public long takenAtMillis() {
+            return takenAtMillis;
+        }
+
+        private int index(int x, int y) {
+            if (x < 0 || x >= size || y < 0 || y >= size) {
+                throw new IllegalArgumentException("(" + x + ", " + y + ") is off a " + size + "x" + size + " board");
+            }
+            return y * size + x;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package metrics;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Heatmaps of where human players place their ships, where they shoot and how late, kept per board size and
+ * aggregated over every game played in this JVM. Game feeds them as ships are placed and attacks are
+ * made, or when the game ends for games recording undo history, and they are on unless the system
+ * property {@code -Dbattleship.heatmaps=false} is set.
+ * <p>
+ * Reading a fresh {@link #snapshot} sums every stripe of the board size's counters. Dashboards and
+ * AIs that poll often should call {@link #startPeriodicSnapshots} once and read {@link #latest},
+ * which just returns the last snapshot taken, so readers never slow down play.
+ */
+public class Heatmaps {
+
+    public static final boolean ENABLED = !"false".equals(System.getProperty("battleship.heatmaps"));
+    public static final int MAX_SIZE = 64; // larger boards are not counted, their heatmaps would be too big
+
+    private static final int STRIPES = Runtime.getRuntime().availableProcessors();
+    private static final AtomicReferenceArray<Heatmap> HEATMAPS = new AtomicReferenceArray<>(MAX_SIZE + 1);
+    private static final AtomicReferenceArray<Heatmap.Snapshot> LATEST = new AtomicReferenceArray<>(MAX_SIZE + 1);
+    private static ScheduledExecutorService snapshotter;
+
+    private Heatmaps() {
+    }
+
+    /**
+     * Counts a ship placed over (x, y) by a human on a size x size board
+     */
+    public static void recordPlacement(int size, int x, int y) {
+        if (ENABLED && size <= MAX_SIZE) {
+            heatmap(size).addPlacement(x, y);
+        }
+    }
+
+    /**
+     * Counts a human's shot at (x, y) on a size x size board
+     * @param order the fraction of the board's cells already shot at before this shot
+     */
+    public static void recordShot(int size, int x, int y, double order) {
+        if (ENABLED && size <= MAX_SIZE) {
+            heatmap(size).addShot(x, y, order);
+        }
+    }
+
+    /**
+     * Counts a finished game in which a human never shot at (x, y) of a size x size board
+     */
+    public static void recordSurvivor(int size, int x, int y) {
+        if (ENABLED && size <= MAX_SIZE) {
+            heatmap(size).addSurvivor(x, y);
+        }
+    }
+
+    // the heatmap for a size, made the first time anything is counted on it
+    private static Heatmap heatmap(int size) {
+        Heatmap heatmap = HEATMAPS.get(size);
+        if (heatmap == null) {
+            HEATMAPS.compareAndSet(size, null, new Heatmap(size, STRIPES));
+            heatmap = HEATMAPS.get(size);
+        }
+        return heatmap;
+    }
+
+    /**
+     * Takes a snapshot of the current counts
+     * @return the counts for the board size, all zero if nothing has been counted on it
+     * @throws IllegalArgumentException if size is not in (0, MAX_SIZE]
+     */
+    public static Heatmap.Snapshot snapshot(int size) {
+        if (size <= 0 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Heatmaps are only kept for boards up to " + MAX_SIZE);
+        }
+        Heatmap heatmap = HEATMAPS.get(size);
+        if (heatmap == null) {
+            int cells = size * size;
+            return new Heatmap.Snapshot(size, new long[cells], new long[cells], new long[cells], new long[cells],
+                                        System.currentTimeMillis());
+        }
+        Heatmap.Snapshot snapshot = heatmap.snapshot();
+        LATEST.set(size, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * @return the most recent snapshot for the board size, taking one if there has not been one yet
+     * @throws IllegalArgumentException if size is not in (0, MAX_SIZE]
+     */
+    public static Heatmap.Snapshot latest(int size) {
+        if (size <= 0 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Heatmaps are only kept for boards up to " + MAX_SIZE);
+        }
+        Heatmap.Snapshot snapshot = LATEST.get(size);
+        return snapshot != null ? snapshot : snapshot(size);
+    }
+
+    /**
+     * Snapshots every board size that has counts every periodMillis on a daemon thread, so latest
+     * stays at most that old. Later calls do nothing
+     */
+    public static synchronized void startPeriodicSnapshots(long periodMillis) {
+        if (snapshotter != null) {
+            return;
+        }
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "battleship-heatmap-snapshots");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotter.scheduleAtFixedRate(() -> {
+            for (int size = 1; size <= MAX_SIZE; size++) {
+                if (HEATMAPS.get(size) != null) {
+                    snapshot(size);
+                }
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+}
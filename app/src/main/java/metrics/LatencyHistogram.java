@@ -0,0 +1,127 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A LatencyHistogram counts nanosecond durations in log-linear buckets, in the style of
+ * HdrHistogram: values below 32 get their own bucket, and above that every power of two is split
+ * into 16 buckets, so any reported value is within about 6% of the true one.
+ * <p>
+ * A histogram has exactly one writer, the thread that owns it, so recording is a plain increment
+ * published with lazySet and never contends. Any thread may read it; readers merge histograms into
+ * a {@link Snapshot}.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF_SUB_COUNT = SUB_COUNT / 2;
+    // enough buckets for any non-negative long
+    static final int BUCKET_COUNT = (64 - SUB_BITS + 1) * HALF_SUB_COUNT;
+
+    private final AtomicLongArray counts;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+    }
+
+    /**
+     * Records one duration. Must only be called by the thread that owns this histogram.
+     * @param nanos the duration to record, negative values are counted as 0
+     */
+    public void record(long nanos) {
+        int index = bucketIndex(Math.max(nanos, 0));
+        counts.lazySet(index, counts.get(index) + 1);
+    }
+
+    /**
+     * Adds the counts of this histogram into the snapshot
+     * @param snapshot the snapshot to merge into
+     */
+    public void addTo(Snapshot snapshot) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long c = counts.get(i);
+            if (c != 0) {
+                snapshot.counts[i] += c;
+                snapshot.total += c;
+            }
+        }
+    }
+
+    /**
+     * Sets every count to zero. Counts recorded concurrently with a reset may be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.lazySet(i, 0);
+        }
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return exp * HALF_SUB_COUNT + (int) (value >>> exp);
+    }
+
+    // the largest value that falls into the bucket
+    static long bucketUpperBound(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exp = index / HALF_SUB_COUNT - 1;
+        long sub = index - (long) exp * HALF_SUB_COUNT;
+        return ((sub + 1) << exp) - 1;
+    }
+
+    /**
+     * A merged, point-in-time view of one or more histograms.
+     */
+    public static class Snapshot {
+        private final long[] counts = new long[BUCKET_COUNT];
+        private long total;
+
+        /**
+         * @return the number of durations recorded
+         */
+        public long count() {
+            return total;
+        }
+
+        /**
+         * Returns the duration that the given fraction of recorded durations are at or below
+         * @param quantile a fraction between 0 and 1, such as 0.99 for p99
+         * @return the duration in nanoseconds, or 0 if nothing has been recorded
+         */
+        public long valueAt(double quantile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return bucketUpperBound(i);
+                }
+            }
+            return bucketUpperBound(BUCKET_COUNT - 1);
+        }
+
+        /**
+         * @return the largest duration recorded, to bucket precision
+         */
+        public long max() {
+            return valueAt(1.0);
+        }
+
+        // adds the counts of this snapshot into another
+        void addTo(Snapshot other) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                other.counts[i] += counts[i];
+            }
+            other.total += total;
+        }
+    }
+}
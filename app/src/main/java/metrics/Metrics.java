@@ -0,0 +1,224 @@
+package metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Latency instrumentation for the game's hot paths. Timing is switched on with the system property
+ * {@code -Dbattleship.metrics=true}. {@link #ENABLED} is a static final field, so once the class is
+ * initialised the JIT treats it as a constant and folds the timing calls away when it is off.
+ * <p>
+ * Usage around an operation:
+ * <pre>
+ *     long start = Metrics.start();
+ *     ...
+ *     Metrics.record(Metrics.Op.PROCESS_TURN, start);
+ * </pre>
+ * Each thread records into its own {@link LatencyHistogram}s, which are merged when read. The
+ * histograms of threads that have died are folded into one retired set and dropped, so the
+ * registry only holds live threads however many come and go. When
+ * enabled, the metrics are published as the MBean {@value #OBJECT_NAME}, and if
+ * {@code -Dbattleship.metrics.dumpSeconds=N} is set they are also printed to stderr every N seconds.
+ */
+public class Metrics {
+
+    /**
+     * The operations that are timed
+     */
+    public enum Op {
+        PROCESS_TURN,
+        COMPUTER_PROCESS_TURN,
+        GET_ATTACK_POINT,
+        ADD_SHIP,
+        DRAW_BOARD
+    }
+
+    public static final boolean ENABLED = Boolean.getBoolean("battleship.metrics");
+    public static final String OBJECT_NAME = "battleship:type=GameMetrics";
+
+    private static final Op[] OPS = Op.values();
+    // the histograms of every live thread that has recorded, so readers can merge them
+    private static final ConcurrentLinkedQueue<Registration> ALL_HISTOGRAMS = new ConcurrentLinkedQueue<>();
+    // what threads that have died recorded, guarded by itself
+    private static final LatencyHistogram.Snapshot[] RETIRED = newSnapshots();
+    private static final ThreadLocal<LatencyHistogram[]> HISTOGRAMS = ThreadLocal.withInitial(() -> {
+        LatencyHistogram[] histograms = new LatencyHistogram[OPS.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        retireDeadThreads();
+        ALL_HISTOGRAMS.add(new Registration(Thread.currentThread(), histograms));
+        return histograms;
+    });
+
+    // a thread's histograms, held without keeping the thread alive
+    private static final class Registration {
+        final WeakReference<Thread> owner;
+        final LatencyHistogram[] histograms;
+
+        Registration(Thread owner, LatencyHistogram[] histograms) {
+            this.owner = new WeakReference<>(owner);
+            this.histograms = histograms;
+        }
+
+        boolean isOwnerAlive() {
+            Thread t = owner.get();
+            return t != null && t.isAlive();
+        }
+    }
+
+    static {
+        if (ENABLED) {
+            register();
+            long dumpSeconds = Long.getLong("battleship.metrics.dumpSeconds", 0);
+            if (dumpSeconds > 0) {
+                startPeriodicDump(System.err, dumpSeconds);
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * @return a start time to pass to {@link #record}, or 0 if metrics are disabled
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since start against op, if metrics are enabled
+     * @param op the operation that was timed
+     * @param start the value returned by {@link #start} before the operation
+     */
+    public static void record(Op op, long start) {
+        if (ENABLED) {
+            histograms()[op.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    // the current thread's histograms, registering them the first time
+    static LatencyHistogram[] histograms() {
+        return HISTOGRAMS.get();
+    }
+
+    /**
+     * @return the number of threads whose histograms are registered
+     */
+    static int registeredThreadCount() {
+        retireDeadThreads();
+        return ALL_HISTOGRAMS.size();
+    }
+
+    private static LatencyHistogram.Snapshot[] newSnapshots() {
+        LatencyHistogram.Snapshot[] snapshots = new LatencyHistogram.Snapshot[OPS.length];
+        for (int i = 0; i < snapshots.length; i++) {
+            snapshots[i] = new LatencyHistogram.Snapshot();
+        }
+        return snapshots;
+    }
+
+    // folds the histograms of threads that have died into RETIRED and drops them
+    private static void retireDeadThreads() {
+        for (Registration registration : ALL_HISTOGRAMS) {
+            // a dead thread records nothing more, and only the thread that removes it folds it in
+            if (!registration.isOwnerAlive() && ALL_HISTOGRAMS.remove(registration)) {
+                synchronized (RETIRED) {
+                    for (Op op : OPS) {
+                        registration.histograms[op.ordinal()].addTo(RETIRED[op.ordinal()]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges every thread's histograms
+     * @return a map of each operation to its merged snapshot
+     */
+    public static Map<Op, LatencyHistogram.Snapshot> snapshot() {
+        Map<Op, LatencyHistogram.Snapshot> out = new EnumMap<>(Op.class);
+        retireDeadThreads();
+        for (Op op : OPS) {
+            out.put(op, new LatencyHistogram.Snapshot());
+        }
+        synchronized (RETIRED) {
+            for (Op op : OPS) {
+                RETIRED[op.ordinal()].addTo(out.get(op));
+            }
+        }
+        for (Registration registration : ALL_HISTOGRAMS) {
+            for (Op op : OPS) {
+                registration.histograms[op.ordinal()].addTo(out.get(op));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Clears every thread's histograms
+     */
+    public static void reset() {
+        retireDeadThreads();
+        synchronized (RETIRED) {
+            for (int i = 0; i < RETIRED.length; i++) {
+                RETIRED[i] = new LatencyHistogram.Snapshot();
+            }
+        }
+        for (Registration registration : ALL_HISTOGRAMS) {
+            for (LatencyHistogram h : registration.histograms) {
+                h.reset();
+            }
+        }
+    }
+
+    /**
+     * Formats the current percentiles of every operation as a table, in microseconds
+     * @return a multi-line String
+     */
+    public static String dump() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-22s %10s %10s %10s %10s %10s%n",
+                                     "operation", "count", "p50 us", "p99 us", "p999 us", "max us"));
+        for (Map.Entry<Op, LatencyHistogram.Snapshot> entry : snapshot().entrySet()) {
+            LatencyHistogram.Snapshot s = entry.getValue();
+            builder.append(String.format("%-22s %10d %10.1f %10.1f %10.1f %10.1f%n",
+                                         entry.getKey(), s.count(), s.valueAt(0.5) / 1e3, s.valueAt(0.99) / 1e3,
+                                         s.valueAt(0.999) / 1e3, s.max() / 1e3));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Prints {@link #dump} to out every periodSeconds on a daemon thread
+     * @param out the stream to print to
+     * @param periodSeconds the time between dumps
+     */
+    public static void startPeriodicDump(PrintStream out, long periodSeconds) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "battleship-metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleAtFixedRate(() -> out.print(dump()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    private static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new GameMetrics(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            // metrics are best-effort, the game still runs without the MBean
+            System.err.println("Could not register " + OBJECT_NAME + ": " + e);
+        }
+    }
+}
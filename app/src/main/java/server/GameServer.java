@@ -0,0 +1,715 @@
+package server;
+
+import battleship.BoardView;
+import battleship.GameSettings;
+import battleship.GameView;
+import battleship.Point;
+import battleship.Ship;
+import battleship.TwoPlayerGame;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import utils.PointUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A GameServer plays games over HTTP, with JSON responses. Games are TwoPlayerGames made from
+ * GameSettings, and moves go through processTurn exactly as they do from the text interface, so a
+ * computer opponent replies within the request that made the human's move.
+ * <pre>
+ *   POST   /games?mode=cpu&amp;size=10&amp;difficulty=normal&amp;names=Ann+Bob&amp;seed=1   make a game
+ *   GET    /games/{id}?player=1&amp;key=...                                          the game as player 1 sees it
+ *   POST   /games/{id}/ships?player=1&amp;key=...&amp;x1=0&amp;y1=0&amp;x2=0&amp;y2=2                place a ship
+ *   POST   /games/{id}/attack?player=1&amp;key=...&amp;x=4&amp;y=5                           attack
+ *   DELETE /games/{id}                                                           end a game
+ *   GET    /games/{id}/watch                                                     watch a game
+ *   POST   /match?mode=2player&amp;size=10&amp;difficulty=normal&amp;name=Ann              find an opponent
+ *   GET    /match/{ticket}                                                       whether one was found
+ *   DELETE /match/{ticket}                                                       stop looking
+ * </pre>
+ * Every response is the game's state from the viewing player's side, or {"error": ...} with a 4xx
+ * status. A move by a player whose turn it is not, or one processTurn rejects, is answered with 409.
+ * <p>
+ * A player's moves, and their own ships, are only accepted from or shown to requests carrying their
+ * key, which POST /games hands to whoever made the game and a match hands to the player matched. A
+ * move without it is answered with 403. Other players' boards only show
+ * hits, misses and sunk ships, and the computer's side of a game cannot be viewed at all. Tickets
+ * are named by secrets too, so one player cannot read another's.
+ * <p>
+ * Requests run on a fixed pool of threads, each of which writes its responses into its own reused
+ * JsonWriter. Requests for one game are serialised on the game, and games that go unused for the
+ * idle timeout are dropped.
+ * <p>
+ * Watchers get a stream of spectator frames, one JSON object per line, each showing every board's
+ * hits and misses but no ships. A frame is encoded once per change to the game, and only while it
+ * has watchers, then shared by all of them through the game's SpectatorFeed. Streams are written by
+ * their own threads, so a slow watcher holds up neither the game nor the request threads, and one
+ * that falls far enough behind skips to the latest frame. There are at most maxWatchers of those
+ * threads, and a watcher who would need another is answered with 503.
+ * <p>
+ * Players looking for an opponent are paired by a Matchmaker, and those who wait longer than the
+ * match wait are given a game against the computer instead. Either way the match names a game made
+ * as POST /games would make it, and the player's PID in it.
+ */
+public final class GameServer {
+
+    private static final long DEFAULT_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final long DEFAULT_MATCH_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final int DEFAULT_MAX_WATCHERS = 256;
+    private static final Set<String> MODES = Set.of("2player", "cpu");
+    private static final List<String> DIFFICULTIES = List.of("easy", "normal", "difficult", "expert");
+    private static final int FEED_CAPACITY = 16; // frames a watcher may fall behind
+    private static final long HEARTBEAT_MILLIS = 15_000; // how often a watcher's stream is checked
+    private static final int STREAMING = 0; // a status meaning the response is being streamed
+    private static final SecureRandom SECRETS = new SecureRandom(); // for keys and ticket names
+
+    private final HttpServer http;
+    private final ExecutorService workers;
+    private final ExecutorService watchers;
+    private final ScheduledExecutorService sweeper;
+    private final Map<Long, Session> sessions;
+    private final AtomicLong nextId;
+    private final long idleMillis;
+    private final ThreadLocal<JsonWriter> writers;
+    private final Matchmaker matchmaker;
+    private final Map<String, Matchmaker.Ticket> tickets; // by secret name
+
+    // a game, its watchers and when it was last used, guarded by the game's lock
+    private static final class Session {
+        final long id;
+        final TwoPlayerGame game;
+        final boolean cpu;
+        final SpectatorFeed feed;
+        final JsonWriter frames; // encodes the feed's frames
+        final String[] keys; // keys[pid - 1] proves a request is made by player pid
+        volatile long lastUsed;
+
+        Session(long id, TwoPlayerGame game, boolean cpu) {
+            this.id = id;
+            this.game = game;
+            this.cpu = cpu;
+            this.keys = new String[]{newSecret(), newSecret()};
+            this.feed = new SpectatorFeed(FEED_CAPACITY);
+            this.frames = new JsonWriter();
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    // serves the requests of one context, writing the response body to json
+    private interface Router {
+        int route(HttpExchange exchange, JsonWriter json);
+    }
+
+    // a request that cannot be served, answered with status and message
+    private static final class RequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Starts a server
+     * @param port the port to listen on, or 0 for any free one
+     * @param threads the number of requests served at once
+     * @param idleMillis how long a game may go unused before it is dropped
+     * @param matchWaitMillis how long a player waits for an opponent before playing the computer
+     * @param maxWatchers the number of watch streams served at once, across every game
+     * @throws IllegalArgumentException if threads, idleMillis, matchWaitMillis or maxWatchers is not positive
+     */
+    public GameServer(int port, int threads, long idleMillis, long matchWaitMillis, int maxWatchers)
+            throws IOException {
+        if (threads <= 0 || idleMillis <= 0 || maxWatchers <= 0) {
+            throw new IllegalArgumentException("A server needs threads, watchers and a positive idle timeout");
+        }
+        this.matchmaker = new Matchmaker(matchWaitMillis, this::startMatch);
+        this.tickets = new ConcurrentHashMap<>();
+        this.sessions = new ConcurrentHashMap<>();
+        this.nextId = new AtomicLong();
+        this.idleMillis = idleMillis;
+        this.writers = ThreadLocal.withInitial(JsonWriter::new);
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "battleship-http-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // a stream holds its thread until the watcher leaves, so streams are not queued but refused
+        this.watchers = new ThreadPoolExecutor(0, maxWatchers, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "battleship-watch-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "battleship-http-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, idleMillis / 4);
+        sweeper.scheduleAtFixedRate(this::dropIdleGames, period, period, TimeUnit.MILLISECONDS);
+        this.http = HttpServer.create(new InetSocketAddress(port), 0);
+        http.createContext("/games", exchange -> handle(exchange, this::route));
+        http.createContext("/match", exchange -> handle(exchange, this::routeMatch));
+        http.setExecutor(workers);
+        http.start();
+    }
+
+    /**
+     * Starts a server with the default number of watchers
+     */
+    public GameServer(int port, int threads, long idleMillis, long matchWaitMillis) throws IOException {
+        this(port, threads, idleMillis, matchWaitMillis, DEFAULT_MAX_WATCHERS);
+    }
+
+    /**
+     * Starts a server with the default match wait and number of watchers
+     */
+    public GameServer(int port, int threads, long idleMillis) throws IOException {
+        this(port, threads, idleMillis, DEFAULT_MATCH_WAIT_MILLIS);
+    }
+
+    /**
+     * Starts a server with a thread per processor and the default idle timeout, match wait and
+     * number of watchers
+     */
+    public GameServer(int port) throws IOException {
+        this(port, Runtime.getRuntime().availableProcessors(), DEFAULT_IDLE_MILLIS, DEFAULT_MATCH_WAIT_MILLIS);
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    /**
+     * @return the number of games being played
+     */
+    public int getGameCount() {
+        return sessions.size();
+    }
+
+    /**
+     * @return the server's matchmaker
+     */
+    public Matchmaker getMatchmaker() {
+        return matchmaker;
+    }
+
+    /**
+     * Stops accepting requests, waiting up to delaySeconds for those being served
+     */
+    public void stop(int delaySeconds) {
+        for (Session session : sessions.values()) {
+            session.feed.close();
+        }
+        http.stop(delaySeconds);
+        matchmaker.shutdown();
+        workers.shutdown();
+        watchers.shutdownNow();
+        sweeper.shutdown();
+    }
+
+    private void dropIdleGames() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        sessions.values().removeIf(s -> {
+            // a game being watched is in use
+            if (s.lastUsed >= cutoff || s.feed.hasSubscribers()) {
+                return false;
+            }
+            s.feed.close();
+            return true;
+        });
+        // players who were matched or gave up long ago will not ask again
+        tickets.values().removeIf(t -> !t.isWaiting() && t.getJoinedAt() < cutoff);
+    }
+
+    private void handle(HttpExchange exchange, Router router) throws IOException {
+        JsonWriter json = writers.get().reset();
+        int status;
+        try {
+            status = router.route(exchange, json);
+        } catch (RequestException e) {
+            status = e.status;
+            json.reset().beginObject().name("error").value(e.getMessage()).endObject();
+        } catch (IllegalArgumentException e) {
+            // bad numbers and settings the game rejects
+            status = 400;
+            json.reset().beginObject().name("error").value(e.getMessage()).endObject();
+        } catch (RuntimeException e) {
+            status = 500;
+            json.reset().beginObject().name("error").value("internal error").endObject();
+            System.err.println("Request " + exchange.getRequestURI() + " failed: " + e);
+        }
+        if (status == STREAMING) {
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, json.length());
+        try (OutputStream out = exchange.getResponseBody()) {
+            json.writeTo(out);
+        }
+    }
+
+    // serves a request, writing the response body to json
+    private int route(HttpExchange exchange, JsonWriter json) {
+        String method = exchange.getRequestMethod();
+        String[] parts = exchange.getRequestURI().getPath().split("/");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        // parts[0] is empty, parts[1] is "games"
+        if (parts.length == 2) {
+            requireMethod(method, "POST");
+            return create(query, json);
+        }
+        Session session = sessions.get(parseLong(parts[2], "game id"));
+        if (session == null) {
+            throw new RequestException(404, "No game " + parts[2]);
+        }
+        session.lastUsed = System.currentTimeMillis();
+        synchronized (session.game) {
+            if (parts.length == 3) {
+                if (method.equals("DELETE")) {
+                    sessions.remove(session.id);
+                    session.feed.close();
+                    json.beginObject().name("id").value(session.id).name("deleted").value(true).endObject();
+                    return 200;
+                }
+                requireMethod(method, "GET");
+                int player = viewer(session, query);
+                writeState(session, player, owns(session, query, player), true, json);
+                return 200;
+            }
+            if (parts.length == 4 && parts[3].equals("watch")) {
+                requireMethod(method, "GET");
+                watch(session, exchange);
+                return STREAMING;
+            }
+            if (parts.length == 4) {
+                requireMethod(method, "POST");
+                switch (parts[3]) {
+                    case "ships":
+                        return placeShip(session, query, json);
+                    case "attack":
+                        return attack(session, query, json);
+                    default:
+                        break;
+                }
+            }
+        }
+        throw new RequestException(404, "No such resource");
+    }
+
+    private int create(Map<String, String> query, JsonWriter json) {
+        GameSettings settings = settings(query.getOrDefault("mode", "cpu"), query.getOrDefault("size", "10"),
+                                         query.getOrDefault("difficulty", "normal"));
+        if (!query.getOrDefault("names", "").isEmpty()) {
+            settings.setChoice("player names", query.get("names"));
+        }
+        if (query.containsKey("seed")) {
+            settings.setChoice("seed", Long.toString(parseLong(query.get("seed"), "seed")));
+        }
+        if (query.containsKey("budget")) {
+            settings.setChoice("cpu move budget", query.get("budget"));
+        }
+        Session session = newSession(settings);
+        synchronized (session.game) {
+            // whoever makes the game plays every human side of it
+            json.beginObject().name("keys").beginArray().value(session.keys[0]);
+            if (!session.cpu) {
+                json.value(session.keys[1]);
+            }
+            json.endArray();
+            writeStateFields(session, 1, true, true, json);
+            json.endObject();
+        }
+        return 201;
+    }
+
+    // the settings of a game, checking the choices GameSettings would prompt for again
+    private static GameSettings settings(String mode, String size, String difficulty) {
+        if (!MODES.contains(mode)) {
+            throw new IllegalArgumentException("mode must be one of " + MODES);
+        }
+        if (!DIFFICULTIES.contains(difficulty)) {
+            throw new IllegalArgumentException("difficulty must be one of " + DIFFICULTIES);
+        }
+        GameSettings settings = new GameSettings();
+        settings.setChoice("mode", mode);
+        settings.setChoice("board size", size);
+        settings.setChoice("cpu difficulty", difficulty);
+        return settings;
+    }
+
+    private Session newSession(GameSettings settings) {
+        long id = nextId.incrementAndGet();
+        Session session = new Session(id, new TwoPlayerGame(settings), settings.getSetting("mode").equals("cpu"));
+        session.game.addListener(() -> publishFrame(session));
+        sessions.put(id, session);
+        return session;
+    }
+
+    // starts the game of a match, against the computer if second is null
+    private long startMatch(Matchmaker.Key key, String first, String second) {
+        GameSettings settings = settings(second == null ? "cpu" : "2player", Integer.toString(key.getBoardSize()),
+                                         key.getDifficulty());
+        settings.setChoice("player names", second == null ? first : first + " " + second);
+        return newSession(settings).id;
+    }
+
+    // serves requests under /match
+    private int routeMatch(HttpExchange exchange, JsonWriter json) {
+        String method = exchange.getRequestMethod();
+        String[] parts = exchange.getRequestURI().getPath().split("/");
+        // parts[0] is empty, parts[1] is "match"
+        if (parts.length == 2) {
+            requireMethod(method, "POST");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String mode = query.getOrDefault("mode", "2player");
+            String size = query.getOrDefault("size", "10");
+            String difficulty = query.getOrDefault("difficulty", "normal");
+            settings(mode, size, difficulty); // so a match's game cannot fail to start
+            String name = query.getOrDefault("name", "");
+            if (!name.matches("\\S+")) {
+                throw new IllegalArgumentException("name must be one word");
+            }
+            Matchmaker.Ticket ticket = matchmaker.join(
+                    new Matchmaker.Key(mode, (int) parseLong(size, "size"), difficulty), name);
+            String secret = newSecret();
+            tickets.put(secret, ticket);
+            writeTicket(secret, ticket, json);
+            return ticket.isWaiting() ? 202 : 200;
+        }
+        if (parts.length != 3) {
+            throw new RequestException(404, "No such resource");
+        }
+        String secret = parts[2];
+        Matchmaker.Ticket ticket = tickets.get(secret);
+        if (ticket == null) {
+            throw new RequestException(404, "No such ticket");
+        }
+        if (method.equals("DELETE")) {
+            if (!ticket.cancel()) {
+                writeTicket(secret, ticket, json);
+                return 409;
+            }
+            tickets.remove(secret);
+            writeTicket(secret, ticket, json);
+            return 200;
+        }
+        requireMethod(method, "GET");
+        writeTicket(secret, ticket, json);
+        return 200;
+    }
+
+    private void writeTicket(String secret, Matchmaker.Ticket ticket, JsonWriter json) {
+        json.beginObject().name("ticket").value(secret);
+        CompletableFuture<Matchmaker.Match> future = ticket.getMatch();
+        if (!future.isDone()) {
+            // a match's game may still be starting
+            json.name("status").value("waiting").endObject();
+        } else if (future.isCancelled()) {
+            json.name("status").value("cancelled").endObject();
+        } else if (future.isCompletedExceptionally()) {
+            json.name("status").value("failed").endObject();
+        } else {
+            Matchmaker.Match match = future.join();
+            Session session = sessions.get(match.getGameId());
+            json.name("status").value("matched")
+                .name("game").value(match.getGameId())
+                .name("player").value(match.getPlayer())
+                .name("key").value(session == null ? null : session.keys[match.getPlayer() - 1])
+                .name("opponent").value(match.getOpponent())
+                .name("computer").value(match.isAgainstComputer())
+                .endObject();
+        }
+    }
+
+    // starts streaming a game's frames to a watcher, on a thread of the watcher's own
+    private void watch(Session session, HttpExchange exchange) {
+        SpectatorFeed.Subscription subscription;
+        synchronized (session.game) {
+            if (session.feed.getLatestVersion() != session.game.getVersion()) {
+                // no frames are made while nobody watches, so the last may be stale
+                writeFrame(session);
+            }
+            subscription = session.feed.subscribe();
+        }
+        try {
+            watchers.execute(() -> stream(subscription, exchange));
+        } catch (RejectedExecutionException e) {
+            subscription.close();
+            throw new RequestException(503, "Too many watchers, try again later");
+        }
+    }
+
+    private static void stream(SpectatorFeed.Subscription subscription, HttpExchange exchange) {
+        try (subscription; exchange) {
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            while (true) {
+                SpectatorFeed.Frame frame = subscription.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                if (frame != null) {
+                    frame.writeTo(out);
+                    out.write('\n');
+                    out.flush();
+                } else if (subscription.isClosed()) {
+                    break;
+                } else {
+                    // a blank line between frames, to find out whether the watcher has gone
+                    out.write('\n');
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // the watcher went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // called under the game's lock every time the game changes
+    private static void publishFrame(Session session) {
+        if (session.game.getPhase().equals("end")) {
+            // the last frame is kept for anyone who comes to watch later
+            writeFrame(session);
+            session.feed.close();
+        } else if (session.feed.hasSubscribers()) {
+            writeFrame(session);
+        }
+    }
+
+    private static void writeFrame(Session session) {
+        JsonWriter json = session.frames.reset();
+        writeSpectatorState(session, json);
+        session.feed.publish(json.toByteArray(), session.game.getVersion());
+    }
+
+    private int placeShip(Session session, Map<String, String> query, JsonWriter json) {
+        int player = mover(session, query, "setup");
+        Point p1 = point(query, "x1", "y1");
+        Point p2 = point(query, "x2", "y2");
+        // a ship is its two ends, given to processTurn one after the other as the text interface does
+        session.game.processTurn(p1);
+        boolean accepted = session.game.processTurn(p2);
+        return respondToMove(session, query, player, accepted, json);
+    }
+
+    private int attack(Session session, Map<String, String> query, JsonWriter json) {
+        int player = mover(session, query, "playing");
+        boolean accepted = session.game.processTurn(point(query, "x", "y"));
+        return respondToMove(session, query, player, accepted, json);
+    }
+
+    private int respondToMove(Session session, Map<String, String> query, int player, boolean accepted,
+                              JsonWriter json) {
+        if (session.cpu) {
+            // the computer's next move can be worked out while the human decides theirs
+            session.game.speculateComputerTurn();
+        }
+        writeState(session, player, true, accepted, json);
+        return accepted ? 200 : 409;
+    }
+
+    // the player making a move, whose key the request must carry, and who must be the current player, in
+    // the given phase
+    private int mover(Session session, Map<String, String> query, String phase) {
+        int player = viewer(session, query);
+        if (!owns(session, query, player)) {
+            throw new RequestException(403, "A move needs player " + player + "'s key");
+        }
+        if (!session.game.getPhase().equals(phase)) {
+            throw new RequestException(409, "The game is not in the " + phase + " phase");
+        }
+        if (player != session.game.getCurrentPlayer()) {
+            throw new RequestException(409, "It is not player " + player + "'s turn");
+        }
+        return player;
+    }
+
+    // the player a request is made as, the current player if it does not say, and always the human
+    // in a game against the computer
+    private int viewer(Session session, Map<String, String> query) {
+        if (!query.containsKey("player")) {
+            return session.cpu ? 1 : session.game.getCurrentPlayer();
+        }
+        int player = (int) parseLong(query.get("player"), "player");
+        if (player != 1 && player != 2) {
+            throw new IllegalArgumentException("player must be 1 or 2");
+        }
+        if (session.cpu && player != 1) {
+            throw new RequestException(403, "Player 2 is the computer");
+        }
+        return player;
+    }
+
+    // whether a request carries the player's key
+    private static boolean owns(Session session, Map<String, String> query, int player) {
+        String key = query.get("key");
+        return key != null && MessageDigest.isEqual(key.getBytes(StandardCharsets.UTF_8),
+                                                    session.keys[player - 1].getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String newSecret() {
+        return String.format("%016x%016x", SECRETS.nextLong(), SECRETS.nextLong());
+    }
+
+    // the game as player sees it, with their ships only if the request is theirs
+    private static void writeState(Session session, int player, boolean owner, boolean accepted, JsonWriter json) {
+        json.beginObject();
+        writeStateFields(session, player, owner, accepted, json);
+        json.endObject();
+    }
+
+    private static void writeStateFields(Session session, int player, boolean owner, boolean accepted,
+                                         JsonWriter json) {
+        TwoPlayerGame game = session.game;
+        GameView view = game.getView();
+        String phase = view.getPhase();
+        json.name("id").value(session.id)
+            .name("accepted").value(accepted)
+            .name("version").value(view.getVersion())
+            .name("phase").value(phase)
+            .name("boardSize").value(view.size())
+            .name("player").value(player)
+            .name("currentPlayer").value(view.getCurrentPlayer())
+            .name("currentPlayerName").value(view.getCurrentPlayerName());
+        if (phase.equals("end")) {
+            json.name("winner").value(view.getCurrentPlayer());
+        }
+        if (phase.equals("setup")) {
+            json.name("shipsToPlace").beginArray();
+            for (int count : view.getShipsToBePlaced(player)) {
+                json.value(count);
+            }
+            json.endArray();
+        }
+        if (owner) {
+            json.name("ships").beginArray();
+            for (Point p : view.getShipPoints(player)) {
+                writePoint(p, json);
+            }
+            json.endArray();
+        }
+        List<BoardView> boards = view.getPlayerView(player);
+        json.name("board");
+        writeBoard(boards.get(0), null, json);
+        // the one opponent's ships are only shown once they are sunk
+        json.name("opponentBoards").beginArray();
+        for (int i = 1; i < boards.size(); i++) {
+            writeBoard(boards.get(i), view.getPlayerShips(3 - player), json);
+        }
+        json.endArray();
+    }
+
+    // the game as a spectator sees it, every player's board without its ships
+    private static void writeSpectatorState(Session session, JsonWriter json) {
+        GameView view = session.game.getView();
+        String phase = view.getPhase();
+        json.beginObject()
+            .name("id").value(session.id)
+            .name("version").value(view.getVersion())
+            .name("phase").value(phase)
+            .name("boardSize").value(view.size())
+            .name("currentPlayer").value(view.getCurrentPlayer())
+            .name("currentPlayerName").value(view.getCurrentPlayerName());
+        if (phase.equals("end")) {
+            json.name("winner").value(view.getCurrentPlayer());
+        }
+        json.name("boards").beginArray();
+        for (int player = 1; player <= 2; player++) {
+            writeBoard(view.getPlayerView(player).get(0), null, json);
+        }
+        json.endArray().endObject();
+    }
+
+    // a board's hits and misses, and the cells of those of ships that are sunk if ships is not null
+    private static void writeBoard(BoardView board, List<Ship> ships, JsonWriter json) {
+        json.beginObject().name("hits").beginArray();
+        for (Point p : board.getHits()) {
+            writePoint(p, json);
+        }
+        json.endArray().name("misses").beginArray();
+        for (Point p : board.getMisses()) {
+            writePoint(p, json);
+        }
+        json.endArray();
+        if (ships != null) {
+            json.name("sunk").beginArray();
+            for (Ship ship : ships) {
+                if (ship.isSunk()) {
+                    for (Point p : PointUtils.getPointsBetween(ship.startPoint(), ship.endPoint())) {
+                        writePoint(p, json);
+                    }
+                }
+            }
+            json.endArray();
+        }
+        json.endObject();
+    }
+
+    private static void writePoint(Point p, JsonWriter json) {
+        json.beginArray().value(p.getX()).value(p.getY()).endArray();
+    }
+
+    private static void requireMethod(String method, String allowed) {
+        if (!method.equals(allowed)) {
+            throw new RequestException(405, method + " is not allowed here");
+        }
+    }
+
+    private static Point point(Map<String, String> query, String x, String y) {
+        if (!query.containsKey(x) || !query.containsKey(y)) {
+            throw new IllegalArgumentException("Missing " + x + " or " + y);
+        }
+        return new Point((int) parseLong(query.get(x), x), (int) parseLong(query.get(y), y));
+    }
+
+    private static long parseLong(String s, String what) {
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(what + " must be a number");
+        }
+    }
+
+    private static Map<String, String> parseQuery(String raw) {
+        Map<String, String> query = new HashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+}
@@ -0,0 +1,218 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A JsonWriter writes JSON straight into a byte buffer that it keeps between documents, so a thread
+ * that serves many responses reuses one buffer instead of building strings. Values are written by
+ * explicit calls, with no reflection, and commas between them are added automatically.
+ */
+public final class JsonWriter {
+
+    // Abstraction Function:
+    //      the UTF-8 document buffer[0..length), inside depth open objects and arrays, where the
+    //      innermost of them already holds a value iff needsComma
+
+    // Representation Invariant:
+    //      0 <= length <= buffer.length, depth >= 0
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private byte[] buffer;
+    private int length;
+    private int depth;
+    private boolean needsComma;
+
+    public JsonWriter() {
+        this.buffer = new byte[4096];
+    }
+
+    /**
+     * Empties the buffer for a new document, keeping its capacity
+     * @return this writer
+     */
+    public JsonWriter reset() {
+        length = 0;
+        depth = 0;
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter beginObject() {
+        separate();
+        put((byte) '{');
+        depth++;
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        put((byte) '}');
+        depth--;
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        separate();
+        put((byte) '[');
+        depth++;
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        put((byte) ']');
+        depth--;
+        needsComma = true;
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of an object, which must be followed by its value
+     */
+    public JsonWriter name(String name) {
+        string(name);
+        put((byte) ':');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        separate();
+        if (value == Long.MIN_VALUE) {
+            putAscii("-9223372036854775808");
+        } else {
+            if (value < 0) {
+                put((byte) '-');
+                value = -value;
+            }
+            int start = length;
+            do {
+                put((byte) ('0' + value % 10));
+                value /= 10;
+            } while (value != 0);
+            // the digits went in backwards
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                byte t = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = t;
+            }
+        }
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        separate();
+        putAscii(value ? "true" : "false");
+        needsComma = true;
+        return this;
+    }
+
+    /**
+     * Writes a string, or null if value is null
+     */
+    public JsonWriter value(String value) {
+        if (value == null) {
+            separate();
+            putAscii("null");
+            needsComma = true;
+            return this;
+        }
+        string(value);
+        needsComma = true;
+        return this;
+    }
+
+    private void string(String s) {
+        separate();
+        put((byte) '"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                put((byte) '\\');
+                put((byte) c);
+            } else if (c < 0x20) {
+                putAscii("\\u00");
+                put(HEX[c >> 4]);
+                put(HEX[c & 0xF]);
+            } else if (c < 0x80) {
+                put((byte) c);
+            } else if (c < 0x800) {
+                put((byte) (0xC0 | c >> 6));
+                put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                       && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, s.charAt(++i));
+                put((byte) (0xF0 | code >> 18));
+                put((byte) (0x80 | code >> 12 & 0x3F));
+                put((byte) (0x80 | code >> 6 & 0x3F));
+                put((byte) (0x80 | code & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                put((byte) '?'); // a lone surrogate has no UTF-8 encoding
+            } else {
+                put((byte) (0xE0 | c >> 12));
+                put((byte) (0x80 | c >> 6 & 0x3F));
+                put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        put((byte) '"');
+    }
+
+    private void separate() {
+        if (needsComma) {
+            put((byte) ',');
+            needsComma = false;
+        }
+    }
+
+    private void putAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            put((byte) s.charAt(i));
+        }
+    }
+
+    private void put(byte b) {
+        if (length == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[length++] = b;
+    }
+
+    /**
+     * @return the number of bytes written since the last reset
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return whether every object and array begun has been ended
+     */
+    public boolean isComplete() {
+        return depth == 0;
+    }
+
+    /**
+     * Copies the document to out
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, length);
+    }
+
+    /**
+     * @return a copy of the document
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+}
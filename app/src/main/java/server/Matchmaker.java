@@ -0,0 +1,412 @@
+package server;
+
+import utils.InvariantChecks;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A Matchmaker pairs players who want the same kind of game: the same mode, board size and computer
+ * difficulty. Players who want to play the computer are matched at once. Others wait in their
+ * bucket until the next player joins it, or until the wait runs out, when they play the computer at
+ * the bucket's difficulty instead.
+ * <p>
+ * A player who joins an empty bucket waits in it, and the next to join is paired with them, so a
+ * bucket never holds more than one waiting player. Each bucket is therefore one atomic slot rather
+ * than a queue: joining, pairing and cancelling are each a few compare-and-sets, with no locks and
+ * no scanning, and a thread that finds a cancelled or claimed player in a slot clears it on the way.
+ * A bucket is dropped once it empties, so kinds of game nobody is waiting for cost nothing. Players
+ * are told apart by their tickets, not their names: every join is a new player, and two players of
+ * the same name are paired like any other two.
+ * <p>
+ * All methods may be called from any thread. Games are started through the MatchFactory, on the
+ * thread that made the match.
+ */
+public final class Matchmaker {
+
+    // Abstraction Function:
+    //      for each key of buckets, the player waiting for a game of that kind, if any, being the
+    //      ticket in its slot if that ticket is still waiting; no one waits for the other kinds
+
+    // Representation Invariant:
+    //      a ticket is in the slot of its own key's bucket or in no slot
+    //      a ticket's state only moves away from WAITING, and its match is not done while it is WAITING
+    //      a slot holds removed only once it is out of buckets, or about to be taken out, and never after
+
+    private static final int WAITING = 0;
+    private static final int MATCHED = 1;
+    private static final int CANCELLED = 2;
+
+    private final Map<Key, AtomicReference<Ticket>> buckets;
+    private final Ticket removed; // closes a slot that is leaving buckets, so no one waits in it after
+    private final MatchFactory factory;
+    private final long maxWaitMillis;
+    private final ScheduledThreadPoolExecutor timer;
+    private final AtomicLong nextTicket;
+    private final AtomicLong pairs;
+    private final AtomicLong fallbacks;
+
+    /**
+     * Starts the games of matches
+     */
+    public interface MatchFactory {
+        /**
+         * Starts a game between two players, or a player and the computer
+         * @param key the kind of game
+         * @param first the name of the player who waited, who is player 1
+         * @param second the name of player 2, or null for the computer
+         * @return an ID for the game
+         */
+        long start(Key key, String first, String second);
+    }
+
+    /**
+     * A kind of game players can ask for
+     */
+    public static final class Key {
+        private final String mode;
+        private final int boardSize;
+        private final String difficulty;
+
+        /**
+         * @param mode "2player" or "cpu"
+         * @param boardSize the size of the boards
+         * @param difficulty the difficulty of the computer, whether it is played from the start or after the wait
+         */
+        public Key(String mode, int boardSize, String difficulty) {
+            this.mode = Objects.requireNonNull(mode);
+            this.boardSize = boardSize;
+            this.difficulty = Objects.requireNonNull(difficulty);
+        }
+
+        public String getMode() {
+            return mode;
+        }
+
+        public int getBoardSize() {
+            return boardSize;
+        }
+
+        public String getDifficulty() {
+            return difficulty;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return boardSize == k.boardSize && mode.equals(k.mode) && difficulty.equals(k.difficulty);
+        }
+
+        @Override
+        public int hashCode() {
+            return (mode.hashCode() * 31 + boardSize) * 31 + difficulty.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return mode + "/" + boardSize + "/" + difficulty;
+        }
+    }
+
+    /**
+     * The game a player was matched into
+     */
+    public static final class Match {
+        private final long gameId;
+        private final int player;
+        private final String opponent;
+
+        private Match(long gameId, int player, String opponent) {
+            this.gameId = gameId;
+            this.player = player;
+            this.opponent = opponent;
+        }
+
+        public long getGameId() {
+            return gameId;
+        }
+
+        /**
+         * @return the player's PID in the game
+         */
+        public int getPlayer() {
+            return player;
+        }
+
+        /**
+         * @return the opponent's name, or null if the opponent is the computer
+         */
+        public String getOpponent() {
+            return opponent;
+        }
+
+        public boolean isAgainstComputer() {
+            return opponent == null;
+        }
+    }
+
+    /**
+     * A player's place in the matchmaker, from joining until they are matched or cancel
+     */
+    public final class Ticket {
+        private final long id;
+        private final Key key;
+        private final String name;
+        private final AtomicInteger state;
+        private final CompletableFuture<Match> match;
+        private final long joinedAt;
+        private volatile ScheduledFuture<?> fallback; // set once the ticket waits
+
+        private Ticket(long id, Key key, String name) {
+            this.id = id;
+            this.key = key;
+            this.name = name;
+            this.joinedAt = System.currentTimeMillis();
+            this.state = new AtomicInteger(WAITING);
+            this.match = new CompletableFuture<>();
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public Key getKey() {
+            return key;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return when the player joined, in milliseconds since the epoch
+         */
+        public long getJoinedAt() {
+            return joinedAt;
+        }
+
+        /**
+         * @return a future completed with the player's match, cancelled if the ticket is, or
+         *         completed exceptionally if the match's game could not be started
+         */
+        public CompletableFuture<Match> getMatch() {
+            return match;
+        }
+
+        public boolean isWaiting() {
+            return state.get() == WAITING;
+        }
+
+        /**
+         * Leaves the matchmaker, if the player has not been matched yet
+         * @return whether the ticket was cancelled, false if it had already been matched or cancelled
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            leave(this);
+            match.cancel(false);
+            return true;
+        }
+    }
+
+    /**
+     * Makes a matchmaker
+     * @param maxWaitMillis how long a player waits for another before playing the computer
+     * @param factory starts the games of matches
+     * @throws IllegalArgumentException if maxWaitMillis is not positive
+     */
+    public Matchmaker(long maxWaitMillis, MatchFactory factory) {
+        if (maxWaitMillis <= 0) {
+            throw new IllegalArgumentException("Players must be allowed to wait");
+        }
+        this.buckets = new ConcurrentHashMap<>();
+        this.removed = new Ticket(0, null, "");
+        removed.state.set(CANCELLED);
+        this.factory = Objects.requireNonNull(factory);
+        this.maxWaitMillis = maxWaitMillis;
+        this.timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setName("battleship-matchmaker");
+            t.setDaemon(true);
+            return t;
+        });
+        // matched players' fallbacks are cancelled, and must not pile up in the timer's queue
+        timer.setRemoveOnCancelPolicy(true);
+        this.nextTicket = new AtomicLong();
+        this.pairs = new AtomicLong();
+        this.fallbacks = new AtomicLong();
+    }
+
+    /**
+     * Asks for a game. A player who wants to play the computer, or who completes a pair, is matched
+     * before this returns
+     * @param key the kind of game wanted
+     * @param name the player's name
+     * @return the player's ticket
+     */
+    public Ticket join(Key key, String name) {
+        Ticket ticket = new Ticket(nextTicket.incrementAndGet(), key, Objects.requireNonNull(name));
+        if (key.mode.equals("cpu")) {
+            ticket.state.set(MATCHED);
+            startAgainstComputer(ticket);
+            return ticket;
+        }
+        AtomicReference<Ticket> slot = buckets.computeIfAbsent(key, k -> new AtomicReference<>());
+        while (true) {
+            Ticket waiting = slot.get();
+            if (waiting == removed) {
+                // the bucket emptied and is leaving, so help it out and wait in a new one
+                buckets.remove(key, slot);
+                slot = buckets.computeIfAbsent(key, k -> new AtomicReference<>());
+            } else if (waiting == null) {
+                if (slot.compareAndSet(null, ticket)) {
+                    scheduleFallback(ticket);
+                    checkRep(key, slot);
+                    return ticket;
+                }
+            } else {
+                boolean claimed = waiting.state.compareAndSet(WAITING, MATCHED);
+                // clears the slot whether the player was claimed here or had already left it
+                slot.compareAndSet(waiting, null);
+                if (claimed) {
+                    // the new ticket has not been handed out, so nothing else can have claimed it
+                    ticket.state.set(MATCHED);
+                    removeIfEmpty(key, slot);
+                    startPair(waiting, ticket);
+                    checkRep(key, slot);
+                    return ticket;
+                }
+            }
+        }
+    }
+
+    // takes an emptied bucket out of buckets, closing its slot first so that a thread that has
+    // already looked the bucket up cannot wait in it where no one else would find them
+    private void removeIfEmpty(Key key, AtomicReference<Ticket> slot) {
+        if (slot.compareAndSet(null, removed)) {
+            buckets.remove(key, slot);
+        }
+    }
+
+    // times a waiting ticket out, once it is in its slot
+    private void scheduleFallback(Ticket ticket) {
+        try {
+            ticket.fallback = timer.schedule(() -> {
+                if (ticket.state.compareAndSet(WAITING, MATCHED)) {
+                    leave(ticket);
+                    fallbacks.incrementAndGet();
+                    startAgainstComputer(ticket);
+                }
+            }, maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return; // shut down, so the player waits for another or cancels
+        }
+        if (!ticket.isWaiting()) {
+            // matched or cancelled before the fallback was set, so nothing else will cancel it
+            ticket.fallback.cancel(false);
+        }
+    }
+
+    // takes a ticket that is no longer waiting out of its slot, if it is still there
+    private void leave(Ticket ticket) {
+        AtomicReference<Ticket> slot = buckets.get(ticket.key);
+        if (slot != null && slot.compareAndSet(ticket, null)) {
+            removeIfEmpty(ticket.key, slot);
+        }
+        ScheduledFuture<?> fallback = ticket.fallback;
+        if (fallback != null) {
+            fallback.cancel(false);
+        }
+    }
+
+    private void startPair(Ticket first, Ticket second) {
+        leave(first);
+        pairs.incrementAndGet();
+        try {
+            long gameId = factory.start(first.key, first.name, second.name);
+            first.match.complete(new Match(gameId, 1, second.name));
+            second.match.complete(new Match(gameId, 2, first.name));
+        } catch (RuntimeException e) {
+            first.match.completeExceptionally(e);
+            second.match.completeExceptionally(e);
+        }
+    }
+
+    private void startAgainstComputer(Ticket ticket) {
+        try {
+            long gameId = factory.start(ticket.key, ticket.name, null);
+            ticket.match.complete(new Match(gameId, 1, null));
+        } catch (RuntimeException e) {
+            ticket.match.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return the number of pairs of players matched so far
+     */
+    public long getPairCount() {
+        return pairs.get();
+    }
+
+    /**
+     * @return the number of players who waited too long and were given the computer
+     */
+    public long getFallbackCount() {
+        return fallbacks.get();
+    }
+
+    /**
+     * @return the number of players waiting for an opponent
+     */
+    public int getWaitingCount() {
+        int count = 0;
+        for (AtomicReference<Ticket> slot : buckets.values()) {
+            Ticket ticket = slot.get();
+            if (ticket != null && ticket.isWaiting()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of kinds of game with a bucket, which is those players are waiting for and
+     *         any being joined or emptied at the moment
+     */
+    public int getBucketCount() {
+        return buckets.size();
+    }
+
+    /**
+     * Stops timing waiting players out. Players already waiting can still be paired or cancel
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private void checkRep(Key key, AtomicReference<Ticket> slot) {
+        if (InvariantChecks.ENABLED) {
+            Ticket ticket = slot.get();
+            if (ticket == removed) {
+                return;
+            }
+            assert ticket == null || ticket.key.equals(key) : "A ticket must wait in its own bucket";
+            assert ticket == null || !ticket.isWaiting() || !ticket.match.isDone() : "A waiting ticket has no match";
+        }
+    }
+}
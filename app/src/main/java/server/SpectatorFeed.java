@@ -0,0 +1,225 @@
+package server;
+
+import utils.InvariantChecks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A SpectatorFeed fans the frames of one game out to everyone watching it. Each frame is encoded
+ * once, by whoever publishes it, and the same immutable bytes are handed to every subscription.
+ * <p>
+ * Publishing never blocks. Every subscription has a bounded queue, and when a slow watcher lets it
+ * fill, the oldest frame is dropped to make room. Frames are whole states rather than changes, so a
+ * watcher that falls behind skips to the latest state instead of holding up the game.
+ * <p>
+ * All methods may be called from any thread.
+ */
+public final class SpectatorFeed {
+
+    // Abstraction Function:
+    //      a feed whose watchers are subscriptions, the last frame published being latest (null if
+    //      none has been), that will take no more watchers or frames iff closed
+
+    // Representation Invariant:
+    //      capacity >= 2, so a subscription can always hold the latest frame and the end marker
+    //      every subscription in subscriptions was made by this feed with this feed's capacity
+
+    private static final Frame END = new Frame(new byte[0], -1); // wakes a watcher when the feed closes
+
+    private final int capacity;
+    private final List<Subscription> subscriptions;
+    private volatile Frame latest;
+    private volatile boolean closed;
+
+    /**
+     * An encoded frame, shared by every subscription it is delivered to
+     */
+    public static final class Frame {
+        private final byte[] bytes; // never modified, nor handed out
+        private final long version;
+
+        private Frame(byte[] bytes, long version) {
+            this.bytes = bytes;
+            this.version = version;
+        }
+
+        /**
+         * @return the version of the game the frame shows
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public int length() {
+            return bytes.length;
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(bytes);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * One watcher's queue of frames
+     */
+    public final class Subscription implements AutoCloseable {
+        private final ArrayBlockingQueue<Frame> queue;
+        private final AtomicLong dropped;
+        private volatile boolean closed;
+
+        private Subscription() {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.dropped = new AtomicLong();
+        }
+
+        /**
+         * Takes the next frame, waiting up to timeout for one
+         * @return the frame, or null if none came in time or the subscription is closed
+         */
+        public Frame poll(long timeout, TimeUnit unit) throws InterruptedException {
+            if (closed && queue.isEmpty()) {
+                return null;
+            }
+            Frame frame = queue.poll(timeout, unit);
+            return frame == END ? null : frame;
+        }
+
+        /**
+         * @return whether no more frames will be added, though some may still be queued
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * @return the number of frames dropped because this watcher fell behind
+         */
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        /**
+         * Stops the watcher's frames, leaving those already queued to be polled
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                subscriptions.remove(this);
+                put(END);
+            }
+        }
+
+        // adds a frame, dropping the oldest if the queue is full
+        private void put(Frame frame) {
+            while (!queue.offer(frame)) {
+                Frame oldest = queue.poll();
+                if (oldest != null && oldest != END) {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes a feed
+     * @param capacity the number of frames a watcher may fall behind before frames are dropped
+     * @throws IllegalArgumentException if capacity is less than 2
+     */
+    public SpectatorFeed(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("A feed must queue at least 2 frames per watcher");
+        }
+        this.capacity = capacity;
+        this.subscriptions = new CopyOnWriteArrayList<>();
+        checkRep();
+    }
+
+    /**
+     * Adds a watcher, whose first frame is the latest published, if any. A frame published while
+     * subscribing may be missed, so callers that need every frame subscribe under the publisher's lock
+     * @return the watcher's subscription, already closed if the feed is
+     */
+    public Subscription subscribe() {
+        Subscription subscription = new Subscription();
+        Frame last = latest;
+        if (last != null) {
+            subscription.put(last);
+        }
+        subscriptions.add(subscription);
+        if (closed) {
+            // the feed closed while subscribing, and may have missed this subscription
+            subscription.close();
+        }
+        checkRep();
+        return subscription;
+    }
+
+    /**
+     * Sends a frame to every watcher. Publishers should skip encoding frames while there are none
+     * @param bytes the encoded frame, which the feed takes and which must not be modified after
+     * @param version the version of the game the frame shows
+     */
+    public void publish(byte[] bytes, long version) {
+        if (closed) {
+            return;
+        }
+        Frame frame = new Frame(bytes, version);
+        latest = frame;
+        for (Subscription subscription : subscriptions) {
+            subscription.put(frame);
+        }
+    }
+
+    /**
+     * @return whether anyone is watching
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return the version of the last frame published, or -1 if none has been
+     */
+    public long getLatestVersion() {
+        Frame last = latest;
+        return last == null ? -1 : last.version;
+    }
+
+    /**
+     * Closes every subscription, after the frames they have queued, and refuses new frames
+     */
+    public void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void checkRep() {
+        if (InvariantChecks.ENABLED) {
+            assert capacity >= 2 : "Subscriptions must hold a frame and the end marker";
+            assert subscriptions != null : "Subscriptions must not be null";
+        }
+    }
+}
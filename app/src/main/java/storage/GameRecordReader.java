@@ -0,0 +1,280 @@
+package storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads games back from an archive written by GameRecordWriter, one at a time. Only the current
+ * block is held in memory, and the current game is decoded into arrays that are reused for the next,
+ * so reading any number of games takes bounded memory.
+ */
+public final class GameRecordReader implements Closeable {
+
+    private final InputStream in;
+    private final int boardSize;
+    private final int[] shipsInfo;
+    private final int[] shipLengths;
+    private final int[] starts; // the first cell of each ship of the fleet being read
+    private final int cellBytes;
+    private final int maxBlockLength; // the longest a block's body can be once decompressed
+    private final boolean compressed;
+    private final Inflater inflater;
+    private byte[] stored;
+    private byte[] raw;
+    private ByteArrayInputStream body;
+    private int blockGamesLeft;
+    private boolean ended;
+
+    private long seed;
+    private int winner;
+    private final int[][] fleets;
+    private int[] moves;
+    private int moveCount;
+    private long read;
+
+    /**
+     * Reads the header of an archive
+     * @param in the stream to read from, which is closed with this reader
+     * @throws IOException if in does not start with an archive header of this version, or its fleet
+     *                     does not fit on its boards
+     */
+    public GameRecordReader(InputStream in) throws IOException {
+        this.in = in;
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            magic = magic << 8 | RecordFormat.readByte(in);
+        }
+        if (magic != RecordFormat.MAGIC || RecordFormat.readVarint(in) != RecordFormat.VERSION) {
+            throw new IOException("Not a version " + RecordFormat.VERSION + " game archive");
+        }
+        this.compressed = (RecordFormat.readVarint(in) & RecordFormat.COMPRESSED) != 0;
+        this.boardSize = (int) RecordFormat.readVarint(in);
+        if (boardSize <= 0 || boardSize > GameStore.MAX_BOARD_SIZE) {
+            throw new IOException("The archive's board size " + boardSize + " is not supported");
+        }
+        // a fleet can hold no more cells than a board, so neither can any part of its description
+        int boardCells = boardSize * boardSize;
+        this.shipsInfo = new int[readLength(in, boardCells + 1, "The fleet")];
+        long cells = 0;
+        for (int length = 0; length < shipsInfo.length; length++) {
+            shipsInfo[length] = readLength(in, boardCells, "The number of ships of length " + length);
+            if (shipsInfo[length] > 0 && (length == 0 || length > boardSize)) {
+                throw new IOException("The archive's fleet has ships of length " + length + " on a board of " + boardSize);
+            }
+            cells += (long) length * shipsInfo[length];
+        }
+        if (cells > boardCells) {
+            throw new IOException("The archive's fleet does not fit on its board");
+        }
+        this.shipLengths = RecordFormat.shipLengths(shipsInfo);
+        this.starts = new int[shipLengths.length];
+        this.cellBytes = RecordFormat.cellBytes(boardSize);
+        // a seed, the winner, two fleets of a start cell per ship and a bit per ship, and the moves
+        long gameLength = 10 + 1 + 2L * (shipLengths.length * cellBytes + (shipLengths.length + 7) / 8)
+                          + 5 + 2L * boardCells * cellBytes;
+        this.maxBlockLength = (int) Math.min(Integer.MAX_VALUE - 64, RecordFormat.BLOCK_GAMES * gameLength);
+        this.inflater = compressed ? new Inflater() : null;
+        this.stored = new byte[0];
+        this.raw = new byte[0];
+        this.fleets = new int[][]{new int[(int) cells], new int[(int) cells]};
+        this.moves = new int[2 * boardSize * boardSize];
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * @return the fleet of every archived game, as an array of ship length (index) to number (value)
+     */
+    public int[] getShipsInfo() {
+        return shipsInfo.clone();
+    }
+
+    /**
+     * Moves on to the next game
+     * @return false if there are no more games
+     * @throws IOException if the archive is truncated or corrupt
+     */
+    public boolean next() throws IOException {
+        if (blockGamesLeft == 0 && !nextBlock()) {
+            return false;
+        }
+        blockGamesLeft--;
+        seed += RecordFormat.unzigzag(RecordFormat.readVarint(body));
+        winner = RecordFormat.readByte(body);
+        if (winner != 1 && winner != 2) {
+            throw new IOException("A game's winner, " + winner + ", is not player 1 or 2");
+        }
+        readFleet(fleets[0]);
+        readFleet(fleets[1]);
+        moveCount = readLength(body, moves.length, "A game's moves");
+        for (int i = 0; i < moveCount; i++) {
+            moves[i] = readCell(body);
+        }
+        read++;
+        return true;
+    }
+
+    private boolean nextBlock() throws IOException {
+        if (ended) {
+            return false;
+        }
+        int games = readLength(in, RecordFormat.BLOCK_GAMES, "A block's games");
+        if (games == 0) {
+            ended = true;
+            return false;
+        }
+        // deflate can add a little to a block it cannot compress, and never more than this
+        int storedLength = readLength(in, maxBlockLength + maxBlockLength / 16L + 64, "A block");
+        int rawLength = readLength(in, maxBlockLength, "A decompressed block");
+        if (!compressed && storedLength != rawLength) {
+            throw new IOException("An uncompressed block has two lengths");
+        }
+        if (stored.length < storedLength) {
+            stored = new byte[storedLength];
+        }
+        new DataInputStream(in).readFully(stored, 0, storedLength);
+        if (compressed) {
+            if (raw.length < rawLength) {
+                raw = new byte[rawLength];
+            }
+            inflater.reset();
+            inflater.setInput(stored, 0, storedLength);
+            try {
+                if (inflater.inflate(raw, 0, rawLength) != rawLength || !inflater.finished()) {
+                    throw new IOException("A block does not inflate to its recorded length");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("A block is corrupt", e);
+            }
+            body = new ByteArrayInputStream(raw, 0, rawLength);
+        } else {
+            body = new ByteArrayInputStream(stored, 0, storedLength);
+        }
+        blockGamesLeft = games;
+        seed = 0; // seeds are deltas within a block
+        return true;
+    }
+
+    private void readFleet(int[] fleet) throws IOException {
+        int[] starts = this.starts;
+        for (int k = 0; k < starts.length; k++) {
+            starts[k] = readCell(body);
+        }
+        int at = 0;
+        int bits = 0;
+        for (int k = 0; k < shipLengths.length; k++) {
+            if (k % 8 == 0) {
+                bits = RecordFormat.readByte(body);
+            }
+            boolean across = (bits >>> (k % 8) & 1) != 0;
+            int step = across ? 1 : boardSize;
+            int room = across ? boardSize - starts[k] % boardSize : boardSize - starts[k] / boardSize;
+            if (shipLengths[k] > room) {
+                throw new IOException("A ship runs off the board from cell " + starts[k]);
+            }
+            for (int i = 0; i < shipLengths[k]; i++) {
+                fleet[at++] = starts[k] + i * step;
+            }
+        }
+    }
+
+    private int readCell(InputStream in) throws IOException {
+        int cell = RecordFormat.readCell(in, cellBytes);
+        if (cell >= boardSize * boardSize) {
+            throw new IOException("Cell " + cell + " is off the board");
+        }
+        return cell;
+    }
+
+    // a varint count or length, which a corrupt archive could make negative or too large to allocate
+    private static int readLength(InputStream in, long max, String what) throws IOException {
+        long length = RecordFormat.readVarint(in);
+        if (length < 0 || length > max) {
+            throw new IOException(what + " has an impossible size, " + Long.toUnsignedString(length));
+        }
+        return (int) length;
+    }
+
+    /**
+     * @return the number of games read so far
+     */
+    public long getGamesRead() {
+        return read;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the PID of the current game's winner
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @return the cell, y * size + x, attacked by the i-th shot of the current game
+     */
+    public int getMove(int i) {
+        if (i < 0 || i >= moveCount) {
+            throw new IllegalArgumentException("There is no move " + i);
+        }
+        return moves[i];
+    }
+
+    /**
+     * @return a copy of the cells of the player's ships in the current game, as in GameStore
+     */
+    public int[] getFleetCells(int pid) {
+        if (pid != 1 && pid != 2) {
+            throw new IllegalArgumentException("There is no player " + pid);
+        }
+        return fleets[pid - 1].clone();
+    }
+
+    /**
+     * @return a copy of the cells attacked by the current game's shots, in order
+     */
+    public int[] getMoves() {
+        return Arrays.copyOf(moves, moveCount);
+    }
+
+    /**
+     * Appends every remaining game to a store
+     * @return the number of games appended
+     * @throws IllegalArgumentException if the store's boards or fleet differ from this archive's
+     */
+    public long readAll(GameStore store) throws IOException {
+        if (store.getBoardSize() != boardSize
+                || !Arrays.equals(RecordFormat.shipLengths(store.getShipsInfo()), shipLengths)) {
+            throw new IllegalArgumentException("The archive's games do not fit this store");
+        }
+        long appended = 0;
+        while (next()) {
+            store.append(seed, winner, fleets[0], fleets[1], getMoves());
+            appended++;
+        }
+        return appended;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inflater != null) {
+            inflater.end();
+        }
+        in.close();
+    }
+}
@@ -0,0 +1,226 @@
+package storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Writes finished two-player games to a stream in the compact archive format described by
+ * RecordFormat. Games are gathered into blocks of RecordFormat.BLOCK_GAMES, each optionally deflated
+ * on its own, so however many games are written only one block is held in memory.
+ */
+public final class GameRecordWriter implements Closeable {
+
+    private final OutputStream out;
+    private final int boardSize;
+    private final int cellBytes;
+    private final int[] shipLengths;
+    private final int fleetCells;
+    private final boolean compress;
+    private final ByteArrayOutputStream block;
+    private final ByteArrayOutputStream game; // the game being written, added to block once it is valid
+    private final Deflater deflater;
+    private byte[] deflated;
+    private int blockGames;
+    private long previousSeed;
+    private long written;
+    private boolean closed;
+
+    /**
+     * Writes the header of an archive of games played on the given boards with the given fleet
+     * @param out the stream to write to, which is closed with this writer
+     * @param compress whether to deflate each block
+     * @throws IllegalArgumentException if boardSize is not in (0, GameStore.MAX_BOARD_SIZE]
+     */
+    public GameRecordWriter(OutputStream out, int boardSize, int[] shipsInfo, boolean compress) throws IOException {
+        if (boardSize <= 0 || boardSize > GameStore.MAX_BOARD_SIZE) {
+            throw new IllegalArgumentException("Only boards up to " + GameStore.MAX_BOARD_SIZE + " can be archived");
+        }
+        this.out = out;
+        this.boardSize = boardSize;
+        this.cellBytes = RecordFormat.cellBytes(boardSize);
+        this.shipLengths = RecordFormat.shipLengths(shipsInfo);
+        int cells = 0;
+        for (int length : shipLengths) {
+            cells += length;
+        }
+        this.fleetCells = cells;
+        this.compress = compress;
+        this.block = new ByteArrayOutputStream();
+        this.game = new ByteArrayOutputStream();
+        this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        this.deflated = new byte[0];
+
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            out.write(RecordFormat.MAGIC >>> shift);
+        }
+        RecordFormat.writeVarint(out, RecordFormat.VERSION);
+        RecordFormat.writeVarint(out, compress ? RecordFormat.COMPRESSED : 0);
+        RecordFormat.writeVarint(out, boardSize);
+        RecordFormat.writeVarint(out, shipsInfo.length);
+        for (int n : shipsInfo) {
+            RecordFormat.writeVarint(out, n);
+        }
+    }
+
+    /**
+     * Writes one game
+     * @param seed the seed the game was played from
+     * @param winner the PID of the winner, 1 or 2
+     * @param fleet1 the cells of player 1's ships, as in GameStore
+     * @param fleet2 the cells of player 2's ships
+     * @param moves the cell attacked by each shot, in the order they were taken
+     * @throws IllegalArgumentException if winner is not 1 or 2, a fleet is not the archive's fleet laid
+     *                                  out in straight lines, or a move is off the board
+     */
+    public void write(long seed, int winner, int[] fleet1, int[] fleet2, int[] moves) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The writer is closed");
+        }
+        if (winner != 1 && winner != 2) {
+            throw new IllegalArgumentException("The winner must be player 1 or 2");
+        }
+        game.reset();
+        RecordFormat.writeVarint(game, RecordFormat.zigzag(seed - previousSeed));
+        game.write(winner);
+        writeFleet(fleet1);
+        writeFleet(fleet2);
+        RecordFormat.writeVarint(game, moves.length);
+        for (int cell : moves) {
+            if (cell < 0 || cell >= boardSize * boardSize) {
+                throw new IllegalArgumentException("Cell " + cell + " is off the board");
+            }
+            RecordFormat.writeCell(game, cell, cellBytes);
+        }
+        game.writeTo(block);
+        previousSeed = seed;
+        written++;
+        if (++blockGames == RecordFormat.BLOCK_GAMES) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Writes one game read from a GameStore
+     */
+    public void write(GameStore.Record record) throws IOException {
+        int[] fleet1 = new int[record.getFleetSize()];
+        int[] fleet2 = new int[record.getFleetSize()];
+        for (int i = 0; i < fleet1.length; i++) {
+            fleet1[i] = record.getFleetCell(1, i);
+            fleet2[i] = record.getFleetCell(2, i);
+        }
+        int[] moves = new int[record.getMoveCount()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = record.getMove(i);
+        }
+        write(record.getSeed(), record.getWinner(), fleet1, fleet2, moves);
+    }
+
+    /**
+     * Writes every game in a store, in id order
+     * @throws IllegalArgumentException if the store's boards differ from this archive's
+     */
+    public void writeAll(GameStore store) throws IOException {
+        if (store.getBoardSize() != boardSize) {
+            throw new IllegalArgumentException("The store's games do not fit this archive");
+        }
+        for (long id = 0; id < store.size(); id++) {
+            write(store.read(id));
+        }
+    }
+
+    // each ship's first cell, then one bit per ship set if it lies along a row
+    private void writeFleet(int[] fleet) throws IOException {
+        if (fleet.length != fleetCells) {
+            throw new IllegalArgumentException("The fleet does not match the archive's");
+        }
+        long[] horizontal = new long[(shipLengths.length + 63) / 64];
+        int at = 0;
+        for (int k = 0; k < shipLengths.length; k++) {
+            int length = shipLengths[k];
+            int first = fleet[at];
+            boolean across = length > 1 && fleet[at + 1] == first + 1;
+            int step = across ? 1 : boardSize;
+            for (int i = 0; i < length; i++) {
+                int cell = fleet[at + i];
+                if (cell != first + i * step || cell < 0 || cell >= boardSize * boardSize
+                        || across && cell / boardSize != first / boardSize) {
+                    throw new IllegalArgumentException("Ship " + k + " is not a straight line on the board");
+                }
+            }
+            RecordFormat.writeCell(game, first, cellBytes);
+            if (across) {
+                horizontal[k / 64] |= 1L << (k % 64);
+            }
+            at += length;
+        }
+        for (int k = 0; k < shipLengths.length; k += 8) {
+            game.write((int) (horizontal[k / 64] >>> (k % 64)));
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockGames == 0) {
+            return;
+        }
+        byte[] raw = block.toByteArray();
+        RecordFormat.writeVarint(out, blockGames);
+        if (compress) {
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            if (deflated.length < raw.length + 64) {
+                deflated = new byte[raw.length + 64];
+            }
+            int length = 0;
+            while (!deflater.finished()) {
+                length += deflater.deflate(deflated, length, deflated.length - length);
+                if (length == deflated.length) {
+                    deflated = Arrays.copyOf(deflated, 2 * deflated.length);
+                }
+            }
+            RecordFormat.writeVarint(out, length);
+            RecordFormat.writeVarint(out, raw.length);
+            out.write(deflated, 0, length);
+        } else {
+            RecordFormat.writeVarint(out, raw.length);
+            RecordFormat.writeVarint(out, raw.length);
+            out.write(raw);
+        }
+        block.reset();
+        blockGames = 0;
+        previousSeed = 0;
+    }
+
+    /**
+     * @return the number of games written
+     */
+    public long getGamesWritten() {
+        return written;
+    }
+
+    /**
+     * Writes the last block and the end of the archive, then closes the stream
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushBlock();
+            RecordFormat.writeVarint(out, 0);
+            out.flush();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+            out.close();
+        }
+    }
+}
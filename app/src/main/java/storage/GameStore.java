@@ -0,0 +1,405 @@
+package storage;
+
+import battleship.GameArena;
+import battleship.Point;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A GameStore keeps finished two-player games in a memory-mapped file, off the Java heap, so millions
+ * of them can be kept and queried without adding to the garbage collector's work. Every game is a
+ * fixed-size record holding its seed, its winner, both fleets as packed cell indices and the cells
+ * attacked by each shot in order, so record id lives at a known offset and can be read directly.
+ * Games are only ever appended.
+ * <p>
+ * A cell is numbered y * size + x and takes one byte on boards of 16x16 or smaller, two bytes on
+ * larger ones. Each fleet lists the cells of its ships ship by ship, longest ship first, and player 1
+ * took the even shots of the move sequence and player 2 the odd ones.
+ * <p>
+ * The file is a header page followed by the records, mapped in segments of whole records so no
+ * record spans two mappings. Appends are serialized, and reads may run alongside them on any thread.
+ */
+public final class GameStore implements Closeable {
+
+    // Abstraction Function:
+    //      the games with ids 0 .. count - 1, where game id is the record at byte offset
+    //      HEADER_BYTES + id * recordSize of the file, which is byte (id % recordsPerSegment) * recordSize
+    //      of segments[id / recordsPerSegment]
+
+    // Representation Invariant:
+    //      0 < boardSize <= MAX_BOARD_SIZE, cellBytes is 1 if boardSize <= 16 and 2 otherwise
+    //      count <= segments.length * recordsPerSegment
+    //      the count in the header page == count
+
+    public static final int MAX_BOARD_SIZE = 64;
+
+    private static final int MAGIC = 0x42534753; // "BSGS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4096;
+    private static final long SEGMENT_BYTES = 1L << 26;
+
+    // header layout
+    private static final int MAGIC_AT = 0;
+    private static final int VERSION_AT = 4;
+    private static final int COUNT_AT = 8;
+    private static final int SIZE_AT = 16;
+    private static final int SHIPS_INFO_LENGTH_AT = 20;
+    private static final int SHIPS_INFO_AT = 24;
+
+    // record layout, before the fleets and moves
+    private static final int SEED_AT = 0;
+    private static final int WINNER_AT = 8;
+    private static final int MOVE_COUNT_AT = 10;
+    private static final int FLEETS_AT = 12;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private volatile MappedByteBuffer[] segments; // replaced, never changed, when the store grows
+    private final int boardSize;
+    private final int[] shipsInfo;
+    private final int fleetCells;
+    private final int maxMoves;
+    private final int cellBytes;
+    private final int movesAt;
+    private final int recordSize;
+    private final int recordsPerSegment;
+    private volatile long count;
+
+    private GameStore(FileChannel channel, int boardSize, int[] shipsInfo, long count) throws IOException {
+        this.channel = channel;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        this.header.order(ByteOrder.LITTLE_ENDIAN);
+        this.segments = new MappedByteBuffer[0];
+        this.boardSize = boardSize;
+        this.shipsInfo = shipsInfo.clone();
+        int cells = 0;
+        for (int length = 1; length < shipsInfo.length; length++) {
+            cells += length * shipsInfo[length];
+        }
+        this.fleetCells = cells;
+        this.maxMoves = 2 * boardSize * boardSize;
+        this.cellBytes = boardSize <= 16 ? 1 : 2;
+        this.movesAt = FLEETS_AT + 2 * fleetCells * cellBytes;
+        this.recordSize = (movesAt + maxMoves * cellBytes + 7) & ~7;
+        this.recordsPerSegment = (int) Math.max(1, SEGMENT_BYTES / recordSize);
+        // every stored record is in the file, as segments are mapped whole
+        if (count < 0 || count > (channel.size() - HEADER_BYTES) / recordSize) {
+            throw new IOException("The store's " + count + " games do not fit in its file");
+        }
+        this.count = count;
+        while ((long) segments.length * recordsPerSegment < count) {
+            mapSegment();
+        }
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert boardSize > 0 && boardSize <= MAX_BOARD_SIZE : "The board size must be storable";
+        assert count <= (long) segments.length * recordsPerSegment : "Every record must be mapped";
+        assert header.getLong(COUNT_AT) == count : "The header must hold the count";
+    }
+
+    /**
+     * Creates an empty store, replacing any file already at path
+     * @param path the file to store games in
+     * @param boardSize the size of every stored game's boards
+     * @param shipsInfo every player's fleet, as an array of ship length (index) to number (value)
+     * @throws IllegalArgumentException if boardSize is not in (0, MAX_BOARD_SIZE] or shipsInfo is too long for the header
+     */
+    public static GameStore create(Path path, int boardSize, int[] shipsInfo) throws IOException {
+        if (boardSize <= 0 || boardSize > MAX_BOARD_SIZE) {
+            throw new IllegalArgumentException("Only boards up to " + MAX_BOARD_SIZE + " can be stored");
+        }
+        if (shipsInfo == null || SHIPS_INFO_AT + 4 * shipsInfo.length > HEADER_BYTES) {
+            throw new IllegalArgumentException("shipsInfo does not fit in the header");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC_AT, MAGIC);
+        header.putInt(VERSION_AT, VERSION);
+        header.putLong(COUNT_AT, 0);
+        header.putInt(SIZE_AT, boardSize);
+        header.putInt(SHIPS_INFO_LENGTH_AT, shipsInfo.length);
+        for (int i = 0; i < shipsInfo.length; i++) {
+            header.putInt(SHIPS_INFO_AT + 4 * i, shipsInfo[i]);
+        }
+        return new GameStore(channel, boardSize, shipsInfo, 0);
+    }
+
+    /**
+     * Opens a store made by create, to read and append to
+     * @throws IOException if path is not a store of this version, or its header describes a board,
+     *                     fleet or number of games that cannot be stored in it
+     */
+    public static GameStore open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(path + " is not a game store");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(MAGIC_AT) != MAGIC || header.getInt(VERSION_AT) != VERSION) {
+                throw new IOException(path + " is not a version " + VERSION + " game store");
+            }
+            int boardSize = header.getInt(SIZE_AT);
+            if (boardSize <= 0 || boardSize > MAX_BOARD_SIZE) {
+                throw new IOException("The store's board size " + boardSize + " is not supported");
+            }
+            int length = header.getInt(SHIPS_INFO_LENGTH_AT);
+            if (length < 0 || length > (HEADER_BYTES - SHIPS_INFO_AT) / 4) {
+                throw new IOException("The store's fleet has an impossible length, " + length);
+            }
+            int[] shipsInfo = new int[length];
+            long cells = 0;
+            for (int i = 0; i < shipsInfo.length; i++) {
+                shipsInfo[i] = header.getInt(SHIPS_INFO_AT + 4 * i);
+                if (shipsInfo[i] < 0 || shipsInfo[i] > 0 && (i == 0 || i > boardSize)) {
+                    throw new IOException("The store's fleet has " + shipsInfo[i] + " ships of length " + i
+                                          + " on a board of " + boardSize);
+                }
+                cells += (long) i * shipsInfo[i];
+            }
+            if (cells > boardSize * boardSize) {
+                throw new IOException("The store's fleet does not fit on its board");
+            }
+            return new GameStore(channel, boardSize, shipsInfo, header.getLong(COUNT_AT));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void mapSegment() throws IOException {
+        long start = HEADER_BYTES + (long) segments.length * recordsPerSegment * recordSize;
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, start,
+                                               (long) recordsPerSegment * recordSize);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        MappedByteBuffer[] grown = Arrays.copyOf(segments, segments.length + 1);
+        grown[segments.length] = segment;
+        segments = grown;
+    }
+
+    /**
+     * Appends a finished game
+     * @param seed the seed the game was played from
+     * @param winner the PID of the winner, 1 or 2
+     * @param fleet1 the cells of player 1's ships, in the order described above
+     * @param fleet2 the cells of player 2's ships
+     * @param moves the cell attacked by each shot, in the order they were taken
+     * @return the id of the stored game
+     * @throws IllegalArgumentException if winner is not 1 or 2, a fleet does not have the store's
+     *                                  number of cells, there are more moves than cells on both
+     *                                  boards, or any cell is off the board
+     */
+    public synchronized long append(long seed, int winner, int[] fleet1, int[] fleet2, int[] moves) throws IOException {
+        if (winner != 1 && winner != 2) {
+            throw new IllegalArgumentException("The winner must be player 1 or 2");
+        }
+        if (fleet1.length != fleetCells || fleet2.length != fleetCells || moves.length > maxMoves) {
+            throw new IllegalArgumentException("The game does not fit this store's fleet and board size");
+        }
+        long id = count;
+        if (id == (long) segments.length * recordsPerSegment) {
+            mapSegment();
+        }
+        MappedByteBuffer segment = segments[(int) (id / recordsPerSegment)];
+        int at = (int) (id % recordsPerSegment) * recordSize;
+        segment.putLong(at + SEED_AT, seed);
+        segment.put(at + WINNER_AT, (byte) winner);
+        segment.putShort(at + MOVE_COUNT_AT, (short) moves.length);
+        putCells(segment, at + FLEETS_AT, fleet1);
+        putCells(segment, at + FLEETS_AT + fleetCells * cellBytes, fleet2);
+        putCells(segment, at + movesAt, moves);
+        // the record is written before the count that makes it visible
+        count = id + 1;
+        header.putLong(COUNT_AT, count);
+        return id;
+    }
+
+    private void putCells(MappedByteBuffer segment, int at, int[] cells) {
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] < 0 || cells[i] >= boardSize * boardSize) {
+                throw new IllegalArgumentException("Cell " + cells[i] + " is off the board");
+            }
+            if (cellBytes == 1) {
+                segment.put(at + i, (byte) cells[i]);
+            } else {
+                segment.putShort(at + 2 * i, (short) cells[i]);
+            }
+        }
+    }
+
+    /**
+     * Appends every finished game of an arena, in order
+     * @return the number of games appended
+     * @throws IllegalArgumentException if the arena's boards or fleets differ from the store's
+     */
+    public long appendAll(GameArena arena) throws IOException {
+        if (boardSize != GameArena.SIZE || !Arrays.equals(shipsInfo, GameArena.getShipsInfo())) {
+            throw new IllegalArgumentException("The arena's games do not fit this store");
+        }
+        long appended = 0;
+        for (int g = 0; g < arena.size(); g++) {
+            if (arena.getWinner(g) != 0) {
+                append(arena.getSeed(g), arena.getWinner(g), arena.getFleetCells(g, 1), arena.getFleetCells(g, 2),
+                       arena.getMoves(g));
+                appended++;
+            }
+        }
+        return appended;
+    }
+
+    /**
+     * @return the number of games stored
+     */
+    public long size() {
+        return count;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * @return the fleet of every stored game, as an array of ship length (index) to number (value)
+     */
+    public int[] getShipsInfo() {
+        return shipsInfo.clone();
+    }
+
+    /**
+     * @return a view of the stored game with the given id
+     * @throws IllegalArgumentException if there is no such game
+     */
+    public Record read(long id) {
+        Record record = new Record();
+        record.moveTo(id);
+        return record;
+    }
+
+    /**
+     * Visits every stored game in id order. The same Record is moved from game to game, so the visitor
+     * must not keep it
+     */
+    public void scan(Consumer<Record> visitor) {
+        scan(0, count, visitor);
+    }
+
+    /**
+     * Visits the stored games with ids in [from, to) in order, moving the same Record from game to game
+     * @throws IllegalArgumentException if the range is not within [0, size())
+     */
+    public void scan(long from, long to, Consumer<Record> visitor) {
+        if (from < 0 || from > to || to > count) {
+            throw new IllegalArgumentException("No games between " + from + " and " + to);
+        }
+        Record record = new Record();
+        for (long id = from; id < to; id++) {
+            record.moveTo(id);
+            visitor.accept(record);
+        }
+    }
+
+    /**
+     * Writes every appended game through to the file
+     */
+    public void force() throws IOException {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * A view of one stored game, read straight from the mapped file
+     */
+    public final class Record {
+        private long id;
+        private MappedByteBuffer segment;
+        private int at;
+
+        private Record() {
+        }
+
+        private void moveTo(long id) {
+            if (id < 0 || id >= count) {
+                throw new IllegalArgumentException("There is no game " + id);
+            }
+            this.id = id;
+            this.segment = segments[(int) (id / recordsPerSegment)];
+            this.at = (int) (id % recordsPerSegment) * recordSize;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getSeed() {
+            return segment.getLong(at + SEED_AT);
+        }
+
+        /**
+         * @return the PID of the winner
+         */
+        public int getWinner() {
+            return segment.get(at + WINNER_AT);
+        }
+
+        public int getMoveCount() {
+            return segment.getShort(at + MOVE_COUNT_AT);
+        }
+
+        /**
+         * @return the cell, y * size + x, attacked by the i-th shot
+         */
+        public int getMove(int i) {
+            if (i < 0 || i >= getMoveCount()) {
+                throw new IllegalArgumentException("There is no move " + i);
+            }
+            return cell(at + movesAt, i);
+        }
+
+        public Point getMovePoint(int i) {
+            int cell = getMove(i);
+            return Point.of(cell % boardSize, cell / boardSize);
+        }
+
+        /**
+         * @return the number of cells in each player's fleet
+         */
+        public int getFleetSize() {
+            return fleetCells;
+        }
+
+        /**
+         * @return the i-th cell, y * size + x, of the player's fleet
+         */
+        public int getFleetCell(int pid, int i) {
+            if (pid != 1 && pid != 2 || i < 0 || i >= fleetCells) {
+                throw new IllegalArgumentException("There is no cell " + i + " of player " + pid + "'s fleet");
+            }
+            return cell(at + FLEETS_AT + (pid - 1) * fleetCells * cellBytes, i);
+        }
+
+        private int cell(int start, int i) {
+            return cellBytes == 1 ? segment.get(start + i) & 0xff : segment.getShort(start + 2 * i) & 0xffff;
+        }
+    }
+}
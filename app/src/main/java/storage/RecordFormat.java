@@ -0,0 +1,110 @@
+package storage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The compact archive format shared by GameRecordWriter and GameRecordReader.
+ * <p>
+ * A file is a header followed by blocks of games and an empty block that ends it. The header is the
+ * magic number, the format version, a flags byte, the board size and the fleet (the length of
+ * shipsInfo, then each entry), all but the magic number as varints. A block is the number of games in
+ * it, the length of its body as stored and the length of its body once decompressed, as varints, then
+ * the body, which is deflated if the header's COMPRESSED flag is set.
+ * <p>
+ * In a body, each game is:
+ * <ul>
+ *     <li>its seed, as the zigzag varint difference from the previous game's seed in the block (the
+ *     first game's is from 0), so runs of consecutive seeds take one byte each</li>
+ *     <li>the winner's PID, one byte</li>
+ *     <li>each player's fleet, ship by ship longest first as in GameStore: the cell each ship starts
+ *     at, then a bitmask of which ships lie along a row rather than down a column</li>
+ *     <li>the number of moves, as a varint, then the cell of each move</li>
+ * </ul>
+ * Cells are numbered y * size + x and take one byte on boards of 16x16 or smaller, two otherwise.
+ */
+final class RecordFormat {
+
+    static final int MAGIC = 0x42534752; // "BSGR"
+    static final int VERSION = 1;
+    static final int COMPRESSED = 1;
+    static final int BLOCK_GAMES = 4096;
+
+    private RecordFormat() {
+    }
+
+    static int cellBytes(int boardSize) {
+        return boardSize * boardSize <= 256 ? 1 : 2;
+    }
+
+    /**
+     * @return the length of each ship in a fleet, longest first
+     */
+    static int[] shipLengths(int[] shipsInfo) {
+        int ships = 0;
+        for (int length = 1; length < shipsInfo.length; length++) {
+            ships += shipsInfo[length];
+        }
+        int[] lengths = new int[ships];
+        int k = 0;
+        for (int length = shipsInfo.length - 1; length >= 1; length--) {
+            for (int i = 0; i < shipsInfo[length]; i++) {
+                lengths[k++] = length;
+            }
+        }
+        return lengths;
+    }
+
+    static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte(in);
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("The archive ends in the middle of a record");
+        }
+        return b;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeCell(OutputStream out, int cell, int cellBytes) throws IOException {
+        out.write(cell);
+        if (cellBytes == 2) {
+            out.write(cell >>> 8);
+        }
+    }
+
+    static int readCell(InputStream in, int cellBytes) throws IOException {
+        int cell = readByte(in);
+        if (cellBytes == 2) {
+            cell |= readByte(in) << 8;
+        }
+        return cell;
+    }
+}
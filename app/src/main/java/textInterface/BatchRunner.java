@@ -0,0 +1,122 @@
+package textInterface;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Drives a {@link TextInterfaceController} from a script of commands, the same way a user typing
+ * into the console would, but without a terminal. Each line of the script may hold several
+ * commands separated by ';', so "1; 10; 1; ;" answers every settings prompt on one line. Blank
+ * lines are skipped, but an empty command between separators is passed through (e.g. to accept
+ * the default player names). Lines starting with '#' are comments.
+ * <p>
+ * The runner times every command and groups the latencies by the phase the controller was in
+ * when the command arrived, then reports throughput and per-phase latency.
+ */
+public class BatchRunner {
+
+    // This class does not represent an ADT
+
+    private static final String COMMAND_SEPARATOR = ";";
+    private static final String COMMENT_PREFIX = "#";
+
+    private final HeadlessTextInterfaceView view;
+    private final TextInterfaceController controller;
+    private final Map<String, PhaseStats> phaseStats;
+    private long commandCount;
+    private long elapsedNanos;
+
+    /**
+     * Creates a runner with a fresh controller and headless view
+     * @param hashOutput true to checksum the view's output, false to discard it
+     */
+    public BatchRunner(boolean hashOutput) {
+        this.view = new HeadlessTextInterfaceView(hashOutput);
+        this.controller = new TextInterfaceController(view);
+        this.view.setInputHandler(controller);
+        this.phaseStats = new LinkedHashMap<>();
+    }
+
+    /**
+     * Runs every command in the script through the controller. Stops early if the controller
+     * exits (the user declined to play again).
+     * @param script the command script to read
+     * @throws IOException if the script cannot be read
+     */
+    public void run(Reader script) throws IOException {
+        BufferedReader reader = new BufferedReader(script);
+        controller.start();
+        long start = System.nanoTime();
+        String line;
+        while (view.isActive() && (line = reader.readLine()) != null) {
+            if (line.isBlank() || line.trim().startsWith(COMMENT_PREFIX)) {
+                continue;
+            }
+            for (String command : line.split(COMMAND_SEPARATOR, -1)) {
+                if (!view.isActive()) {
+                    break;
+                }
+                runCommand(command.trim());
+            }
+        }
+        elapsedNanos += System.nanoTime() - start;
+    }
+
+    private void runCommand(String command) {
+        String phase = controller.getPhase();
+        long before = System.nanoTime();
+        controller.handleInput(command);
+        long latency = System.nanoTime() - before;
+        phaseStats.computeIfAbsent(phase, k -> new PhaseStats()).record(latency);
+        commandCount++;
+    }
+
+    /**
+     * @return the number of commands handled so far
+     */
+    public long getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * @return the CRC32 of the view's output, or -1 if output is being discarded
+     */
+    public long getOutputChecksum() {
+        return view.getChecksum();
+    }
+
+    /**
+     * Writes throughput, per-phase latency and the output checksum to out
+     * @param out the stream to write the report to
+     */
+    public void report(PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("commands: %d in %.3f s (%.0f commands/sec)%n",
+                   commandCount, seconds, seconds > 0 ? commandCount / seconds : 0.0);
+        for (Map.Entry<String, PhaseStats> entry : phaseStats.entrySet()) {
+            PhaseStats stats = entry.getValue();
+            out.printf("  %-10s n=%-8d mean=%.1f us  max=%.1f us%n", entry.getKey(), stats.count,
+                       stats.totalNanos / 1e3 / stats.count, stats.maxNanos / 1e3);
+        }
+        long checksum = getOutputChecksum();
+        if (checksum >= 0) {
+            out.printf("output crc32: %08x%n", checksum);
+        }
+    }
+
+    private static class PhaseStats {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        private void record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package textInterface;
+
+import java.io.BufferedReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A TextInterfaceView that never touches the console. Everything it would display is either
+ * discarded or folded into a CRC32 checksum, so scripted runs can compare output between versions
+ * without paying for a terminal. Input is not read by this view, whoever owns it must pass commands
+ * to the controller directly.
+ */
+public class HeadlessTextInterfaceView extends TextInterfaceView {
+
+    // This class does not represent an ADT
+
+    private final CRC32 checksum;
+
+    /**
+     * Creates a headless view
+     * @param hashOutput true to checksum everything displayed, false to throw it away
+     */
+    public HeadlessTextInterfaceView(boolean hashOutput) {
+        this(hashOutput ? new CRC32() : null);
+    }
+
+    private HeadlessTextInterfaceView(CRC32 checksum) {
+        super(new BufferedReader(Reader.nullReader()), new PrintStream(
+                checksum == null ? OutputStream.nullOutputStream()
+                                 : new CheckedOutputStream(OutputStream.nullOutputStream(), checksum)));
+        this.checksum = checksum;
+    }
+
+    /**
+     * Does nothing, since a headless view has no input of its own to wait on
+     */
+    @Override
+    public void begin() {
+    }
+
+    /**
+     * @return the CRC32 of everything displayed so far, or -1 if output is being discarded
+     */
+    public long getChecksum() {
+        if (checksum == null) {
+            return -1;
+        }
+        out.flush();
+        return checksum.getValue();
+    }
+}
@@ -4,6 +4,7 @@ import battleship.BoardView;
 import battleship.Point;
 
 import battleship.Game;
+import battleship.GameView;
 import battleship.TwoPlayerGame;
 
 import java.util.List;
@@ -124,6 +125,18 @@ public class TextInterfaceController implements InputHandler {
 
     }
 
+    /**
+     * Gets the step of the program that the next input will be handled by
+     * @return "settings" or "play again" for the controller's own phases, otherwise the game's
+     * phase ("setup", "playing" or "end")
+     */
+    public String getPhase() {
+        if (this.controllerPhase == 1) {
+            return game.getPhase();
+        }
+        return CONTROLLER_PHASES[this.controllerPhase];
+    }
+
     // the initial settings prompt after opening the game
     private void settingsPrompt() {
         doSettingsPhase("");
@@ -249,7 +262,8 @@ public class TextInterfaceController implements InputHandler {
             if (game.getPhase().equals("setup")) {
                 shipPointPrompt();
             } else {
-                view.drawBoard(game.getPlayerView(game.getCurrentPlayer()).get(0), game.getCurrentPlayerShipPoints());
+                GameView state = game.getView();
+                view.drawBoard(state.getPlayerView(state.getCurrentPlayer()).get(0), state.getCurrentPlayerShipPoints());
                 attackPrompt();
             }
         }
@@ -310,8 +324,9 @@ public class TextInterfaceController implements InputHandler {
      * draws board and prompts for first point of ship
      */
     private void shipPointPrompt() {
-        view.playerPrompt(game.getCurrentPlayerName());
-        view.drawBoard(game.getPlayerView(game.getCurrentPlayer()).get(0), game.getCurrentPlayerShipPoints());
+        GameView state = game.getView();
+        view.playerPrompt(state.getCurrentPlayerName());
+        view.drawBoard(state.getPlayerView(state.getCurrentPlayer()).get(0), state.getCurrentPlayerShipPoints());
         view.placeShipOfLength(getShipLength());
     }
 
@@ -319,9 +334,12 @@ public class TextInterfaceController implements InputHandler {
      * draws player boards for player attack phase and prompts for attack point
      */
     private void attackPrompt() {
-        view.playerPrompt(game.getCurrentPlayerName());
-        List<BoardView> boards = game.getPlayerView(game.getCurrentPlayer());
-        view.drawBoard(boards.get(0), game.getCurrentPlayerShipPoints());
+        // the computer can work out its reply while the player types
+        game.speculateComputerTurn();
+        GameView state = game.getView();
+        view.playerPrompt(state.getCurrentPlayerName());
+        List<BoardView> boards = state.getPlayerView(state.getCurrentPlayer());
+        view.drawBoard(boards.get(0), state.getCurrentPlayerShipPoints());
         for (int i = 1; i < boards.size(); i++) {
             view.drawBoard(boards.get(i));
         }
@@ -332,7 +350,8 @@ public class TextInterfaceController implements InputHandler {
      * returns length of ship to be set up
      */
     private int getShipLength() {
-        int[] temp = game.getShipsToBePlaced(game.getCurrentPlayer());
+        GameView state = game.getView();
+        int[] temp = state.getShipsToBePlaced(state.getCurrentPlayer());
         int index = 0;
         while (index < temp.length && temp[index] == 0) {
             index++;
@@ -3,10 +3,12 @@ package textInterface;
 import battleship.BoardView;
 import battleship.Point;
 import battleship.Ship;
+import metrics.Metrics;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.io.UncheckedIOException;
 import java.util.HashSet;
 import java.util.List;
@@ -27,12 +29,23 @@ public class TextInterfaceView implements View {
 
     private InputHandler inputHandler;
     private BufferedReader input;
+    protected final PrintStream out;
 
     private boolean active;
 
     public TextInterfaceView() {
-        active = true;
-        input = new BufferedReader(new InputStreamReader(System.in));
+        this(new BufferedReader(new InputStreamReader(System.in)), System.out);
+    }
+
+    /**
+     * Creates a view that reads commands from input and writes everything it displays to out
+     * @param input the source of user commands
+     * @param out the stream to display to
+     */
+    protected TextInterfaceView(BufferedReader input, PrintStream out) {
+        this.active = true;
+        this.input = input;
+        this.out = out;
     }
 
     @Override
@@ -65,6 +78,13 @@ public class TextInterfaceView implements View {
         return inputValue;
     }
 
+    /**
+     * @return false once exit has been called
+     */
+    public boolean isActive() {
+        return active;
+    }
+
     @Override
     public void exit() {
         active = false;
@@ -77,7 +97,7 @@ public class TextInterfaceView implements View {
 
     @Override
     public void startMenu() {
-        System.out.println("Welcome to Battleship");
+        out.println("Welcome to Battleship");
     }
 
     @Override
@@ -93,6 +113,7 @@ public class TextInterfaceView implements View {
 
     public void drawBoard(BoardView board, Set<Point> shipPoints) {
         // NOTE: currently works only for board sizes <= 26;
+        long start = Metrics.start();
         int boardSize = board.size();
         StringBuilder builder = new StringBuilder();
         int maxNumberLength = Integer.toString(boardSize - 1).length();
@@ -110,7 +131,7 @@ public class TextInterfaceView implements View {
             builder.append(numString);
             for (int j = 0; j < boardSize; j++) {
                 builder.append(" ");
-                Point p = new Point(j, i);
+                Point p = Point.of(j, i);
                 if (hits.contains(p)) {
                     builder.append(RED);
                     builder.append("X");
@@ -127,7 +148,8 @@ public class TextInterfaceView implements View {
             }
             builder.append("\n");
         }
-        System.out.print(builder);
+        out.print(builder);
+        Metrics.record(Metrics.Op.DRAW_BOARD, start);
     }
 
     private Set<Point> getAllShipPoints(List<Ship> ships) {
@@ -155,7 +177,7 @@ public class TextInterfaceView implements View {
     }
 
     public void welcome(){
-        System.out.println(BLUE + "Welcome to Battleship!" + RESET);
+        out.println(BLUE + "Welcome to Battleship!" + RESET);
     }
 
     //
@@ -165,7 +187,7 @@ public class TextInterfaceView implements View {
     @Override
     public void setupPrompt(String name) {
         // jason-  I am taking over this method for my uses since it wasn't completed nor fully specified
-        System.out.println(BLUE + "-- Setup [ " + RESET + name + BLUE + " ] --" + RESET);
+        out.println(BLUE + "-- Setup [ " + RESET + name + BLUE + " ] --" + RESET);
     }
 
     /**
@@ -183,11 +205,11 @@ public class TextInterfaceView implements View {
     }
 
     public void numThingPrompt(String thing, int min, int max) {
-        System.out.print("Number of " + thing + " (" + min + "-" + max + "): ");
+        out.print("Number of " + thing + " (" + min + "-" + max + "): ");
     }
 
     public void boardLengthPrompt(int min, int max) {
-        System.out.print("Board length (" + min + "-" + max + "): ");
+        out.print("Board length (" + min + "-" + max + "): ");
     }
 
     // jason- removed since we have the other one already
@@ -201,24 +223,24 @@ public class TextInterfaceView implements View {
      * @param options the options
      */
     public void showOptionsEnumerated(List<String> options) {
-        System.out.println(BLUE + "Choose your option:" + RESET);
+        out.println(BLUE + "Choose your option:" + RESET);
         for (int i = 0; i < options.size(); i++) {
-            System.out.println("  " + BLUE + (i + 1) + " - " + RESET + options.get(i));
+            out.println("  " + BLUE + (i + 1) + " - " + RESET + options.get(i));
         }
     }
 
     public void showOptions(List<String> options) {
-        System.out.println("Choose your option:");
+        out.println("Choose your option:");
         for (String option : options) {
-            System.out.println(option);
+            out.println(option);
         }
     }
     public void showOptionRange(int low, int high) {
-        System.out.print(BLUE + "Enter a value between " + RESET + low + BLUE + " and " + RESET + high + BLUE + ": " + RESET);
+        out.print(BLUE + "Enter a value between " + RESET + low + BLUE + " and " + RESET + high + BLUE + ": " + RESET);
     }
 
     public void showOptionFreeform() {
-        System.out.print(BLUE + "Enter text input: " + RESET);
+        out.print(BLUE + "Enter text input: " + RESET);
     }
 
     //
@@ -227,57 +249,57 @@ public class TextInterfaceView implements View {
 
     public void playerPrompt(String player){
         clearConsole();
-        System.out.println(BLUE + player + "'s turn:" + RESET);
+        out.println(BLUE + player + "'s turn:" + RESET);
     }
 
     @Override
     public void attackPrompt() {
-        System.out.print(BLUE + "Position to attack: " + RESET);
+        out.print(BLUE + "Position to attack: " + RESET);
     }
 
     @Override
     public void placeShipPrompt() {
-        System.out.println(BLUE + "Ship placement on board: " + RESET);
+        out.println(BLUE + "Ship placement on board: " + RESET);
     }
 
     @Override
     public void shipOrientationPrompt() {
-        System.out.print(BLUE + "Ship orientation: " + RESET);
+        out.print(BLUE + "Ship orientation: " + RESET);
     }
 
     @Override
     public void shipLengthPrompt() {
-        System.out.print(BLUE + "Ship length: " + RESET);
+        out.print(BLUE + "Ship length: " + RESET);
     }
 
     @Override
     public void placeShipOfLength(int length) {
-        System.out.print(BLUE + "Where to place ship of length " + length + ": " + RESET);
+        out.print(BLUE + "Where to place ship of length " + length + ": " + RESET);
     }
 
     public void showWinner(String player){
-        System.out.println(BLUE + player + " wins!" + RESET);
+        out.println(BLUE + player + " wins!" + RESET);
     }
 
     public void playAgainPrompt(){
-        System.out.print("Would you like to play again? (y/n): ");
+        out.print("Would you like to play again? (y/n): ");
     }
 
     @Override
     public void showErrorUnknownInput() {
-        System.out.println(RED + "Unknown option" + RESET);
+        out.println(RED + "Unknown option" + RESET);
     }
 
     @Override
     public void showErrorInvalidPosition() {
-        System.out.println(RED + "Invalid board position" + RESET);
+        out.println(RED + "Invalid board position" + RESET);
     }
 
     public void showErrorInvalidInput() {
-        System.out.println(RED + "Invalid input" + RESET);
+        out.println(RED + "Invalid input" + RESET);
     }
 
     public void clearConsole() {
-        System.out.print("\033[H\033[2J");
+        out.print("\033[H\033[2J");
     }
 }
@@ -0,0 +1,68 @@
+package utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Controls how much of each ADT's representation invariant is checked. Every mutation is always
+ * checked incrementally (only the state it touched), which is cheap. Scans of the whole
+ * representation are what make checking expensive, so in SAMPLED mode they only run every Nth
+ * operation on an object and/or with some probability.
+ * <p>
+ * The mode is read from system properties once at startup:
+ * <ul>
+ *     <li>{@code battleship.invariants} - off, sampled or full. Defaults to full if
+ *     {@link Globals#DEBUG} is set, otherwise off</li>
+ *     <li>{@code battleship.invariants.interval} - in sampled mode, do a full scan every this many
+ *     operations on an object (default 1000, 0 to disable)</li>
+ *     <li>{@code battleship.invariants.probability} - in sampled mode, also do a full scan with this
+ *     probability on each operation (default 0)</li>
+ * </ul>
+ * Invariants are checked with assert, so nothing is checked unless assertions are enabled (-ea).
+ */
+public class InvariantChecks {
+
+    public enum Mode {
+        OFF,
+        SAMPLED,
+        FULL
+    }
+
+    public static final Mode MODE = readMode();
+    public static final boolean ENABLED = MODE != Mode.OFF;
+    public static final int FULL_SCAN_INTERVAL = Integer.getInteger("battleship.invariants.interval", 1000);
+    public static final double FULL_SCAN_PROBABILITY =
+            Double.parseDouble(System.getProperty("battleship.invariants.probability", "0"));
+
+    private InvariantChecks() {
+    }
+
+    /**
+     * Decides whether an object should scan its whole representation on this operation
+     * @param operationCount how many operations have been performed on the object so far
+     * @return true if a full scan should be done now
+     */
+    public static boolean fullScanDue(int operationCount) {
+        switch (MODE) {
+            case FULL:
+                return true;
+            case SAMPLED:
+                return FULL_SCAN_INTERVAL > 0 && operationCount % FULL_SCAN_INTERVAL == 0
+                        || FULL_SCAN_PROBABILITY > 0 && ThreadLocalRandom.current().nextDouble() < FULL_SCAN_PROBABILITY;
+            default:
+                return false;
+        }
+    }
+
+    private static Mode readMode() {
+        boolean assertionsEnabled = false;
+        assert assertionsEnabled = true; // only runs with -ea
+        if (!assertionsEnabled) {
+            return Mode.OFF;
+        }
+        String mode = System.getProperty("battleship.invariants");
+        if (mode == null) {
+            return Globals.DEBUG ? Mode.FULL : Mode.OFF;
+        }
+        return Mode.valueOf(mode.toUpperCase());
+    }
+}
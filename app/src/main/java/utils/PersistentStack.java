@@ -0,0 +1,70 @@
+package utils;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable last-in first-out stack. Pushing and popping return a new stack in constant time and
+ * share every element below the top with the stack they came from, so keeping many versions of a
+ * stack costs one node per push rather than a copy per version.
+ * @param <T> type of the elements
+ */
+public final class PersistentStack<T> {
+
+    private static final PersistentStack<?> EMPTY = new PersistentStack<>(null, null, 0);
+
+    private final T top;
+    private final PersistentStack<T> rest;
+    private final int size;
+
+    private PersistentStack(T top, PersistentStack<T> rest, int size) {
+        this.top = top;
+        this.rest = rest;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentStack<T> empty() {
+        return (PersistentStack<T>) EMPTY;
+    }
+
+    /**
+     * @param element the element to put on top, not null
+     * @return a stack holding element on top of this stack
+     */
+    public PersistentStack<T> push(T element) {
+        if (element == null) {
+            throw new IllegalArgumentException("PersistentStack cannot hold null");
+        }
+        return new PersistentStack<>(element, this, size + 1);
+    }
+
+    /**
+     * @return the element on top of this stack
+     * @throws NoSuchElementException if this stack is empty
+     */
+    public T peek() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return top;
+    }
+
+    /**
+     * @return this stack without its top element
+     * @throws NoSuchElementException if this stack is empty
+     */
+    public PersistentStack<T> pop() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return rest;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -19,12 +19,12 @@ public class PointUtils {
             int dy = y2 - y1;
             int dir = (dy < 0) ? -1 : 1;
             for (int i = 0; i <= Math.abs(dy); i++) {
-                out.add(new Point(p2.getX(), y1 + i*dir));
+                out.add(Point.of(p2.getX(), y1 + i*dir));
             }
         } else { // ship must be horizontal
             int dir = (dx < 0) ? -1 : 1;
             for (int i = 0; i <= Math.abs(dx); i++) {
-                out.add(new Point(x1 + i*dir, p2.getY() ));
+                out.add(Point.of(x1 + i*dir, p2.getY() ));
             }
         }
         return out;
@@ -0,0 +1,253 @@
+package utils;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A SparseBitmap is a mutable set of integer (x, y) cells. Cells are stored in 64x64 tiles of bits,
+ * and a tile is only allocated the first time one of its cells is set, so memory grows with the
+ * number of tiles that have been touched rather than with the area of the grid.
+ */
+public class SparseBitmap {
+
+    // Abstraction Function:
+    //      the set of cells (x, y) such that bit (x & 63) of tiles[i][y & 63] is set, where
+    //      keys[i] == tileKey(x >> 6, y >> 6)
+
+    // Representation Invariant:
+    //      keys.length == tiles.length, and is a power of two
+    //      tiles[i] == null iff slot i is empty
+    //      every allocated tile has at least one bit set
+    //      tileCount == number of non-null tiles, and tileCount <= keys.length / 2
+    //      cardinality == number of set bits across all tiles
+
+    /**
+     * The length of one edge of a tile, in cells.
+     */
+    public static final int TILE_SIZE = 64;
+
+    private static final int TILE_SHIFT = 6;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+    private long[][] tiles;
+    private int tileCount;
+    private long cardinality;
+
+    public SparseBitmap() {
+        this.keys = new long[INITIAL_CAPACITY];
+        this.tiles = new long[INITIAL_CAPACITY][];
+        this.tileCount = 0;
+        this.cardinality = 0;
+    }
+
+    private void checkRep() {
+        if (InvariantChecks.ENABLED) {
+            assert keys.length == tiles.length : "keys and tiles must be parallel";
+            assert Integer.bitCount(keys.length) == 1 : "capacity must be a power of two";
+            assert tileCount <= keys.length / 2 : "table is over-full";
+            assert cardinality >= 0 : "cardinality cannot be negative";
+        }
+    }
+
+    /**
+     * Returns true if the cell (x, y) is in this bitmap
+     * @param x the x-coord of the cell
+     * @param y the y-coord of the cell
+     * @return true iff (x, y) has been set and not cleared since
+     */
+    public boolean get(int x, int y) {
+        long[] tile = tiles[find(tileKey(x >> TILE_SHIFT, y >> TILE_SHIFT))];
+        return tile != null && (tile[y & TILE_MASK] & (1L << (x & TILE_MASK))) != 0;
+    }
+
+    /**
+     * Adds the cell (x, y) to this bitmap, allocating its tile if this is the first cell set in it
+     * @param x the x-coord of the cell
+     * @param y the y-coord of the cell
+     * @return true if the cell was not already set
+     */
+    public boolean set(int x, int y) {
+        long key = tileKey(x >> TILE_SHIFT, y >> TILE_SHIFT);
+        int slot = find(key);
+        long[] tile = tiles[slot];
+        if (tile == null) {
+            tile = new long[TILE_SIZE];
+            keys[slot] = key;
+            tiles[slot] = tile;
+            tileCount++;
+            if (tileCount > keys.length / 2) {
+                grow();
+            }
+        }
+        long bit = 1L << (x & TILE_MASK);
+        int row = y & TILE_MASK;
+        if ((tile[row] & bit) != 0) {
+            return false;
+        }
+        tile[row] |= bit;
+        cardinality++;
+        checkRep();
+        return true;
+    }
+
+    /**
+     * Removes the cell (x, y) from this bitmap, releasing its tile if the tile becomes empty
+     * @param x the x-coord of the cell
+     * @param y the y-coord of the cell
+     * @return true if the cell was set before this call
+     */
+    public boolean clear(int x, int y) {
+        int slot = find(tileKey(x >> TILE_SHIFT, y >> TILE_SHIFT));
+        long[] tile = tiles[slot];
+        long bit = 1L << (x & TILE_MASK);
+        int row = y & TILE_MASK;
+        if (tile == null || (tile[row] & bit) == 0) {
+            return false;
+        }
+        tile[row] &= ~bit;
+        cardinality--;
+        if (isEmpty(tile)) {
+            removeSlot(slot);
+        }
+        checkRep();
+        return true;
+    }
+
+    /**
+     * @return the number of cells in this bitmap
+     */
+    public long cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @return the number of 64x64 tiles currently allocated
+     */
+    public int tileCount() {
+        return tileCount;
+    }
+
+    /**
+     * Returns an iterator over the cells of this bitmap, each packed into a long by {@link #pack}.
+     * Cells are produced tile by tile, in no particular order between tiles. The bitmap must not be
+     * modified while the iterator is in use.
+     * @return an iterator of packed cells
+     */
+    public PrimitiveIterator.OfLong cells() {
+        return new CellIterator();
+    }
+
+    /**
+     * packs a cell into a single long, with y in the high half and x in the low half
+     */
+    public static long pack(int x, int y) {
+        return ((long) y << 32) | (x & 0xffffffffL);
+    }
+
+    public static int unpackX(long cell) {
+        return (int) cell;
+    }
+
+    public static int unpackY(long cell) {
+        return (int) (cell >>> 32);
+    }
+
+    private static long tileKey(int tileX, int tileY) {
+        return pack(tileX, tileY);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // returns the slot holding key, or the empty slot where it would be inserted
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (tiles[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[][] oldTiles = tiles;
+        keys = new long[oldKeys.length * 2];
+        tiles = new long[oldTiles.length * 2][];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldTiles[i] != null) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                tiles[slot] = oldTiles[i];
+            }
+        }
+    }
+
+    // backward-shift deletion so that lookups never need tombstones
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        tiles[slot] = null;
+        tileCount--;
+        int next = (slot + 1) & mask;
+        while (tiles[next] != null) {
+            int home = hash(keys[next]) & mask;
+            // move the entry back if its home slot is not cyclically within (slot, next]
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                tiles[slot] = tiles[next];
+                tiles[next] = null;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private static boolean isEmpty(long[] tile) {
+        for (long row : tile) {
+            if (row != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private class CellIterator implements PrimitiveIterator.OfLong {
+        private int slot = -1;
+        private int row = TILE_SIZE;
+        private long bits = 0;
+
+        @Override
+        public boolean hasNext() {
+            while (bits == 0) {
+                row++;
+                if (row >= TILE_SIZE) {
+                    do {
+                        slot++;
+                    } while (slot < tiles.length && tiles[slot] == null);
+                    if (slot >= tiles.length) {
+                        return false;
+                    }
+                    row = 0;
+                }
+                bits = tiles[slot][row];
+            }
+            return true;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int col = Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            int tileX = unpackX(keys[slot]);
+            int tileY = unpackY(keys[slot]);
+            return pack((tileX << TILE_SHIFT) | col, (tileY << TILE_SHIFT) | row);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package battleship;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveAttackGeneratorTest {
+
+    private static final int[] FLEET = {0, 0, 1}; // one ship of length 2
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testCoversBoardWithoutRepeating() {
+        AdaptiveAttackGenerator g = new AdaptiveAttackGenerator(6, FLEET, new PlacementPrior(null),
+                                                                new SplittableRandom(1));
+        Set<Point> shots = new HashSet<>();
+        for (int i = 0; i < 36; i++) {
+            assertTrue(shots.add(g.getAttackPoint()));
+        }
+        assertThrows(IllegalStateException.class, g::getAttackPoint);
+    }
+
+    @Test
+    public void testShootsWhereHumansPlaceShips() throws InterruptedException, IOException {
+        PlacementPrior prior = new PlacementPrior(null);
+        for (int i = 0; i < 50; i++) {
+            prior.learn(10, new int[]{0, 1}); // always in the top left corner
+        }
+        prior.awaitLearned();
+        assertEquals(50, prior.getFleets(10));
+        assertTrue(prior.getWeight(10, 0, 0) > prior.getWeight(10, 5, 5));
+
+        AdaptiveAttackGenerator g = new AdaptiveAttackGenerator(10, FLEET, prior, new SplittableRandom(2));
+        Point first = g.getAttackPoint();
+        assertTrue(first.getY() == 0 && first.getX() <= 1, "shot " + first);
+        g.notifyHit();
+        Point second = g.getAttackPoint();
+        assertEquals(1, Math.abs(first.getX() - second.getX()) + Math.abs(first.getY() - second.getY()));
+    }
+
+    @Test
+    public void testPriorIsSavedAndLoaded() throws InterruptedException, IOException {
+        Path file = dir.resolve("prior.bin");
+        PlacementPrior prior = new PlacementPrior(file);
+        prior.learn(8, new int[]{9, 10, 11});
+        prior.learn(8, new int[]{9, 17});
+        prior.awaitLearned();
+
+        PlacementPrior loaded = new PlacementPrior(file);
+        assertEquals(2, loaded.getFleets(8));
+        assertEquals(prior.getWeight(8, 1, 1), loaded.getWeight(8, 1, 1));
+        assertEquals(1.0, loaded.getWeight(9, 1, 1));
+    }
+
+    @Test
+    public void testBadPriorFileIsReported() throws IOException {
+        Path file = dir.resolve("bad.bin");
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThrows(UncheckedIOException.class, () -> new PlacementPrior(file));
+    }
+
+    private static int distance(Point a, Point b) {
+        return Math.abs(a.getX() - b.getX()) + Math.abs(a.getY() - b.getY());
+    }
+
+    @Test
+    public void testStopsShootingAroundSunkShips() {
+        int[] fleet = {0, 0, 1, 1}; // ships of lengths 2 and 3
+        AdaptiveAttackGenerator g = new AdaptiveAttackGenerator(10, fleet, new PlacementPrior(null),
+                                                                new SplittableRandom(4));
+        g.markAttacked(Point.of(4, 4));
+        g.notifyHit();
+        g.markAttacked(Point.of(5, 4));
+        g.notifyHit();
+        g.notifySunk(Point.of(4, 4), Point.of(5, 4));
+        Point next = g.getAttackPoint();
+        assertTrue(distance(next, Point.of(4, 4)) > 1 && distance(next, Point.of(5, 4)) > 1, "shot " + next);
+        // the only ship of length 2 is already sunk
+        assertThrows(IllegalArgumentException.class, () -> g.notifySunk(Point.of(4, 4), Point.of(5, 4)));
+
+        // forgetting a hit on the ship floats it again, so its last hit is followed up once more
+        g.forget(next);
+        g.forget(Point.of(5, 4));
+        Point followUp = g.getAttackPoint();
+        assertEquals(1, distance(followUp, Point.of(4, 4)), "shot " + followUp);
+    }
+
+    @Test
+    public void testPassedDeadlineOnlyFollowsUpHits() {
+        AdaptiveAttackGenerator g = new AdaptiveAttackGenerator(6, FLEET, new PlacementPrior(null),
+                                                                new SplittableRandom(3));
+        long passed = System.nanoTime() - 1;
+        assertNull(g.getAttackPoint(passed));
+        g.markAttacked(Point.of(2, 2));
+        g.notifyHit();
+        Point next = g.getAttackPoint(passed);
+        assertEquals(1, Math.abs(next.getX() - 2) + Math.abs(next.getY() - 2));
+        assertThrows(IllegalArgumentException.class, () -> g.markAttacked(next));
+    }
+}
@@ -0,0 +1,197 @@
+package battleship;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Allocation regression tests for the hot path of a turn. Each test builds its fixtures outside the
+ * measured region, warms the operation up until the JIT has compiled it, then counts the bytes the
+ * test thread allocates per operation and fails if that exceeds the operation's budget.
+ * Budgets above zero only cover the sparse board tiles that grow as new cells are guessed.
+ */
+public class AllocationTest {
+
+    private static final int WARMUP_BATCHES = 30;
+    private static final int MEASURED_BATCHES = 5;
+    private static final int BOARD_SIZE = 256; // each batch guesses every cell of a board this size
+    private static final int GENERATOR_BOARD_SIZE = 32;
+    private static final int GENERATORS_PER_BATCH = 64;
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static long sink; // consumes results so the JIT cannot drop the work being measured
+
+    @BeforeAll
+    public static void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                   "thread allocation counters are not available on this JVM");
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void testHasAlreadyGuessedDoesNotAllocate() {
+        double perOp = bytesPerOp("Board.hasAlreadyGuessed", BOARD_SIZE * BOARD_SIZE, () -> {
+            Board b = new Board(BOARD_SIZE);
+            Point[] points = allPoints(BOARD_SIZE);
+            for (int i = 0; i < points.length; i += 3) {
+                b.addMiss(points[i]);
+            }
+            return () -> {
+                for (Point p : points) {
+                    if (b.hasAlreadyGuessed(p)) sink++;
+                }
+            };
+        });
+        assertEquals(0.0, perOp, 0.01);
+    }
+
+    @Test
+    public void testReceiveAllocationBudget() {
+        double perOp = bytesPerOp("Player.receive", BOARD_SIZE * BOARD_SIZE, () -> {
+            Player player = new Player(1, new Ship[]{new Ship(new Point(0, 0), new Point(0, 4)),
+                                                     new Ship(new Point(3, 3), new Point(5, 3))}, BOARD_SIZE);
+            Point[] points = allPoints(BOARD_SIZE);
+            return () -> {
+                for (Point p : points) {
+                    if (player.receive(p)) sink++;
+                }
+            };
+        });
+        assertTrue(perOp <= 0.5, "Player.receive allocated " + perOp + " bytes/op");
+    }
+
+    @Test
+    public void testAttackAllocationBudget() {
+        double perOp = bytesPerOp("Game.attack", BOARD_SIZE * BOARD_SIZE, () -> {
+            Game game = new Game(2, BOARD_SIZE);
+            Point[] points = allPoints(BOARD_SIZE);
+            return () -> {
+                for (Point p : points) {
+                    if (game.attack(1, 2, p)) sink++;
+                }
+            };
+        });
+        // the attacked board and the attacker's copy of it both grow
+        assertTrue(perOp <= 1.0, "Game.attack allocated " + perOp + " bytes/op");
+    }
+
+    @Test
+    public void testSmartGetAttackPointAllocationBudget() {
+        double perOp = bytesPerOp("SmartAttackGenerator.getAttackPoint", generatorOps(), () -> {
+            AttackGenerator[] generators = new AttackGenerator[GENERATORS_PER_BATCH];
+            for (int i = 0; i < generators.length; i++) {
+                generators[i] = new SmartAttackGenerator(GENERATOR_BOARD_SIZE);
+            }
+            return drainAll(generators);
+        });
+        assertTrue(perOp <= 1.0, "SmartAttackGenerator.getAttackPoint allocated " + perOp + " bytes/op");
+    }
+
+    @Test
+    public void testRandomGetAttackPointDoesNotAllocate() {
+        double perOp = bytesPerOp("RandomAttackGenerator.getAttackPoint", generatorOps(), () -> {
+            AttackGenerator[] generators = new AttackGenerator[GENERATORS_PER_BATCH];
+            for (int i = 0; i < generators.length; i++) {
+                generators[i] = new RandomAttackGenerator(GENERATOR_BOARD_SIZE);
+            }
+            return drainAll(generators);
+        });
+        assertEquals(0.0, perOp, 0.01);
+    }
+
+    @Test
+    public void testGameViewReadsDoNotAllocate() {
+        int polls = 100_000;
+        double perOp = bytesPerOp("GameView reads", polls, () -> {
+            Game game = new Game(2, 10);
+            game.addShip(0, 0, 0, 2);
+            GameView view = game.getView();
+            return () -> {
+                for (int i = 0; i < polls; i++) {
+                    int pid = view.getCurrentPlayer();
+                    sink += view.getPlayerView(pid).size() + view.getShipsToBePlaced(pid)[3]
+                            + view.getPlayerShips(pid).size() + view.getCurrentPlayerName().length();
+                }
+            };
+        });
+        assertEquals(0.0, perOp, 0.01);
+    }
+
+    // not a regression gate: reports what a whole game costs at every board size the UI offers
+    @Test
+    public void reportGameFootprint() {
+        for (int warmup = 0; warmup < 20; warmup++) {
+            playCpuGame(10);
+        }
+        System.out.println("board  construct bytes  full cpu-vs-cpu game bytes");
+        for (int size = GameSettings.MIN_BOARD_SIZE; size <= GameSettings.MAX_DRAWN_BOARD_SIZE; size++) {
+            long before = allocatedBytes();
+            Game game = new Game(0, 2, 1, size);
+            long constructed = allocatedBytes() - before;
+            game.computerProcessTurn();
+            long played = allocatedBytes() - before;
+            assertEquals("end", game.getPhase());
+            System.out.printf("%2dx%-2d %16d %27d%n", size, size, constructed, played);
+        }
+    }
+
+    private static void playCpuGame(int size) {
+        new Game(0, 2, 1, size).computerProcessTurn();
+    }
+
+    private static int generatorOps() {
+        return GENERATORS_PER_BATCH * GENERATOR_BOARD_SIZE * GENERATOR_BOARD_SIZE;
+    }
+
+    private static Runnable drainAll(AttackGenerator[] generators) {
+        return () -> {
+            for (AttackGenerator g : generators) {
+                for (int i = 0; i < GENERATOR_BOARD_SIZE * GENERATOR_BOARD_SIZE; i++) {
+                    sink += g.getAttackPoint().getX();
+                }
+            }
+        };
+    }
+
+    private static Point[] allPoints(int size) {
+        Point[] points = new Point[size * size];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point(i % size, i / size);
+        }
+        return points;
+    }
+
+    /**
+     * Measures the steady-state allocation of an operation
+     * @param name the operation, for the report
+     * @param opsPerBatch how many operations each batch performs
+     * @param batches builds fresh fixtures (not measured) and returns the batch to measure
+     * @return the average number of bytes allocated per operation over the measured batches
+     */
+    private static double bytesPerOp(String name, int opsPerBatch, Supplier<Runnable> batches) {
+        for (int i = 0; i < WARMUP_BATCHES; i++) {
+            batches.get().run();
+        }
+        long total = 0;
+        for (int i = 0; i < MEASURED_BATCHES; i++) {
+            Runnable batch = batches.get();
+            long before = allocatedBytes();
+            batch.run();
+            total += allocatedBytes() - before;
+        }
+        double perOp = (double) total / ((long) MEASURED_BATCHES * opsPerBatch);
+        System.out.printf("%-40s %8.3f bytes/op%n", name, perOp);
+        return perOp;
+    }
+
+    private static long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,91 @@
+package battleship;
+
+import metrics.Heatmap;
+import org.junit.jupiter.api.Test;
+import utils.PointUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AntiPatternPlacerTest {
+
+    private static final int[] LENGTHS = {5, 4, 3, 3, 2};
+
+    // a heatmap of 10x10 games in which humans shot the left half first and never reached the right
+    private static Heatmap.Snapshot leftFirst() {
+        Heatmap heatmap = new Heatmap(10, 1);
+        for (int game = 0; game < 20; game++) {
+            for (int y = 0; y < 10; y++) {
+                for (int x = 0; x < 5; x++) {
+                    heatmap.addShot(x, y, (y * 5 + x) / 100.0);
+                    heatmap.addSurvivor(x + 5, y);
+                }
+            }
+        }
+        return heatmap.snapshot();
+    }
+
+    @Test
+    public void testFleetsAreLegalAndNeverRetry() {
+        AntiPatternPlacer placer = new AntiPatternPlacer(new Heatmap(10, 1).snapshot());
+        SplittableRandom random = new SplittableRandom(3);
+        for (int fleet = 0; fleet < 200; fleet++) {
+            Set<Point> taken = new HashSet<>();
+            for (int length : LENGTHS) {
+                Point[] ends = placer.place(length, taken, random);
+                List<Point> cells = PointUtils.getPointsBetween(ends[0], ends[1]);
+                assertEquals(length, cells.size());
+                for (Point p : cells) {
+                    assertTrue(p.getX() >= 0 && p.getX() < 10 && p.getY() >= 0 && p.getY() < 10, "off board " + p);
+                    assertTrue(taken.add(p), "overlaps at " + p);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFavoursCellsShotLate() {
+        Heatmap.Snapshot heatmap = leftFirst();
+        assertEquals(1.0, heatmap.lateness(7, 7));
+        assertTrue(heatmap.lateness(0, 0) < 0.01);
+        AntiPatternPlacer placer = new AntiPatternPlacer(heatmap);
+        assertTrue(placer.getLateness(0, 0) < placer.getLateness(7, 7));
+
+        SplittableRandom random = new SplittableRandom(4);
+        int right = 0;
+        int cells = 0;
+        for (int fleet = 0; fleet < 200; fleet++) {
+            Set<Point> taken = new HashSet<>();
+            for (int length : LENGTHS) {
+                Point[] ends = placer.place(length, taken, random);
+                for (Point p : PointUtils.getPointsBetween(ends[0], ends[1])) {
+                    taken.add(p);
+                    cells++;
+                    if (p.getX() >= 5) right++;
+                }
+            }
+        }
+        assertTrue(right > cells * 0.75, right + " of " + cells + " cells on the right");
+        // but not all of them, so the fleet cannot be read off the heatmap
+        assertTrue(right < cells);
+    }
+
+    @Test
+    public void testNoRoomIsAnError() {
+        AntiPatternPlacer placer = new AntiPatternPlacer(new Heatmap(2, 1).snapshot());
+        Set<Point> taken = Set.of(Point.of(0, 0), Point.of(1, 1));
+        assertThrows(IllegalStateException.class, () -> placer.place(2, taken, new SplittableRandom(5)));
+        assertThrows(IllegalArgumentException.class, () -> placer.place(3, Set.of(), new SplittableRandom(5)));
+    }
+
+    @Test
+    public void testExpertComputersFinishGames() {
+        Game game = new Game(0, 2, 3, 6, Game.defaultShipInfo(6), 6);
+        game.computerProcessTurn();
+        assertEquals("end", game.getPhase());
+    }
+}
@@ -118,4 +118,20 @@ class BoardTest {
         assertTrue(b.hasAlreadyGuessed(z));
     }
 
-}
\ No newline at end of file
+    // tests that boards far larger than the text interface can draw still behave the same
+    @Test
+    public void testLargeBoard(){
+        Board b = new Board(1_000_000);
+        Point far = new Point(999_999, 999_999);
+        assertThrows(IllegalArgumentException.class, () -> b.addHit(new Point(1_000_000, 0)));
+
+        assertFalse(b.hasAlreadyGuessed(far));
+        assertTrue(b.addHit(far));
+        assertTrue(b.addMiss(x));
+        assertFalse(b.addMiss(far));
+        assertTrue(b.hasAlreadyGuessed(far));
+        assertEquals(b.getHits(), Set.of(far));
+        assertEquals(b.getMisses(), Set.of(x));
+    }
+
+}
@@ -0,0 +1,190 @@
+package battleship;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComputerPlayerTest {
+
+    private static final int[] FLEET = {0, 0, 1, 1}; // a ship of 2 and a ship of 3
+
+    // an opponent with FLEET down the first two columns of a 6x6 board
+    private static Player opponent() {
+        return new Player(2, 1, new Ship[]{new Ship(Point.of(0, 0), Point.of(0, 1)),
+                                           new Ship(Point.of(1, 0), Point.of(1, 2))}, 6);
+    }
+
+    @Test
+    public void testFallbackMovesWhenThereIsNoTime() {
+        for (int difficulty = 3; difficulty <= 4; difficulty++) {
+            ComputerPlayer cpu = new ComputerPlayer(1, 0, new Ship[0], 6, difficulty, FLEET,
+                                                    new SplittableRandom(difficulty), new PlacementPrior(null));
+            Player target = opponent();
+            Set<Point> shots = new HashSet<>();
+            cpu.setMoveBudgetMillis(0);
+            for (int i = 0; i < 10; i++) {
+                Point p = cpu.getAttackPoint();
+                // out of time, the adaptive generator still follows up its own hits, but nothing else
+                if (difficulty == 3 || i == 0) {
+                    assertTrue(cpu.lastMoveFellBack(), "move " + i + " at difficulty " + difficulty);
+                }
+                assertTrue(shots.add(p), "shot " + p + " twice");
+                cpu.attack(target, p);
+            }
+            // the primary generator was kept in step with every fallback move
+            cpu.setMoveBudgetMillis(1000);
+            while (!target.hasLost()) {
+                Point p = cpu.getAttackPoint();
+                assertFalse(cpu.lastMoveFellBack());
+                assertTrue(shots.add(p), "shot " + p + " twice");
+                cpu.attack(target, p);
+            }
+        }
+    }
+
+    // the shots of a game against opponent(), taking back the last `back` shots once `at` have been
+    // taken and then taking them again
+    private static List<Point> playUndoingAndRedoing(int difficulty, int at, int back) {
+        ComputerPlayer cpu = new ComputerPlayer(1, 0, new Ship[0], 6, difficulty, FLEET,
+                                                new SplittableRandom(8), new PlacementPrior(null));
+        Player target = opponent();
+        cpu.setTarget(target.getSeat());
+        List<Point> shots = new ArrayList<>();
+        while (!target.hasLost()) {
+            Point p = cpu.getAttackPoint();
+            shots.add(p);
+            cpu.attack(target, p);
+            if (shots.size() == at) {
+                for (int i = 1; i <= back; i++) {
+                    cpu.undoAttack(target, shots.get(at - i));
+                }
+                for (int i = back; i >= 1; i--) {
+                    cpu.redoAttack(target, shots.get(at - i));
+                }
+            }
+        }
+        return shots;
+    }
+
+    @Test
+    public void testSmartMovesAreTheSameAfterUndoAndRedo() {
+        List<Point> uninterrupted = playUndoingAndRedoing(2, -1, 0);
+        // every point of the game, through the search and the follow-ups of hits and sinkings
+        for (int at = 1; at < uninterrupted.size(); at++) {
+            for (int back = 1; back <= Math.min(at, 3); back++) {
+                assertEquals(uninterrupted, playUndoingAndRedoing(2, at, back), at + " back " + back);
+            }
+        }
+    }
+
+    // the shots of a game against opponent(), where every move after the first is first chosen in
+    // the background and thrown away, by undoing and redoing the last shot or by aiming elsewhere
+    private static List<Point> playDiscardingSpeculation(int difficulty, boolean retargeting) {
+        ComputerPlayer cpu = new ComputerPlayer(1, 0, new Ship[0], 6, difficulty, FLEET,
+                                                new SplittableRandom(8), new PlacementPrior(null));
+        Player target = opponent();
+        cpu.setTarget(target.getSeat());
+        List<Point> shots = new ArrayList<>();
+        while (!target.hasLost()) {
+            if (!shots.isEmpty()) {
+                cpu.speculate(target.getSeat());
+                if (retargeting) {
+                    cpu.setTarget(target.getSeat() + 1);
+                    cpu.setTarget(target.getSeat());
+                } else {
+                    Point last = shots.get(shots.size() - 1);
+                    cpu.undoAttack(target, last);
+                    cpu.redoAttack(target, last);
+                }
+                assertFalse(cpu.isSpeculating());
+            }
+            Point p = cpu.getAttackPoint();
+            shots.add(p);
+            cpu.attack(target, p);
+        }
+        return shots;
+    }
+
+    @Test
+    public void testDiscardedSpeculationLeavesTheMovesAsTheyWere() {
+        for (int difficulty : new int[]{0, 2}) {
+            List<Point> uninterrupted = playUndoingAndRedoing(difficulty, -1, 0);
+            assertEquals(uninterrupted, playDiscardingSpeculation(difficulty, false), "undo at " + difficulty);
+            assertEquals(uninterrupted, playDiscardingSpeculation(difficulty, true), "retarget at " + difficulty);
+        }
+    }
+
+    @Test
+    public void testSmartForgetsOnlyItsLatestMove() {
+        SmartAttackGenerator g = new SmartAttackGenerator(4);
+        Point first = g.getAttackPoint();
+        g.notifyHit();
+        Point second = g.getAttackPoint();
+        assertThrows(IllegalArgumentException.class, () -> g.forget(first));
+        g.forget(second);
+        g.forget(first);
+        g.forget(first); // already forgotten, so nothing to do
+        assertEquals(first, g.getAttackPoint());
+        g.notifyHit();
+        assertEquals(second, g.getAttackPoint());
+    }
+
+    @Test
+    public void testRandomGeneratorSkipsMarkedPoints() {
+        RandomAttackGenerator g = new RandomAttackGenerator(5, new SplittableRandom(1));
+        Set<Point> shots = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            Point p = g.getAttackPoint();
+            assertTrue(shots.add(p));
+            Point marked = Point.of(i, i);
+            if (shots.add(marked)) {
+                g.markAttacked(marked);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> g.markAttacked(Point.of(0, 0)));
+        while (shots.size() < 25) {
+            assertTrue(shots.add(g.getAttackPoint()));
+        }
+        assertThrows(IllegalStateException.class, g::getAttackPoint);
+
+        // boards too large for an array keep the shuffle in a map
+        RandomAttackGenerator large = new RandomAttackGenerator(300, new SplittableRandom(2));
+        large.markAttacked(Point.of(7, 9));
+        assertThrows(IllegalArgumentException.class, () -> large.markAttacked(Point.of(7, 9)));
+        Point drawn = large.getAttackPoint();
+        assertThrows(IllegalArgumentException.class, () -> large.markAttacked(drawn));
+    }
+
+    @Test
+    public void testRandomGeneratorForgetsBackToTheSameShuffle() {
+        // small boards keep the shuffle in an array and large ones in a map
+        for (int size : new int[]{5, 300}) {
+            RandomAttackGenerator g = new RandomAttackGenerator(size, new SplittableRandom(3));
+            List<Point> shots = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                shots.add(g.getAttackPoint());
+            }
+            Point marked = Point.of(0, 0);
+            for (int y = 1; shots.contains(marked); y++) {
+                marked = Point.of(0, y);
+            }
+            g.markAttacked(marked);
+            List<Point> next = List.of(g.getAttackPoint(), g.getAttackPoint());
+            g.forget(next.get(1));
+            g.forget(next.get(0));
+            g.forget(marked);
+            for (int i = 3; i >= 2; i--) {
+                g.forget(shots.get(i));
+            }
+            assertEquals(shots.subList(2, 4), List.of(g.getAttackPoint(), g.getAttackPoint()), "size " + size);
+            g.markAttacked(marked);
+            assertEquals(next, List.of(g.getAttackPoint(), g.getAttackPoint()), "size " + size);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package battleship;
+
+import org.junit.jupiter.api.Test;
+import utils.PointUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameArenaTest {
+
+    private static final int GAMES = 20;
+
+    @Test
+    public void testMatchesObjectModel() {
+        for (int difficulty = 0; difficulty <= 2; difficulty++) {
+            GameArena arena = new GameArena(GAMES, difficulty, 7);
+            arena.run();
+            assertEquals(0, arena.getGamesRemaining());
+            for (int g = 0; g < GAMES; g++) {
+                Game game = new Game(0, 2, difficulty, GameArena.SIZE, Game.defaultShipInfo(GameArena.SIZE),
+                                     arena.getSeed(g));
+                while (!game.getPhase().equals("end")) {
+                    game.computerProcessTurn();
+                }
+                assertEquals(game.getPhase(), arena.getPhase(g));
+                assertEquals(game.getCurrentPlayer(), arena.getWinner(g));
+                for (int pid = 1; pid <= 2; pid++) {
+                    BoardView board = game.getPlayerView(pid).get(0);
+                    assertEquals(board.getHits(), arena.getHits(g, pid));
+                    assertEquals(board.getMisses(), arena.getMisses(g, pid));
+                    List<Ship> ships = game.getPlayerShips(pid);
+                    List<Set<Point>> arenaShips = arena.getShipPoints(g, pid);
+                    assertEquals(ships.size(), arenaShips.size());
+                    for (int k = 0; k < ships.size(); k++) {
+                        Set<Point> points = new HashSet<>(PointUtils.getPointsBetween(ships.get(k).startPoint(),
+                                                                                      ships.get(k).endPoint()));
+                        assertEquals(points, arenaShips.get(k));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStepTakesOneShotPerGame() {
+        GameArena arena = new GameArena(GAMES, 1, 3);
+        assertTrue(arena.step());
+        for (int g = 0; g < GAMES; g++) {
+            assertEquals("playing", arena.getPhase(g));
+            assertEquals(1, arena.getShotsFired(g, 1));
+            assertEquals(0, arena.getShotsFired(g, 2));
+            assertEquals(1, arena.getHits(g, 2).size() + arena.getMisses(g, 2).size());
+        }
+    }
+
+    @Test
+    public void testRejectsSearchDifficulty() {
+        assertThrows(IllegalArgumentException.class, () -> new GameArena(GAMES, 3, 0));
+        assertThrows(IllegalArgumentException.class, () -> new GameArena(1, 0, 0).getHits(0, 3));
+    }
+}
@@ -0,0 +1,401 @@
+package battleship;
+
+import metrics.Heatmap;
+import metrics.Heatmaps;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameTest {
+
+    @Test
+    public void testFreeForAllEndsWithOneWinner() {
+        Game game = new Game(0, 4, 1, 10);
+        game.computerProcessTurn();
+
+        assertEquals("end", game.getPhase());
+        assertEquals(1, game.getPlayersRemaining());
+        int winners = 0;
+        for (int pid = 1; pid <= 4; pid++) {
+            if (game.playerWon(pid)) {
+                winners++;
+                assertEquals(pid, game.getCurrentPlayer());
+            } else {
+                assertTrue(game.playerLost(pid));
+            }
+        }
+        assertEquals(1, winners);
+    }
+
+    @Test
+    public void testEliminatedPlayersAreSkippedUntilOneIsLeft() {
+        Game game = new Game(3, new int[]{0, 0, 1});
+        game.processTurn(Point.of(0, 0));
+        game.processTurn(Point.of(0, 1));
+        game.processTurn(Point.of(5, 5));
+        game.processTurn(Point.of(5, 6));
+        game.processTurn(Point.of(8, 8));
+        game.processTurn(Point.of(8, 9));
+        assertEquals("playing", game.getPhase());
+
+        game.processTurn(Point.of(5, 5)); // player 1 hits player 2
+        game.processTurn(Point.of(0, 5)); // player 2 misses player 3
+        game.processTurn(Point.of(9, 9)); // player 3 misses player 1
+        game.processTurn(Point.of(5, 6)); // player 1 sinks player 2
+        assertTrue(game.playerLost(2));
+        assertEquals("playing", game.getPhase());
+        assertEquals(2, game.getPlayersRemaining());
+        assertEquals(3, game.getCurrentPlayer()); // player 2's turn is skipped
+        assertEquals(1, game.getTarget());
+        assertThrows(IllegalArgumentException.class, () -> game.selectTarget(2));
+        assertThrows(IllegalArgumentException.class, () -> game.attack(3, 2, Point.of(0, 0)));
+        assertThrows(IllegalArgumentException.class, () -> game.attack(2, 1, Point.of(0, 0)));
+        assertThrows(IllegalArgumentException.class, () -> game.attack(3, 3, Point.of(0, 0)));
+
+        game.processTurn(Point.of(9, 8)); // player 3 misses player 1
+        assertEquals(1, game.getCurrentPlayer());
+        assertEquals(3, game.getTarget());
+        game.processTurn(Point.of(8, 8));
+        game.processTurn(Point.of(7, 7));
+        game.processTurn(Point.of(8, 9)); // player 1 sinks player 3, the last one left
+        assertEquals("end", game.getPhase());
+        assertEquals(1, game.getPlayersRemaining());
+        assertTrue(game.playerWon(1));
+        assertFalse(game.playerWon(3));
+    }
+
+    @Test
+    public void testTargetsPlayersWhoDoNotSitNextToEachOther() {
+        Game game = new Game(4, new int[]{0, 0, 1});
+        for (int pid = 1; pid <= 4; pid++) {
+            game.processTurn(Point.of(pid, 0));
+            game.processTurn(Point.of(pid, 1));
+        }
+        assertEquals("playing", game.getPhase());
+        game.selectTarget(3);
+        assertTrue(game.processTurn(Point.of(3, 0))); // player 1 hits player 3, across the table
+        Set<Point> hits = game.getView().getPlayerView(3).get(0).getHits();
+        assertEquals(1, hits.size());
+        assertTrue(hits.contains(Point.of(3, 0)));
+        assertTrue(game.getView().getPlayerView(2).get(0).getHits().isEmpty());
+        assertTrue(game.getView().getPlayerView(2).get(0).getMisses().isEmpty());
+        assertEquals(2, game.getCurrentPlayer());
+        assertEquals(3, game.getTarget()); // the selection only lasted for player 1's turn
+    }
+
+    @Test
+    public void testComputersNeverShootEliminatedPlayers() {
+        for (long seed = 1; seed <= 5; seed++) {
+            Game game = new Game(0, 4, 1, 6, new int[]{0, 0, 1, 1}, seed);
+            // how many shots each player had taken at them when they were eliminated
+            Map<Integer, Integer> shotsWhenOut = new HashMap<>();
+            game.addListener(() -> {
+                if (!game.getPhase().equals("setup")) {
+                    for (int pid = 1; pid <= 4; pid++) {
+                        if (game.playerLost(pid) && !shotsWhenOut.containsKey(pid)) {
+                            shotsWhenOut.put(pid, shotsAt(game, pid));
+                        }
+                    }
+                }
+            });
+            game.computerProcessTurn();
+            assertEquals("end", game.getPhase());
+            assertEquals(3, shotsWhenOut.size());
+            for (Map.Entry<Integer, Integer> out : shotsWhenOut.entrySet()) {
+                assertEquals(out.getValue(), shotsAt(game, out.getKey()), "player " + out.getKey());
+            }
+        }
+    }
+
+    private static int shotsAt(Game game, int pid) {
+        BoardView board = game.getView().getPlayerView(pid).get(0);
+        return board.getHits().size() + board.getMisses().size();
+    }
+
+    @Test
+    public void testSelectTarget() {
+        Game game = new Game(3, 10);
+        assertEquals(2, game.getTarget());
+        assertThrows(IllegalArgumentException.class, () -> game.selectTarget(1));
+        assertThrows(IllegalArgumentException.class, () -> game.selectTarget(4));
+
+        game.selectTarget(3);
+        assertEquals(3, game.getTarget());
+        game.endTurn();
+        game.endTurn();
+        assertEquals(1, game.getTarget()); // the selection only lasts for one turn
+    }
+
+    @Test
+    public void testUndoRedo() {
+        Game game = new Game(2, new int[]{0, 0, 1, 0, 0, 0});
+        game.enableHistory();
+        assertFalse(game.canUndo());
+        game.processTurn(new Point(0, 0));
+        game.processTurn(new Point(0, 1));
+        game.processTurn(new Point(5, 5));
+        game.processTurn(new Point(5, 6));
+        assertEquals("playing", game.getPhase());
+
+        game.processTurn(new Point(5, 5)); // player 1 hits
+        game.processTurn(new Point(9, 9)); // player 2 misses
+        game.processTurn(new Point(5, 6)); // player 1 sinks player 2's only ship
+        assertEquals("end", game.getPhase());
+        assertTrue(game.playerWon(1));
+
+        assertTrue(game.undo());
+        assertEquals("playing", game.getPhase());
+        assertEquals(1, game.getCurrentPlayer());
+        assertFalse(game.playerLost(2));
+        assertEquals(2, game.getPlayersRemaining());
+        assertEquals(1, game.getView().getPlayerView(2).get(0).getHits().size());
+
+        assertTrue(game.undo());
+        assertTrue(game.undo());
+        assertEquals(0, game.getView().getPlayerView(2).get(0).getHits().size());
+        assertTrue(game.redo());
+        assertTrue(game.redo());
+        assertTrue(game.redo());
+        assertFalse(game.redo());
+        assertEquals("end", game.getPhase());
+        assertTrue(game.playerWon(1));
+
+        // taking a different turn after undoing discards the undone turns
+        game.undo();
+        game.processTurn(new Point(4, 4));
+        assertFalse(game.canRedo());
+        assertEquals(2, game.getCurrentPlayer());
+    }
+
+    @Test
+    public void testViewHasEveryPlayerFromTheStart() {
+        GameView view = new Game(3, 10).getView();
+        for (int pid = 1; pid <= 3; pid++) {
+            assertEquals(3, view.getPlayerView(pid).size());
+            assertSame(view.getPlayerView(pid), view.getPlayerView(pid));
+        }
+        assertThrows(IllegalArgumentException.class, () -> view.getPlayerView(4));
+        assertThrows(IllegalArgumentException.class, () -> view.getShipsToBePlaced(0));
+    }
+
+    @Test
+    public void testUndoComputerGame() {
+        Game game = new Game(0, 2, 1, 10);
+        game.enableHistory();
+        game.computerProcessTurn();
+        assertEquals("end", game.getPhase());
+
+        assertTrue(game.undo());
+        assertEquals("setup", game.getPhase());
+        assertTrue(game.getPlayerShips(1).isEmpty());
+        assertTrue(game.getPlayerShips(2).isEmpty());
+
+        assertTrue(game.redo());
+        assertEquals("end", game.getPhase());
+        assertEquals(1, game.getPlayersRemaining());
+
+        // computer players can play the game again from the start once it is undone
+        game.undo();
+        game.computerProcessTurn();
+        assertEquals("end", game.getPhase());
+    }
+
+    @Test
+    public void testSameSeedReplaysSameGame() {
+        for (int difficulty = 0; difficulty <= 2; difficulty++) {
+            Game first = new Game(0, 2, difficulty, 10, Game.defaultShipInfo(10), 42);
+            Game second = new Game(0, 2, difficulty, 10, Game.defaultShipInfo(10), 42);
+            first.computerProcessTurn();
+            second.computerProcessTurn();
+            assertEquals(first.getCurrentPlayer(), second.getCurrentPlayer());
+            for (int pid = 1; pid <= 2; pid++) {
+                BoardView a = first.getPlayerView(pid).get(0);
+                BoardView b = second.getPlayerView(pid).get(0);
+                assertEquals(a.getHits(), b.getHits());
+                assertEquals(a.getMisses(), b.getMisses());
+                List<Ship> shipsA = first.getPlayerShips(pid);
+                List<Ship> shipsB = second.getPlayerShips(pid);
+                assertEquals(shipsA.size(), shipsB.size());
+                for (int i = 0; i < shipsA.size(); i++) {
+                    assertEquals(shipsA.get(i).startPoint(), shipsB.get(i).startPoint());
+                    assertEquals(shipsA.get(i).endPoint(), shipsB.get(i).endPoint());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testHumanFleetsAreLearnedByTheGamesOwnPrior() throws Exception {
+        PlacementPrior prior = new PlacementPrior(null);
+        Game game = new Game(2, 0, 0, 10, new int[]{0, 0, 1}, 7, prior);
+        game.processTurn(new Point(0, 0));
+        game.processTurn(new Point(0, 1));
+        game.processTurn(new Point(5, 5));
+        game.processTurn(new Point(5, 6));
+        game.processTurn(new Point(5, 5));
+        game.processTurn(new Point(9, 9));
+        game.processTurn(new Point(5, 6));
+        assertEquals("end", game.getPhase());
+        prior.awaitLearned();
+        assertEquals(2, prior.getFleets(10));
+        assertTrue(prior.getWeight(10, 0, 0) > prior.getWeight(10, 9, 9));
+    }
+
+    @Test
+    public void testHumanMovesFeedHeatmaps() {
+        int size = 9; // no other test plays on this size, so the counts here are this test's own
+        Heatmap.Snapshot before = Heatmaps.snapshot(size);
+        Game game = new Game(2, size);
+        assertTrue(game.addShip(0, 0, 0, 2));
+        assertTrue(game.attack(1, 2, Point.of(4, 5)));
+        Heatmap.Snapshot after = Heatmaps.snapshot(size);
+        if (Heatmaps.ENABLED) {
+            assertEquals(before.placements(0, 1) + 1, after.placements(0, 1));
+            assertEquals(before.placementTotal() + 3, after.placementTotal());
+            assertEquals(before.shots(4, 5) + 1, after.shots(4, 5));
+        }
+        // computer players are not counted
+        new Game(0, 2, 1, size).computerProcessTurn();
+        assertEquals(after.placementTotal(), Heatmaps.snapshot(size).placementTotal());
+        assertEquals(after.shotTotal(), Heatmaps.latest(size).shotTotal());
+    }
+
+    @Test
+    public void testShotOrderCountsOnlyTheAttackersOwnShots() {
+        int size = 13; // no other test plays on this size
+        Game game = new Game(3, 0, 0, size, new int[]{0, 0, 1});
+        assertTrue(game.attack(1, 2, Point.of(0, 0)));
+        assertTrue(game.attack(1, 2, Point.of(1, 0)));
+        assertTrue(game.attack(3, 2, Point.of(5, 5)));
+        if (Heatmaps.ENABLED) {
+            // player 3's first shot at player 2, however many player 1 has taken there
+            assertEquals(0.0, Heatmaps.snapshot(size).lateness(5, 5));
+            assertEquals(1.0 / (size * size), Heatmaps.snapshot(size).lateness(1, 0), 1e-4);
+        }
+    }
+
+    private static void assertSameCounts(Heatmap.Snapshot expected, Heatmap.Snapshot actual) {
+        for (int y = 0; y < expected.size(); y++) {
+            for (int x = 0; x < expected.size(); x++) {
+                assertEquals(expected.placements(x, y), actual.placements(x, y));
+                assertEquals(expected.shots(x, y), actual.shots(x, y));
+                assertEquals(expected.survivors(x, y), actual.survivors(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testUndoneMovesNeverReachTheHeatmaps() {
+        int size = 15; // no other test plays on this size
+        Heatmap.Snapshot before = Heatmaps.snapshot(size);
+        Game game = new Game(2, 0, 0, size, new int[]{0, 0, 1}, 7, new PlacementPrior(null));
+        game.enableHistory();
+        game.processTurn(Point.of(0, 0));
+        game.processTurn(Point.of(0, 1));
+        game.processTurn(Point.of(5, 5));
+        game.processTurn(Point.of(5, 6));
+        game.processTurn(Point.of(9, 9)); // player 1 misses
+        while (game.undo()) {
+            // back to the start
+        }
+        assertEquals("setup", game.getPhase());
+        assertSameCounts(before, Heatmaps.snapshot(size));
+
+        // played to the end, only the moves that were kept are counted, once each
+        game.processTurn(Point.of(0, 0));
+        game.processTurn(Point.of(0, 1));
+        game.processTurn(Point.of(5, 5));
+        game.processTurn(Point.of(5, 6));
+        game.processTurn(Point.of(9, 9));
+        game.undo();
+        game.processTurn(Point.of(5, 5)); // player 1 hits instead
+        game.processTurn(Point.of(9, 9)); // player 2 misses
+        game.processTurn(Point.of(5, 6)); // player 1 sinks player 2's only ship
+        assertEquals("end", game.getPhase());
+        Heatmap.Snapshot after = Heatmaps.snapshot(size);
+        if (Heatmaps.ENABLED) {
+            assertEquals(before.placementTotal() + 4, after.placementTotal());
+            assertEquals(before.shotTotal() + 3, after.shotTotal());
+            assertEquals(before.shots(9, 9) + 1, after.shots(9, 9));
+            assertEquals(before.shots(5, 5) + 1, after.shots(5, 5));
+            // player 1's second shot at player 2, on a cell player 2 never shot at
+            assertEquals((1.0 / (size * size) + 1) / 2, after.lateness(5, 6), 1e-3);
+        }
+        game.undo();
+        game.redo();
+        assertSameCounts(after, Heatmaps.snapshot(size));
+    }
+
+    @Test
+    public void testSeededExpertFleetsIgnoreTheHeatmaps() {
+        Point[] first = new ComputerPlayer(1, 0, new Ship[0], 10, 3, Game.defaultShipInfo(10),
+                                           new SplittableRandom(8)).generateShip(4);
+        // humans shooting the whole top row first would steer fleets placed against the heatmaps
+        for (int x = 0; x < 10; x++) {
+            Heatmaps.recordShot(10, x, 0, 0);
+        }
+        Point[] second = new ComputerPlayer(1, 0, new Ship[0], 10, 3, Game.defaultShipInfo(10),
+                                            new SplittableRandom(8)).generateShip(4);
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    public void testCpuMoveBudgetDefaultsByDifficulty() {
+        GameSettings settings = new GameSettings();
+        assertTrue(settings.getCpuMoveBudgetMillis(3) > settings.getCpuMoveBudgetMillis(0));
+        assertEquals(GameSettings.defaultCpuMoveBudgetMillis(4), GameSettings.defaultCpuMoveBudgetMillis(9));
+        settings.setChoice("cpu move budget", "7");
+        assertEquals(7, settings.getCpuMoveBudgetMillis(3));
+        assertThrows(IllegalArgumentException.class, () -> settings.setChoice("cpu move budget", "0"));
+    }
+
+    @Test
+    public void testSpeculatedComputerMovesMatchSynchronousOnes() {
+        for (int difficulty = 0; difficulty <= 1; difficulty++) {
+            Game speculated = new Game(1, 1, difficulty, 10, new int[]{0, 0, 1, 1, 0, 0}, 42);
+            Game synchronous = new Game(1, 1, difficulty, 10, new int[]{0, 0, 1, 1, 0, 0}, 42);
+            for (Game game : List.of(speculated, synchronous)) {
+                game.processTurn(new Point(0, 0));
+                game.processTurn(new Point(0, 1));
+                game.processTurn(new Point(4, 4));
+                game.processTurn(new Point(4, 6));
+            }
+            for (int cell = 0; cell < 30 && speculated.getPhase().equals("playing"); cell++) {
+                speculated.speculateComputerTurn();
+                Point p = new Point(cell % 10, cell / 10);
+                assertTrue(speculated.processTurn(p));
+                assertTrue(synchronous.processTurn(p));
+                BoardView a = speculated.getView().getPlayerView(1).get(0);
+                BoardView b = synchronous.getView().getPlayerView(1).get(0);
+                assertEquals(b.getHits(), a.getHits());
+                assertEquals(b.getMisses(), a.getMisses());
+            }
+        }
+    }
+
+    @Test
+    public void testTurnEventsAreOnlyMadeWhileRecorded() {
+        assertNull(TurnProcessedEvent.beginIfEnabled());
+        assertNull(AiMoveEvent.beginIfEnabled());
+        try (jdk.jfr.Recording recording = new jdk.jfr.Recording()) {
+            recording.enable("battleship.TurnProcessed");
+            recording.start();
+            assertNotNull(TurnProcessedEvent.beginIfEnabled());
+        }
+        assertNull(TurnProcessedEvent.beginIfEnabled());
+    }
+
+    @Test
+    public void testDefaultShipInfoIsACopy() {
+        int[] ships = Game.defaultShipInfo(10);
+        ships[2] = 99;
+        assertNotEquals(99, Game.defaultShipInfo(10)[2]);
+        assertNotSame(Game.defaultShipInfo(10), Game.defaultShipInfo(10));
+    }
+}
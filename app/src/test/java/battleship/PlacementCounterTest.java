@@ -0,0 +1,65 @@
+package battleship;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlacementCounterTest {
+
+    private static final int[] FLEET = {0, 1, 1, 2, 1, 1};
+
+    @Test
+    public void testCountsOnOpenBoard() {
+        int[] counts = new int[100];
+        PlacementCounter.scalar().count(new long[10], 10, new int[]{0, 0, 1}, counts);
+        assertEquals(2, counts[0]); // a corner is covered by one run across and one down
+        assertEquals(3, counts[1]);
+        assertEquals(4, counts[5 * 10 + 5]);
+    }
+
+    @Test
+    public void testBlockedCellsSplitRuns() {
+        long[] blocked = new long[10];
+        blocked[0] = 1L << 1;
+        int[] counts = new int[100];
+        PlacementCounter.scalar().count(blocked, 10, new int[]{0, 1, 0, 1}, counts);
+        assertEquals(0, counts[1]);
+        // (0, 0) is cut off to the right, so only the single cell ship and the ship of 3 going down fit
+        assertEquals(2, counts[0]);
+    }
+
+    @Test
+    public void testBestAgreesWithScalar() {
+        SplittableRandom random = new SplittableRandom(5);
+        for (int size : new int[]{1, 7, 10, 15, 33, 64}) {
+            long[] blocked = new long[size];
+            for (int y = 0; y < size; y++) {
+                blocked[y] = random.nextLong() & random.nextLong(); // about a quarter of the cells
+            }
+            int[] expected = new int[size * size];
+            int[] actual = new int[size * size];
+            PlacementCounter.scalar().count(blocked, size, FLEET, expected);
+            PlacementCounter.best().count(blocked, size, FLEET, actual);
+            assertArrayEquals(expected, actual, PlacementCounter.best().name() + " on " + size + "x" + size);
+        }
+    }
+
+    @Test
+    public void testCountsAreTheSameWhenScratchIsReused() {
+        // a large fleet on a large board first, so the smaller count after reuses longer scratch arrays
+        int[] large = new int[64 * 64];
+        PlacementCounter.best().count(new long[64], 64, new int[]{0, 1, 1, 2, 1, 1, 1, 1, 1}, large);
+        int[] counts = new int[100];
+        PlacementCounter.best().count(new long[10], 10, new int[]{0, 0, 1}, counts);
+        assertEquals(2, counts[0]);
+        assertEquals(4, counts[5 * 10 + 5]);
+    }
+
+    @Test
+    public void testRejectsBoardsTooLarge() {
+        assertThrows(IllegalArgumentException.class, () -> PlacementCounter.scalar().count(
+                new long[65], 65, new int[]{0, 0, 1}, new int[65 * 65]));
+    }
+}
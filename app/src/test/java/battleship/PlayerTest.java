@@ -1,6 +1,7 @@
 package battleship;
 
 import org.junit.jupiter.api.Test;
+import utils.InvariantChecks;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -48,4 +49,36 @@ public class PlayerTest {
 
         assertThrows(IllegalArgumentException.class, () -> p1.attack(p2, new Point(0,1)));
     }
+
+    // removing one of two overlapping ships takes their shared cell out of the other's ship points, which
+    // only a full scan notices, as adding a ship only checks the ship added
+    @Test
+    public void testBrokenRepIsCaughtOnTheFullScanSchedule() {
+        Player broken = new Player(0, 0, new Ship[]{new Ship(Point.of(0, 0), Point.of(0, 2))}, 64);
+        Ship overlapping = new Ship(Point.of(0, 1), Point.of(1, 1));
+        broken.addShip(overlapping);
+        int interval = InvariantChecks.FULL_SCAN_INTERVAL;
+        boolean scheduled = InvariantChecks.MODE == InvariantChecks.Mode.SAMPLED && interval > 0;
+        // the constructor checked the rep once, and removeShip is the second check
+        if (InvariantChecks.MODE == InvariantChecks.Mode.FULL || scheduled && 2 % interval == 0) {
+            assertThrows(AssertionError.class, () -> broken.removeShip(overlapping));
+            return;
+        }
+        broken.removeShip(overlapping);
+        broken.addShip(new Ship(Point.of(5, 5), Point.of(5, 6)));
+
+        // every attack checks the attacker twice, and is caught once that takes the checks to a full scan
+        Player target = new Player(1, 1, new Ship[0], 64);
+        int checks = 2;
+        for (int attack = 0; attack < 100 || scheduled && attack <= interval; attack++) {
+            Point p = Point.of(attack % 64, attack / 64);
+            if (scheduled && (checks + 2) / interval > checks / interval) {
+                assertThrows(AssertionError.class, () -> broken.attack(target, p));
+                return;
+            }
+            broken.attack(target, p);
+            checks += 2;
+        }
+        assertFalse(scheduled || InvariantChecks.MODE == InvariantChecks.Mode.FULL, "the broken rep was never caught");
+    }
 }
@@ -0,0 +1,151 @@
+package battleship;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchAttackGeneratorTest {
+
+    private static final int THREADS = 2;
+    private static ExecutorService pool;
+
+    @BeforeAll
+    public static void setUp() {
+        pool = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testCoversBoardWithoutRepeating() {
+        SearchAttackGenerator g = new SearchAttackGenerator(5, new int[]{0, 0, 1, 1, 0, 0}, 2, pool, THREADS,
+                                                          new SplittableRandom(1));
+        Set<Point> shots = new HashSet<>();
+        for (int i = 0; i < 25; i++) {
+            Point p = g.getAttackPoint();
+            assertTrue(p.getX() >= 0 && p.getX() < 5 && p.getY() >= 0 && p.getY() < 5);
+            assertTrue(shots.add(p), "shot " + p + " twice");
+        }
+        assertThrows(IllegalStateException.class, g::getAttackPoint);
+    }
+
+    @Test
+    public void testFollowsUpOnHit() {
+        // with one ship of length 2, the only cells that can hold the rest of it are next to the hit
+        SearchAttackGenerator g = new SearchAttackGenerator(10, new int[]{0, 0, 1}, 200, pool, THREADS,
+                                                          new SplittableRandom(2));
+        Point first = g.getAttackPoint();
+        g.notifyHit();
+        Point second = g.getAttackPoint();
+        assertEquals(1, Math.abs(first.getX() - second.getX()) + Math.abs(first.getY() - second.getY()));
+        assertTrue(g.getLastDepth() >= 1);
+    }
+
+    @Test
+    public void testRejectsBoardsTooLargeToSearch() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> new SearchAttackGenerator(SearchAttackGenerator.MAX_BOARD_SIZE + 1, new int[]{0, 0, 1}));
+    }
+
+    @Test
+    public void testPassedDeadlineLeavesGeneratorForFallback() {
+        SearchAttackGenerator g = new SearchAttackGenerator(5, new int[]{0, 0, 1, 1, 0, 0}, 1000, pool, THREADS,
+                                                          new SplittableRandom(3));
+        assertNull(g.getAttackPoint(System.nanoTime() - 1));
+        // a point picked elsewhere is never picked again
+        Set<Point> shots = new HashSet<>();
+        for (int x = 0; x < 5; x++) {
+            g.markAttacked(Point.of(x, 0));
+            shots.add(Point.of(x, 0));
+        }
+        assertThrows(IllegalArgumentException.class, () -> g.markAttacked(Point.of(0, 0)));
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            assertTrue(shots.add(g.getAttackPoint(System.nanoTime() + 5_000_000)));
+        }
+        // the deadline bounds the search, not the generator's own budget of a second, with room for
+        // each move to overrun its 5ms while the pool hands back its tasks
+        assertTrue(System.nanoTime() - start < 20 * 50_000_000L);
+    }
+
+    @Test
+    public void testSunkShipsAreNotLookedForAgain() {
+        // a ship of 2 is sunk across (0, 0) and (1, 0), and (2, 1) missed, so the ship of 3 can only be
+        // in the bottom row. Counting the sunk cells as hits to cover would let it lie across the top
+        SearchAttackGenerator g = new SearchAttackGenerator(3, new int[]{0, 0, 1, 1}, 200, pool, THREADS,
+                                                          new SplittableRandom(4));
+        g.markAttacked(Point.of(0, 0));
+        g.notifyHit();
+        g.markAttacked(Point.of(1, 0));
+        g.notifyHit();
+        g.notifySunk(Point.of(0, 0), Point.of(1, 0));
+        g.markAttacked(Point.of(2, 1));
+        assertEquals(2, g.getAttackPoint().getY());
+        assertThrows(IllegalArgumentException.class, () -> g.notifySunk(Point.of(0, 0), Point.of(1, 0)));
+    }
+
+    @Test
+    public void testForgettingAHitRefloatsItsShip() {
+        SearchAttackGenerator g = new SearchAttackGenerator(3, new int[]{0, 0, 1, 1}, 200, pool, THREADS,
+                                                          new SplittableRandom(5));
+        g.markAttacked(Point.of(0, 0));
+        g.notifyHit();
+        g.markAttacked(Point.of(1, 0));
+        g.notifyHit();
+        g.notifySunk(Point.of(0, 0), Point.of(1, 0));
+        g.forget(Point.of(1, 0));
+        g.markAttacked(Point.of(1, 0));
+        g.notifyHit();
+        // the ship of 2 is afloat again, so it can be sunk again
+        g.notifySunk(Point.of(0, 0), Point.of(1, 0));
+    }
+
+    // the shots of a game against a ship of 2 and a ship of 3 down the first two columns of a 4x4
+    // board. Every move is searched to the full depth, so none depends on timing, and if discarding,
+    // each is chosen and forgotten first, as a computer player throws away a move chosen too early
+    private List<Point> play(boolean discarding) {
+        SearchAttackGenerator g = new SearchAttackGenerator(4, new int[]{0, 0, 1, 1}, 60_000, pool, THREADS,
+                                                          new SplittableRandom(6));
+        List<Set<Point>> ships = new ArrayList<>(List.of(Set.of(Point.of(0, 0), Point.of(0, 1)),
+                                                         Set.of(Point.of(1, 0), Point.of(1, 1), Point.of(1, 2))));
+        List<Point> shots = new ArrayList<>();
+        while (!ships.isEmpty()) {
+            if (discarding) {
+                g.forget(g.getAttackPoint());
+            }
+            Point p = g.getAttackPoint();
+            shots.add(p);
+            for (Set<Point> ship : ships) {
+                if (ship.contains(p)) {
+                    g.notifyHit();
+                    if (shots.containsAll(ship)) {
+                        List<Point> ends = new ArrayList<>(ship);
+                        ends.sort((a, b) -> a.getY() - b.getY());
+                        g.notifySunk(ends.get(0), ends.get(ends.size() - 1));
+                        ships.remove(ship);
+                    }
+                    break;
+                }
+            }
+        }
+        return shots;
+    }
+
+    @Test
+    public void testForgottenMovesAreChosenAgain() {
+        assertEquals(play(false), play(true));
+    }
+}
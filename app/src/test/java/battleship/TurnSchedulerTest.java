@@ -0,0 +1,73 @@
+package battleship;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TurnSchedulerTest {
+
+    @Test
+    public void testInterleavedGamesPlayOutAsAlone() {
+        TurnScheduler scheduler = new TurnScheduler();
+        List<Game> scheduled = new ArrayList<>();
+        List<Game> ended = new ArrayList<>();
+        for (long seed = 0; seed < 40; seed++) {
+            Game game = new Game(0, 2, (int) (seed % 3), 10, Game.defaultShipInfo(10), seed);
+            scheduled.add(game);
+            scheduler.submit(game, ended::add);
+        }
+        assertTrue(scheduler.run() > 40 * 2 * 17);
+        assertEquals(0, scheduler.getActiveGames());
+        assertEquals(40, ended.size());
+        for (Game game : scheduled) {
+            Game alone = new Game(0, 2, (int) (game.getSeed() % 3), 10, Game.defaultShipInfo(10), game.getSeed());
+            alone.computerProcessTurn();
+            assertEquals("end", game.getPhase());
+            assertEquals(alone.getCurrentPlayer(), game.getCurrentPlayer());
+            assertEquals(alone.getPlayerView(1).get(0).getMisses(), game.getPlayerView(1).get(0).getMisses());
+        }
+    }
+
+    @Test
+    public void testHumanTurnsYield() {
+        TurnScheduler scheduler = new TurnScheduler();
+        Game game = new Game(1, 1, 1, 5, new int[]{0, 0, 1}, 7);
+        scheduler.submit(game);
+        assertEquals(0, scheduler.run()); // the human places ships first
+
+        game.processTurn(new Point(0, 0)); // the first end of a ship is only remembered
+        assertTrue(game.processTurn(new Point(0, 1)));
+        assertTrue(game.isComputerTurn());
+        assertEquals(0, scheduler.run()); // not until the scheduler is told
+        scheduler.resume(game);
+        assertEquals(1, scheduler.run()); // the computer's ships
+        assertFalse(game.isComputerTurn());
+
+        assertTrue(game.processTurn(new Point(4, 4)));
+        scheduler.resume(game);
+        assertEquals(1, scheduler.run()); // one shot back
+        assertEquals(1, scheduler.getActiveGames());
+    }
+
+    @Test
+    public void testLongGamesDoNotRecurse() throws InterruptedException {
+        // a game of tens of thousands of turns on a thread with a small stack
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                Game game = new Game(0, 2, 0, 120);
+                game.computerProcessTurn();
+                assertEquals("end", game.getPhase());
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }, "small-stack", 256 * 1024);
+        thread.start();
+        thread.join();
+        assertNull(failure.get());
+    }
+}
@@ -0,0 +1,55 @@
+package evaluation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StrategyEvaluatorTest {
+
+    private static final int[] SHIPS = {0, 0, 1, 2, 1, 1};
+
+    @Test
+    public void testMergedStatsMatchSequentialStats() {
+        RunningStats all = new RunningStats();
+        RunningStats evens = new RunningStats();
+        RunningStats odds = new RunningStats();
+        for (int i = 0; i < 100; i++) {
+            all.add(i * i);
+            (i % 2 == 0 ? evens : odds).add(i * i);
+        }
+        evens.merge(odds);
+        assertEquals(all.count(), evens.count());
+        assertEquals(all.mean(), evens.mean(), 1e-9);
+        assertEquals(all.stddev(), evens.stddev(), 1e-9);
+        assertEquals(0, evens.min());
+        assertEquals(99 * 99, evens.max());
+    }
+
+    @Test
+    public void testResultsDoNotDependOnThreadCount() {
+        Map<String, StrategyEvaluator.Strategy> random = Map.of("random", StrategyEvaluator.STRATEGIES.get("random"));
+        RunningStats one = new StrategyEvaluator(50, 10, SHIPS, 3, 1).evaluate(random).get(0).getStats();
+        RunningStats four = new StrategyEvaluator(50, 10, SHIPS, 3, 4).evaluate(random).get(0).getStats();
+        assertEquals(one.mean(), four.mean(), 1e-9);
+        assertEquals(one.max(), four.max());
+    }
+
+    @Test
+    public void testRegressionGate() {
+        Map<String, StrategyEvaluator.Strategy> smart = Map.of("smart", StrategyEvaluator.STRATEGIES.get("smart"));
+        List<StrategyEvaluator.Result> results = new StrategyEvaluator(200, 10, SHIPS, 5, 2).evaluate(smart);
+        PrintStream discard = new PrintStream(new ByteArrayOutputStream());
+
+        assertFalse(StrategyEvaluator.report(results, StrategyEvaluator.toBaseline(results), 0.02, discard));
+
+        Properties better = StrategyEvaluator.toBaseline(results);
+        better.setProperty("smart.mean", Double.toString(results.get(0).getStats().mean() * 0.8));
+        assertTrue(StrategyEvaluator.report(results, better, 0.02, discard));
+    }
+}
@@ -0,0 +1,41 @@
+package metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HeatmapTest {
+
+    @Test
+    public void testConcurrentCountsAreNotLost() throws InterruptedException {
+        Heatmap heatmap = new Heatmap(10, 3);
+        int threads = 4;
+        int perThread = 10_000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    heatmap.addShot(i % 10, 3, 0.5);
+                    heatmap.addPlacement(2, 2);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Heatmap.Snapshot snapshot = heatmap.snapshot();
+        assertEquals(threads * perThread, snapshot.shotTotal());
+        assertEquals(threads * perThread / 10, snapshot.shots(7, 3));
+        assertEquals(threads * perThread, snapshot.placements(2, 2));
+        assertEquals(0, snapshot.placements(3, 3));
+    }
+
+    @Test
+    public void testRejectsCellsOffTheBoard() {
+        Heatmap heatmap = new Heatmap(5, 1);
+        assertThrows(IllegalArgumentException.class, () -> heatmap.addShot(5, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> heatmap.snapshot().placements(0, -1));
+        assertThrows(IllegalArgumentException.class, () -> Heatmaps.snapshot(Heatmaps.MAX_SIZE + 1));
+    }
+}
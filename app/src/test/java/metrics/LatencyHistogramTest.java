@@ -0,0 +1,68 @@
+package metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        int prev = -1;
+        for (long v = 0; v < 100_000; v++) {
+            int index = LatencyHistogram.bucketIndex(v);
+            assertTrue(index == prev || index == prev + 1, "buckets must be contiguous at " + v);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= v);
+            prev = index;
+        }
+        assertTrue(LatencyHistogram.bucketIndex(Long.MAX_VALUE) < LatencyHistogram.BUCKET_COUNT);
+    }
+
+    @Test
+    public void testPercentilesWithinPrecision() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            h.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot s = new LatencyHistogram.Snapshot();
+        h.addTo(s);
+        assertEquals(10_000, s.count());
+        assertEquals(5_000_000, s.valueAt(0.5), 5_000_000 * 0.07);
+        assertEquals(9_900_000, s.valueAt(0.99), 9_900_000 * 0.07);
+        assertEquals(9_990_000, s.valueAt(0.999), 9_990_000 * 0.07);
+        assertTrue(s.max() >= 10_000_000);
+    }
+
+    @Test
+    public void testMergeAndReset() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(20);
+        b.record(-5);
+        LatencyHistogram.Snapshot s = new LatencyHistogram.Snapshot();
+        a.addTo(s);
+        b.addTo(s);
+        assertEquals(3, s.count());
+        assertEquals(0, s.valueAt(0.0));
+        assertEquals(20, s.max());
+
+        a.reset();
+        LatencyHistogram.Snapshot empty = new LatencyHistogram.Snapshot();
+        a.addTo(empty);
+        assertEquals(0, empty.count());
+        assertEquals(0, empty.valueAt(0.5));
+    }
+
+    @Test
+    public void testDeadThreadsAreRetired() throws InterruptedException {
+        long before = Metrics.snapshot().get(Metrics.Op.DRAW_BOARD).count();
+        for (int i = 0; i < 20; i++) {
+            Thread t = new Thread(() -> Metrics.histograms()[Metrics.Op.DRAW_BOARD.ordinal()].record(100));
+            t.start();
+            t.join();
+        }
+        assertEquals(before + 20, Metrics.snapshot().get(Metrics.Op.DRAW_BOARD).count());
+        assertTrue(Metrics.registeredThreadCount() <= 1, "only threads still alive stay registered");
+    }
+}
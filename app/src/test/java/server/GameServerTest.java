@@ -0,0 +1,297 @@
+package server;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameServerTest {
+
+    private static GameServer server;
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        server = new GameServer(0, 4, 60_000);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        server.stop(0);
+    }
+
+    // the status and body of a request
+    private static String[] request(String method, String path) throws IOException {
+        return request(server, method, path);
+    }
+
+    private static String[] request(GameServer to, String method, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + to.getPort() + path)
+                .openConnection();
+        connection.setRequestMethod(method);
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new String[]{Integer.toString(status), new String(in.readAllBytes(), StandardCharsets.UTF_8)};
+        }
+    }
+
+    private static String field(String json, String name) {
+        Matcher m = Pattern.compile("\"" + name + "\":(\"[^\"]*\"|[^,}]*)").matcher(json);
+        assertTrue(m.find(), name + " in " + json);
+        return m.group(1);
+    }
+
+    // a string field without its quotes
+    private static String string(String json, String name) {
+        String quoted = field(json, name);
+        assertTrue(quoted.startsWith("\""), name + " in " + json);
+        return quoted.substring(1, quoted.length() - 1);
+    }
+
+    // the first key handed out by POST /games
+    private static String firstKey(String json) {
+        return keys(json)[0];
+    }
+
+    // every key handed out by POST /games
+    private static String[] keys(String json) {
+        Matcher m = Pattern.compile("\"keys\":\\[\"([0-9a-f]+)\"(?:,\"([0-9a-f]+)\")?\\]").matcher(json);
+        assertTrue(m.find(), "keys in " + json);
+        return m.group(2) == null ? new String[]{m.group(1)} : new String[]{m.group(1), m.group(2)};
+    }
+
+    @Test
+    public void testPlaysAgainstComputer() throws IOException {
+        String[] created = request("POST", "/games?mode=cpu&size=5&difficulty=easy&seed=3&names=Ann");
+        assertEquals("201", created[0]);
+        String id = field(created[1], "id");
+        String key = firstKey(created[1]);
+        assertEquals("\"setup\"", field(created[1], "phase"));
+        assertEquals("\"Ann\"", field(created[1], "currentPlayerName"));
+
+        // the default fleet for 5x5 boards, placed down the columns
+        int[] lengths = {4, 3, 2};
+        String[] placed = null;
+        for (int i = 0; i < lengths.length; i++) {
+            placed = request("POST", "/games/" + id + "/ships?player=1&key=" + key + "&x1=" + i + "&y1=0&x2=" + i
+                                     + "&y2=" + (lengths[i] - 1));
+            assertEquals("200", placed[0], placed[1]);
+        }
+        // the computer placed its ships in the same request
+        assertEquals("\"playing\"", field(placed[1], "phase"));
+
+        String[] attacked = request("POST", "/games/" + id + "/attack?player=1&key=" + key + "&x=4&y=4");
+        assertEquals("200", attacked[0], attacked[1]);
+        assertEquals("1", field(attacked[1], "currentPlayer")); // the computer has already replied
+        String[] again = request("POST", "/games/" + id + "/attack?player=1&key=" + key + "&x=4&y=4");
+        assertEquals("409", again[0]);
+        assertEquals("false", field(again[1], "accepted"));
+
+        String[] state = request("GET", "/games/" + id + "?player=1");
+        assertEquals("200", state[0]);
+        assertTrue(state[1].contains("\"opponentBoards\":[{\"hits\":"), state[1]);
+        assertEquals("200", request("DELETE", "/games/" + id)[0]);
+        assertEquals("404", request("GET", "/games/" + id)[0]);
+    }
+
+    @Test
+    public void testNobodySeesTheComputersShips() throws IOException {
+        String[] created = request("POST", "/games?mode=cpu&size=5&difficulty=easy&seed=4&names=Ann");
+        String id = field(created[1], "id");
+        String key = firstKey(created[1]);
+        int[] lengths = {4, 3, 2};
+        for (int i = 0; i < lengths.length; i++) {
+            request("POST", "/games/" + id + "/ships?player=1&key=" + key + "&x1=" + i + "&y1=0&x2=" + i
+                            + "&y2=" + (lengths[i] - 1));
+        }
+        String[] computer = request("GET", "/games/" + id + "?player=2");
+        assertEquals("403", computer[0]);
+        assertFalse(computer[1].contains("\"ships\""), computer[1]);
+        assertEquals("403", request("POST", "/games/" + id + "/attack?player=2&x=0&y=0")[0]);
+
+        // the human's own ships need their key, and the computer's board only shows shots
+        String[] mine = request("GET", "/games/" + id + "?player=1&key=" + key);
+        assertTrue(mine[1].contains("\"ships\":[["), mine[1]);
+        assertTrue(mine[1].contains("\"opponentBoards\":[{\"hits\":[],\"misses\":[],\"sunk\":[]}]"), mine[1]);
+        assertFalse(request("GET", "/games/" + id + "?player=1")[1].contains("\"ships\""));
+        assertFalse(request("GET", "/games/" + id + "?player=1&key=0" + key)[1].contains("\"ships\""));
+        assertEquals("200", request("DELETE", "/games/" + id)[0]);
+    }
+
+    @Test
+    public void testRejectsBadRequests() throws IOException {
+        assertEquals("400", request("POST", "/games?mode=chess")[0]);
+        assertEquals("400", request("POST", "/games?size=ten")[0]);
+        assertEquals("405", request("GET", "/games")[0]);
+        String[] created = request("POST", "/games?mode=2player&size=6");
+        String id = field(created[1], "id");
+        String[] keys = keys(created[1]);
+        String[] outOfTurn = request("POST", "/games/" + id + "/ships?player=2&key=" + keys[1]
+                                             + "&x1=0&y1=0&x2=0&y2=1");
+        assertEquals("409", outOfTurn[0]);
+        assertTrue(field(outOfTurn[1], "error").contains("not player 2's turn"));
+        assertEquals("409", request("POST", "/games/" + id + "/attack?player=1&key=" + keys[0] + "&x=0&y=0")[0]);
+    }
+
+    @Test
+    public void testMovesNeedThePlayersKey() throws IOException {
+        String[] created = request("POST", "/games?mode=2player&size=5");
+        String id = field(created[1], "id");
+        String[] keys = keys(created[1]);
+        assertEquals(2, keys.length);
+        String ship = "&x1=0&y1=0&x2=0&y2=3";
+        // no key, the opponent's key, and no player at all are refused, and the move is not made
+        String[] keyless = request("POST", "/games/" + id + "/ships?player=1" + ship);
+        assertEquals("403", keyless[0]);
+        assertTrue(field(keyless[1], "error").contains("player 1's key"));
+        assertEquals("403", request("POST", "/games/" + id + "/ships?player=1&key=" + keys[1] + ship)[0]);
+        assertEquals("403", request("POST", "/games/" + id + "/ships?key=" + keys[1] + ship)[0]);
+        assertFalse(request("GET", "/games/" + id + "?player=1&key=" + keys[0])[1].contains("\"ships\":[["));
+        assertEquals("200", request("POST", "/games/" + id + "/ships?player=1&key=" + keys[0] + ship)[0]);
+        assertEquals("200", request("DELETE", "/games/" + id)[0]);
+    }
+
+    // the next frame of a watch stream, skipping the blank lines between frames
+    private static String nextFrame(BufferedReader stream) throws IOException {
+        String line;
+        do {
+            line = stream.readLine();
+        } while (line != null && line.isEmpty());
+        return line;
+    }
+
+    @Test
+    public void testWatchersSeeEveryBoardButNoShips() throws IOException {
+        String[] created = request("POST", "/games?mode=2player&size=5");
+        String id = field(created[1], "id");
+        String[] keys = keys(created[1]);
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort()
+                                                                   + "/games/" + id + "/watch").openConnection();
+        assertEquals(200, connection.getResponseCode());
+        try (BufferedReader stream = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            String first = nextFrame(stream);
+            assertEquals("\"setup\"", field(first, "phase"));
+            assertFalse(first.contains("\"ships\""), first);
+
+            // both players place their fleets down the columns, then player 1 shoots
+            int[] lengths = {4, 3, 2};
+            for (int player = 1; player <= 2; player++) {
+                for (int i = 0; i < lengths.length; i++) {
+                    assertEquals("200", request("POST", "/games/" + id + "/ships?player=" + player + "&key="
+                                                        + keys[player - 1] + "&x1=" + i + "&y1=0&x2=" + i
+                                                        + "&y2=" + (lengths[i] - 1))[0]);
+                }
+            }
+            assertEquals("200", request("POST", "/games/" + id + "/attack?player=1&key=" + keys[0] + "&x=0&y=0")[0]);
+            String frame;
+            long version = Long.parseLong(field(first, "version"));
+            do {
+                frame = nextFrame(stream);
+                assertNotNull(frame);
+                long next = Long.parseLong(field(frame, "version"));
+                assertTrue(next > version, "frames come in order");
+                version = next;
+            } while (!frame.contains("\"hits\":[[0,0]]"));
+            assertEquals("\"playing\"", field(frame, "phase"));
+            assertTrue(frame.contains("\"boards\":[{\"hits\":[],\"misses\":[]},{\"hits\":[[0,0]]"), frame);
+
+            // deleting the game ends the stream once the frames queued are sent
+            assertEquals("200", request("DELETE", "/games/" + id)[0]);
+            while (nextFrame(stream) != null) {
+                // drain
+            }
+        }
+    }
+
+    @Test
+    public void testRefusesWatchersBeyondTheLimit() throws IOException {
+        GameServer small = new GameServer(0, 2, 60_000, 1000, 1);
+        try {
+            String id = field(request(small, "POST", "/games?mode=2player&size=5")[1], "id");
+            HttpURLConnection first = (HttpURLConnection) new URL("http://localhost:" + small.getPort()
+                                                                  + "/games/" + id + "/watch").openConnection();
+            assertEquals(200, first.getResponseCode());
+            // the first watcher holds its stream open while the second is turned away
+            InputStream stream = first.getInputStream();
+            try {
+                String[] second = request(small, "GET", "/games/" + id + "/watch");
+                assertEquals("503", second[0]);
+                assertTrue(field(second[1], "error").contains("Too many watchers"));
+                // the game itself is still served
+                assertEquals("200", request(small, "GET", "/games/" + id)[0]);
+            } finally {
+                stream.close();
+            }
+        } finally {
+            small.stop(0);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new GameServer(0, 2, 60_000, 1000, 0));
+    }
+
+    @Test
+    public void testMatchesPlayersIntoGames() throws IOException {
+        String[] ann = request("POST", "/match?size=7&name=Ann");
+        assertEquals("202", ann[0], ann[1]);
+        assertEquals("\"waiting\"", field(ann[1], "status"));
+        String[] bob = request("POST", "/match?size=7&name=Bob");
+        assertEquals("200", bob[0], bob[1]);
+        String game = field(bob[1], "game");
+        assertEquals("2", field(bob[1], "player"));
+        assertEquals("\"Ann\"", field(bob[1], "opponent"));
+
+        String[] annNow = request("GET", "/match/" + string(ann[1], "ticket"));
+        assertEquals(game, field(annNow[1], "game"));
+        assertEquals("409", request("DELETE", "/match/" + string(ann[1], "ticket"))[0]);
+        String[] state = request("GET", "/games/" + game + "?player=1");
+        assertEquals("\"Ann\"", field(state[1], "currentPlayerName"));
+        assertEquals("7", field(state[1], "boardSize"));
+
+        // each player's key shows only their own ships
+        String annKey = string(annNow[1], "key");
+        String bobKey = string(bob[1], "key");
+        assertNotEquals(annKey, bobKey);
+        assertTrue(request("GET", "/games/" + game + "?player=1&key=" + annKey)[1].contains("\"ships\":[]"));
+        assertFalse(request("GET", "/games/" + game + "?player=1&key=" + bobKey)[1].contains("\"ships\""));
+        assertFalse(request("GET", "/games/" + game + "?player=1")[1].contains("\"ships\""));
+        // and Bob cannot move for Ann
+        assertEquals("403", request("POST", "/games/" + game + "/ships?player=1&key=" + bobKey
+                                            + "&x1=0&y1=0&x2=0&y2=1")[0]);
+
+        // players are told apart by their tickets, so two of the same name are paired
+        String dan = string(request("POST", "/match?size=7&name=Dan")[1], "ticket");
+        String[] otherDan = request("POST", "/match?size=7&name=Dan");
+        assertEquals("200", otherDan[0], otherDan[1]);
+        assertEquals("\"Dan\"", field(otherDan[1], "opponent"));
+        assertEquals(field(otherDan[1], "game"), field(request("GET", "/match/" + dan)[1], "game"));
+
+        String cat = string(request("POST", "/match?size=7&name=Cat")[1], "ticket");
+        String[] cancelled = request("DELETE", "/match/" + cat);
+        assertEquals("200", cancelled[0]);
+        assertEquals("\"cancelled\"", field(cancelled[1], "status"));
+        assertEquals("404", request("GET", "/match/" + cat)[0]);
+        assertEquals("404", request("GET", "/match/1")[0]);
+        assertEquals("400", request("POST", "/match?name=two+words")[0]);
+    }
+
+    @Test
+    public void testJsonWriterEscapesAndNests() {
+        JsonWriter json = new JsonWriter();
+        json.beginObject().name("a\"b").value("line\nbreak \u00e9").name("n").value(-120L)
+            .name("list").beginArray().value(true).value((String) null).beginArray().endArray().endArray()
+            .endObject();
+        assertTrue(json.isComplete());
+        assertEquals("{\"a\\\"b\":\"line\\u000abreak \u00e9\",\"n\":-120,\"list\":[true,null,[]]}", json.toString());
+        assertEquals(0, json.reset().length());
+    }
+}
@@ -0,0 +1,170 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchmakerTest {
+
+    private static final Matchmaker.Key TEN = new Matchmaker.Key("2player", 10, "normal");
+
+    private final AtomicLong games = new AtomicLong();
+
+    private Matchmaker matchmaker(long maxWaitMillis) {
+        return new Matchmaker(maxWaitMillis, (key, first, second) -> games.incrementAndGet());
+    }
+
+    @Test
+    public void testPairsPlayersWhoWantTheSameGame() throws Exception {
+        Matchmaker matchmaker = matchmaker(60_000);
+        Matchmaker.Ticket ann = matchmaker.join(TEN, "Ann");
+        Matchmaker.Ticket cat = matchmaker.join(new Matchmaker.Key("2player", 8, "normal"), "Cat");
+        assertTrue(ann.isWaiting());
+        assertEquals(2, matchmaker.getWaitingCount());
+
+        Matchmaker.Ticket bob = matchmaker.join(new Matchmaker.Key("2player", 10, "normal"), "Bob");
+        assertFalse(bob.isWaiting());
+        Matchmaker.Match annMatch = ann.getMatch().get(1, TimeUnit.SECONDS);
+        Matchmaker.Match bobMatch = bob.getMatch().get(1, TimeUnit.SECONDS);
+        assertEquals(annMatch.getGameId(), bobMatch.getGameId());
+        assertEquals(1, annMatch.getPlayer());
+        assertEquals("Bob", annMatch.getOpponent());
+        assertEquals(2, bobMatch.getPlayer());
+        assertEquals("Ann", bobMatch.getOpponent());
+        assertTrue(cat.isWaiting());
+        assertEquals(1, matchmaker.getPairCount());
+
+        // wanting the computer needs no opponent
+        Matchmaker.Ticket dan = matchmaker.join(new Matchmaker.Key("cpu", 10, "normal"), "Dan");
+        assertTrue(dan.getMatch().get(1, TimeUnit.SECONDS).isAgainstComputer());
+        matchmaker.shutdown();
+    }
+
+    @Test
+    public void testCancelledPlayersAreNotMatched() throws Exception {
+        Matchmaker matchmaker = matchmaker(60_000);
+        Matchmaker.Ticket ann = matchmaker.join(TEN, "Ann");
+        assertTrue(ann.cancel());
+        assertFalse(ann.cancel());
+        assertTrue(ann.getMatch().isCancelled());
+        assertEquals(0, matchmaker.getWaitingCount());
+
+        Matchmaker.Ticket bob = matchmaker.join(TEN, "Bob");
+        assertTrue(bob.isWaiting()); // not paired with Ann
+        Matchmaker.Ticket cat = matchmaker.join(TEN, "Cat");
+        assertEquals("Bob", cat.getMatch().get(1, TimeUnit.SECONDS).getOpponent());
+        assertFalse(bob.cancel()); // too late
+        matchmaker.shutdown();
+    }
+
+    @Test
+    public void testWaitingPlayersFallBackToTheComputer() throws Exception {
+        Matchmaker matchmaker = matchmaker(50);
+        Matchmaker.Ticket ann = matchmaker.join(TEN, "Ann");
+        Matchmaker.Match match = ann.getMatch().get(5, TimeUnit.SECONDS);
+        assertTrue(match.isAgainstComputer());
+        assertEquals(1, match.getPlayer());
+        assertEquals(1, matchmaker.getFallbackCount());
+        assertEquals(0, matchmaker.getWaitingCount());
+        assertTrue(matchmaker.join(TEN, "Bob").isWaiting()); // Bob waits rather than joining Ann's game
+        assertEquals(1, matchmaker.getWaitingCount());
+        matchmaker.shutdown();
+    }
+
+    @Test
+    public void testBurstOfJoinsAllGetGames() throws Exception {
+        Matchmaker matchmaker = matchmaker(100);
+        int threads = 8;
+        int joinsPerThread = 1000;
+        List<List<Matchmaker.Ticket>> joined = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> joiners = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<Matchmaker.Ticket> mine = new ArrayList<>();
+            joined.add(mine);
+            int seed = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < joinsPerThread; i++) {
+                    Matchmaker.Key key = new Matchmaker.Key("2player", 5 + (i + seed) % 4, "easy");
+                    Matchmaker.Ticket ticket = matchmaker.join(key, "p" + seed + "-" + i);
+                    mine.add(ticket);
+                    if (i % 10 == 0) {
+                        ticket.cancel();
+                    }
+                }
+            });
+            joiners.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : joiners) {
+            thread.join();
+        }
+
+        Map<Long, Integer> players = new HashMap<>();
+        int cancelled = 0;
+        for (List<Matchmaker.Ticket> mine : joined) {
+            for (Matchmaker.Ticket ticket : mine) {
+                if (ticket.getMatch().isCancelled()) {
+                    cancelled++;
+                    continue;
+                }
+                Matchmaker.Match match = ticket.getMatch().get(5, TimeUnit.SECONDS);
+                assertTrue(match.getGameId() > 0);
+                players.merge(match.getGameId(), match.isAgainstComputer() ? 2 : 1, Integer::sum);
+            }
+        }
+        assertTrue(cancelled <= threads * joinsPerThread / 10);
+        for (int count : players.values()) {
+            assertEquals(2, count, "every game has two players");
+        }
+        assertEquals(matchmaker.getPairCount() + matchmaker.getFallbackCount(), players.size());
+        assertEquals(0, matchmaker.getWaitingCount());
+        assertEquals(0, matchmaker.getBucketCount());
+        matchmaker.shutdown();
+    }
+
+    @Test
+    public void testPlayersWithTheSameNameArePaired() throws Exception {
+        Matchmaker matchmaker = matchmaker(60_000);
+        Matchmaker.Ticket first = matchmaker.join(TEN, "Ann");
+        Matchmaker.Ticket second = matchmaker.join(TEN, "Ann");
+        Matchmaker.Match firstMatch = first.getMatch().get(1, TimeUnit.SECONDS);
+        Matchmaker.Match secondMatch = second.getMatch().get(1, TimeUnit.SECONDS);
+        assertEquals(firstMatch.getGameId(), secondMatch.getGameId());
+        assertEquals(1, firstMatch.getPlayer());
+        assertEquals(2, secondMatch.getPlayer());
+        assertEquals("Ann", secondMatch.getOpponent());
+        assertEquals(0, matchmaker.getWaitingCount());
+        matchmaker.shutdown();
+    }
+
+    @Test
+    public void testEmptyBucketsAreDropped() {
+        Matchmaker matchmaker = matchmaker(60_000);
+        Matchmaker.Ticket ann = matchmaker.join(TEN, "Ann");
+        matchmaker.join(new Matchmaker.Key("2player", 8, "normal"), "Cat");
+        assertEquals(2, matchmaker.getBucketCount());
+        matchmaker.join(TEN, "Bob");
+        assertFalse(ann.isWaiting());
+        assertEquals(1, matchmaker.getBucketCount());
+        Matchmaker.Ticket dan = matchmaker.join(TEN, "Dan");
+        assertEquals(2, matchmaker.getBucketCount());
+        assertTrue(dan.cancel());
+        assertEquals(1, matchmaker.getBucketCount());
+        matchmaker.shutdown();
+    }
+}
@@ -0,0 +1,70 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpectatorFeedTest {
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testFramesAreSharedByWatchers() throws InterruptedException {
+        SpectatorFeed feed = new SpectatorFeed(4);
+        SpectatorFeed.Subscription a = feed.subscribe();
+        SpectatorFeed.Subscription b = feed.subscribe();
+        feed.publish(bytes("{\"v\":1}"), 1);
+        SpectatorFeed.Frame fromA = a.poll(1, TimeUnit.SECONDS);
+        assertSame(fromA, b.poll(1, TimeUnit.SECONDS));
+        assertEquals("{\"v\":1}", fromA.toString());
+
+        // a late watcher starts from the latest frame
+        feed.publish(bytes("{\"v\":2}"), 2);
+        assertEquals(2, feed.subscribe().poll(1, TimeUnit.SECONDS).getVersion());
+        assertEquals(3, feed.getSubscriberCount());
+    }
+
+    @Test
+    public void testSlowWatchersSkipToTheLatestFrame() throws InterruptedException {
+        SpectatorFeed feed = new SpectatorFeed(3);
+        SpectatorFeed.Subscription slow = feed.subscribe();
+        SpectatorFeed.Subscription fast = feed.subscribe();
+        for (long v = 1; v <= 10; v++) {
+            feed.publish(bytes(Long.toString(v)), v);
+            assertEquals(v, fast.poll(1, TimeUnit.SECONDS).getVersion());
+        }
+        assertEquals(7, slow.getDropped());
+        assertEquals(0, fast.getDropped());
+        assertEquals(8, slow.poll(1, TimeUnit.SECONDS).getVersion());
+        assertEquals(9, slow.poll(1, TimeUnit.SECONDS).getVersion());
+        assertEquals(10, slow.poll(1, TimeUnit.SECONDS).getVersion());
+        assertNull(slow.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testClosingWakesWatchersAfterTheirFrames() throws InterruptedException {
+        SpectatorFeed feed = new SpectatorFeed(2);
+        SpectatorFeed.Subscription watcher = feed.subscribe();
+        feed.publish(bytes("a"), 1);
+        feed.publish(bytes("b"), 2);
+        feed.close();
+        assertFalse(feed.hasSubscribers());
+        assertTrue(watcher.isClosed());
+        // the end marker took the oldest frame's place, never the latest
+        assertEquals(2, watcher.poll(1, TimeUnit.SECONDS).getVersion());
+        long start = System.nanoTime();
+        assertNull(watcher.poll(10, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+        feed.publish(bytes("c"), 3);
+        SpectatorFeed.Subscription late = feed.subscribe();
+        assertTrue(late.isClosed());
+        assertEquals(2, late.poll(1, TimeUnit.SECONDS).getVersion());
+        assertThrows(IllegalArgumentException.class, () -> new SpectatorFeed(1));
+    }
+}
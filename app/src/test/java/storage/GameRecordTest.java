@@ -0,0 +1,151 @@
+package storage;
+
+import battleship.GameArena;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameRecordTest {
+
+    // more than one block, so block boundaries are crossed
+    private static final int GAMES = 5000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testRoundTripsArenaGames() throws IOException {
+        GameArena arena = new GameArena(GAMES, 2, 100);
+        arena.run();
+        long moves = 0;
+        for (int g = 0; g < GAMES; g++) {
+            moves += arena.getMoves(g).length;
+        }
+        for (boolean compress : new boolean[]{false, true}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (GameRecordWriter writer = new GameRecordWriter(bytes, GameArena.SIZE, GameArena.getShipsInfo(),
+                                                                compress)) {
+                for (int g = 0; g < GAMES; g++) {
+                    writer.write(arena.getSeed(g), arena.getWinner(g), arena.getFleetCells(g, 1),
+                                 arena.getFleetCells(g, 2), arena.getMoves(g));
+                }
+            }
+            try (GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+                assertEquals(GameArena.SIZE, reader.getBoardSize());
+                for (int g = 0; g < GAMES; g++) {
+                    assertTrue(reader.next());
+                    assertEquals(arena.getSeed(g), reader.getSeed());
+                    assertEquals(arena.getWinner(g), reader.getWinner());
+                    assertArrayEquals(arena.getFleetCells(g, 1), reader.getFleetCells(1));
+                    assertArrayEquals(arena.getFleetCells(g, 2), reader.getFleetCells(2));
+                    assertArrayEquals(arena.getMoves(g), reader.getMoves());
+                }
+                assertFalse(reader.next());
+            }
+            // a move is one byte, plus a few bytes of seed, winner, fleets and move count per game
+            long overhead = (bytes.size() - moves) / GAMES;
+            assertTrue(overhead <= 16, overhead + " bytes per game besides the moves");
+        }
+    }
+
+    @Test
+    public void testExportsAndImportsStore() throws IOException {
+        GameArena arena = new GameArena(300, 0, 5);
+        arena.run();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GameStore store = GameStore.create(dir.resolve("a.bin"), GameArena.SIZE, GameArena.getShipsInfo());
+             GameRecordWriter writer = new GameRecordWriter(bytes, GameArena.SIZE, GameArena.getShipsInfo(), true)) {
+            store.appendAll(arena);
+            writer.writeAll(store);
+        }
+        try (GameStore store = GameStore.create(dir.resolve("b.bin"), GameArena.SIZE, GameArena.getShipsInfo());
+             GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(300, reader.readAll(store));
+            for (int g = 0; g < 300; g++) {
+                GameStore.Record record = store.read(g);
+                assertEquals(arena.getSeed(g), record.getSeed());
+                assertEquals(arena.getMoves(g).length, record.getMoveCount());
+                assertEquals(arena.getFleetCells(g, 2)[0], record.getFleetCell(2, 0));
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsBentShips() throws IOException {
+        GameRecordWriter writer = new GameRecordWriter(new ByteArrayOutputStream(), 10, new int[]{0, 0, 0, 1}, false);
+        assertThrows(IllegalArgumentException.class,
+                     () -> writer.write(1, 1, new int[]{0, 1, 11}, new int[]{0, 10, 20}, new int[0]));
+        // a ship may not wrap from the end of one row onto the next
+        assertThrows(IllegalArgumentException.class,
+                     () -> writer.write(1, 1, new int[]{8, 9, 10}, new int[]{0, 10, 20}, new int[0]));
+        writer.write(1, 1, new int[]{7, 8, 9}, new int[]{0, 10, 20}, new int[]{3});
+        assertEquals(1, writer.getGamesWritten());
+        writer.close();
+    }
+
+    // an uncompressed archive of one game on a 10x10 board with one ship of 3, the first laid across from cell 7
+    private static byte[] oneGame() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GameRecordWriter writer = new GameRecordWriter(bytes, 10, new int[]{0, 0, 0, 1}, false)) {
+            writer.write(1, 1, new int[]{7, 8, 9}, new int[]{0, 10, 20}, new int[]{3});
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void assertCorrupt(byte[] archive) {
+        assertThrows(IOException.class, () -> {
+            try (GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(archive))) {
+                while (reader.next()) {
+                    // read to the end
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testRejectsCorruptArchives() throws IOException {
+        // the header is 12 bytes and the block's lengths 3, so the game's winner is at 16 and its
+        // first ship's start cell at 17
+        byte[] archive = oneGame();
+        try (GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(archive))) {
+            assertTrue(reader.next());
+            assertArrayEquals(new int[]{7, 8, 9}, reader.getFleetCells(1));
+        }
+        byte[] offBoard = archive.clone();
+        offBoard[17] = 9; // the ship across from 9 would wrap onto the next row
+        assertCorrupt(offBoard);
+        byte[] noWinner = archive.clone();
+        noWinner[16] = 3;
+        assertCorrupt(noWinner);
+
+        // a fleet length of 2^63 + ..., negative once read
+        byte[] negative = new byte[archive.length + 9];
+        System.arraycopy(archive, 0, negative, 0, 7);
+        Arrays.fill(negative, 7, 16, (byte) 0xff);
+        negative[16] = 1;
+        assertCorrupt(negative);
+        // 5000 games in the block, more than a block holds
+        byte[] huge = new byte[archive.length + 1];
+        System.arraycopy(archive, 0, huge, 0, 12);
+        huge[12] = (byte) 0x88;
+        huge[13] = 0x27;
+        System.arraycopy(archive, 13, huge, 14, archive.length - 13);
+        assertCorrupt(huge);
+    }
+
+    @Test
+    public void testReadsOnlyIntoStoresOfTheSameFleet() throws IOException {
+        try (GameStore store = GameStore.create(dir.resolve("c.bin"), 10, new int[]{0, 0, 1});
+             GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(oneGame()))) {
+            assertThrows(IllegalArgumentException.class, () -> reader.readAll(store));
+        }
+    }
+}
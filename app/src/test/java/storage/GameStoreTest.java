@@ -0,0 +1,106 @@
+package storage;
+
+import battleship.GameArena;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameStoreTest {
+
+    private static final int GAMES = 200;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testStoresArenaGames() throws IOException {
+        GameArena arena = new GameArena(GAMES, 1, 11);
+        arena.run();
+        Path file = dir.resolve("games.bin");
+        try (GameStore store = GameStore.create(file, GameArena.SIZE, GameArena.getShipsInfo())) {
+            assertEquals(GAMES, store.appendAll(arena));
+        }
+        try (GameStore store = GameStore.open(file)) {
+            assertEquals(GAMES, store.size());
+            for (int g = 0; g < GAMES; g++) {
+                GameStore.Record record = store.read(g);
+                assertEquals(arena.getSeed(g), record.getSeed());
+                assertEquals(arena.getWinner(g), record.getWinner());
+                int[] moves = arena.getMoves(g);
+                assertEquals(moves.length, record.getMoveCount());
+                for (int i = 0; i < moves.length; i++) {
+                    assertEquals(moves[i], record.getMove(i));
+                }
+                for (int pid = 1; pid <= 2; pid++) {
+                    int[] fleet = arena.getFleetCells(g, pid);
+                    for (int i = 0; i < fleet.length; i++) {
+                        assertEquals(fleet[i], record.getFleetCell(pid, i));
+                    }
+                }
+            }
+            long[] wins = new long[3];
+            store.scan(record -> wins[record.getWinner()]++);
+            assertEquals(GAMES, wins[1] + wins[2]);
+        }
+    }
+
+    @Test
+    public void testAppendsAcrossReopens() throws IOException {
+        Path file = dir.resolve("games.bin");
+        int[] ships = {0, 0, 1}; // one ship of length 2
+        try (GameStore store = GameStore.create(file, 20, ships)) {
+            assertEquals(0, store.append(1, 1, new int[]{0, 1}, new int[]{398, 399}, new int[]{398, 0, 399}));
+        }
+        try (GameStore store = GameStore.open(file)) {
+            assertEquals(1, store.append(2, 2, new int[]{0, 20}, new int[]{5, 6}, new int[]{}));
+            assertEquals(399, store.read(0).getFleetCell(2, 1)); // cells past 255 need two bytes
+            assertEquals(2, store.read(1).getWinner());
+            assertThrows(IllegalArgumentException.class, () -> store.read(2));
+            assertThrows(IllegalArgumentException.class, () -> store.append(3, 1, new int[]{0}, new int[]{1, 2},
+                                                                            new int[]{}));
+            assertThrows(IllegalArgumentException.class, () -> store.append(3, 1, new int[]{0, 400},
+                                                                            new int[]{1, 2}, new int[]{}));
+            assertEquals(2, store.size());
+        }
+    }
+
+    // overwrites a little-endian value in a store's header
+    private static void corrupt(Path file, int at, long value, int bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes == 4) {
+            buffer.putInt(0, (int) value);
+        } else {
+            buffer.putLong(0, value);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(buffer, at);
+        }
+    }
+
+    @Test
+    public void testRejectsCorruptHeaders() throws IOException {
+        // the board size, the fleet's length, a ship count, and the number of games, each made impossible
+        long[][] corruptions = {{16, 0, 4}, {16, 65, 4}, {20, -1, 4}, {20, 5000, 4}, {24 + 4 * 2, -3, 4},
+                                {24 + 4 * 2, 1000, 4}, {8, -1, 8}, {8, 1 << 20, 8}};
+        for (long[] corruption : corruptions) {
+            Path file = dir.resolve("corrupt.bin");
+            try (GameStore store = GameStore.create(file, 10, new int[]{0, 0, 1})) {
+                store.append(1, 1, new int[]{0, 1}, new int[]{2, 3}, new int[]{0});
+            }
+            corrupt(file, (int) corruption[0], corruption[1], (int) corruption[2]);
+            assertThrows(IOException.class, () -> GameStore.open(file), "at " + corruption[0]);
+        }
+        // a longer fleet whose extra lengths have no ships is still a valid store
+        Path file = dir.resolve("games.bin");
+        GameStore.create(file, 10, new int[]{0, 0, 1, 0, 0}).close();
+        GameStore.open(file).close();
+    }
+}
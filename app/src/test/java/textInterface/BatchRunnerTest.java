@@ -0,0 +1,40 @@
+package textInterface;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchRunnerTest {
+
+    // a full 2 player game on a 5x5 board where player 1 sinks everything first
+    private static final String GAME = String.join("\n",
+            "# settings",
+            "1; 5; alice bob",
+            "a0;r; a1;r; a2;r",
+            "a0;r; a1;r; a2;r",
+            "a0;a0;b0;b0;a1;a1;b1;b1;c1;c1;a2;a2;b2;b2;c2;c2;d2",
+            "");
+
+    @Test
+    public void testRunsWholeGameAndStopsOnExit() throws IOException {
+        BatchRunner runner = new BatchRunner(true);
+        runner.run(new StringReader(GAME + "n\nthis line is never read\n"));
+        assertEquals(3 + 12 + 17 + 1, runner.getCommandCount());
+    }
+
+    @Test
+    public void testOutputChecksumIsRepeatable() throws IOException {
+        BatchRunner first = new BatchRunner(true);
+        first.run(new StringReader(GAME + "y\n" + GAME + "n\n"));
+        BatchRunner second = new BatchRunner(true);
+        second.run(new StringReader(GAME + "y\n" + GAME + "n\n"));
+        assertEquals(first.getOutputChecksum(), second.getOutputChecksum());
+
+        BatchRunner discarding = new BatchRunner(false);
+        discarding.run(new StringReader(GAME + "n\n"));
+        assertEquals(-1, discarding.getOutputChecksum());
+    }
+}
@@ -0,0 +1,44 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The InvariantChecksTest class checks the full scan schedule of whichever mode this JVM was started in.
+ * The build runs it once per mode, as the mode is read once at startup.
+ */
+public class InvariantChecksTest {
+
+    @Test
+    public void testModeFollowsTheProperty() {
+        String mode = System.getProperty("battleship.invariants");
+        if (mode == null) {
+            assertEquals(Globals.DEBUG ? InvariantChecks.Mode.FULL : InvariantChecks.Mode.OFF, InvariantChecks.MODE);
+        } else {
+            assertEquals(InvariantChecks.Mode.valueOf(mode.toUpperCase()), InvariantChecks.MODE);
+        }
+        assertEquals(InvariantChecks.MODE != InvariantChecks.Mode.OFF, InvariantChecks.ENABLED);
+    }
+
+    @Test
+    public void testFullScanSchedule() {
+        for (int count = 1; count <= 3 * Math.max(InvariantChecks.FULL_SCAN_INTERVAL, 1); count++) {
+            switch (InvariantChecks.MODE) {
+                case OFF:
+                    assertFalse(InvariantChecks.fullScanDue(count));
+                    break;
+                case FULL:
+                    assertTrue(InvariantChecks.fullScanDue(count));
+                    break;
+                case SAMPLED:
+                    if (InvariantChecks.FULL_SCAN_PROBABILITY == 0) {
+                        boolean due = InvariantChecks.FULL_SCAN_INTERVAL > 0
+                                && count % InvariantChecks.FULL_SCAN_INTERVAL == 0;
+                        assertEquals(due, InvariantChecks.fullScanDue(count), "operation " + count);
+                    }
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The SparseBitmapTest class includes unit tests for the SparseBitmap class.
+ */
+public class SparseBitmapTest {
+
+    @Test
+    public void testSetAndGet() {
+        SparseBitmap b = new SparseBitmap();
+        assertFalse(b.get(0, 0));
+        assertTrue(b.set(0, 0));
+        assertFalse(b.set(0, 0));
+        assertTrue(b.get(0, 0));
+        assertFalse(b.get(1, 0));
+        assertTrue(b.set(999_999, 123_456));
+        assertTrue(b.get(999_999, 123_456));
+        assertEquals(2, b.cardinality());
+        assertEquals(2, b.tileCount());
+    }
+
+    @Test
+    public void testClearReleasesTiles() {
+        SparseBitmap b = new SparseBitmap();
+        // enough tiles to force the table to grow and collide
+        for (int i = 0; i < 1000; i++) {
+            b.set(i * SparseBitmap.TILE_SIZE, i);
+        }
+        assertEquals(1000, b.tileCount());
+        for (int i = 0; i < 1000; i += 2) {
+            assertTrue(b.clear(i * SparseBitmap.TILE_SIZE, i));
+        }
+        assertFalse(b.clear(0, 0));
+        assertEquals(500, b.tileCount());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 1, b.get(i * SparseBitmap.TILE_SIZE, i));
+        }
+    }
+
+    @Test
+    public void testCells() {
+        SparseBitmap b = new SparseBitmap();
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            int x = i * 37 % 500;
+            int y = i * 91 % 300;
+            b.set(x, y);
+            expected.add(SparseBitmap.pack(x, y));
+        }
+        Set<Long> actual = new HashSet<>();
+        PrimitiveIterator.OfLong it = b.cells();
+        while (it.hasNext()) {
+            actual.add(it.nextLong());
+        }
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), b.cardinality());
+    }
+}